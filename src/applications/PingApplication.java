@@ -29,6 +29,7 @@ import core.World;
  * @author teemuk
  */
 public class PingApplication extends Application {
+	private static final long serialVersionUID = 42L;
 	/** Run in passive mode - don't generate pings but respond */
 	public static final String PING_PASSIVE = "passive";
 	/** Ping generation interval */
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import interfaces.ConnectivityOptimizer;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * <P>Finds out how many of the following update intervals can be
+ * simulated by only moving the hosts, i.e., without updating the hosts'
+ * connections and routers. An update can be skipped when nothing that the
+ * update reacts to can happen before it: </P>
+ * <UL>
+ * <LI>no external events or scheduled updates are due</LI>
+ * <LI>no host stops waiting, reaches its current destination or becomes
+ * active or inactive (so the hosts' velocities stay the same)</LI>
+ * <LI>no message transfer finishes</LI>
+ * <LI>no pair of interfaces can move in or out of range, which is checked
+ * using the current distances and speeds of the hosts</LI>
+ * </UL>
+ * <P>The skipped intervals still move the hosts one update interval at a
+ * time, so the movement and the connections are the same as without
+ * skipping. Idle connections don't prevent skipping: a router that could
+ * start a transfer on an idle connection (e.g. to a peer that was busy
+ * earlier) does that only in the next update, up to the max update
+ * interval ({@link World#MAX_UPDATE_INTERVAL_S}) later than without
+ * skipping.</P>
+ */
+public class AdaptiveStepping implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** how many radio ranges the hosts can approach each other at most 
+	 * during the skipped updates (limits the number of checked pairs) */
+	private static final double MAX_REACH = 4;
+
+	private List<DTNHost> hosts;
+	private double updateInterval;
+	private int maxSkips;
+	private double endTime;
+	/** the interfaces grouped by their connectivity optimizers */
+	private List<NetworkInterface[]> groups;
+	/** activeness of the hosts (indexed by host address) during a check */
+	private boolean[] active;
+	/** speeds of the hosts (indexed by host address) during a check */
+	private double[] speeds;
+
+	/**
+	 * Constructor.
+	 * @param hosts All the hosts in the world
+	 * @param updateInterval The (base) update interval
+	 * @param maxSkips How many update intervals can be skipped at most in a
+	 * row
+	 * @param endTime The end time of the simulation
+	 */
+	public AdaptiveStepping(List<DTNHost> hosts, double updateInterval,
+			int maxSkips, double endTime) {
+		this.hosts = hosts;
+		this.updateInterval = updateInterval;
+		this.maxSkips = maxSkips;
+		this.endTime = endTime;
+		this.active = new boolean[hosts.size()];
+		this.speeds = new double[hosts.size()];
+
+		/* only the interfaces sharing an optimizer can connect */
+		HashMap<ConnectivityOptimizer, List<NetworkInterface>> byOptimizer =
+			new HashMap<ConnectivityOptimizer, List<NetworkInterface>>();
+		this.groups = new ArrayList<NetworkInterface[]>();
+		for (DTNHost h : hosts) {
+			for (NetworkInterface ni : h.getInterfaces()) {
+				List<NetworkInterface> group = byOptimizer.get(ni.optimizer);
+				if (group == null) {
+					group = new ArrayList<NetworkInterface>();
+					byOptimizer.put(ni.optimizer, group);
+				}
+				group.add(ni);
+			}
+		}
+		for (List<NetworkInterface> group : byOptimizer.values()) {
+			groups.add(group.toArray(new NetworkInterface[group.size()]));
+		}
+	}
+
+	/**
+	 * Sets the end time of the simulation
+	 * @param endTime The new end time
+	 */
+	void setEndTime(double endTime) {
+		this.endTime = endTime;
+	}
+
+	/**
+	 * Returns how many of the next update intervals can be done without
+	 * updating the hosts
+	 * @param nextEventTime Time of the next external event or scheduled
+	 * update
+	 * @return Number of update intervals that can be skipped
+	 */
+	public int skippableUpdates(double nextEventTime) {
+		double now = SimClock.getTime();
+		/* all the skipped updates must end before this time */
+		double limit = Math.min(nextEventTime, endTime);
+		double maxSpeed = 0;
+
+		for (int i=0, n=hosts.size(); i<n; i++) {
+			DTNHost h = hosts.get(i);
+			speeds[i] = 0;
+			limit = Math.min(limit, h.getNextActivenessChange());
+			active[i] = h.isActive();
+			if (!active[i]) {
+				continue; // doesn't move or connect
+			}
+
+			if (now < h.getNextTimeToMove()) {
+				limit = Math.min(limit, h.getNextTimeToMove());
+			}
+			else if (h.getDestination() == null || h.getSpeed() <= 0) {
+				return 0; // asks for a new path on the next move
+			}
+			else {
+				speeds[i] = h.getSpeed();
+				maxSpeed = Math.max(maxSpeed, speeds[i]);
+				limit = Math.min(limit, now + h.getLocation().distance(
+						h.getDestination()) / speeds[i]);
+			}
+
+			for (NetworkInterface ni : h.getInterfaces()) {
+				for (Connection con : ni.getConnections()) {
+					if (con.isReadyForTransfer()) {
+						continue;
+					}
+					if (!(con instanceof CBRConnection)) {
+						return 0; // transfer progresses in every update
+					}
+					limit = Math.min(limit,
+							((CBRConnection)con).getTransferDoneTime());
+				}
+			}
+		}
+
+		/* count the updates the same way the world advances the clock */
+		int skips = 0;
+		for (double t = now + updateInterval; skips < maxSkips &&
+				t < limit; t += updateInterval) {
+			skips++;
+		}
+		if (skips == 0) {
+			return 0;
+		}
+
+		return rangeLimitedSkips(skips, maxSpeed);
+	}
+
+	/**
+	 * Limits the number of skipped updates so that no pair of interfaces
+	 * can move in or out of range during them. Interfaces that are in range
+	 * but not connected (e.g., not scanning at the moment) prevent skipping.
+	 * @param skips Number of updates that could be skipped otherwise
+	 * @param maxSpeed The largest speed
+	 * @return Number of updates that can be skipped
+	 */
+	private int rangeLimitedSkips(int skips, double maxSpeed) {
+		for (NetworkInterface[] group : groups) {
+			skips = rangeLimitedSkips(group, skips, maxSpeed);
+			if (skips == 0) {
+				break;
+			}
+		}
+		return skips;
+	}
+
+	/**
+	 * Limits the number of skipped updates so that no pair of interfaces
+	 * in a group can move in or out of range during them. The candidate
+	 * pairs are found by sorting the group by the x coordinates (the order
+	 * changes little between the calls) and sweeping over it.
+	 * @param group The interfaces that can connect with each other
+	 * @param skips Number of updates that could be skipped otherwise
+	 * @param maxSpeed The largest speed
+	 * @return Number of updates that can be skipped
+	 */
+	private int rangeLimitedSkips(NetworkInterface[] group, int skips,
+			double maxSpeed) {
+		double maxRange = 0;
+		for (int i=1; i<group.length; i++) { // insertion sort by x
+			NetworkInterface ni = group[i];
+			double x = ni.getLocation().getX();
+			int j = i - 1;
+			while (j >= 0 && group[j].getLocation().getX() > x) {
+				group[j+1] = group[j];
+				j--;
+			}
+			group[j+1] = ni;
+		}
+		for (NetworkInterface ni : group) {
+			maxRange = Math.max(maxRange, ni.getTransmitRange());
+		}
+		if (maxSpeed > 0) { // keep the number of checked pairs small
+			skips = Math.min(skips, Math.max(1, (int)(MAX_REACH * maxRange /
+					(2 * maxSpeed * updateInterval))));
+		}
+
+		/* pairs further away than this can't get in range while skipping */
+		double reach = maxRange + 2 * maxSpeed * skips * updateInterval;
+
+		for (int i=0; i<group.length; i++) {
+			NetworkInterface ni = group[i];
+			if (!active[ni.getHost().getAddress()]) {
+				continue;
+			}
+			Coord c = ni.getLocation();
+			for (int j=i+1; j<group.length; j++) {
+				NetworkInterface other = group[j];
+				Coord oc = other.getLocation();
+				if (oc.getX() - c.getX() > reach) {
+					break;
+				}
+				if (Math.abs(oc.getY() - c.getY()) > reach ||
+						!active[other.getHost().getAddress()]) {
+					continue;
+				}
+				skips = Math.min(skips, pairSkips(ni, other, skips));
+				if (skips == 0) {
+					return 0;
+				}
+			}
+		}
+
+		return skips;
+	}
+
+	/**
+	 * Returns how many updates can be skipped without the connectivity of
+	 * two interfaces changing
+	 * @param a The first interface
+	 * @param b The second interface
+	 * @param skips The maximum number of skipped updates
+	 * @return Number of updates that can be skipped
+	 */
+	private int pairSkips(NetworkInterface a, NetworkInterface b,
+			int skips) {
+		if (a.getHost() == b.getHost()) {
+			return skips; // can't connect with each other
+		}
+
+		double range = Math.min(a.getTransmitRange(), b.getTransmitRange());
+		double distance = a.getLocation().distance(b.getLocation());
+		if (distance <= range && !a.isConnected(b)) {
+			return 0;
+		}
+
+		double closing = (speeds[a.getHost().getAddress()] +
+				speeds[b.getHost().getAddress()]) * updateInterval;
+		double gap = Math.abs(distance - range);
+		if (closing <= 0) {
+			return skips;
+		}
+		/* largest k for which k * closing < gap */
+		return Math.max(0, (int)Math.ceil(gap / closing) - 1);
+	}
+}
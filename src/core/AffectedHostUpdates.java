@@ -0,0 +1,161 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <P>Updates only the hosts that an external event can affect after the
+ * event, instead of all the hosts. The hosts don't move between the events
+ * of an update interval, so an update of a host can change something only
+ * if the host or its peers have changed since the host's previous update
+ * (see {@link DTNHost#stateChanged()}), or if the host has something to do 
+ * anyway. The hosts are checked in the same order as they would be updated
+ * in a full update, so changes made by the updates of the earlier hosts
+ * are seen by the later ones. A host is updated if: </P>
+ * <UL>
+ * <LI>the event touched the host or its peer, i.e., looked them up using
+ * {@link World#getNodeByAddress(int)} or reported them with
+ * {@link World#hostTouched(DTNHost)}</LI>
+ * <LI>the state of the host or its peer has changed since the host was 
+ * updated last</LI>
+ * <LI>the host needs an update anyway (see
+ * {@link routing.MessageRouter#needsUpdate()}, e.g., a transfer has
+ * finished), or its interface scans periodically or has a connection
+ * whose transfer advances in every update</LI>
+ * </UL>
+ * <P>If the event touched no hosts (e.g., a scheduled update) or a host 
+ * may become active or inactive, all the hosts must be updated.</P>
+ */
+public class AffectedHostUpdates implements Serializable {
+	private static final long serialVersionUID = 42L;
+	private List<DTNHost> hosts;
+	/** hosts touched by the current event */
+	private List<DTNHost> touchedHosts;
+	/** is the host (indexed by address) touched by the current event */
+	private boolean[] touched;
+	/** the earliest time any host may become active or inactive */
+	private double nextActivenessChange;
+
+	/**
+	 * Constructor.
+	 * @param hosts All the hosts in the world (indexed by their address)
+	 */
+	public AffectedHostUpdates(List<DTNHost> hosts) {
+		this.hosts = hosts;
+		this.touchedHosts = new ArrayList<DTNHost>();
+		this.touched = new boolean[hosts.size()];
+		this.nextActivenessChange = 0; // unknown before the first update
+	}
+
+	/**
+	 * Starts a new event; forgets the hosts the previous event touched
+	 */
+	public void beginEvent() {
+		for (DTNHost h : touchedHosts) {
+			touched[h.getAddress()] = false;
+		}
+		touchedHosts.clear();
+	}
+
+	/**
+	 * Records that the current event touched a host
+	 * @param host The touched host
+	 */
+	public void hostTouched(DTNHost host) {
+		int address = host.getAddress();
+		if (!touched[address]) {
+			touched[address] = true;
+			touchedHosts.add(host);
+		}
+	}
+
+	/**
+	 * Returns true if the hosts can be updated partially after the current
+	 * event, i.e., the event touched some hosts and none of the hosts can
+	 * become active or inactive
+	 * @return True if {@link #update(List, boolean)} can be used
+	 */
+	public boolean canUpdatePartially() {
+		return !touchedHosts.isEmpty() &&
+			SimClock.getTime() < nextActivenessChange;
+	}
+
+	/**
+	 * Informs that all the hosts were updated. Finds out when the next
+	 * partial update would need to be a full update because of activeness
+	 * changes.
+	 */
+	public void allUpdated() {
+		double next = Double.MAX_VALUE;
+		for (int i=0, n=hosts.size(); i<n; i++) {
+			next = Math.min(next, hosts.get(i).getNextActivenessChange());
+		}
+		this.nextActivenessChange = next;
+	}
+
+	/**
+	 * Updates the hosts the current event can affect
+	 * @param order All the hosts in the order they would be updated
+	 * @param simulateConnections Should the hosts check their connections
+	 */
+	public void update(List<DTNHost> order, boolean simulateConnections) {
+		for (int i=0, n=order.size(); i<n; i++) {
+			DTNHost h = order.get(i);
+			if (h.isActive() && isAffected(h)) {
+				h.update(simulateConnections);
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the host or one of its peers was touched by the event
+	 * or has changed since the host's last update
+	 * @param host The host
+	 * @return True if the host needs to be updated
+	 */
+	private boolean isAffected(DTNHost host) {
+		if (touched[host.getAddress()] || host.hasChangedSinceUpdate(host)) {
+			return true;
+		}
+		for (NetworkInterface ni : host.getInterfaces()) {
+			for (Connection con : ni.getConnections()) {
+				DTNHost peer = con.getOtherNode(host);
+				if (touched[peer.getAddress()] || 
+						host.hasChangedSinceUpdate(peer)) {
+					return true;
+				}
+			}
+		}
+		return needsUpdate(host);
+	}
+
+	/**
+	 * Returns true if a host should be updated even if nothing has happened
+	 * to it or its peers
+	 * @param host The host
+	 * @return True if the router or an interface of the host has something
+	 * to do in an update
+	 */
+	private boolean needsUpdate(DTNHost host) {
+		if (host.getRouter().needsUpdate()) {
+			return true;
+		}
+		for (NetworkInterface ni : host.getInterfaces()) {
+			if (ni.getScanInterval() > 0) {
+				return true; // may start a scan and connect
+			}
+			for (Connection con : ni.getConnections()) {
+				if (!(con instanceof CBRConnection) &&
+						!con.isReadyForTransfer()) {
+					return true; // transfer advances in interface updates
+				}
+			}
+		}
+		return false;
+	}
+}
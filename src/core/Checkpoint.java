@@ -0,0 +1,495 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * <P>Saves the state of a running simulation to a checkpoint file and
+ * resumes a simulation from one. The checkpoint contains the whole
+ * scenario: the hosts with their locations, movement models, routers and
+ * messages, the connections, the event queues and the simulation time. It
+ * also contains the static state (e.g., random number generators and
+ * address counters) of the classes whose objects are in the scenario.
+ * Reports are not saved; the reports of the resumed run are created as
+ * usual and they ignore the messages that were created before the
+ * checkpoint (like the messages of a warm up period).</P>
+ *
+ * <P>A checkpoint that is saved right after the movement model warm up
+ * (saveTime 0) can be used for running many parameter variants without
+ * repeating the warm up: the scenario name, the end time and the reports
+ * are always taken from the settings of the resumed run and, with the
+ * {@link #NEW_ROUTERS_S} setting, also the routers. Other settings of the
+ * saved scenario (e.g., movement models and interfaces) are restored as
+ * they were.</P>
+ *
+ * <P>A resumed run continues from exactly the saved state, but it's not
+ * always identical to a run that wasn't interrupted: hash based collections
+ * (e.g., the message buffers of the routers) may iterate in a different
+ * order after loading, which can change how ties (e.g., between messages
+ * received at the same time) are broken. Checkpoints saved before any
+ * messages exist resume identically.</P>
+ *
+ * <P>The file is a GZIP compressed Java serialization stream. External
+ * events files are re-opened when a checkpoint is resumed, so they must
+ * still be available. Scenarios using external movement or DTN2 events
+ * can't be saved.</P>
+ */
+public class Checkpoint {
+	/** Checkpoint settings namespace ({@value}) */
+	public static final String SETTINGS_NS = "Checkpoint";
+	/**
+	 * Checkpoint file to save -setting id ({@value}). If defined, the
+	 * simulation is saved to this file when the save time is reached.
+	 * Supports value filling.
+	 */
+	public static final String SAVE_FILE_S = "saveFile";
+	/**
+	 * Simulation time when the checkpoint is saved -setting id ({@value}).
+	 * The checkpoint is saved before the first update at or after this time.
+	 * Default = {@link #DEF_SAVE_TIME}.
+	 */
+	public static final String SAVE_TIME_S = "saveTime";
+	/**
+	 * Checkpoint file to resume -setting id ({@value}). If defined, the
+	 * simulation is resumed from this file instead of creating a new
+	 * scenario. Supports value filling.
+	 */
+	public static final String RESUME_FILE_S = "resumeFile";
+	/**
+	 * Create new routers when resuming -setting id ({@value}). If true, the
+	 * routers of the hosts are created from the current group settings
+	 * instead of restoring the saved ones. Can be used only with checkpoints
+	 * that have no messages or connections, e.g., ones saved right after the
+	 * warm up. Default = {@link #DEF_NEW_ROUTERS}.
+	 */
+	public static final String NEW_ROUTERS_S = "newRouters";
+
+	/** Default value for the save time */
+	public static final double DEF_SAVE_TIME = 0;
+	/** Default value for creating new routers */
+	public static final boolean DEF_NEW_ROUTERS = false;
+
+	/** identifier at the beginning of the checkpoint files */
+	private static final String MAGIC = "ONE checkpoint";
+	/** version of the checkpoint file format */
+	private static final int FORMAT_VERSION = 1;
+	/** stack size of the thread that (de)serializes the scenario; deep
+	 * object graphs, like the nodes of a map, need a lot of stack */
+	private static final long STACK_SIZE = 1024L * 1024 * 1024;
+	/** classes whose static fields are never saved or restored */
+	private static final Class<?>[] EXCLUDED_STATICS = {Settings.class,
+		SimClock.class, DTNSim.class, Debug.class};
+
+	private String saveFile;
+	private double saveTime;
+	private String resumeFile;
+	private boolean newRouters;
+	private boolean saved;
+
+	/**
+	 * Creates a checkpoint handler based on the {@link #SETTINGS_NS}
+	 * settings
+	 */
+	public Checkpoint() {
+		Settings s = new Settings(SETTINGS_NS);
+		this.saveFile = null;
+		this.resumeFile = null;
+		this.saveTime = DEF_SAVE_TIME;
+		this.newRouters = DEF_NEW_ROUTERS;
+		this.saved = false;
+
+		if (s.contains(SAVE_FILE_S)) {
+			this.saveFile = s.valueFillString(s.getSetting(SAVE_FILE_S));
+		}
+		if (s.contains(SAVE_TIME_S)) {
+			this.saveTime = s.getDouble(SAVE_TIME_S);
+		}
+		if (s.contains(RESUME_FILE_S)) {
+			this.resumeFile = s.valueFillString(s.getSetting(RESUME_FILE_S));
+		}
+		if (s.contains(NEW_ROUTERS_S)) {
+			this.newRouters = s.getBoolean(NEW_ROUTERS_S);
+		}
+	}
+
+	/**
+	 * Returns true if the simulation should be resumed from a checkpoint
+	 * @return True if resume file is defined
+	 */
+	public boolean isResuming() {
+		return this.resumeFile != null;
+	}
+
+	/**
+	 * Resumes the scenario from the resume file and makes it the current
+	 * scenario (see {@link SimScenario#getInstance()})
+	 * @return The resumed scenario
+	 * @throws SimError if the checkpoint can't be read
+	 */
+	public SimScenario resume() {
+		SimScenario scen;
+		try {
+			scen = load(new File(this.resumeFile));
+		} catch (IOException e) {
+			throw new SimError("Can't resume checkpoint " + this.resumeFile +
+					": " + e, e);
+		}
+
+		scen.resumed(this.newRouters);
+		if (SimClock.getTime() >= this.saveTime) {
+			this.saved = true; // don't save again what was just loaded
+		}
+		return scen;
+	}
+
+	/**
+	 * Returns the IDs of all the messages in the hosts' buffers and in the
+	 * connections of a scenario, e.g., the messages that were created
+	 * before the scenario was resumed
+	 * @param scen The scenario
+	 * @return IDs of the messages
+	 */
+	public static Set<String> getMessageIds(SimScenario scen) {
+		Set<String> ids = new HashSet<String>();
+		for (DTNHost host : scen.getHosts()) {
+			for (Message m : host.getMessageCollection()) {
+				ids.add(m.getId());
+			}
+			for (Connection con : host.getConnections()) {
+				if (con.getMessage() != null) {
+					ids.add(con.getMessage().getId());
+				}
+			}
+		}
+		return ids;
+	}
+
+	/**
+	 * Saves the scenario to the save file if the save time has been reached
+	 * and the checkpoint hasn't been saved yet
+	 * @param scen The scenario to save
+	 * @throws SimError if the checkpoint can't be written
+	 */
+	public void saveIfDue(SimScenario scen) {
+		if (this.saveFile == null || this.saved ||
+				SimClock.getTime() < this.saveTime) {
+			return;
+		}
+
+		try {
+			save(scen, new File(this.saveFile));
+		} catch (IOException e) {
+			throw new SimError("Can't save checkpoint " + this.saveFile +
+					": " + e, e);
+		}
+		this.saved = true;
+	}
+
+	/**
+	 * Saves a scenario and the simulation time to a checkpoint file
+	 * @param scen The scenario to save
+	 * @param file The file to write
+	 * @throws IOException if writing the file fails
+	 */
+	public static void save(final SimScenario scen, File file)
+			throws IOException {
+		final OutputStream out = new BufferedOutputStream(new GZIPOutputStream(
+				new FileOutputStream(file)));
+		boolean ok = false;
+		try {
+			runWithLargeStack(new IORunnable() {
+				public void run() throws IOException {
+					CheckpointOutputStream cos =
+						new CheckpointOutputStream(out, scen);
+					cos.writeUTF(MAGIC);
+					cos.writeInt(FORMAT_VERSION);
+					cos.writeDouble(SimClock.getTime());
+					cos.writeObject(scen);
+					cos.writeStatics();
+					cos.flush();
+				}
+			});
+			ok = true;
+		} finally {
+			out.close();
+			if (!ok) {
+				file.delete(); // don't leave a partial checkpoint behind
+			}
+		}
+	}
+
+	/**
+	 * Loads a scenario from a checkpoint file. Sets the simulation time and
+	 * the static state of the classes as they were when the checkpoint was
+	 * saved.
+	 * @param file The file to read
+	 * @return The loaded scenario
+	 * @throws IOException if reading the file fails or it isn't a valid
+	 * checkpoint file
+	 */
+	public static SimScenario load(File file) throws IOException {
+		final InputStream in = new BufferedInputStream(new GZIPInputStream(
+				new FileInputStream(file)));
+		final SimScenario[] result = new SimScenario[1];
+		try {
+			runWithLargeStack(new IORunnable() {
+				public void run() throws IOException {
+					CheckpointInputStream cis = new CheckpointInputStream(in);
+					if (!MAGIC.equals(cis.readUTF()) ||
+							cis.readInt() != FORMAT_VERSION) {
+						throw new IOException("Not a checkpoint file or " +
+								"unsupported version");
+					}
+					double time = cis.readDouble();
+					try {
+						result[0] = (SimScenario)cis.readObject();
+						cis.readStatics();
+					} catch (ClassNotFoundException e) {
+						throw new IOException(e);
+					}
+					SimClock.getInstance().setTime(time);
+				}
+			});
+		} finally {
+			in.close();
+		}
+
+		SimScenario.setInstance(result[0]);
+		return result[0];
+	}
+
+	/**
+	 * Runs a task in a new thread with a large stack and waits for it to
+	 * finish
+	 * @param task The task to run
+	 * @throws IOException if the task throws one
+	 */
+	private static void runWithLargeStack(final IORunnable task)
+			throws IOException {
+		final Throwable[] error = new Throwable[1];
+		Thread t = new Thread(null, new Runnable() {
+			public void run() {
+				try {
+					task.run();
+				} catch (Throwable e) {
+					error[0] = e;
+				}
+			}
+		}, "checkpoint", STACK_SIZE);
+
+		t.start();
+		try {
+			t.join();
+		} catch (InterruptedException e) {
+			throw new IOException(e);
+		}
+
+		if (error[0] instanceof IOException) {
+			throw (IOException)error[0];
+		}
+		else if (error[0] instanceof RuntimeException) {
+			throw (RuntimeException)error[0];
+		}
+		else if (error[0] instanceof Error) {
+			throw (Error)error[0];
+		}
+		else if (error[0] != null) {
+			throw new IOException(error[0]);
+		}
+	}
+
+	/**
+	 * Returns true if the static fields of a class should be saved and
+	 * restored
+	 * @param c The class
+	 * @return True if the class isn't excluded
+	 */
+	private static boolean hasSavedStatics(Class<?> c) {
+		for (Class<?> excluded : EXCLUDED_STATICS) {
+			if (c == excluded) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the non-final static fields of a class
+	 * @param c The class
+	 * @return The fields (made accessible)
+	 */
+	private static List<Field> staticFields(Class<?> c) {
+		List<Field> fields = new ArrayList<Field>();
+		for (Field f : c.getDeclaredFields()) {
+			int mod = f.getModifiers();
+			if (Modifier.isStatic(mod) && !Modifier.isFinal(mod)) {
+				f.setAccessible(true);
+				fields.add(f);
+			}
+		}
+		return fields;
+	}
+
+	/** A task that can throw IOException */
+	private interface IORunnable {
+		public void run() throws IOException;
+	}
+
+	/**
+	 * Placeholder for the listener lists of the scenario. The listeners
+	 * (e.g., reports) are not saved; the lists are replaced with new, empty,
+	 * lists when the checkpoint is loaded.
+	 */
+	private static class ListenerList implements Serializable {
+		private static final long serialVersionUID = 1L;
+	}
+
+	/**
+	 * Object output stream that leaves out the listeners and saves the
+	 * static state of the classes of the written objects
+	 */
+	private static class CheckpointOutputStream extends ObjectOutputStream {
+		/** listener lists of the scenario */
+		private Map<Object, Object> listenerLists;
+		/** classes of all the objects written so far */
+		private Set<Class<?>> classes;
+		/** classes whose static fields are written in the order of writing */
+		private List<Class<?>> classOrder;
+
+		public CheckpointOutputStream(OutputStream out, SimScenario scen)
+				throws IOException {
+			super(out);
+			enableReplaceObject(true);
+			this.classes = new HashSet<Class<?>>();
+			this.classOrder = new ArrayList<Class<?>>();
+			this.listenerLists = new IdentityHashMap<Object, Object>();
+			for (Object list : scen.getListenerLists()) {
+				listenerLists.put(list, new ListenerList());
+			}
+		}
+
+		@Override
+		protected Object replaceObject(Object obj) throws IOException {
+			Object token = listenerLists.get(obj);
+			if (token != null) {
+				return token;
+			}
+			for (Class<?> c = obj.getClass(); c != null && classes.add(c);
+					c = c.getSuperclass()) {
+				if (hasSavedStatics(c)) {
+					classOrder.add(c);
+				}
+			}
+			return obj;
+		}
+
+		/**
+		 * Writes the non-final static fields of the classes of the written
+		 * objects. Values that aren't serializable are skipped. Writing the
+		 * values can add new classes, so they are written until no new
+		 * classes appear.
+		 * @throws IOException if writing fails
+		 */
+		public void writeStatics() throws IOException {
+			for (int i=0; i < classOrder.size(); i++) {
+				Class<?> c = classOrder.get(i);
+				for (Field f : staticFields(c)) {
+					Object value;
+					try {
+						value = f.get(null);
+					} catch (IllegalAccessException e) {
+						throw new IOException(e);
+					}
+					if (value != null && !(value instanceof Serializable)) {
+						continue;
+					}
+					writeUTF(c.getName());
+					writeUTF(f.getName());
+					writeObject(value);
+				}
+			}
+			writeUTF(""); // end marker
+		}
+	}
+
+	/**
+	 * Object input stream that creates new lists for the listener lists
+	 * and restores the static state of the classes
+	 */
+	private static class CheckpointInputStream extends ObjectInputStream {
+		public CheckpointInputStream(InputStream in) throws IOException {
+			super(in);
+			enableResolveObject(true);
+		}
+
+		@Override
+		protected Class<?> resolveClass(ObjectStreamClass desc)
+				throws IOException, ClassNotFoundException {
+			/* use the loader of the simulator (see ConcurrentBatchRunner) */
+			try {
+				return Class.forName(desc.getName(), false,
+						Checkpoint.class.getClassLoader());
+			} catch (ClassNotFoundException e) {
+				return super.resolveClass(desc);
+			}
+		}
+
+		@Override
+		protected Object resolveObject(Object obj) throws IOException {
+			if (obj instanceof ListenerList) {
+				return new ArrayList<Object>();
+			}
+			return obj;
+		}
+
+		/**
+		 * Reads the static field values written by
+		 * {@link CheckpointOutputStream#writeStatics()} and sets them
+		 * @throws IOException if reading fails
+		 * @throws ClassNotFoundException if a class isn't found
+		 */
+		public void readStatics() throws IOException, ClassNotFoundException {
+			for (String cName = readUTF(); cName.length() > 0;
+					cName = readUTF()) {
+				String fName = readUTF();
+				Object value = readObject();
+				Class<?> c = Class.forName(cName, true,
+						Checkpoint.class.getClassLoader());
+				try {
+					Field f = c.getDeclaredField(fName);
+					f.setAccessible(true);
+					f.set(null, value);
+				} catch (NoSuchFieldException e) {
+					throw new IOException("Checkpoint doesn't match the " +
+							"simulator version: " + e);
+				} catch (IllegalAccessException e) {
+					throw new IOException(e);
+				}
+			}
+		}
+	}
+}
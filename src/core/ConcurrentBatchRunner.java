@@ -0,0 +1,156 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <P>Runs batch mode simulation runs concurrently in one JVM.</P>
+ *
+ * <P>The simulator keeps its run state (settings and run index,
+ * {@link SimClock}, host and interface address counters,
+ * {@link SimScenario} instance, movement models' random number generator
+ * etc.) in static fields that are reset between sequential batch runs
+ * (see {@link DTNSim#registerForReset(String)}). To let the runs overlap,
+ * every run is loaded by its own class loader, so each run gets its own
+ * copies of all the static state and the runs are completely independent of
+ * each other. Only the Java platform classes are shared.</P>
+ *
+ * <P>Every run writes its reports to a sub directory of the report
+ * directory (see {@link DTNSim#runIsolated(String[], int, int)}).</P>
+ */
+public class ConcurrentBatchRunner {
+	/** Name of the class whose entry point is called in the run context */
+	private static final String ENTRY_CLASS = DTNSim.class.getName();
+	/** Name of the entry point method */
+	private static final String ENTRY_METHOD = "runIsolated";
+
+	private String[] confFiles;
+	private int firstConfIndex;
+	private int nrofThreads;
+	private URL[] classPath;
+
+	/**
+	 * Constructor.
+	 * @param confFiles Command line arguments containing the settings files
+	 * @param firstConfIndex Index of the first settings file name
+	 * @param nrofThreads How many runs to execute concurrently
+	 */
+	public ConcurrentBatchRunner(String[] confFiles, int firstConfIndex,
+			int nrofThreads) {
+		this.confFiles = confFiles;
+		this.firstConfIndex = firstConfIndex;
+		this.nrofThreads = nrofThreads;
+		this.classPath = parseClassPath(System.getProperty("java.class.path"));
+	}
+
+	/**
+	 * Runs the simulation runs from the first index to the last index and
+	 * returns when all the runs are done.
+	 * @param firstRun Index of the first run
+	 * @param lastRun Index of the last run + 1
+	 */
+	public void run(int firstRun, final int lastRun) {
+		ExecutorService pool = Executors.newFixedThreadPool(nrofThreads);
+		List<Future<Void>> results = new ArrayList<Future<Void>>();
+
+		for (int i=firstRun; i<lastRun; i++) {
+			final int runIndex = i;
+			results.add(pool.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					print("Run " + (runIndex+1) + "/" + lastRun);
+					runInOwnContext(runIndex);
+					return null;
+				}
+			}));
+		}
+		pool.shutdown();
+
+		for (Future<Void> f : results) {
+			try {
+				f.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SimError(e);
+			} catch (ExecutionException e) {
+				Throwable cause = e.getCause();
+				if (cause instanceof RuntimeException) {
+					throw (RuntimeException)cause;
+				}
+				if (cause instanceof Error) {
+					throw (Error)cause;
+				}
+				throw new SimError((Exception)cause);
+			}
+		}
+	}
+
+	/**
+	 * Runs a simulation run in its own class loader
+	 * @param runIndex Index of the run
+	 * @throws Exception If the run could not be started or the run failed
+	 */
+	private void runInOwnContext(int runIndex) throws Exception {
+		URLClassLoader loader = new URLClassLoader(classPath,
+				ClassLoader.getSystemClassLoader().getParent());
+		Thread thread = Thread.currentThread();
+		ClassLoader oldLoader = thread.getContextClassLoader();
+
+		try {
+			thread.setContextClassLoader(loader);
+			Class<?> c = Class.forName(ENTRY_CLASS, true, loader);
+			Method m = c.getMethod(ENTRY_METHOD, String[].class, int.class,
+					int.class);
+			m.invoke(null, confFiles, firstConfIndex, runIndex);
+		} catch (InvocationTargetException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception)cause;
+			}
+			throw (Error)cause;
+		} finally {
+			thread.setContextClassLoader(oldLoader);
+			loader.close();
+		}
+	}
+
+	/**
+	 * Converts a class path string to URLs
+	 * @param path The class path (entries delimited with path separator)
+	 * @return URLs of the class path entries
+	 */
+	private static URL[] parseClassPath(String path) {
+		String[] entries = path.split(File.pathSeparator);
+		URL[] urls = new URL[entries.length];
+		for (int i=0; i<entries.length; i++) {
+			try {
+				urls[i] = new File(entries[i]).toURI().toURL();
+			} catch (MalformedURLException e) {
+				throw new SimError("Invalid class path entry " + entries[i]);
+			}
+		}
+		return urls;
+	}
+
+	/**
+	 * Prints text to stdout
+	 * @param txt Text to print
+	 */
+	private static void print(String txt) {
+		System.out.println(txt);
+	}
+}
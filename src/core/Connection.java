@@ -4,12 +4,15 @@
  */
 package core;
 
+import java.io.Serializable;
+
 import routing.MessageRouter;
 
 /**
  * A connection between two DTN nodes.
  */
-public abstract class Connection {
+public abstract class Connection implements Serializable {
+	private static final long serialVersionUID = 42L;
 	protected DTNHost toNode;
 	protected NetworkInterface toInterface;
 	protected DTNHost fromNode;
@@ -113,6 +116,16 @@ public abstract class Connection {
 	protected void clearMsgOnFly() {
 		this.msgOnFly = null;
 		this.msgFromNode = null;		
+		transferStateChanged();
+	}
+
+	/**
+	 * Informs both hosts of this connection that the state of the
+	 * connection's transfer has changed
+	 */
+	protected void transferStateChanged() {
+		this.fromNode.stateChanged();
+		this.toNode.stateChanged();
 	}
 
 	/**
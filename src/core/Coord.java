@@ -4,11 +4,14 @@
  */
 package core;
 
+import java.io.Serializable;
+
 /**
  * Class to hold 2D coordinates and perform simple arithmetics and
  * transformations
  */
-public class Coord implements Cloneable, Comparable<Coord> {
+public class Coord implements Cloneable, Comparable<Coord>, Serializable {
+	private static final long serialVersionUID = 42L;
 	private double x;
 	private double y;
 	
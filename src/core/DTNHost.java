@@ -4,6 +4,7 @@
  */
 package core;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
@@ -16,8 +17,11 @@ import routing.RoutingInfo;
 /**
  * A DTN capable host.
  */
-public class DTNHost implements Comparable<DTNHost> {
+public class DTNHost implements Comparable<DTNHost>, Serializable {
+	private static final long serialVersionUID = 42L;
 	private static int nextAddress = 0;
+	/** number of state changes of all hosts so far */
+	private static long nrofStateChanges;
 	private int address;
 
 	private Coord location; 	// where is the host
@@ -33,6 +37,10 @@ public class DTNHost implements Comparable<DTNHost> {
 	private List<MovementListener> movListeners;
 	private List<NetworkInterface> net;
 	private ModuleCommunicationBus comBus;
+	/** value of the state change counter at this host's last change */
+	private long lastStateChange;
+	/** value of the state change counter when this host was last updated */
+	private long lastUpdate;
 
 	static {
 		DTNSim.registerForReset(DTNHost.class.getCanonicalName());
@@ -102,6 +110,26 @@ public class DTNHost implements Comparable<DTNHost> {
 	 */
 	public static void reset() {
 		nextAddress = 0;
+		nrofStateChanges = 0;
+	}
+
+	/**
+	 * Informs that the state of this host, e.g., its messages or its
+	 * connections, has changed in a way that can affect what this host and
+	 * its peers do in their next updates
+	 */
+	public void stateChanged() {
+		this.lastStateChange = ++nrofStateChanges;
+	}
+
+	/**
+	 * Returns true if the state of the given host (this host or a peer) has
+	 * changed since this host was updated last
+	 * @param host The host whose state is checked
+	 * @return True if the host has changed after this host's last update
+	 */
+	boolean hasChangedSinceUpdate(DTNHost host) {
+		return host.lastStateChange > this.lastUpdate;
 	}
 
 	/**
@@ -121,6 +149,16 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.router = router;
 	}
 
+	/**
+	 * Replaces the router of this host with a new one (e.g., when resuming
+	 * from a checkpoint with new router settings)
+	 * @param router The new router
+	 */
+	void replaceRouter(MessageRouter router) {
+		setRouter(router);
+		stateChanged();
+	}
+
 	/**
 	 * Returns the router of this host
 	 * @return the router of this host
@@ -150,10 +188,12 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @param con  The connection object whose state changed
 	 */
 	public void connectionUp(Connection con) {
+		stateChanged();
 		this.router.changedConnection(con);
 	}
 
 	public void connectionDown(Connection con) {
+		stateChanged();
 		this.router.changedConnection(con);
 	}
 
@@ -189,6 +229,40 @@ public class DTNHost implements Comparable<DTNHost> {
 	}
 
 
+	/**
+	 * Returns the waypoint the node is currently moving towards (or the last
+	 * waypoint if it's waiting), or null if it hasn't had any waypoints yet
+	 * @return The current destination
+	 */
+	Coord getDestination() {
+		return this.destination;
+	}
+
+	/**
+	 * Returns the speed the node moves towards its destination
+	 * @return The current speed
+	 */
+	double getSpeed() {
+		return this.speed;
+	}
+
+	/**
+	 * Returns the sim time when the node may start moving again after 
+	 * reaching the end of its previous path
+	 * @return The time when the node may move next
+	 */
+	double getNextTimeToMove() {
+		return this.nextTimeToMove;
+	}
+
+	/**
+	 * Returns the sim time when the node may become active or inactive next
+	 * @return The time of the next possible activeness change
+	 */
+	double getNextActivenessChange() {
+		return this.movement.nextActivenessChange();
+	}
+
 	/**
 	 * Sets the Node's location overriding any location set by movement model
 	 * @param location The location to set
@@ -321,6 +395,7 @@ public class DTNHost implements Comparable<DTNHost> {
 		if (!isActive()) {
 			return;
 		}
+		this.lastUpdate = nrofStateChanges;
 		
 		if (simulateConnections) {
 			for (NetworkInterface i : net) {
@@ -336,11 +411,42 @@ public class DTNHost implements Comparable<DTNHost> {
 	 * @param timeIncrement How long time the node moves
 	 */
 	public void move(double timeIncrement) {		
+		if (!isActive()) {
+			return; 
+		}
+		moveActive(timeIncrement);
+	}
+
+	/**
+	 * Returns true if moving this (active) host for the given time does not
+	 * need anything from the movement model, i.e., the host is either waiting
+	 * or it does not reach its current destination during the move. Such
+	 * moves only change the state of this host and can be done concurrently
+	 * with other hosts' moves.
+	 * @param timeIncrement How long time the node would move
+	 * @return True if the move can be done independently of other hosts
+	 */
+	boolean canMoveIndependently(double timeIncrement) {
+		if (SimClock.getTime() < this.nextTimeToMove) {
+			return true;
+		}
+		if (this.destination == null) {
+			return false;
+		}
+		return timeIncrement * speed < this.location.distance(this.destination);
+	}
+
+	/**
+	 * Moves the node like {@link #move(double)} but without checking if the
+	 * node is active. Caller must make sure that the node is active.
+	 * @param timeIncrement How long time the node moves
+	 */
+	void moveActive(double timeIncrement) {
 		double possibleMovement;
 		double distance;
 		double dx, dy;
 
-		if (!isActive() || SimClock.getTime() < this.nextTimeToMove) {
+		if (SimClock.getTime() < this.nextTimeToMove) {
 			return; 
 		}
 		if (this.destination == null) {
@@ -370,6 +476,23 @@ public class DTNHost implements Comparable<DTNHost> {
 		this.location.translate(dx, dy);
 	}	
 
+	/**
+	 * Moves the node straight towards its current destination without 
+	 * checking the waypoints, activeness or waiting times. Caller must make
+	 * sure that the node is active, not waiting and does not reach the 
+	 * destination (see {@link #canMoveIndependently(double)}).
+	 * @param distance How far the node moves
+	 */
+	void moveTowardsDestination(double distance) {
+		double total = this.location.distance(this.destination);
+		if (distance <= 0 || total <= 0) {
+			return;
+		}
+		this.location.translate(
+				(distance/total) * (destination.getX() - location.getX()),
+				(distance/total) * (destination.getY() - location.getY()));
+	}
+
 	/**
 	 * Sets the next destination and speed to correspond the next waypoint
 	 * on the path.
@@ -9,7 +9,9 @@ import java.lang.reflect.Method;
 import java.util.ArrayList;
 import java.util.List;
 
+import report.Report;
 import ui.DTNSimTextUI;
+import ui.DTNSimUI;
 
 /**
  * Simulator's main class 
@@ -20,6 +22,14 @@ public class DTNSim {
 	public static final String BATCH_MODE_FLAG = "-b";
 	/** Delimiter for batch mode index range values (colon) */
 	public static final String RANGE_DELIMETER = ":";
+	/** If this option ({@value}) follows the number of batch runs, it must
+	 * be followed by the number of batch runs to execute concurrently */
+	public static final String CONCURRENT_RUNS_FLAG = "-j";
+	/** Name of the per-run report directory prefix. The run number is 
+	 * appended to this when the runs are executed with 
+	 * {@link #CONCURRENT_RUNS_FLAG}, whatever the number of concurrent 
+	 * runs is ({@value}) */
+	public static final String RUN_REPORT_DIR_PREFIX = "run";
 	
 	/** Name of the static method that all resettable classes must have
 	 * @see #registerForReset(String) */
@@ -37,6 +47,11 @@ public class DTNSim {
 	 * {@link Settings#setRunIndex(int)}). Following arguments are the settings 
 	 * files for the simulation run (if any). For GUI mode, the number before 
 	 * settings files (if given) is the run index to use for that run.
+	 * In batch mode, the number of runs can be followed by 
+	 * {@value #CONCURRENT_RUNS_FLAG} and the number of runs to execute 
+	 * concurrently (see {@link ConcurrentBatchRunner}). The reports of such
+	 * runs are written to per-run sub directories (see 
+	 * {@link #runIsolated(String[], int, int)}).
 	 * @param args Command line arguments
 	 */
 	public static void main(String[] args) {
@@ -45,6 +60,7 @@ public class DTNSim {
 		String confFiles[];
 		int firstConfIndex = 0;
 		int guiIndex = 0;
+		int nrofConcurrentRuns = 0; /* 0 = no concurrent runs flag */
 
 		/* set US locale to parse decimals in consistent way */
 		java.util.Locale.setDefault(java.util.Locale.US);
@@ -58,6 +74,11 @@ public class DTNSim {
                 else {
                     nrofRuns = parseNrofRuns(args[1]);
                     firstConfIndex = 2;
+                    if (args.length > 3 && 
+                    		args[2].equals(CONCURRENT_RUNS_FLAG)) {
+                    	nrofConcurrentRuns = parseNrofConcurrentRuns(args[3]);
+                    	firstConfIndex = 4;
+                    }
                 }
 			}
 			else { /* GUI mode */				
@@ -78,11 +99,17 @@ public class DTNSim {
 		
 		if (batchMode) {
 			long startTime = System.currentTimeMillis();
-			for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
-				print("Run " + (i+1) + "/" + nrofRuns[1]);
-				Settings.setRunIndex(i);
-				resetForNextRun();
-				new DTNSimTextUI().start();
+			if (nrofConcurrentRuns > 0) {
+				new ConcurrentBatchRunner(confFiles, firstConfIndex, 
+						nrofConcurrentRuns).run(nrofRuns[0], nrofRuns[1]);
+			}
+			else {
+				for (int i=nrofRuns[0]; i<nrofRuns[1]; i++) {
+					print("Run " + (i+1) + "/" + nrofRuns[1]);
+					Settings.setRunIndex(i);
+					resetForNextRun();
+					new DTNSimTextUI().start();
+				}
 			}
 			double duration = (System.currentTimeMillis() - startTime)/1000.0;
 			print("---\nAll done in " + String.format("%.2f", duration) + "s");
@@ -93,6 +120,64 @@ public class DTNSim {
 		}
 	}
 	
+	/**
+	 * Runs a single batch mode simulation run. This is the entry point for
+	 * runs that are executed in their own class loader by 
+	 * {@link ConcurrentBatchRunner}, so all the static state of the simulator
+	 * (settings, clock, address counters etc.) is private to this run. 
+	 * Reports are written to a run specific sub directory of the report 
+	 * directory, or of the directory of the report's explicit output file.
+	 * @param confFiles File name paths where to read additional settings 
+	 * @param firstIndex Index of the first config file name
+	 * @param runIndex Index of the run (see {@link Settings#setRunIndex(int)})
+	 */
+	public static void runIsolated(String[] confFiles, int firstIndex, 
+			int runIndex) {
+		initSettings(confFiles, firstIndex);
+		Settings.setRunIndex(runIndex);
+
+		setRunReportDir(runIndex);
+		new DTNSimTextUI().start();
+	}
+	
+	/**
+	 * Moves the output of all the reports of a run to a run specific sub 
+	 * directory. The sub directory is added both to the report directory 
+	 * and to the explicit output file names of the configured reports.
+	 * @param runIndex Index of the run
+	 */
+	private static void setRunReportDir(int runIndex) {
+		String runDir = RUN_REPORT_DIR_PREFIX + (runIndex + 1) + "/";
+		Settings s = new Settings();
+		
+		if (s.contains(Report.REPORTDIR_SETTING)) {
+			String reportDir = s.getSetting(Report.REPORTDIR_SETTING);
+			if (!reportDir.endsWith("/")) {
+				reportDir += "/";
+			}
+			Settings.overrideSetting(Report.REPORTDIR_SETTING, 
+					reportDir + runDir);
+		}
+		
+		if (!s.contains(DTNSimUI.NROF_REPORT_S)) {
+			return;
+		}
+		for (int i=1, n = s.getInt(DTNSimUI.NROF_REPORT_S); i<=n; i++) {
+			String reportClass = s.getSetting(DTNSimUI.REPORT_S + i);
+			/* same name spaces as the report itself uses */
+			Settings rs = new Settings(reportClass);
+			rs.setSecondaryNamespace(Report.REPORT_NS);
+			if (!rs.contains(Report.OUTPUT_SETTING)) {
+				continue;
+			}
+			String output = rs.getSetting(Report.OUTPUT_SETTING);
+			int nameStart = output.lastIndexOf('/') + 1;
+			Settings.overrideSetting(reportClass + "." + Report.OUTPUT_SETTING,
+					output.substring(0, nameStart) + runDir + 
+					output.substring(nameStart));
+		}
+	}
+	
 	/**
 	 * Initializes Settings
 	 * @param confFiles File name paths where to read additional settings 
@@ -216,6 +301,28 @@ public class DTNSim {
 		return val;
 	}
 	
+	/**
+	 * Parses the number of concurrent batch runs from a command line argument
+	 * @param arg The argument to parse
+	 * @return The number of concurrent runs
+	 */
+	private static int parseNrofConcurrentRuns(String arg) {
+		int val = 0;
+		try {
+			val = Integer.parseInt(arg);
+		} catch (NumberFormatException e) {
+			val = 0;
+		}
+
+		if (val < 1) {
+			System.err.println("Invalid argument '" + arg + "' for" +
+					" number of concurrent runs");
+			System.exit(-1);
+		}
+
+		return val;
+	}
+	
 	/**
 	 * Prints text to stdout
 	 * @param txt Text to print
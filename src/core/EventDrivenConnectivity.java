@@ -0,0 +1,505 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import input.EventQueue;
+import input.ExternalEvent;
+import interfaces.SimpleBroadcastInterface;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * <P>Event driven connectivity detection. Instead of checking every
+ * interface's neighbors on every update, the times when two interfaces get
+ * in and out of each other's radio range are solved from the hosts' current
+ * (linear) path segments and the connections are created and torn down
+ * exactly at those times as external events.</P>
+ *
+ * <P>The simulation is divided into epochs of {@link World#CONTACT_HORIZON_S}
+ * seconds. At the start of an epoch, every pair of interfaces that can meet
+ * during the epoch (based on the fastest host's speed) is stored as a
+ * candidate pair and their contact times are predicted. After every move,
+ * only the hosts that deviate from their predicted trajectory (e.g., reach a
+ * waypoint, start moving after waiting, or change activity) have their
+ * candidate pairs' contacts predicted again. Thus updates where no host
+ * changes its path segment don't cost anything in connectivity detection.
+ * </P>
+ *
+ * <P>Only the two hosts of a contact are updated after its event instead
+ * of all the hosts; the other hosts are updated on the next update
+ * interval as usual. Contact changes
+ * caused by a path segment change are detected (and the connectivity
+ * corrected) on the first update after the change.
+ * Interfaces' scanning intervals and transmit range changes during an epoch
+ * are not taken into account. Only {@link SimpleBroadcastInterface}s are
+ * supported since other interfaces may need their own updates.</P>
+ */
+public class EventDrivenConnectivity implements EventQueue {
+	private static final long serialVersionUID = 42L;
+	/** how far (meters) a host can be from its predicted location before
+	 * its trajectory is considered changed */
+	private static final double LOCATION_EPSILON = 0.001;
+
+	private List<DTNHost> hosts;
+	private double horizon;
+	private Map<DTNHost, Trajectory> trajectories;
+	private PriorityQueue<ContactEvent> events;
+	/** sequence number of the next event (for deterministic ordering) */
+	private long nextSeq;
+	/** counter for the hostsMoved calls (for marking changed hosts) */
+	private int moveRound;
+
+	/** interfaces that can meet the interface during the current epoch */
+	private Map<NetworkInterface, List<NetworkInterface>> candidates;
+	private double epochEnd;
+	private double epochMaxSpeed;
+
+	/**
+	 * Constructor.
+	 * @param hosts The hosts whose connectivity is detected
+	 * @param horizon Length of an epoch (seconds)
+	 */
+	public EventDrivenConnectivity(List<DTNHost> hosts, double horizon) {
+		this.hosts = hosts;
+		this.horizon = horizon;
+		this.trajectories = new HashMap<DTNHost, Trajectory>();
+		this.events = new PriorityQueue<ContactEvent>(11, new EventOrder());
+		this.nextSeq = 0;
+		this.moveRound = 0;
+		this.epochEnd = -Double.MAX_VALUE;
+
+		for (DTNHost h : hosts) {
+			for (NetworkInterface ni : h.getInterfaces()) {
+				if (!(ni instanceof SimpleBroadcastInterface)) {
+					throw new SettingsError("Event driven connectivity " +
+							"doesn't support interface " + ni);
+				}
+			}
+			trajectories.put(h, new Trajectory());
+		}
+	}
+
+	/**
+	 * Updates the predictions after the hosts have moved. Must be called
+	 * after every move of the hosts, with the clock set to the time after
+	 * the move. Connections whose state differs from the current positions
+	 * are corrected immediately.
+	 */
+	public void hostsMoved() {
+		double now = SimClock.getTime();
+		List<DTNHost> changed = new ArrayList<DTNHost>();
+		boolean newEpoch = now >= this.epochEnd;
+
+		this.moveRound++;
+		for (int i=0, n=hosts.size(); i<n; i++) {
+			DTNHost h = hosts.get(i);
+			Trajectory t = trajectories.get(h);
+			if (newEpoch || t.hasChanged(h, now)) {
+				t.sample(h, now);
+				t.changedRound = this.moveRound;
+				t.changedIndex = changed.size();
+				changed.add(h);
+				if (t.speed > this.epochMaxSpeed) {
+					newEpoch = true; // candidate pairs don't cover this speed
+				}
+			}
+		}
+
+		if (newEpoch) {
+			startEpoch(now);
+			return;
+		}
+
+		for (int i=0, n=changed.size(); i<n; i++) {
+			DTNHost h = changed.get(i);
+			for (NetworkInterface ni : h.getInterfaces()) {
+				for (NetworkInterface other : candidates.get(ni)) {
+					Trajectory ot = trajectories.get(other.getHost());
+					if (ot.changedRound == this.moveRound &&
+							ot.changedIndex < i) {
+						continue; // pair was predicted already
+					}
+					predict(ni, other, now);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Starts a new epoch: finds the candidate pairs for the epoch and
+	 * predicts the contacts of all of them.
+	 * @param now Current time
+	 */
+	private void startEpoch(double now) {
+		List<NetworkInterface> interfaces = new ArrayList<NetworkInterface>();
+		double maxRange = 0;
+
+		this.events.clear();
+		this.epochMaxSpeed = 0;
+		for (int i=0, n=hosts.size(); i<n; i++) {
+			DTNHost h = hosts.get(i);
+			Trajectory t = trajectories.get(h);
+			t.sample(h, now);
+			this.epochMaxSpeed = Math.max(this.epochMaxSpeed,
+					h.getSpeed());
+			for (NetworkInterface ni : h.getInterfaces()) {
+				interfaces.add(ni);
+				maxRange = Math.max(maxRange, ni.getTransmitRange());
+			}
+		}
+		this.epochEnd = now + this.horizon;
+
+		double reach = 2 * this.epochMaxSpeed * this.horizon;
+		this.candidates = findCandidates(interfaces, maxRange + reach, reach);
+
+		for (NetworkInterface ni : interfaces) {
+			for (NetworkInterface other : candidates.get(ni)) {
+				if (ni.getAddress() < other.getAddress()) {
+					predict(ni, other, now);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Finds the pairs of interfaces that can get within range of each other
+	 * if they move at most the given distance towards each other.
+	 * @param interfaces All interfaces
+	 * @param cellSize Cell size of the lookup grid (maximum range + reach)
+	 * @param reach How much the interfaces' distance can decrease
+	 * @return Candidate interfaces for each interface
+	 */
+	private Map<NetworkInterface, List<NetworkInterface>> findCandidates(
+			List<NetworkInterface> interfaces, double cellSize, double reach) {
+		Map<Long, List<NetworkInterface>> grid =
+			new HashMap<Long, List<NetworkInterface>>();
+		Map<NetworkInterface, List<NetworkInterface>> result =
+			new HashMap<NetworkInterface, List<NetworkInterface>>();
+
+		for (NetworkInterface ni : interfaces) {
+			Long key = cellKey(cellIndex(ni.getLocation().getX(), cellSize),
+					cellIndex(ni.getLocation().getY(), cellSize));
+			List<NetworkInterface> cell = grid.get(key);
+			if (cell == null) {
+				cell = new ArrayList<NetworkInterface>();
+				grid.put(key, cell);
+			}
+			cell.add(ni);
+		}
+
+		for (NetworkInterface ni : interfaces) {
+			List<NetworkInterface> near = new ArrayList<NetworkInterface>();
+			int col = cellIndex(ni.getLocation().getX(), cellSize);
+			int row = cellIndex(ni.getLocation().getY(), cellSize);
+			for (int i=-1; i<=1; i++) {
+				for (int j=-1; j<=1; j++) {
+					List<NetworkInterface> cell = grid.get(cellKey(col+i,row+j));
+					if (cell == null) {
+						continue;
+					}
+					for (NetworkInterface other : cell) {
+						double range = Math.min(ni.getTransmitRange(),
+								other.getTransmitRange());
+						if (other != ni && other.getInterfaceType().equals(
+								ni.getInterfaceType()) &&
+								ni.getLocation().distance(other.getLocation())
+								<= range + reach) {
+							near.add(other);
+						}
+					}
+				}
+			}
+			result.put(ni, near);
+		}
+
+		return result;
+	}
+
+	/**
+	 * Returns the index of the grid cell of a coordinate
+	 * @param value The coordinate's value
+	 * @param cellSize Size of the cell
+	 * @return The cell index
+	 */
+	private static int cellIndex(double value, double cellSize) {
+		return (int)Math.floor(value / cellSize);
+	}
+
+	/**
+	 * Returns the grid map key of a cell
+	 * @param col Column of the cell
+	 * @param row Row of the cell
+	 * @return The key
+	 */
+	private static Long cellKey(int col, int row) {
+		return ((long)col << 32) | (row & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Corrects the current connectivity of two interfaces and schedules their
+	 * contact events until one of them changes its trajectory or the epoch
+	 * ends.
+	 * @param a The first interface
+	 * @param b The second interface
+	 * @param now Current time
+	 */
+	private void predict(NetworkInterface a, NetworkInterface b, double now) {
+		Trajectory ta = trajectories.get(a.getHost());
+		Trajectory tb = trajectories.get(b.getHost());
+		double range = Math.min(a.getTransmitRange(), b.getTransmitRange());
+		Coord la = a.getLocation();
+		Coord lb = b.getLocation();
+		double dx = lb.getX() - la.getX();
+		double dy = lb.getY() - la.getY();
+		double c = dx*dx + dy*dy - range*range;
+
+		boolean inRange = c <= 0;
+		if (inRange != a.isConnected(b)) {
+			setConnected(a, b, inRange);
+		}
+
+		double end = Math.min(this.epochEnd,
+				Math.min(ta.validUntil, tb.validUntil));
+		double vx = tb.vx - ta.vx;
+		double vy = tb.vy - ta.vy;
+		double qa = vx*vx + vy*vy;
+		if (qa == 0 || end <= now) {
+			return; // no relative movement
+		}
+
+		/* solve |d + v*t| = range; in range between the roots */
+		double qb = 2 * (dx*vx + dy*vy);
+		double disc = qb*qb - 4*qa*c;
+		if (disc <= 0) {
+			return; // never (or only tangentially) in range
+		}
+		double sq = Math.sqrt(disc);
+		double tIn = now + (-qb - sq) / (2*qa);
+		double tOut = now + (-qb + sq) / (2*qa);
+
+		if (tIn > now && tIn <= end) {
+			schedule(a, b, true, tIn, ta, tb);
+		}
+		if (tOut > now && tOut <= end) {
+			schedule(a, b, false, tOut, ta, tb);
+		}
+	}
+
+	/**
+	 * Adds a contact event to the event queue
+	 * @param a The first interface
+	 * @param b The second interface
+	 * @param up True for connection up, false for connection down event
+	 * @param time Time of the event
+	 * @param ta Trajectory of the first interface's host
+	 * @param tb Trajectory of the second interface's host
+	 */
+	private void schedule(NetworkInterface a, NetworkInterface b, boolean up,
+			double time, Trajectory ta, Trajectory tb) {
+		this.events.add(new ContactEvent(a, b, up, time, ta.version,
+				tb.version, nextSeq++));
+	}
+
+	/**
+	 * Creates or tears down the connection between two interfaces.
+	 * Connections are created only between active hosts.
+	 * @param a The first interface
+	 * @param b The second interface
+	 * @param up True to connect, false to disconnect
+	 */
+	private void setConnected(NetworkInterface a, NetworkInterface b,
+			boolean up) {
+		if (!up) {
+			a.destroyConnection(b);
+		}
+		else if (a.getHost().isActive() && b.getHost().isActive()) {
+			a.createConnection(b);
+		}
+	}
+
+	/**
+	 * Returns true if neither of the event's hosts has changed its
+	 * trajectory after the event was scheduled
+	 * @param e The event to check
+	 * @return True if the event is still valid
+	 */
+	private boolean isValid(ContactEvent e) {
+		return trajectories.get(e.a.getHost()).version == e.versionA &&
+			trajectories.get(e.b.getHost()).version == e.versionB;
+	}
+
+	/**
+	 * Returns the next contact event or an event with time
+	 * Double.MAX_VALUE if there are no events
+	 * @return The next event
+	 */
+	public ExternalEvent nextEvent() {
+		if (nextEventsTime() == Double.MAX_VALUE) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		return this.events.poll();
+	}
+
+	/**
+	 * Returns the time of the next (valid) contact event or Double.MAX_VALUE
+	 * if there are no events
+	 * @return The next event's time
+	 */
+	public double nextEventsTime() {
+		while (!this.events.isEmpty() && !isValid(this.events.peek())) {
+			this.events.poll(); // drop outdated predictions
+		}
+		if (this.events.isEmpty()) {
+			return Double.MAX_VALUE;
+		}
+		return this.events.peek().getTime();
+	}
+
+	/**
+	 * Orders the contact events by time and then by the order they were
+	 * scheduled in
+	 */
+	private static class EventOrder implements Comparator<ContactEvent>,
+			Serializable {
+		private static final long serialVersionUID = 42L;
+		public int compare(ContactEvent e1, ContactEvent e2) {
+			int c = e1.compareTo(e2);
+			if (c == 0) {
+				c = (e1.seq < e2.seq ? -1 : (e1.seq > e2.seq ? 1 : 0));
+			}
+			return c;
+		}
+	}
+
+	/**
+	 * Predicted linear movement of a host
+	 */
+	private static class Trajectory implements Serializable {
+		private static final long serialVersionUID = 42L;
+		/** location at the sample time */
+		private double x, y;
+		/** velocity components */
+		private double vx, vy;
+		private double speed;
+		/** time of the sample */
+		private double t0;
+		/** time until the trajectory is known to be valid */
+		private double validUntil;
+		private boolean active;
+		/** incremented every time the trajectory changes */
+		private int version;
+		/** the hostsMoved round when the trajectory last changed */
+		private int changedRound;
+		/** position of the host among the hosts changed in that round */
+		private int changedIndex;
+
+		private Trajectory() {
+			this.validUntil = -Double.MAX_VALUE;
+			this.version = 0;
+			this.changedRound = -1;
+		}
+
+		/**
+		 * Samples the current state of the host as the new trajectory
+		 * @param h The host
+		 * @param now Current time
+		 */
+		private void sample(DTNHost h, double now) {
+			Coord loc = h.getLocation();
+			Coord dest = h.getDestination();
+			this.x = loc.getX();
+			this.y = loc.getY();
+			this.t0 = now;
+			this.vx = 0;
+			this.vy = 0;
+			this.speed = 0;
+			this.active = h.isActive();
+			this.version++;
+
+			if (!this.active) {
+				this.validUntil = Double.MAX_VALUE; // until activity changes
+			}
+			else if (now < h.getNextTimeToMove()) {
+				this.validUntil = h.getNextTimeToMove(); // waiting
+			}
+			else if (dest == null || loc.distance(dest) == 0) {
+				this.validUntil = now; // about to get a new path
+			}
+			else if (h.getSpeed() <= 0) {
+				this.validUntil = Double.MAX_VALUE; // won't ever get there
+			}
+			else {
+				double distance = loc.distance(dest);
+				this.speed = h.getSpeed();
+				this.vx = speed * (dest.getX() - x) / distance;
+				this.vy = speed * (dest.getY() - y) / distance;
+				this.validUntil = now + distance / speed;
+			}
+		}
+
+		/**
+		 * Returns true if the host is not where this trajectory predicts
+		 * or the trajectory is outdated
+		 * @param h The host
+		 * @param now Current time
+		 * @return True if the trajectory should be sampled again
+		 */
+		private boolean hasChanged(DTNHost h, double now) {
+			if (now >= this.validUntil || h.isActive() != this.active) {
+				return true;
+			}
+			Coord loc = h.getLocation();
+			double ex = this.x + this.vx * (now - this.t0);
+			double ey = this.y + this.vy * (now - this.t0);
+			return Math.abs(loc.getX() - ex) > LOCATION_EPSILON ||
+				Math.abs(loc.getY() - ey) > LOCATION_EPSILON;
+		}
+	}
+
+	/**
+	 * Predicted connection up or down event of two interfaces
+	 */
+	private class ContactEvent extends ExternalEvent {
+		private static final long serialVersionUID = 1L;
+		private NetworkInterface a;
+		private NetworkInterface b;
+		private boolean up;
+		private int versionA;
+		private int versionB;
+		private long seq;
+
+		private ContactEvent(NetworkInterface a, NetworkInterface b,
+				boolean up, double time, int versionA, int versionB,
+				long seq) {
+			super(time);
+			this.a = a;
+			this.b = b;
+			this.up = up;
+			this.versionA = versionA;
+			this.versionB = versionB;
+			this.seq = seq;
+		}
+
+		@Override
+		public void processEvent(World world) {
+			world.contactEvent(a.getHost(), b.getHost());
+			if (isValid(this) && up != a.isConnected(b)) {
+				setConnected(a, b, up);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return "ContactEvent @ " + this.time + " " + a.getHost() +
+				(up ? " <-> " : " >-< ") + b.getHost();
+		}
+	}
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * <P>Fast forwards the movement warm up. During the warm up the hosts are
+ * only moved, so most of the moves just take a host a bit closer to its
+ * current waypoint, or do nothing while the host waits or is inactive.
+ * Instead of doing those moves one update interval at a time, every host
+ * is moved only on the update intervals where it reaches a waypoint, its
+ * waiting time ends or its activeness may change. In between, the host is
+ * jumped straight along its current path segment when it is needed.</P>
+ *
+ * <P>The moves that use the movement models are done in the same order
+ * and at the same simulation times as in the normal warm up, so the
+ * models (and their shared random number generators) give the same paths.
+ * The locations may differ from the normal warm up by rounding errors
+ * since one jump replaces many small moves.</P>
+ */
+public class FastWarmup {
+	/** upper limit for the number of moves predicted for a host */
+	private static final int MAX_MOVES = Integer.MAX_VALUE / 2;
+
+	private List<DTNHost> hosts;
+	private double updateInterval;
+	private SimClock simClock;
+	/** index of the current update interval */
+	private int move;
+	/** index of the move where the host (by address) needs to be moved */
+	private int[] nextMove;
+	/** index of the move where the host's location was up to date */
+	private int[] lastMove;
+	/** is the host moving along its path segment between the moves */
+	private boolean[] onSegment;
+	/** the hosts (addresses) in the order of their next moves */
+	private PriorityQueue<Integer> queue;
+
+	/**
+	 * Constructor.
+	 * @param hosts All the hosts in the world (indexed by their address)
+	 * @param updateInterval The update interval
+	 */
+	public FastWarmup(List<DTNHost> hosts, double updateInterval) {
+		int n = hosts.size();
+		this.hosts = hosts;
+		this.updateInterval = updateInterval;
+		this.simClock = SimClock.getInstance();
+		this.nextMove = new int[n];
+		this.lastMove = new int[n];
+		this.onSegment = new boolean[n];
+		this.queue = new PriorityQueue<Integer>(Math.max(1, n),
+				new Comparator<Integer>() {
+			public int compare(Integer a, Integer b) {
+				if (nextMove[a] != nextMove[b]) {
+					return nextMove[a] < nextMove[b] ? -1 : 1;
+				}
+				return a.compareTo(b); // same order as in moveHosts
+			}
+		});
+	}
+
+	/**
+	 * Moves the hosts one update interval at a time (like the normal warm
+	 * up does) as long as the simulation time is less than the given time.
+	 * The locations of the hosts must be brought up to date using
+	 * {@link #catchUp(int)} before they are used.
+	 * @param endTime The time until which the hosts are moved
+	 */
+	public void moveUntil(double endTime) {
+		List<Integer> moved = new ArrayList<Integer>();
+		this.move = 0;
+		for (int i=0, n=hosts.size(); i<n; i++) {
+			lastMove[i] = 0;
+			predict(i);
+		}
+
+		while (SimClock.getTime() < endTime) {
+			while (!queue.isEmpty() && nextMove[queue.peek()] == move) {
+				int i = queue.poll();
+				catchUp(i);
+				hosts.get(i).move(updateInterval);
+				lastMove[i] = move + 1;
+				moved.add(i);
+			}
+			simClock.advance(updateInterval);
+			move++;
+
+			for (int i : moved) {
+				predict(i);
+			}
+			moved.clear();
+		}
+	}
+
+	/**
+	 * Brings the location of a host up to date after
+	 * {@link #moveUntil(double)}. Hosts can be caught up concurrently.
+	 * @param index Index (address) of the host
+	 */
+	public void catchUp(int index) {
+		int moves = move - lastMove[index];
+		if (onSegment[index] && moves > 0) {
+			DTNHost h = hosts.get(index);
+			h.moveTowardsDestination(moves * updateInterval * h.getSpeed());
+		}
+		lastMove[index] = move;
+	}
+
+	/**
+	 * Finds out the next move (at or after the current one) where a host
+	 * must be moved normally and queues the host for it
+	 * @param index Index (address) of the host
+	 */
+	private void predict(int index) {
+		DTNHost h = hosts.get(index);
+		double now = SimClock.getTime();
+		int moves = movesBefore(h.getNextActivenessChange(), now);
+
+		onSegment[index] = false;
+		if (h.isActive()) {
+			if (now < h.getNextTimeToMove()) {
+				moves = Math.min(moves, movesBefore(h.getNextTimeToMove(),
+						now));
+			}
+			else if (h.getDestination() == null) {
+				moves = 0; // asks for a path on the next move
+			}
+			else {
+				onSegment[index] = true;
+				double step = updateInterval * h.getSpeed();
+				if (step > 0) {
+					/* k moves are enough if k * step < distance; one less
+					 * to leave room for rounding errors */
+					double d = h.getLocation().distance(h.getDestination());
+					moves = (int)Math.min(moves, Math.ceil(d / step) - 2);
+				}
+			}
+		}
+
+		nextMove[index] = move + Math.max(0, moves);
+		queue.add(index);
+	}
+
+	/**
+	 * Returns how many moves (update intervals) start before the given time
+	 * (one less to leave room for rounding errors)
+	 * @param time The time
+	 * @param now The current time
+	 * @return The number of moves (at most {@link #MAX_MOVES})
+	 */
+	private int movesBefore(double time, double now) {
+		double moves = Math.ceil((time - now) / updateInterval) - 1;
+		return (int)Math.max(0, Math.min(MAX_MOVES, moves));
+	}
+}
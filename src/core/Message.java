@@ -4,7 +4,9 @@
  */
 package core;
 
-import java.util.ArrayList;
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -12,8 +14,17 @@ import java.util.Set;
 
 /**
  * A message that is created at a node or passed between nodes.
+ * <P>
+ * Routers can store their own data in the messages either as generic
+ * properties (see {@link #addProperty(String, Object)}) or, for numeric
+ * values that are accessed often, in typed slots that are registered when
+ * the router is initialized (see {@link #registerIntSlot(String)}). The
+ * slots are stored in primitive arrays that are cheap to access and
+ * copy. The values of the slots can also be accessed with the property
+ * methods using the name of the slot.</P>
  */
-public class Message implements Comparable<Message> {
+public class Message implements Comparable<Message>, Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Value for infinite TTL of message */
 	public static final int INFINITE_TTL = -1;
 	private DTNHost from;
@@ -22,8 +33,11 @@ public class Message implements Comparable<Message> {
 	private String id;
 	/** Size of the message (bytes) */
 	private int size;
-	/** List of nodes this message has passed */
-	private List<DTNHost> path; 
+	/** The last node of the nodes this message has passed (the path is
+	 * shared with the replicates of this message) */
+	private HopNode path;
+	/** The path as a list (null if not created yet) */
+	private transient List<DTNHost> hops;
 	/** Next unique identifier to be given */
 	private static int nextUniqueId;
 	/** Unique ID of this message */
@@ -48,7 +62,29 @@ public class Message implements Comparable<Message> {
 	
 	/** Application ID of the application that created the message */
 	private String	appID;
-	
+
+	/** values of the registered int slots (null if none is set) */
+	private int[] intSlots;
+	/** values of the registered long slots (null if none is set) */
+	private long[] longSlots;
+	/** values of the registered double slots (null if none is set) */
+	private double[] doubleSlots;
+	/** which slots of each type (bit per slot index) have a value */
+	private long[] slotsSet;
+
+	/** type of int slots */
+	private static final int INT_SLOT = 0;
+	/** type of long slots */
+	private static final int LONG_SLOT = 1;
+	/** type of double slots */
+	private static final int DOUBLE_SLOT = 2;
+	/** maximum number of registered slots of one type */
+	private static final int MAX_SLOTS = 64;
+	/** registered slots by name: {type, index} */
+	private static Map<String, int[]> slots;
+	/** number of registered slots of each type */
+	private static int[] nrofSlots;
+
 	static {
 		reset();
 		DTNSim.registerForReset(Message.class.getCanonicalName());
@@ -67,7 +103,7 @@ public class Message implements Comparable<Message> {
 		this.to = to;
 		this.id = id;
 		this.size = size;
-		this.path = new ArrayList<DTNHost>();
+		this.path = null;
 		this.uniqueId = nextUniqueId;
 		
 		this.timeCreated = SimClock.getTime();
@@ -77,6 +113,7 @@ public class Message implements Comparable<Message> {
 		this.requestMsg = null;
 		this.properties = null;
 		this.appID = null;
+		this.slotsSet = new long[3];
 		
 		Message.nextUniqueId++;
 		addNodeOnPath(from);
@@ -128,15 +165,25 @@ public class Message implements Comparable<Message> {
 	 * @param node The node to add
 	 */
 	public void addNodeOnPath(DTNHost node) {
-		this.path.add(node);
+		this.path = new HopNode(node, this.path);
+		this.hops = null;
 	}
 	
 	/**
-	 * Returns a list of nodes this message has passed so far
-	 * @return The list as vector
+	 * Returns a list of nodes this message has passed so far. The list is 
+	 * created when it's needed first time after the path has changed.
+	 * @return The list (can't be modified)
 	 */
 	public List<DTNHost> getHops() {
-		return this.path;
+		if (this.hops == null) {
+			int n = this.path == null ? 0 : this.path.length;
+			DTNHost[] nodes = new DTNHost[n];
+			for (HopNode h = this.path; h != null; h = h.previous) {
+				nodes[--n] = h.node;
+			}
+			this.hops = Collections.unmodifiableList(Arrays.asList(nodes));
+		}
+		return this.hops;
 	}
 	
 	/**
@@ -144,7 +191,21 @@ public class Message implements Comparable<Message> {
 	 * @return the amount of hops this message has passed
 	 */
 	public int getHopCount() {
-		return this.path.size() -1;
+		return (this.path == null ? 0 : this.path.length) -1;
+	}
+
+	/**
+	 * Returns true if the message has passed the given node
+	 * @param node The node to look for
+	 * @return True if the node is on the path of the message
+	 */
+	public boolean isOnPath(DTNHost node) {
+		for (HopNode h = this.path; h != null; h = h.previous) {
+			if (h.node == node) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	/** 
@@ -256,7 +317,8 @@ public class Message implements Comparable<Message> {
 	 * @param m The message where the data is copied
 	 */
 	protected void copyFrom(Message m) {
-		this.path = new ArrayList<DTNHost>(m.path);
+		this.path = m.path;
+		this.hops = null;
 		this.timeCreated = m.timeCreated;
 		this.responseSize = m.responseSize;
 		this.requestMsg  = m.requestMsg;
@@ -269,6 +331,198 @@ public class Message implements Comparable<Message> {
 				updateProperty(key, m.getProperty(key));
 			}
 		}
+
+		System.arraycopy(m.slotsSet, 0, slotsSet, 0, slotsSet.length);
+		if (m.intSlots != null) {
+			this.intSlots = new int[m.intSlots.length];
+			System.arraycopy(m.intSlots, 0, intSlots, 0, intSlots.length);
+		}
+		if (m.longSlots != null) {
+			this.longSlots = new long[m.longSlots.length];
+			System.arraycopy(m.longSlots, 0, longSlots, 0, longSlots.length);
+		}
+		if (m.doubleSlots != null) {
+			this.doubleSlots = new double[m.doubleSlots.length];
+			System.arraycopy(m.doubleSlots, 0, doubleSlots, 0, 
+					doubleSlots.length);
+		}
+	}
+
+	/**
+	 * Registers a typed int slot for the messages. Registering the same 
+	 * name again returns the same slot.
+	 * @param name Name of the slot; the value of the slot can also be 
+	 * accessed as a property with this name
+	 * @return Index of the slot for {@link #getInt(int)} and 
+	 * {@link #setInt(int, int)}
+	 * @throws SimError if the name is registered for another type or there
+	 * are too many slots
+	 */
+	public static int registerIntSlot(String name) {
+		return registerSlot(name, INT_SLOT);
+	}
+
+	/**
+	 * Registers a typed long slot for the messages. Works like
+	 * {@link #registerIntSlot(String)}.
+	 * @param name Name of the slot
+	 * @return Index of the slot for {@link #getLong(int)} and 
+	 * {@link #setLong(int, long)}
+	 */
+	public static int registerLongSlot(String name) {
+		return registerSlot(name, LONG_SLOT);
+	}
+
+	/**
+	 * Registers a typed double slot for the messages. Works like
+	 * {@link #registerIntSlot(String)}.
+	 * @param name Name of the slot
+	 * @return Index of the slot for {@link #getDouble(int)} and 
+	 * {@link #setDouble(int, double)}
+	 */
+	public static int registerDoubleSlot(String name) {
+		return registerSlot(name, DOUBLE_SLOT);
+	}
+
+	/**
+	 * Registers a slot of the given type
+	 * @param name Name of the slot
+	 * @param type Type of the slot
+	 * @return Index of the slot among the slots of the same type
+	 */
+	private static int registerSlot(String name, int type) {
+		int[] slot = slots.get(name);
+		if (slot != null) {
+			if (slot[0] != type) {
+				throw new SimError("Message slot " + name + " is already " +
+						"registered for another type");
+			}
+			return slot[1];
+		}
+		if (nrofSlots[type] >= MAX_SLOTS) {
+			throw new SimError("Too many message slots of the same type " +
+					"(max " + MAX_SLOTS + ")");
+		}
+		slot = new int[] {type, nrofSlots[type]++};
+		slots.put(name, slot);
+		return slot[1];
+	}
+
+	/**
+	 * Returns the value of an int slot
+	 * @param slot Index of the slot (see {@link #registerIntSlot(String)})
+	 * @return The value or 0 if the value hasn't been set
+	 */
+	public int getInt(int slot) {
+		return intSlots == null || slot >= intSlots.length ? 0 : 
+			intSlots[slot];
+	}
+
+	/**
+	 * Sets the value of an int slot
+	 * @param slot Index of the slot (see {@link #registerIntSlot(String)})
+	 * @param value The new value
+	 */
+	public void setInt(int slot, int value) {
+		if (intSlots == null || slot >= intSlots.length) {
+			intSlots = intSlots == null ? new int[nrofSlots[INT_SLOT]] :
+				Arrays.copyOf(intSlots, nrofSlots[INT_SLOT]);
+		}
+		intSlots[slot] = value;
+		slotsSet[INT_SLOT] |= 1L << slot;
+	}
+
+	/**
+	 * Returns the value of a long slot
+	 * @param slot Index of the slot (see {@link #registerLongSlot(String)})
+	 * @return The value or 0 if the value hasn't been set
+	 */
+	public long getLong(int slot) {
+		return longSlots == null || slot >= longSlots.length ? 0 : 
+			longSlots[slot];
+	}
+
+	/**
+	 * Sets the value of a long slot
+	 * @param slot Index of the slot (see {@link #registerLongSlot(String)})
+	 * @param value The new value
+	 */
+	public void setLong(int slot, long value) {
+		if (longSlots == null || slot >= longSlots.length) {
+			longSlots = longSlots == null ? new long[nrofSlots[LONG_SLOT]] :
+				Arrays.copyOf(longSlots, nrofSlots[LONG_SLOT]);
+		}
+		longSlots[slot] = value;
+		slotsSet[LONG_SLOT] |= 1L << slot;
+	}
+
+	/**
+	 * Returns the value of a double slot
+	 * @param slot Index of the slot (see {@link #registerDoubleSlot(String)})
+	 * @return The value or 0 if the value hasn't been set
+	 */
+	public double getDouble(int slot) {
+		return doubleSlots == null || slot >= doubleSlots.length ? 0 : 
+			doubleSlots[slot];
+	}
+
+	/**
+	 * Sets the value of a double slot
+	 * @param slot Index of the slot (see {@link #registerDoubleSlot(String)})
+	 * @param value The new value
+	 */
+	public void setDouble(int slot, double value) {
+		if (doubleSlots == null || slot >= doubleSlots.length) {
+			doubleSlots = doubleSlots == null ? 
+				new double[nrofSlots[DOUBLE_SLOT]] :
+				Arrays.copyOf(doubleSlots, nrofSlots[DOUBLE_SLOT]);
+		}
+		doubleSlots[slot] = value;
+		slotsSet[DOUBLE_SLOT] |= 1L << slot;
+	}
+
+	/**
+	 * Returns the value of a registered slot as a property object
+	 * @param slot The registered slot
+	 * @return The value or null if the value hasn't been set
+	 */
+	private Object getSlotProperty(int[] slot) {
+		if ((slotsSet[slot[0]] & (1L << slot[1])) == 0) {
+			return null;
+		}
+		switch (slot[0]) {
+		case INT_SLOT:
+			return getInt(slot[1]);
+		case LONG_SLOT:
+			return getLong(slot[1]);
+		default:
+			return getDouble(slot[1]);
+		}
+	}
+
+	/**
+	 * Sets the value of a registered slot from a property object
+	 * @param key Name of the slot
+	 * @param slot The registered slot
+	 * @param value The new value
+	 * @throws SimError if the value isn't a number
+	 */
+	private void setSlotProperty(String key, int[] slot, Object value) {
+		if (!(value instanceof Number)) {
+			throw new SimError("Value " + value + " for the message slot " +
+					key + " is not a number");
+		}
+		Number n = (Number)value;
+		switch (slot[0]) {
+		case INT_SLOT:
+			setInt(slot[1], n.intValue());
+			break;
+		case LONG_SLOT:
+			setLong(slot[1], n.longValue());
+			break;
+		default:
+			setDouble(slot[1], n.doubleValue());
+		}
 	}
 	
 	/**
@@ -282,7 +536,8 @@ public class Message implements Comparable<Message> {
 	 * @throws SimError if the message already has a value for the given key
 	 */
 	public void addProperty(String key, Object value) throws SimError {
-		if (this.properties != null && this.properties.containsKey(key)) {
+		if ((this.properties != null && this.properties.containsKey(key)) ||
+				getProperty(key) != null) {
 			/* check to prevent accidental name space collisions */
 			throw new SimError("Message " + this + " already contains value " + 
 					"for a key " + key);
@@ -298,6 +553,10 @@ public class Message implements Comparable<Message> {
 	 * @return The stored object or null if it isn't found
 	 */
 	public Object getProperty(String key) {
+		int[] slot = slots.get(key);
+		if (slot != null) {
+			return getSlotProperty(slot);
+		}
 		if (this.properties == null) {
 			return null;
 		}
@@ -312,6 +571,11 @@ public class Message implements Comparable<Message> {
 	 * @param value The new value to store
 	 */
 	public void updateProperty(String key, Object value) throws SimError {
+		int[] slot = slots.get(key);
+		if (slot != null) {
+			setSlotProperty(key, slot, value);
+			return;
+		}
 		if (this.properties == null) {
 			/* lazy creation to prevent performance overhead for classes
 			   that don't use the property feature  */
@@ -344,6 +608,8 @@ public class Message implements Comparable<Message> {
 	 */
 	public static void reset() {
 		nextUniqueId = 0;
+		slots = new HashMap<String, int[]>();
+		nrofSlots = new int[3];
 	}
 
 	/**
@@ -365,4 +631,22 @@ public class Message implements Comparable<Message> {
 		return initTtl;
 	}
 	
+	/**
+	 * A node on the path of a message. The nodes form a chain from the 
+	 * last node to the first one, so the replicates of a message can share
+	 * the common part of their paths.
+	 */
+	private static class HopNode implements Serializable {
+		private static final long serialVersionUID = 42L;
+		private final DTNHost node;
+		private final HopNode previous;
+		/** number of nodes on the path up to and including this one */
+		private final int length;
+
+		public HopNode(DTNHost node, HopNode previous) {
+			this.node = node;
+			this.previous = previous;
+			this.length = previous == null ? 1 : previous.length + 1;
+		}
+	}
 }
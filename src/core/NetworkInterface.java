@@ -7,6 +7,7 @@ package core;
 import interfaces.ConnectivityGrid;
 import interfaces.ConnectivityOptimizer;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -14,7 +15,9 @@ import java.util.Random;
 /**
  * Network interface of a DTNHost. Takes care of connectivity among hosts.
  */
-abstract public class NetworkInterface implements ModuleCommunicationListener {
+abstract public class NetworkInterface implements ModuleCommunicationListener,
+		Serializable {
+	private static final long serialVersionUID = 42L;
 	/** transmit range -setting id ({@value})*/
 	public static final String TRANSMIT_RANGE_S = "transmitRange";
 	/** transmit speed -setting id ({@value})*/
@@ -48,6 +51,8 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 	/** scanning interval, or 0.0 if n/a */
 	private double scanInterval;
 	private double lastScanTime;
+	/** are the connections checked by {@link PairwiseConnectivity} */
+	private boolean pairwiseConnectivity;
 
 
 	static {
@@ -185,6 +190,33 @@ abstract public class NetworkInterface implements ModuleCommunicationListener {
 		return this.connections;
 	}
 	
+	/**
+	 * Returns true if the connections of this interface are checked and
+	 * created once per interface pair by {@link PairwiseConnectivity}. The
+	 * update method of such interface must not check the connections.
+	 * @return True if the connectivity is checked pairwise
+	 */
+	protected boolean isPairwiseConnectivity() {
+		return this.pairwiseConnectivity;
+	}
+
+	/**
+	 * Sets whether the connections of this interface are checked by
+	 * {@link PairwiseConnectivity}
+	 * @param pairwise True if the connectivity is checked pairwise
+	 */
+	void setPairwiseConnectivity(boolean pairwise) {
+		this.pairwiseConnectivity = pairwise;
+	}
+
+	/**
+	 * Returns the scanning interval of this interface
+	 * @return The scanning interval (0 if the interface is always scanning)
+	 */
+	double getScanInterval() {
+		return this.scanInterval;
+	}
+
 	/**
 	 * Checks if this interface is currently in the scanning mode
 	 * @return True if the interface is scanning; false if not
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package core;
+
+import interfaces.ConnectivityOptimizer;
+import interfaces.PairVisitor;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <P>Connectivity detection that checks every pair of interfaces only once
+ * per update. Normally both interfaces of a pair check the range to each
+ * other in their own updates; here the existing connections are checked
+ * from one end only and the new contacts are found by going through the
+ * near pairs of the connectivity optimizers (see
+ * {@link ConnectivityOptimizer#visitNearPairs(PairVisitor)}), and the
+ * connections are set up and torn down for both ends at once.</P>
+ *
+ * <P>All connections are checked before the hosts are updated, so the
+ * results differ slightly from the normal, interleaved, updates. A new
+ * connection is created by the first interface of the pair if it is
+ * scanning and otherwise by the second one, if it is scanning.</P>
+ */
+public class PairwiseConnectivity implements Serializable {
+	private static final long serialVersionUID = 42L;
+	private List<DTNHost> hosts;
+	private List<ConnectivityOptimizer> optimizers;
+	/** activeness of the hosts (indexed by host address) during a check */
+	private boolean[] active;
+
+	/** connects the pairs that are in range */
+	private PairVisitor connector = new PairVisitor() {
+		public void visit(NetworkInterface a, NetworkInterface b) {
+			connectIfInRange(a, b);
+		}
+	};
+
+	/**
+	 * Constructor. Makes the interfaces of the hosts leave the connectivity
+	 * checks to this object.
+	 * @param hosts All the hosts in the world (indexed by their address)
+	 */
+	public PairwiseConnectivity(List<DTNHost> hosts) {
+		this.hosts = hosts;
+		this.optimizers = new ArrayList<ConnectivityOptimizer>();
+		this.active = new boolean[hosts.size()];
+
+		for (DTNHost h : hosts) {
+			for (NetworkInterface ni : h.getInterfaces()) {
+				ni.setPairwiseConnectivity(true);
+				if (ni.optimizer != null &&
+						!containsOptimizer(ni.optimizer)) {
+					optimizers.add(ni.optimizer);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns true if the optimizer is already in the optimizer list
+	 * @param o The optimizer to look for
+	 * @return True if the optimizer (the same object) is in the list
+	 */
+	private boolean containsOptimizer(ConnectivityOptimizer o) {
+		for (ConnectivityOptimizer other : optimizers) {
+			if (other == o) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Tears down the connections that have gone out of range and creates
+	 * the new ones for the current locations of the hosts
+	 */
+	public void update() {
+		for (int i=0, n=hosts.size(); i<n; i++) {
+			DTNHost h = hosts.get(i);
+			active[i] = h.isActive();
+			for (NetworkInterface ni : h.getInterfaces()) {
+				ni.optimizer.updateLocation(ni);
+			}
+		}
+
+		for (int i=0, n=hosts.size(); i<n; i++) {
+			if (active[i]) {
+				for (NetworkInterface ni : hosts.get(i).getInterfaces()) {
+					disconnectOutOfRange(ni);
+				}
+			}
+		}
+
+		for (ConnectivityOptimizer o : optimizers) {
+			o.visitNearPairs(connector);
+		}
+	}
+
+	/**
+	 * Tears down the connections of an interface that are out of range.
+	 * Connections to active hosts with a smaller interface address are
+	 * skipped since they are checked from the other end.
+	 * @param ni The interface whose connections are checked
+	 */
+	private void disconnectOutOfRange(NetworkInterface ni) {
+		List<Connection> connections = ni.getConnections();
+		for (int i=0; i<connections.size(); ) {
+			Connection con = connections.get(i);
+			NetworkInterface other = con.getOtherInterface(ni);
+
+			// all connections should be up at this stage
+			assert con.isUp() : "Connection " + con + " was down!";
+
+			if (other.getAddress() < ni.getAddress() &&
+					active[other.getHost().getAddress()]) {
+				i++; // the other end checks this one
+			}
+			else if (!ni.isWithinRange(other)) {
+				ni.disconnect(con, other);
+				connections.remove(i);
+			}
+			else {
+				i++;
+			}
+		}
+	}
+
+	/**
+	 * Connects two interfaces if both hosts are active, the interfaces are
+	 * within range of each other and not yet connected
+	 * @param a The first interface
+	 * @param b The second interface
+	 */
+	private void connectIfInRange(NetworkInterface a, NetworkInterface b) {
+		if (!active[a.getHost().getAddress()] ||
+				!active[b.getHost().getAddress()] ||
+				!a.isWithinRange(b) || a.isConnected(b)) {
+			return;
+		}
+
+		if (a.isScanning()) {
+			a.createConnection(b);
+		}
+		else if (b.isScanning()) {
+			b.createConnection(a);
+		}
+	}
+}
@@ -4,13 +4,15 @@
  */
 package core;
 
+import java.io.Serializable;
 import java.util.Random;
 
 /**
  * A random number generator for a Pareto distribution
  * @author Frans Ekman
  */
-public class ParetoRNG {
+public class ParetoRNG implements Serializable {
+	private static final long serialVersionUID = 42L;
 	private Random rng;
 	private double xm; // min value (Xm)
 	private double k; // coefficient
@@ -249,6 +249,19 @@ public class Settings {
 		}
 	}
 	
+	/**
+	 * Sets a value for a setting overriding any value that was read from the
+	 * settings files.
+	 * @param name Full (namespace prefixed) name of the setting
+	 * @param value The new value
+	 */
+	public static void overrideSetting(String name, String value) {
+		if (props == null) {
+			init(null);
+		}
+		props.setProperty(name, value);
+	}
+	
 	/**
 	 * Writes the given setting string to the settings output (if any)
 	 * @param setting The string to write
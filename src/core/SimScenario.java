@@ -178,6 +178,82 @@ public class SimScenario implements Serializable {
 		return myinstance;
 	}
 
+	/**
+	 * Sets the scenario instance (e.g., one that was resumed from a
+	 * checkpoint)
+	 * @param scen The scenario
+	 */
+	static void setInstance(SimScenario scen) {
+		myinstance = scen;
+	}
+
+	/**
+	 * Prepares a scenario that was resumed from a checkpoint for the
+	 * current run: takes the name and the end time from the current
+	 * settings and, if requested, replaces the routers of the hosts with
+	 * new ones created from the current group settings
+	 * @param newRouters If true, new routers are created for the hosts
+	 * @throws SettingsError if the new routers can't be created for the
+	 * checkpoint
+	 */
+	void resumed(boolean newRouters) {
+		Settings s = new Settings(SCENARIO_NS);
+		this.name = s.valueFillString(s.getSetting(NAME_S));
+		this.endTime = s.getDouble(END_TIME_S);
+		ensurePositiveValue(endTime, END_TIME_S);
+		this.world.setEndTime(this.endTime);
+
+		if (newRouters) {
+			replaceRouters();
+		}
+	}
+
+	/**
+	 * Replaces the routers of the hosts with new ones created from the 
+	 * group settings. The hosts must not have any messages or connections.
+	 * @throws SettingsError if the group sizes don't match the hosts or
+	 * a host has messages or connections
+	 */
+	private void replaceRouters() {
+		int hostIndex = 0;
+		for (int i=1; i<=nrofGroups; i++) {
+			Settings s = new Settings(GROUP_NS+i);
+			s.setSecondaryNamespace(GROUP_NS);
+			int nrofHosts = s.getInt(NROF_HOSTS_S);
+			if (hostIndex + nrofHosts > hosts.size()) {
+				throw new SettingsError("Host groups don't match the " +
+						"resumed checkpoint");
+			}
+
+			MessageRouter mRouterProto = createRouterPrototype(s);
+			for (int j=0; j<nrofHosts; j++) {
+				DTNHost host = hosts.get(hostIndex++);
+				if (host.getNrofMessages() > 0 || 
+						host.getConnections().size() > 0) {
+					throw new SettingsError("Can't create new routers for " +
+							"host " + host + " of the resumed checkpoint " +
+							"since it has messages or connections");
+				}
+				host.replaceRouter(mRouterProto.replicate());
+			}
+		}
+		if (hostIndex != hosts.size()) {
+			throw new SettingsError("Host groups don't match the resumed " +
+					"checkpoint");
+		}
+	}
+
+	/**
+	 * Returns the listener lists of this scenario. The lists are shared
+	 * with the hosts and the world.
+	 * @return The connection, message, movement, update and application
+	 * listener lists
+	 */
+	List<?>[] getListenerLists() {
+		return new List<?>[] {connectionListeners, messageListeners,
+				movementListeners, updateListeners, appListeners};
+	}
+
 	/**
 	 * Makes sure that a value is positive
 	 * @param value Value to check
@@ -335,15 +411,12 @@ public class SimScenario implements Serializable {
 			String gid = s.getSetting(GROUP_ID_S);
 			int nrofHosts = s.getInt(NROF_HOSTS_S);
 			int nrofInterfaces = s.getInt(NROF_INTERF_S);
-			int appCount;
 
 			// creates prototypes of MessageRouter and MovementModel
 			MovementModel mmProto = 
 				(MovementModel)s.createIntializedObject(MM_PACKAGE + 
 						s.getSetting(MOVEMENT_MODEL_S));
-			MessageRouter mRouterProto = 
-				(MessageRouter)s.createIntializedObject(ROUTING_PACKAGE + 
-						s.getSetting(ROUTER_S));
+			MessageRouter mRouterProto = createRouterPrototype(s);
 			
 			// checks that these values are positive (throws Error if not)
 			ensurePositiveValue(nrofHosts, NROF_HOSTS_S);
@@ -360,36 +433,6 @@ public class SimScenario implements Serializable {
 				mmNetInterfaces.add(mmInterface);
 			}
 
-			// setup applications
-			if (s.contains(APPCOUNT_S)) {
-				appCount = s.getInt(APPCOUNT_S);
-			} else {
-				appCount = 0;
-			}
-			for (int j=1; j<=appCount; j++) {
-				String appname = null;
-				Application protoApp = null;
-				try {
-					// Get name of the application for this group
-					appname = s.getSetting(GAPPNAME_S+j);
-					// Get settings for the given application
-					Settings t = new Settings(appname);
-					// Load an instance of the application
-					protoApp = (Application)t.createIntializedObject(
-							APP_PACKAGE + t.getSetting(APPTYPE_S));
-					// Set application listeners
-					protoApp.setAppListeners(this.appListeners);
-					// Set the proto application in proto router
-					//mRouterProto.setApplication(protoApp);
-					mRouterProto.addApplication(protoApp);
-				} catch (SettingsError se) {
-					// Failed to create an application for this group
-					System.err.println("Failed to setup an application: " + se);
-					System.err.println("Caught at " + se.getStackTrace()[0]);
-					System.exit(-1);
-				}
-			}
-
 			if (mmProto instanceof MapBasedMovement) {
 				this.simMap = ((MapBasedMovement)mmProto).getMap();
 			}
@@ -408,6 +451,51 @@ public class SimScenario implements Serializable {
 		}
 	}
 
+	/**
+	 * Creates the prototype of the message router of a host group,
+	 * including the applications of the group
+	 * @param s The settings of the group
+	 * @return The router prototype
+	 */
+	private MessageRouter createRouterPrototype(Settings s) {
+		int appCount;
+		MessageRouter mRouterProto = 
+			(MessageRouter)s.createIntializedObject(ROUTING_PACKAGE + 
+					s.getSetting(ROUTER_S));
+
+		// setup applications
+		if (s.contains(APPCOUNT_S)) {
+			appCount = s.getInt(APPCOUNT_S);
+		} else {
+			appCount = 0;
+		}
+		for (int j=1; j<=appCount; j++) {
+			String appname = null;
+			Application protoApp = null;
+			try {
+				// Get name of the application for this group
+				appname = s.getSetting(GAPPNAME_S+j);
+				// Get settings for the given application
+				Settings t = new Settings(appname);
+				// Load an instance of the application
+				protoApp = (Application)t.createIntializedObject(
+						APP_PACKAGE + t.getSetting(APPTYPE_S));
+				// Set application listeners
+				protoApp.setAppListeners(this.appListeners);
+				// Set the proto application in proto router
+				//mRouterProto.setApplication(protoApp);
+				mRouterProto.addApplication(protoApp);
+			} catch (SettingsError se) {
+				// Failed to create an application for this group
+				System.err.println("Failed to setup an application: " + se);
+				System.err.println("Caught at " + se.getStackTrace()[0]);
+				System.exit(-1);
+			}
+		}
+
+		return mRouterProto;
+	}
+
 	/**
 	 * Returns the list of nodes for this scenario.
 	 * @return the list of nodes for this scenario.
@@ -11,6 +11,7 @@ import routing.MessageRouter;
  * is updated every round from the end point transmission speeds
  */
 public class VBRConnection extends Connection {
+	private static final long serialVersionUID = 42L;
 	private int msgsize;
 	private int msgsent;
 	private int currentspeed = 0;
@@ -52,6 +53,7 @@ public class VBRConnection extends Connection {
 		
 		if (retVal == MessageRouter.RCV_OK) {
 			this.msgOnFly = newMessage;
+			transferStateChanged();
 			this.msgsize = m.getSize();
 			this.msgsent = 0;
 		}
@@ -6,19 +6,26 @@ package core;
 
 import input.EventQueue;
 import input.ExternalEvent;
+import input.MergedEventQueue;
 import input.ScheduledUpdatesQueue;
 import interfaces.ConnectivityGrid;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * World contains all the nodes and is responsible for updating their
  * location and connections.
  */
-public class World {
+public class World implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** namespace of optimization settings ({@value})*/
 	public static final String SETTINGS_NS = "Optimization";
 	/**
@@ -37,19 +44,116 @@ public class World {
 	 * Default is @link {@link #DEF_RANDOMIZE_UPDATES}.
 	 */
 	public static final String RANDOMIZE_UPDATES_S = "randomizeUpdateOrder";
+	/**
+	 * Should the movement and connectivity detection of the nodes be done 
+	 * using multiple threads -setting id ({@value}). Boolean (true/false) 
+	 * variable. The results are the same as with the sequential updates.
+	 * Default is {@link #DEF_PARALLEL_UPDATES}.
+	 */
+	public static final String PARALLEL_UPDATES_S = "parallelUpdates";
+	/**
+	 * Number of threads to use for parallel updates -setting id ({@value}).
+	 * Default is the number of available processors.
+	 */
+	public static final String NROF_THREADS_S = "nrofThreads";
+	/**
+	 * Should the connections be detected using predicted contact times 
+	 * instead of checking the neighbors on every update -setting id 
+	 * ({@value}). Boolean (true/false) variable. Default is 
+	 * {@link #DEF_EVENT_DRIVEN_CONNECTIVITY}.
+	 * @see EventDrivenConnectivity
+	 */
+	public static final String EVENT_DRIVEN_CONNECTIVITY_S = 
+		"eventDrivenConnectivity";
+	/**
+	 * Length of the contact prediction epoch (seconds) for event driven 
+	 * connectivity -setting id ({@value}). Longer epochs need less 
+	 * predictions but more candidate pairs. Default is 
+	 * {@link #DEF_CONTACT_HORIZON}.
+	 */
+	public static final String CONTACT_HORIZON_S = "contactHorizon";
+	/**
+	 * Should the connectivity be checked only once for every pair of 
+	 * interfaces in an update -setting id ({@value}). Boolean (true/false)
+	 * variable. Can't be used together with event driven connectivity.
+	 * Default is {@link #DEF_PAIRWISE_CONNECTIVITY}.
+	 * @see PairwiseConnectivity
+	 */
+	public static final String PAIRWISE_CONNECTIVITY_S = 
+		"pairwiseConnectivity";
+	/**
+	 * Should the host updates be skipped when nothing can happen in them 
+	 * -setting id ({@value}). Boolean (true/false) variable. The hosts are
+	 * still moved every update interval so the movement and connections are
+	 * the same as without skipping, but transfers on idle connections may
+	 * start up to {@link #MAX_UPDATE_INTERVAL_S} later. Default is 
+	 * {@link #DEF_ADAPTIVE_UPDATES}.
+	 * @see AdaptiveStepping
+	 */
+	public static final String ADAPTIVE_UPDATES_S = "adaptiveUpdates";
+	/**
+	 * Longest time (seconds) between two host updates when the updates are
+	 * skipped adaptively -setting id ({@value}). Default is 
+	 * {@link #DEF_MAX_UPDATE_INTERVAL}. Must not be smaller than the update 
+	 * interval.
+	 */
+	public static final String MAX_UPDATE_INTERVAL_S = "maxUpdateInterval";
+	/**
+	 * Should only the hosts that an external event can affect be updated
+	 * after the event -setting id ({@value}). Boolean (true/false) variable.
+	 * All hosts are still updated every update interval. Default is 
+	 * {@link #DEF_AFFECTED_HOST_UPDATES}.
+	 * @see AffectedHostUpdates
+	 */
+	public static final String AFFECTED_HOST_UPDATES_S = 
+		"affectedHostUpdates";
+	/**
+	 * Should the movement warm up move the hosts only when they need a new
+	 * waypoint or path -setting id ({@value}). Boolean (true/false) 
+	 * variable. The paths are the same as in the normal warm up but the 
+	 * locations may differ by rounding errors. Default is 
+	 * {@link #DEF_FAST_WARMUP}.
+	 * @see FastWarmup
+	 */
+	public static final String FAST_WARMUP_S = "fastWarmup";
 	/** default value for cell size multiplier ({@value}) */
 	public static final int DEF_CON_CELL_SIZE_MULT = 5;
 	/** should the update order of nodes be randomized -setting's default value
 	 * ({@value}) */
 	public static final boolean DEF_RANDOMIZE_UPDATES = true;
+	/** should the parallel updates be used -setting's default value 
+	 * ({@value}) */
+	public static final boolean DEF_PARALLEL_UPDATES = false;
+	/** should the event driven connectivity be used -setting's default 
+	 * value ({@value}) */
+	public static final boolean DEF_EVENT_DRIVEN_CONNECTIVITY = false;
+	/** default value for the contact prediction epoch length ({@value}) */
+	public static final double DEF_CONTACT_HORIZON = 60;
+	/** should the pairwise connectivity be used -setting's default value
+	 * ({@value}) */
+	public static final boolean DEF_PAIRWISE_CONNECTIVITY = false;
+	/** should the updates be skipped adaptively -setting's default value
+	 * ({@value}) */
+	public static final boolean DEF_ADAPTIVE_UPDATES = false;
+	/** default value for the longest adaptive update interval ({@value}) */
+	public static final double DEF_MAX_UPDATE_INTERVAL = 60;
+	/** should only the affected hosts be updated after events -setting's 
+	 * default value ({@value}) */
+	public static final boolean DEF_AFFECTED_HOST_UPDATES = false;
+	/** should the warm up be fast forwarded -setting's default value
+	 * ({@value}) */
+	public static final boolean DEF_FAST_WARMUP = false;
+	/** how many hosts (or interfaces) one parallel task handles at most */
+	private static final int PARALLEL_CHUNK_SIZE = 64;
 
 	private int sizeX;
 	private int sizeY;
 	private List<EventQueue> eventQueues;
 	private double updateInterval;
-	private SimClock simClock;
+	private transient SimClock simClock;
 	private double nextQueueEventTime;
-	private EventQueue nextEventQueue;
+	/** all the event queues and the scheduled updates merged in time order */
+	private MergedEventQueue events;
 	/** list of nodes; nodes are indexed by their network address */
 	private List<DTNHost> hosts;
 	private boolean simulateConnections;
@@ -65,6 +169,24 @@ public class World {
 	/** single ConnectivityCell's size is biggest radio range times this */
 	private int conCellSizeMult;
 
+	/** number of threads for parallel updates (0 if updates are sequential) */
+	private int nrofThreads;
+	/** thread pool for parallel updates (null if updates are sequential) */
+	private transient ForkJoinPool updatePool;
+	/** event driven connectivity detection (null if not in use) */
+	private EventDrivenConnectivity contactEvents;
+	/** pairwise connectivity detection (null if not in use) */
+	private PairwiseConnectivity pairConnectivity;
+	/** adaptive skipping of host updates (null if not in use) */
+	private AdaptiveStepping adaptiveStepping;
+	/** updates of the hosts affected by events (null if not in use) */
+	private AffectedHostUpdates affectedUpdates;
+	/** should the movement warm up be fast forwarded */
+	private boolean fastWarmup;
+	/** the hosts whose connection the current contact event changed (null
+	 * if the event is not a contact event) */
+	private DTNHost contactHost1, contactHost2;
+
 	/**
 	 * Constructor.
 	 */
@@ -83,8 +205,14 @@ public class World {
 		this.scheduledUpdates = new ScheduledUpdatesQueue();
 		this.isCancelled = false;		
 
-		setNextEventQueue();
 		initSettings();
+
+		/* scheduled updates go first if events are at the same time */
+		List<EventQueue> queues = new ArrayList<EventQueue>();
+		queues.add(this.scheduledUpdates);
+		queues.addAll(this.eventQueues);
+		this.events = new MergedEventQueue(queues);
+		setNextEventQueue();
 	}
 
 	/**
@@ -117,6 +245,104 @@ public class World {
 			throw new SettingsError("Too small value (" + conCellSizeMult +
 					") for " + SETTINGS_NS + "." + CELL_SIZE_MULT_S);
 		}
+
+		boolean parallelUpdates = DEF_PARALLEL_UPDATES;
+		if (s.contains(PARALLEL_UPDATES_S)) {
+			parallelUpdates = s.getBoolean(PARALLEL_UPDATES_S);
+		}
+		if (parallelUpdates) {
+			int nrofThreads = Runtime.getRuntime().availableProcessors();
+			if (s.contains(NROF_THREADS_S)) {
+				nrofThreads = s.getInt(NROF_THREADS_S);
+			}
+			if (nrofThreads < 1) {
+				throw new SettingsError("Too small value (" + nrofThreads +
+						") for " + SETTINGS_NS + "." + NROF_THREADS_S);
+			}
+			this.nrofThreads = nrofThreads;
+			this.updatePool = new ForkJoinPool(nrofThreads);
+		}
+		else {
+			this.nrofThreads = 0;
+			this.updatePool = null;
+		}
+
+		boolean eventDriven = DEF_EVENT_DRIVEN_CONNECTIVITY;
+		double horizon = DEF_CONTACT_HORIZON;
+		if (s.contains(EVENT_DRIVEN_CONNECTIVITY_S)) {
+			eventDriven = s.getBoolean(EVENT_DRIVEN_CONNECTIVITY_S);
+		}
+		if (s.contains(CONTACT_HORIZON_S)) {
+			horizon = s.getDouble(CONTACT_HORIZON_S);
+		}
+		if (horizon <= 0) {
+			throw new SettingsError("Too small value (" + horizon +
+					") for " + SETTINGS_NS + "." + CONTACT_HORIZON_S);
+		}
+		if (eventDriven && this.simulateConnections) {
+			this.contactEvents = new EventDrivenConnectivity(this.hosts, 
+					horizon);
+			this.eventQueues = new ArrayList<EventQueue>(this.eventQueues);
+			this.eventQueues.add(this.contactEvents);
+		}
+		else {
+			this.contactEvents = null;
+		}
+
+		boolean pairwise = DEF_PAIRWISE_CONNECTIVITY;
+		if (s.contains(PAIRWISE_CONNECTIVITY_S)) {
+			pairwise = s.getBoolean(PAIRWISE_CONNECTIVITY_S);
+		}
+		if (pairwise && eventDriven) {
+			throw new SettingsError(SETTINGS_NS + "." + 
+					PAIRWISE_CONNECTIVITY_S + " can't be used with " + 
+					SETTINGS_NS + "." + EVENT_DRIVEN_CONNECTIVITY_S);
+		}
+		if (pairwise && this.simulateConnections) {
+			this.pairConnectivity = new PairwiseConnectivity(this.hosts);
+		}
+		else {
+			this.pairConnectivity = null;
+		}
+
+		boolean adaptive = DEF_ADAPTIVE_UPDATES;
+		double maxInterval = DEF_MAX_UPDATE_INTERVAL;
+		if (s.contains(ADAPTIVE_UPDATES_S)) {
+			adaptive = s.getBoolean(ADAPTIVE_UPDATES_S);
+		}
+		if (s.contains(MAX_UPDATE_INTERVAL_S)) {
+			maxInterval = s.getDouble(MAX_UPDATE_INTERVAL_S);
+		}
+		if (adaptive) {
+			if (maxInterval < this.updateInterval) {
+				throw new SettingsError("Too small value (" + maxInterval +
+						") for " + SETTINGS_NS + "." + MAX_UPDATE_INTERVAL_S);
+			}
+			Settings scen = new Settings(SimScenario.SCENARIO_NS);
+			this.adaptiveStepping = new AdaptiveStepping(this.hosts, 
+					this.updateInterval, 
+					(int)(maxInterval / this.updateInterval) - 1,
+					scen.getDouble(SimScenario.END_TIME_S));
+		}
+		else {
+			this.adaptiveStepping = null;
+		}
+
+		boolean affected = DEF_AFFECTED_HOST_UPDATES;
+		if (s.contains(AFFECTED_HOST_UPDATES_S)) {
+			affected = s.getBoolean(AFFECTED_HOST_UPDATES_S);
+		}
+		if (affected) {
+			this.affectedUpdates = new AffectedHostUpdates(this.hosts);
+		}
+		else {
+			this.affectedUpdates = null;
+		}
+
+		this.fastWarmup = DEF_FAST_WARMUP;
+		if (s.contains(FAST_WARMUP_S)) {
+			this.fastWarmup = s.getBoolean(FAST_WARMUP_S);
+		}
 	}
 
 	/**
@@ -130,9 +356,14 @@ public class World {
 			return;
 		}
 
-		while(SimClock.getTime() < -updateInterval) {
-			moveHosts(updateInterval);
-			simClock.advance(updateInterval);
+		if (this.fastWarmup) {
+			fastWarmupMovementModel();
+		}
+		else {
+			while(SimClock.getTime() < -updateInterval) {
+				moveHosts(updateInterval);
+				simClock.advance(updateInterval);
+			}
 		}
 
 		double finalStep = -SimClock.getTime();
@@ -142,23 +373,36 @@ public class World {
 	}
 
 	/**
-	 * Goes through all event Queues and sets the 
-	 * event queue that has the next event.
+	 * Moves the hosts like the warm up loop of 
+	 * {@link #warmupMovementModel(double)} but using {@link FastWarmup}.
+	 * The locations of the hosts are brought up to date concurrently if 
+	 * parallel updates are in use.
 	 */
-	public void setNextEventQueue() {
-		EventQueue nextQueue = scheduledUpdates;
-		double earliest = nextQueue.nextEventsTime();
-
-		/* find the queue that has the next event */
-		for (EventQueue eq : eventQueues) {
-			if (eq.nextEventsTime() < earliest){
-				nextQueue = eq;	
-				earliest = eq.nextEventsTime();
+	private void fastWarmupMovementModel() {
+		final FastWarmup warmup = new FastWarmup(this.hosts, 
+				this.updateInterval);
+		warmup.moveUntil(-updateInterval);
+
+		if (this.updatePool != null) {
+			runConcurrently(hosts.size(), new IndexedTask() {
+				public void run(int index) {
+					warmup.catchUp(index);
+				}
+			});
+		}
+		else {
+			for (int i=0, n=hosts.size(); i<n; i++) {
+				warmup.catchUp(i);
 			}
 		}
+	}
 
-		this.nextEventQueue = nextQueue;
-		this.nextQueueEventTime = earliest;
+	/**
+	 * Sets the time of the next event of all the event queues and
+	 * scheduled updates.
+	 */
+	public void setNextEventQueue() {
+		this.nextQueueEventTime = this.events.nextEventsTime();
 	}
 
 	/** 
@@ -167,21 +411,41 @@ public class World {
 	 * this method is called and after one update interval.
 	 */
 	public void update () {
-		double runUntil = SimClock.getTime() + this.updateInterval;
-
 		setNextEventQueue();
+		if (this.adaptiveStepping != null) {
+			skipUpdates(this.adaptiveStepping.skippableUpdates(
+					this.nextQueueEventTime));
+			setNextEventQueue(); // moving may have changed the events
+		}
+
+		double runUntil = SimClock.getTime() + this.updateInterval;
 
 		/* process all events that are due until next interval update */
 		while (this.nextQueueEventTime <= runUntil) {
 			simClock.setTime(this.nextQueueEventTime);
-			ExternalEvent ee = this.nextEventQueue.nextEvent();
+			ExternalEvent ee = this.events.nextEvent();
+			if (this.affectedUpdates != null) {
+				this.affectedUpdates.beginEvent();
+			}
 			ee.processEvent(this);
-			updateHosts(); // update all hosts after every event
+			if (this.contactHost1 != null) {
+				updateContactHosts();
+			}
+			else if (this.affectedUpdates != null && 
+					this.affectedUpdates.canUpdatePartially()) {
+				updateAffectedHosts();
+			}
+			else {
+				updateHosts(); // update all hosts after every event
+			}
 			setNextEventQueue();
 		}
 
 		moveHosts(this.updateInterval);
 		simClock.setTime(runUntil);
+		if (this.contactEvents != null) {
+			this.contactEvents.hostsMoved();
+		}
 
 		updateHosts();
 
@@ -191,45 +455,235 @@ public class World {
 		}
 	}
 
+	/**
+	 * Moves the hosts for the given number of update intervals without 
+	 * updating them. The update listeners are informed after every interval
+	 * like in normal updates.
+	 * @param count Number of update intervals to skip
+	 */
+	private void skipUpdates(int count) {
+		for (int i=0; i<count && !this.isCancelled; i++) {
+			double runUntil = SimClock.getTime() + this.updateInterval;
+			moveHosts(this.updateInterval);
+			simClock.setTime(runUntil);
+			if (this.contactEvents != null) {
+				this.contactEvents.hostsMoved();
+			}
+			else if (this.simulateConnections) {
+				updateInterfaceLocations();
+			}
+			nextUpdateOrder(); // keep the shuffled orders the same
+
+			for (UpdateListener ul : this.updateListeners) {
+				ul.updated(this.hosts);
+			}
+		}
+	}
+
 	/**
 	 * Updates all hosts (calls update for every one of them). If update
 	 * order randomizing is on (updateOrder array is defined), the calls
 	 * are made in random order.
 	 */
 	private void updateHosts() {
-		if (this.updateOrder == null) { // randomizing is off
-			for (int i=0, n = hosts.size();i < n; i++) {
-				if (this.isCancelled) {
-					break;
-				}
-				hosts.get(i).update(simulateConnections);
+		List<DTNHost> order = nextUpdateOrder();
+
+		/* event driven connectivity takes care of the connections */
+		boolean updateConnections = this.simulateConnections && 
+			this.contactEvents == null;
+
+		if (this.pairConnectivity != null && updateConnections) {
+			this.pairConnectivity.update();
+		}
+		else if (this.updatePool != null && updateConnections) {
+			precomputeConnectivity(order);
+		}
+
+		for (int i=0, n = order.size();i < n; i++) {
+			if (this.isCancelled) {
+				break;
 			}
+			order.get(i).update(updateConnections);
+		}
+
+		if (this.updatePool != null) {
+			ConnectivityGrid.endSweep();
 		}
-		else { // update order randomizing is on
-			assert this.updateOrder.size() == this.hosts.size() : 
-				"Nrof hosts has changed unexpectedly";
-			Random rng = new Random(SimClock.getIntTime());
-			Collections.shuffle(this.updateOrder, rng); 
-			for (int i=0, n = hosts.size();i < n; i++) {
-				if (this.isCancelled) {
-					break;
+		if (this.affectedUpdates != null) {
+			this.affectedUpdates.allUpdated();
+		}
+	}
+
+	/**
+	 * Updates the hosts that the last event can affect. The update order
+	 * is advanced like in {@link #updateHosts()}.
+	 */
+	private void updateAffectedHosts() {
+		List<DTNHost> order = nextUpdateOrder();
+
+		boolean updateConnections = this.simulateConnections && 
+			this.contactEvents == null;
+
+		if (this.pairConnectivity != null && updateConnections) {
+			this.pairConnectivity.update();
+		}
+		this.affectedUpdates.update(order, updateConnections);
+	}
+
+	/**
+	 * Updates the two hosts of the last contact event. The update order is
+	 * advanced like in {@link #updateHosts()}.
+	 */
+	private void updateContactHosts() {
+		List<DTNHost> order = nextUpdateOrder();
+
+		for (int i=0, n=order.size(); i<n; i++) {
+			DTNHost h = order.get(i);
+			if (h == this.contactHost1 || h == this.contactHost2) {
+				h.update(false); // connections are up to date
+			}
+		}
+		this.contactHost1 = null;
+		this.contactHost2 = null;
+	}
+
+	/**
+	 * Updates the locations of the active hosts' interfaces in their
+	 * connectivity optimizers like the interfaces' updates would do
+	 */
+	private void updateInterfaceLocations() {
+		for (int i=0, n=hosts.size(); i<n; i++) {
+			DTNHost host = hosts.get(i);
+			if (!host.isActive()) {
+				continue;
+			}
+			for (NetworkInterface ni : host.getInterfaces()) {
+				if (ni.optimizer != null) {
+					ni.optimizer.updateLocation(ni);
 				}
-				this.updateOrder.get(i).update(simulateConnections);
-			}			
+			}
 		}
 	}
 
+	/**
+	 * Returns the order in which the hosts are updated next. If update order
+	 * randomizing is on, the order is shuffled (with a seed depending on the
+	 * current time) from the previous order.
+	 * @return The hosts in update order
+	 */
+	private List<DTNHost> nextUpdateOrder() {
+		if (this.updateOrder == null) { // randomizing is off
+			return this.hosts;
+		}
+		// update order randomizing is on
+		assert this.updateOrder.size() == this.hosts.size() : 
+			"Nrof hosts has changed unexpectedly";
+		Random rng = new Random(SimClock.getIntTime());
+		Collections.shuffle(this.updateOrder, rng); 
+		return this.updateOrder;
+	}
+
+	/**
+	 * Concurrently finds the interfaces that are close enough for 
+	 * connections for all the interfaces of active hosts. The interfaces 
+	 * query the results, instead of the connectivity grid state, during 
+	 * the following update sweep.
+	 * @param order The order in which the hosts are updated
+	 */
+	private void precomputeConnectivity(List<DTNHost> order) {
+		final List<NetworkInterface> interfaces = 
+			new ArrayList<NetworkInterface>();
+		for (int i=0, n = order.size(); i < n; i++) {
+			DTNHost host = order.get(i);
+			if (host.isActive()) {
+				interfaces.addAll(host.getInterfaces());
+			}
+		}
+
+		ConnectivityGrid.beginSweep(interfaces);
+		runConcurrently(interfaces.size(), new IndexedTask() {
+			public void run(int index) {
+				ConnectivityGrid.precomputeNearInterfaces(
+						interfaces.get(index));
+			}
+		});
+	}
+
 	/**
 	 * Moves all hosts in the world for a given amount of time
 	 * @param timeIncrement The time how long all nodes should move
 	 */
 	private void moveHosts(double timeIncrement) {
+		if (this.updatePool != null) {
+			moveHostsConcurrently(timeIncrement);
+			return;
+		}
+
 		for (int i=0,n = hosts.size(); i<n; i++) {
 			DTNHost host = hosts.get(i);
 			host.move(timeIncrement);			
 		}		
 	}
 
+	/**
+	 * Moves all hosts like {@link #moveHosts(double)} but moves the hosts 
+	 * that stay on their current path segment concurrently. Hosts that need
+	 * a new waypoint or path use the (shared) movement model state so they
+	 * are moved afterwards in the same order as in the sequential mode.
+	 * @param timeIncrement The time how long all nodes should move
+	 */
+	private void moveHostsConcurrently(final double timeIncrement) {
+		final List<DTNHost> independent = new ArrayList<DTNHost>();
+		List<DTNHost> dependent = new ArrayList<DTNHost>();
+
+		for (int i=0,n = hosts.size(); i<n; i++) {
+			DTNHost host = hosts.get(i);
+			if (!host.isActive()) {
+				continue;
+			}
+			if (host.canMoveIndependently(timeIncrement)) {
+				independent.add(host);
+			}
+			else {
+				dependent.add(host);
+			}
+		}
+
+		runConcurrently(independent.size(), new IndexedTask() {
+			public void run(int index) {
+				independent.get(index).moveActive(timeIncrement);
+			}
+		});
+
+		for (int i=0,n = dependent.size(); i<n; i++) {
+			dependent.get(i).moveActive(timeIncrement);
+		}
+	}
+
+	/**
+	 * Runs a task for all indexes from zero to (n-1) using the update 
+	 * thread pool. The order of the calls is not defined.
+	 * @param n Number of indexes
+	 * @param task The task to run
+	 */
+	private void runConcurrently(int n, IndexedTask task) {
+		if (n > 0) {
+			this.updatePool.invoke(new IndexRangeAction(task, 0, n));
+		}
+	}
+
+	/**
+	 * Releases the resources of the world when the simulation has ended:
+	 * shuts down the thread pool of the parallel updates, so its threads
+	 * don't keep the simulation (and its class loader) alive
+	 */
+	public void done() {
+		if (this.updatePool != null) {
+			this.updatePool.shutdown();
+			this.updatePool = null;
+		}
+	}
+
 	/**
 	 * Asynchronously cancels the currently running simulation
 	 */
@@ -276,9 +730,35 @@ public class World {
 		assert node.getAddress() == address : "Node indexing failed. " + 
 			"Node " + node + " in index " + address;
 
+		hostTouched(node);
 		return node; 
 	}
 
+	/**
+	 * Informs the world that an external event has changed (or used) a host.
+	 * The hosts looked up with {@link #getNodeByAddress(int)} are touched 
+	 * automatically. If only the affected hosts are updated after events, 
+	 * events that change hosts without looking them up must call this. 
+	 * @param host The touched host
+	 */
+	public void hostTouched(DTNHost host) {
+		if (this.affectedUpdates != null) {
+			this.affectedUpdates.hostTouched(host);
+		}
+	}
+
+	/**
+	 * Informs the world that a contact event of the event driven
+	 * connectivity is processed. Only the two hosts of the contact are
+	 * updated after the event.
+	 * @param host1 The first host of the contact
+	 * @param host2 The second host of the contact
+	 */
+	void contactEvent(DTNHost host1, DTNHost host2) {
+		this.contactHost1 = host1;
+		this.contactHost2 = host2;
+	}
+
 	/**
 	 * Schedules an update request to all nodes to happen at the specified 
 	 * simulation time.
@@ -287,4 +767,75 @@ public class World {
 	public void scheduleUpdate(double simTime) {
 		scheduledUpdates.addUpdate(simTime);
 	}
+
+	/**
+	 * Sets the end time of the simulation (e.g., when the simulation is
+	 * resumed from a checkpoint with a new end time)
+	 * @param endTime The new end time
+	 */
+	void setEndTime(double endTime) {
+		if (this.adaptiveStepping != null) {
+			this.adaptiveStepping.setEndTime(endTime);
+		}
+	}
+
+	/**
+	 * Restores the world from a checkpoint; sets up the clock and the
+	 * thread pool that are not saved
+	 */
+	private void readObject(ObjectInputStream in)
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.simClock = SimClock.getInstance();
+		if (this.nrofThreads > 0) {
+			this.updatePool = new ForkJoinPool(this.nrofThreads);
+		}
+	}
+
+	/**
+	 * Task that is run for an index of a list
+	 */
+	private interface IndexedTask {
+		/**
+		 * Runs the task for the given index
+		 * @param index The index
+		 */
+		public void run(int index);
+	}
+
+	/**
+	 * Fork-join action that runs a task for a range of indexes and splits the
+	 * range to halves if it's bigger than {@link #PARALLEL_CHUNK_SIZE}.
+	 */
+	private static class IndexRangeAction extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private IndexedTask task;
+		private int start;
+		private int end;
+
+		/**
+		 * Constructor.
+		 * @param task The task to run
+		 * @param start First index of the range
+		 * @param end Last index of the range + 1
+		 */
+		public IndexRangeAction(IndexedTask task, int start, int end) {
+			this.task = task;
+			this.start = start;
+			this.end = end;
+		}
+
+		@Override
+		protected void compute() {
+			if (end - start <= PARALLEL_CHUNK_SIZE) {
+				for (int i=start; i<end; i++) {
+					task.run(i);
+				}
+				return;
+			}
+			int middle = (start + end) >>> 1;
+			invokeAll(new IndexRangeAction(task, start, middle),
+					new IndexRangeAction(task, middle, end));
+		}
+	}
 }
@@ -90,7 +90,7 @@ public class InfoPanel extends JPanel implements ActionListener{
 			txt += " TTL: " + ttl;
 		}
 		
-		String butTxt = "path: " + (m.getHops().size()-1) + " hops";
+		String butTxt = "path: " + m.getHopCount() + " hops";
 		
 		if (this.info == null) {
 			this.info = new JLabel(txt);
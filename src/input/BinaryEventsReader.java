@@ -17,7 +17,9 @@ import core.SimError;
 
 /**
  * Reads External Events from a binary file. Can also create binary files
- * from a list of external events.
+ * from a list of external events. The files are serialized objects; the
+ * columnar files of the {@link ColumnarEventsWriter} are much smaller and
+ * faster to read, and don't depend on the versions of the event classes.
  */
 public class BinaryEventsReader implements ExternalEventsReader {
 	/** Extension of binary external events file */
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import core.SettingsError;
+import core.SimError;
+
+/**
+ * <P>Reader for binary movement traces created with the
+ * {@link BinaryMovementWriter} from the text traces of the
+ * {@link ExternalMovementReader}. The external ids of the nodes are
+ * replaced by int indices, the coordinates are floats and the file has an
+ * index of the time instances, so the reader can seek to any time without
+ * reading the preceding samples. The samples are read from a memory
+ * mapped file into arrays given by the caller, so no objects are created
+ * per sample.</P>
+ *
+ * <P>File format (numbers are big-endian):
+ * <UL>
+ * <LI>header: magic number ({@value #MAGIC}), version, number of nodes,
+ * number of time instances and max number of samples in a time instance
+ * (ints), the offsets minTime, maxTime, minX, maxX, minY and maxY of the
+ * text trace (doubles), and the offsets of the node id table and of the
+ * time index (longs)</LI>
+ * <LI>time instances: time (double), number of samples (int) and the
+ * samples: node index (int), x - minX and y - minY (floats)</LI>
+ * <LI>node id table: the external id of every node index (modified UTF-8
+ * strings as written by DataOutput.writeUTF)</LI>
+ * <LI>time index: time (double) and offset (long) of every time
+ * instance</LI>
+ * </UL></P>
+ */
+public class BinaryMovementReader {
+	/** Magic number in the beginning of a binary movement trace */
+	public static final int MAGIC = 0x4F4E454D;
+	/** Version of the file format */
+	public static final int VERSION = 1;
+	/** size of the header (bytes) */
+	static final int HEADER_SIZE = 5 * 4 + 6 * 8 + 2 * 8;
+	/** size of a sample (bytes) */
+	static final int SAMPLE_SIZE = 4 + 4 + 4;
+	/** size of a time instance header (bytes) */
+	static final int INSTANCE_HEADER_SIZE = 8 + 4;
+	/** size of the mapped window of time instances (bytes) */
+	private static final long WINDOW_SIZE = 64L * 1024 * 1024;
+
+	private String fileName;
+	private FileChannel channel;
+	private int nrofInstances;
+	private int maxInstanceSize;
+	private double minTime;
+	private double maxTime;
+	private double minX;
+	private double maxX;
+	private double minY;
+	private double maxY;
+	private boolean normalize;
+
+	/** external ids of the node indices */
+	private String[] nodeIds;
+	/** times and offsets of the time instances */
+	private double[] instanceTimes;
+	private long[] instanceOffsets;
+	/** end of the time instances in the file */
+	private long instancesEnd;
+
+	/** mapped part of the time instances and its offset in the file */
+	private ByteBuffer window;
+	private long windowOffset;
+	/** index of the next time instance to read */
+	private int nextInstance;
+	private double lastTimeStamp = -1;
+
+	/**
+	 * Constructor. Creates a new reader that reads the data from a file.
+	 * @param inFilePath Path to the file where the data is read
+	 * @throws SettingsError if the file wasn't found or is not a valid
+	 * binary movement trace
+	 */
+	public BinaryMovementReader(String inFilePath) {
+		this.normalize = true;
+		this.fileName = inFilePath;
+		try {
+			this.channel = new FileInputStream(inFilePath).getChannel();
+		} catch (IOException e) {
+			throw new SettingsError("Couldn't find external movement input " +
+					"file " + inFilePath);
+		}
+
+		try {
+			readHeader();
+		} catch (IOException e) {
+			throw new SimError(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reads the header, the node id table and the time index
+	 */
+	private void readHeader() throws IOException {
+		if (channel.size() < HEADER_SIZE) {
+			throw invalid("too short");
+		}
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+				HEADER_SIZE);
+		if (header.getInt() != MAGIC) {
+			throw invalid("no magic number");
+		}
+		int version = header.getInt();
+		if (version != VERSION) {
+			throw invalid("unsupported version " + version);
+		}
+		int nrofNodes = header.getInt();
+		nrofInstances = header.getInt();
+		maxInstanceSize = header.getInt();
+		minTime = header.getDouble();
+		maxTime = header.getDouble();
+		minX = header.getDouble();
+		maxX = header.getDouble();
+		minY = header.getDouble();
+		maxY = header.getDouble();
+		long idTableOffset = header.getLong();
+		long indexOffset = header.getLong();
+		instancesEnd = idTableOffset;
+
+		FileInputStream fis = new FileInputStream(fileName);
+		fis.getChannel().position(idTableOffset);
+		DataInputStream in = new DataInputStream(
+				new BufferedInputStream(fis));
+		try {
+			nodeIds = new String[nrofNodes];
+			for (int i=0; i<nrofNodes; i++) {
+				nodeIds[i] = in.readUTF();
+			}
+		} finally {
+			in.close();
+		}
+
+		ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY,
+				indexOffset, 16L * nrofInstances);
+		instanceTimes = new double[nrofInstances];
+		instanceOffsets = new long[nrofInstances];
+		for (int i=0; i<nrofInstances; i++) {
+			instanceTimes[i] = index.getDouble();
+			instanceOffsets[i] = index.getLong();
+		}
+	}
+
+	private SimError invalid(String reason) {
+		return new SimError("Invalid binary movement file " + fileName +
+				": " + reason);
+	}
+
+	/**
+	 * Sets normalizing of read values on/off. If on, values returned by
+	 * {@link #readNextMovements(int[], double[], double[])} and the time
+	 * stamps are decremented by minimum values of the offsets. Default is
+	 * on (normalize).
+	 * @param normalize If true, normalizing is on (false -> off).
+	 */
+	public void setNormalize(boolean normalize) {
+		this.normalize = normalize;
+	}
+
+	/**
+	 * Moves the reader to the first time instance at or after the given
+	 * time
+	 * @param time The time (normalized if normalizing is on)
+	 * @return Index of the time instance that is read next (the number of
+	 * time instances if all of them are before the time)
+	 */
+	public int seek(double time) {
+		if (normalize) {
+			time += minTime;
+		}
+		int low = 0;
+		int high = nrofInstances;
+		while (low < high) { // first instance with time >= the time
+			int mid = (low + high) >>> 1;
+			if (instanceTimes[mid] < time) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		nextInstance = low;
+		return low;
+	}
+
+	/**
+	 * Reads the samples of the next time instance. The arrays must have
+	 * room for {@link #getMaxInstanceSize()} samples.
+	 * @param nodes The node indices of the samples are put here
+	 * @param xs The x coordinates of the samples are put here
+	 * @param ys The y coordinates of the samples are put here
+	 * @return The number of samples read or 0 if there were no more
+	 * time instances
+	 */
+	public int readNextMovements(int[] nodes, double[] xs, double[] ys) {
+		if (nextInstance >= nrofInstances) {
+			return 0;
+		}
+
+		long offset = instanceOffsets[nextInstance];
+		long end = nextInstance + 1 < nrofInstances ?
+				instanceOffsets[nextInstance + 1] : instancesEnd;
+		nextInstance++;
+		int pos = map(offset, end - offset);
+
+		double time = window.getDouble(pos);
+		int n = window.getInt(pos + 8);
+		pos += INSTANCE_HEADER_SIZE;
+		double dx = normalize ? 0 : minX;
+		double dy = normalize ? 0 : minY;
+		for (int i=0; i<n; i++) {
+			nodes[i] = window.getInt(pos);
+			xs[i] = window.getFloat(pos + 4) + dx;
+			ys[i] = window.getFloat(pos + 8) + dy;
+			pos += SAMPLE_SIZE;
+		}
+
+		lastTimeStamp = normalize ? time - minTime : time;
+		return n;
+	}
+
+	/**
+	 * Makes sure that the given part of the file is mapped
+	 * @param offset Offset of the part
+	 * @param length Length of the part
+	 * @return Position of the part in the mapped window
+	 */
+	private int map(long offset, long length) {
+		if (window == null || offset < windowOffset ||
+				offset + length > windowOffset + window.capacity()) {
+			long size = Math.min(Math.max(WINDOW_SIZE, length),
+					instancesEnd - offset);
+			try {
+				window = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+						size);
+			} catch (IOException e) {
+				throw new SimError(e.getMessage(), e);
+			}
+			windowOffset = offset;
+		}
+		return (int)(offset - windowOffset);
+	}
+
+	/**
+	 * Returns the time stamp where the last moves read with
+	 * {@link #readNextMovements(int[], double[], double[])} belong to.
+	 * @return The time stamp
+	 */
+	public double getLastTimeStamp() {
+		return lastTimeStamp;
+	}
+
+	/**
+	 * Returns the max number of samples in a time instance
+	 * @return The max number of samples
+	 */
+	public int getMaxInstanceSize() {
+		return maxInstanceSize;
+	}
+
+	/**
+	 * Returns the number of time instances
+	 * @return The number of time instances
+	 */
+	public int getNrofInstances() {
+		return nrofInstances;
+	}
+
+	/**
+	 * Returns the number of nodes (node indices are 0...nrofNodes-1)
+	 * @return The number of nodes
+	 */
+	public int getNrofNodes() {
+		return nodeIds.length;
+	}
+
+	/**
+	 * Returns the external id of a node
+	 * @param node Index of the node
+	 * @return The id the node has in the text trace
+	 */
+	public String getNodeId(int node) {
+		return nodeIds[node];
+	}
+
+	/**
+	 * Returns offset maxTime
+	 * @return the maxTime
+	 */
+	public double getMaxTime() {
+		return maxTime;
+	}
+
+	/**
+	 * Returns offset maxX
+	 * @return the maxX
+	 */
+	public double getMaxX() {
+		return maxX;
+	}
+
+	/**
+	 * Returns offset maxY
+	 * @return the maxY
+	 */
+	public double getMaxY() {
+		return maxY;
+	}
+
+	/**
+	 * Returns offset minTime
+	 * @return the minTime
+	 */
+	public double getMinTime() {
+		return minTime;
+	}
+
+	/**
+	 * Returns offset minX
+	 * @return the minX
+	 */
+	public double getMinX() {
+		return minX;
+	}
+
+	/**
+	 * Returns offset minY
+	 * @return the minY
+	 */
+	public double getMinY() {
+		return minY;
+	}
+
+	/**
+	 * Checks if the given file is a binary movement trace
+	 * @param filePath Path to the file
+	 * @return True if the file starts with the magic number
+	 */
+	public static boolean isBinaryMovementFile(String filePath) {
+		File file = new File(filePath);
+		if (file.length() < HEADER_SIZE) {
+			return false;
+		}
+		try {
+			DataInputStream in = new DataInputStream(
+					new FileInputStream(file));
+			try {
+				return in.readInt() == MAGIC;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Closes the file
+	 */
+	public void close() {
+		try {
+			channel.close();
+		} catch (IOException e) {
+			throw new SimError(e.getMessage(), e);
+		}
+	}
+}
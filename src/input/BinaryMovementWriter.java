@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.Coord;
+import core.Tuple;
+
+/**
+ * Converts the text movement traces of the {@link ExternalMovementReader}
+ * to binary traces that can be read with the {@link BinaryMovementReader}
+ * (see it for the file format). Can be used from the command line:
+ * <P>
+ * <CODE>java input.BinaryMovementWriter &lt;textTrace&gt;
+ * &lt;binaryTrace&gt;</CODE>
+ * </P>
+ */
+public class BinaryMovementWriter {
+
+	/**
+	 * Converts a text trace to a binary trace
+	 * @param textPath Path to the text trace
+	 * @param binaryPath Path to the binary trace to write
+	 * @return Number of time instances converted
+	 * @throws IOException if the binary trace can't be written
+	 */
+	public static int convert(String textPath, String binaryPath)
+			throws IOException {
+		ExternalMovementReader reader = new ExternalMovementReader(textPath);
+		reader.setNormalize(false);
+		double minX = reader.getMinX();
+		double minY = reader.getMinY();
+
+		Map<String, Integer> nodeIndices = new HashMap<String, Integer>();
+		List<String> nodeIds = new ArrayList<String>();
+		double[] times = new double[1024];
+		long[] offsets = new long[1024];
+		int nrofInstances = 0;
+		int maxInstanceSize = 0;
+
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(binaryPath), 1 << 16));
+		long position = BinaryMovementReader.HEADER_SIZE;
+		out.write(new byte[BinaryMovementReader.HEADER_SIZE]);
+
+		List<Tuple<String, Coord>> moves;
+		while ((moves = reader.readNextMovements()).size() > 0) {
+			if (nrofInstances == times.length) {
+				times = Arrays.copyOf(times, nrofInstances * 2);
+				offsets = Arrays.copyOf(offsets, nrofInstances * 2);
+			}
+			times[nrofInstances] = reader.getLastTimeStamp();
+			offsets[nrofInstances] = position;
+			nrofInstances++;
+			maxInstanceSize = Math.max(maxInstanceSize, moves.size());
+
+			out.writeDouble(reader.getLastTimeStamp());
+			out.writeInt(moves.size());
+			for (Tuple<String, Coord> t : moves) {
+				Integer node = nodeIndices.get(t.getKey());
+				if (node == null) {
+					node = nodeIds.size();
+					nodeIds.add(t.getKey());
+					nodeIndices.put(t.getKey(), node);
+				}
+				out.writeInt(node);
+				out.writeFloat((float)(t.getValue().getX() - minX));
+				out.writeFloat((float)(t.getValue().getY() - minY));
+			}
+			position += BinaryMovementReader.INSTANCE_HEADER_SIZE +
+				(long)moves.size() * BinaryMovementReader.SAMPLE_SIZE;
+		}
+
+		long idTableOffset = position;
+		ByteArrayOutputStream ids = new ByteArrayOutputStream();
+		DataOutputStream idsOut = new DataOutputStream(ids);
+		for (String id : nodeIds) {
+			idsOut.writeUTF(id);
+		}
+		idsOut.close();
+		ids.writeTo(out);
+		position += ids.size();
+
+		long indexOffset = position;
+		for (int i=0; i<nrofInstances; i++) {
+			out.writeDouble(times[i]);
+			out.writeLong(offsets[i]);
+		}
+		out.close();
+
+		RandomAccessFile raf = new RandomAccessFile(binaryPath, "rw");
+		try {
+			raf.writeInt(BinaryMovementReader.MAGIC);
+			raf.writeInt(BinaryMovementReader.VERSION);
+			raf.writeInt(nodeIds.size());
+			raf.writeInt(nrofInstances);
+			raf.writeInt(maxInstanceSize);
+			raf.writeDouble(reader.getMinTime());
+			raf.writeDouble(reader.getMaxTime());
+			raf.writeDouble(minX);
+			raf.writeDouble(reader.getMaxX());
+			raf.writeDouble(minY);
+			raf.writeDouble(reader.getMaxY());
+			raf.writeLong(idTableOffset);
+			raf.writeLong(indexOffset);
+		} finally {
+			raf.close();
+			reader.close();
+		}
+
+		return nrofInstances;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: java input.BinaryMovementWriter " +
+					"<textTrace> <binaryTrace>");
+			System.exit(1);
+		}
+		int nrof = convert(args[0], args[1]);
+		System.out.println("Converted " + nrof + " time instances to " +
+				args[1]);
+	}
+}
@@ -0,0 +1,393 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import core.SimError;
+
+/**
+ * <P>Reads external events from a columnar binary file created with the
+ * {@link ColumnarEventsWriter}. The events are stored in blocks and every
+ * block is memory mapped when its first event is read, so reading a batch
+ * of events only decodes the bytes of the batch from the mapped columns;
+ * nothing is deserialized. A file is also much smaller than the
+ * standard-format text file of the same events.</P>
+ *
+ * <P>File format (numbers are big-endian):
+ * <UL>
+ * <LI>header: magic number ({@value #MAGIC}), version, block size, number
+ * of blocks (ints), number of events, string table offset and block index
+ * offset (longs)</LI>
+ * <LI>blocks of events (the last block may be shorter than the block
+ * size). A block has the number of events and the time scale, the lengths
+ * of the time, host, second host and identifier columns, and the
+ * columns: the tag (event type) of every event as a byte, the times, the
+ * host addresses, the second host addresses (not for delete events), the
+ * string table indices of the message or interface identifiers, and the
+ * sizes and response sizes of the create events. The times are the
+ * differences of successive times as multiples of 10<sup>-scale</sup>
+ * (zigzag varints) or, if the times of the block can't be stored exactly
+ * that way, the raw doubles. Other numbers are varints.</LI>
+ * <LI>the string table: number of strings and the UTF-8 bytes of every
+ * string, preceded by their length (varints). The identifiers refer to
+ * the strings with index + 1; 0 is no identifier.</LI>
+ * <LI>the block index: offset of every block (longs)</LI>
+ * </UL></P>
+ */
+public class ColumnarEventsReader implements ExternalEventsReader {
+	/** Magic number in the beginning of a columnar events file */
+	public static final int MAGIC = 0x4F4E4545;
+	/** Version of the file format */
+	public static final int VERSION = 1;
+	/** size of the header (bytes) */
+	static final int HEADER_SIZE = 40;
+
+	/* event type tags */
+	static final byte T_CREATE = 0;
+	static final byte T_SEND = 1;
+	static final byte T_DELIVERED = 2;
+	static final byte T_ABORT = 3;
+	static final byte T_DROP = 4;
+	static final byte T_REMOVE = 5;
+	static final byte T_CONN_UP = 6;
+	static final byte T_CONN_DOWN = 7;
+
+	/** time scale of blocks whose times are stored as raw doubles */
+	static final int RAW_TIMES = 0xFF;
+	/** max time scale + 1 */
+	static final int MAX_TIME_SCALE = 10;
+	/** powers of ten of the time scales */
+	static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9};
+	/** limit of the scaled times (exact as doubles) */
+	static final long MAX_EXACT = 1L << 53;
+
+	/* column cursor indices */
+	private static final int C_TIME = 0;
+	private static final int C_HOST = 1;
+	private static final int C_HOST2 = 2;
+	private static final int C_ID = 3;
+	private static final int C_SIZE = 4;
+
+	private File eventsFile;
+	private FileChannel channel;
+	private int blockSize;
+	private long nrofEvents;
+	private long stringTableOffset;
+	private long[] blockOffsets;
+
+	/** the string table and the offsets of its strings */
+	private ByteBuffer stringTable;
+	private int[] stringOffsets;
+	/** the strings decoded so far */
+	private String[] strings;
+
+	/** how many events have been read */
+	private long nrofRead;
+	/** index of the next block to map */
+	private int nextBlock;
+
+	/* the current block */
+	private ByteBuffer block;
+	private int blockLeft;
+	private int tagPos;
+	private int[] cursors;
+	private boolean rawTimes;
+	private double timeScale;
+	private long scaledTime;
+
+	/**
+	 * Constructor.
+	 * @param eventsFile The file where the events are read
+	 */
+	public ColumnarEventsReader(File eventsFile) {
+		this.eventsFile = eventsFile;
+		this.cursors = new int[C_SIZE + 1];
+		try {
+			this.channel = new FileInputStream(eventsFile).getChannel();
+			readHeader();
+		} catch (IOException e) {
+			throw new SimError(e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * Reads the header, the block index and the string table offsets
+	 */
+	private void readHeader() throws IOException {
+		if (channel.size() < HEADER_SIZE) {
+			throw invalid("too short");
+		}
+		ByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+				HEADER_SIZE);
+		if (header.getInt() != MAGIC) {
+			throw invalid("no magic number");
+		}
+		int version = header.getInt();
+		if (version != VERSION) {
+			throw invalid("unsupported version " + version);
+		}
+		blockSize = header.getInt();
+		int nrofBlocks = header.getInt();
+		nrofEvents = header.getLong();
+		stringTableOffset = header.getLong();
+		long blockIndexOffset = header.getLong();
+
+		ByteBuffer index = channel.map(FileChannel.MapMode.READ_ONLY,
+				blockIndexOffset, 8L * nrofBlocks);
+		blockOffsets = new long[nrofBlocks];
+		for (int i=0; i<nrofBlocks; i++) {
+			blockOffsets[i] = index.getLong();
+		}
+
+		stringTable = channel.map(FileChannel.MapMode.READ_ONLY,
+				stringTableOffset, blockIndexOffset - stringTableOffset);
+		int[] pos = {0};
+		int nrofStrings = (int)readVarint(stringTable, pos);
+		stringOffsets = new int[nrofStrings];
+		for (int i=0; i<nrofStrings; i++) {
+			stringOffsets[i] = pos[0];
+			int len = (int)readVarint(stringTable, pos);
+			pos[0] += len;
+		}
+		strings = new String[nrofStrings];
+	}
+
+	private SimError invalid(String reason) {
+		return new SimError("Invalid columnar external events file " +
+				eventsFile.getAbsolutePath() + ": " + reason);
+	}
+
+	/**
+	 * Read events from the file
+	 * @param nrof Maximum number of events to read
+	 * @return Events in an ArrayList (empty list if didn't read any)
+	 */
+	public List<ExternalEvent> readEvents(int nrof) {
+		int n = (int)Math.min(nrof, nrofEvents - nrofRead);
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(n);
+		for (int i=0; i<n; i++) {
+			events.add(nextEvent());
+		}
+		return events;
+	}
+
+	/**
+	 * Skips events without decoding the blocks that are skipped entirely
+	 * @param nrof Number of events to skip
+	 * @return Number of events skipped (less than nrof if the file ended)
+	 */
+	public long skipEvents(long nrof) {
+		long target = Math.min(nrofRead + nrof, nrofEvents);
+		long skipped = target - nrofRead;
+		int targetBlock = (int)(target / blockSize);
+
+		if (targetBlock >= nextBlock && targetBlock < blockOffsets.length) {
+			openBlock(targetBlock);
+			nrofRead = (long)targetBlock * blockSize;
+		}
+		else if (targetBlock >= blockOffsets.length) {
+			blockLeft = 0; // all events skipped
+			nrofRead = target;
+		}
+		while (nrofRead < target) {
+			nextEvent();
+		}
+		return skipped;
+	}
+
+	/**
+	 * Returns the total number of events in the file
+	 * @return The number of events
+	 */
+	public long getNrofEvents() {
+		return this.nrofEvents;
+	}
+
+	/**
+	 * Decodes the next event
+	 * @return The event
+	 */
+	private ExternalEvent nextEvent() {
+		if (blockLeft == 0) {
+			openBlock(nextBlock);
+		}
+		byte tag = block.get(tagPos++);
+		blockLeft--;
+		nrofRead++;
+
+		double time;
+		if (rawTimes) {
+			time = block.getDouble(cursors[C_TIME]);
+			cursors[C_TIME] += 8;
+		}
+		else {
+			long zigzag = readVarint(block, cursors, C_TIME);
+			scaledTime += (zigzag >>> 1) ^ -(zigzag & 1);
+			time = scaledTime / timeScale;
+		}
+
+		int host = (int)readVarint(block, cursors, C_HOST);
+		int host2 = (tag == T_DROP || tag == T_REMOVE) ? host :
+			(int)readVarint(block, cursors, C_HOST2);
+		String id = getString((int)readVarint(block, cursors, C_ID));
+
+		switch (tag) {
+		case T_CREATE:
+			int size = (int)readVarint(block, cursors, C_SIZE);
+			int respSize = (int)readVarint(block, cursors, C_SIZE);
+			return new MessageCreateEvent(host, host2, id, size, respSize,
+					time);
+		case T_SEND:
+			return new MessageRelayEvent(host, host2, id, time,
+					MessageRelayEvent.SENDING);
+		case T_DELIVERED:
+			return new MessageRelayEvent(host, host2, id, time,
+					MessageRelayEvent.TRANSFERRED);
+		case T_ABORT:
+			return new MessageRelayEvent(host, host2, id, time,
+					MessageRelayEvent.ABORTED);
+		case T_DROP:
+			return new MessageDeleteEvent(host, id, time, true);
+		case T_REMOVE:
+			return new MessageDeleteEvent(host, id, time, false);
+		case T_CONN_UP:
+			return new ConnectionEvent(host, host2, id, true, time);
+		case T_CONN_DOWN:
+			return new ConnectionEvent(host, host2, id, false, time);
+		default:
+			throw invalid("unknown event tag " + tag + " in event " +
+					nrofRead);
+		}
+	}
+
+	/**
+	 * Maps a block and sets the column cursors to its beginning
+	 * @param index Index of the block
+	 */
+	private void openBlock(int index) {
+		if (index >= blockOffsets.length) {
+			throw invalid("event " + (nrofRead + 1) + " is missing");
+		}
+		long start = blockOffsets[index];
+		long end = index + 1 < blockOffsets.length ?
+				blockOffsets[index + 1] : stringTableOffset;
+		try {
+			block = channel.map(FileChannel.MapMode.READ_ONLY, start,
+					end - start);
+		} catch (IOException e) {
+			throw new SimError(e.getMessage(), e);
+		}
+
+		int[] pos = {0};
+		blockLeft = (int)readVarint(block, pos);
+		int scale = block.get(pos[0]++) & 0xFF;
+		int timeLen = (int)readVarint(block, pos);
+		int hostLen = (int)readVarint(block, pos);
+		int host2Len = (int)readVarint(block, pos);
+		int idLen = (int)readVarint(block, pos);
+
+		tagPos = pos[0];
+		cursors[C_TIME] = tagPos + blockLeft;
+		cursors[C_HOST] = cursors[C_TIME] + timeLen;
+		cursors[C_HOST2] = cursors[C_HOST] + hostLen;
+		cursors[C_ID] = cursors[C_HOST2] + host2Len;
+		cursors[C_SIZE] = cursors[C_ID] + idLen;
+
+		rawTimes = (scale == RAW_TIMES);
+		if (!rawTimes) {
+			timeScale = POWERS_OF_TEN[scale];
+		}
+		scaledTime = 0;
+		nextBlock = index + 1;
+	}
+
+	/**
+	 * Returns a string of the string table
+	 * @param ref Index of the string + 1 (0 = no string)
+	 * @return The string or null if ref was 0
+	 */
+	private String getString(int ref) {
+		if (ref == 0) {
+			return null;
+		}
+		String s = strings[ref - 1];
+		if (s == null) {
+			int[] pos = {stringOffsets[ref - 1]};
+			byte[] bytes = new byte[(int)readVarint(stringTable, pos)];
+			for (int i=0; i<bytes.length; i++) {
+				bytes[i] = stringTable.get(pos[0] + i);
+			}
+			s = new String(bytes, StandardCharsets.UTF_8);
+			strings[ref - 1] = s;
+		}
+		return s;
+	}
+
+	/**
+	 * Reads an unsigned varint
+	 * @param buf The buffer to read from
+	 * @param pos Positions of the columns in the buffer
+	 * @param col The column to read (its position is moved past the varint)
+	 * @return The value
+	 */
+	private static long readVarint(ByteBuffer buf, int[] pos, int col) {
+		int p = pos[col];
+		long value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buf.get(p++);
+			value |= (long)(b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		pos[col] = p;
+		return value;
+	}
+
+	private static long readVarint(ByteBuffer buf, int[] pos) {
+		return readVarint(buf, pos, 0);
+	}
+
+	/**
+	 * Checks if the given file is a columnar events file
+	 * @param file The file to check
+	 * @return True if the file starts with the magic number
+	 */
+	public static boolean isColumnarEeFile(File file) {
+		if (file.length() < HEADER_SIZE) {
+			return false;
+		}
+		try {
+			DataInputStream in = new DataInputStream(
+					new FileInputStream(file));
+			try {
+				return in.readInt() == MAGIC;
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			return false;
+		}
+	}
+
+	public void close() {
+		try {
+			this.channel.close();
+		} catch (IOException e) {
+			throw new SimError(e.getMessage(), e);
+		}
+	}
+
+}
@@ -0,0 +1,403 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes external events to a columnar binary file that can be read with
+ * the {@link ColumnarEventsReader} (see it for the file format). Can also
+ * be used from the command line to convert an events file:
+ * <P>
+ * <CODE>java input.ColumnarEventsWriter &lt;eventsFile&gt;
+ * &lt;outputFile&gt;</CODE>
+ * </P>
+ * The events file can be in any format the {@link ExternalEventsQueue}
+ * reads.
+ */
+public class ColumnarEventsWriter {
+	/** default number of events in a block */
+	public static final int DEF_BLOCK_SIZE = 16384;
+	/** number of events read at a time when converting */
+	private static final int CONVERT_BATCH = 1000;
+
+	private File file;
+	private OutputStream out;
+	/** number of bytes written to the file */
+	private long position;
+	private int blockSize;
+	private List<Long> blockOffsets;
+	private long nrofEvents;
+
+	/** identifiers of the string table and their indices */
+	private Map<String, Integer> stringIndices;
+	private List<String> strings;
+
+	/* the columns of the current block */
+	private int nrofBlockEvents;
+	private byte[] tags;
+	private double[] times;
+	private Column hosts;
+	private Column hosts2;
+	private Column ids;
+	private Column sizes;
+	private Column timeColumn;
+
+	/**
+	 * Creates a writer with the default block size
+	 * @param file The file to write to
+	 * @throws IOException if the file can't be created
+	 */
+	public ColumnarEventsWriter(File file) throws IOException {
+		this(file, DEF_BLOCK_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 * @param file The file to write to
+	 * @param blockSize Number of events in a block
+	 * @throws IOException if the file can't be created
+	 */
+	public ColumnarEventsWriter(File file, int blockSize) throws IOException {
+		if (blockSize < 1) {
+			throw new IllegalArgumentException("Invalid block size " +
+					blockSize);
+		}
+		this.file = file;
+		this.out = new BufferedOutputStream(new FileOutputStream(file),
+				1 << 16);
+		this.blockSize = blockSize;
+		this.blockOffsets = new ArrayList<Long>();
+		this.stringIndices = new HashMap<String, Integer>();
+		this.strings = new ArrayList<String>();
+		this.tags = new byte[blockSize];
+		this.times = new double[blockSize];
+		this.hosts = new Column();
+		this.hosts2 = new Column();
+		this.ids = new Column();
+		this.sizes = new Column();
+		this.timeColumn = new Column();
+
+		/* the header is written when the writer is closed */
+		write(new byte[ColumnarEventsReader.HEADER_SIZE]);
+	}
+
+	/**
+	 * Writes an event
+	 * @param ee The event
+	 * @throws IOException if the event can't be written
+	 * @throws IllegalArgumentException if the event is not of a type that
+	 * the standard-format events files have
+	 */
+	public void write(ExternalEvent ee) throws IOException {
+		int i = nrofBlockEvents;
+		if (ee instanceof MessageCreateEvent) {
+			MessageCreateEvent mce = (MessageCreateEvent)ee;
+			tags[i] = ColumnarEventsReader.T_CREATE;
+			hosts.writeVarint(mce.fromAddr);
+			hosts2.writeVarint(mce.toAddr);
+			ids.writeVarint(stringIndex(mce.id));
+			sizes.writeVarint(mce.getSize());
+			sizes.writeVarint(mce.getResponseSize());
+		}
+		else if (ee instanceof MessageRelayEvent) {
+			MessageRelayEvent mre = (MessageRelayEvent)ee;
+			switch (mre.getStage()) {
+			case MessageRelayEvent.SENDING:
+				tags[i] = ColumnarEventsReader.T_SEND;
+				break;
+			case MessageRelayEvent.TRANSFERRED:
+				tags[i] = ColumnarEventsReader.T_DELIVERED;
+				break;
+			case MessageRelayEvent.ABORTED:
+				tags[i] = ColumnarEventsReader.T_ABORT;
+				break;
+			default:
+				throw new IllegalArgumentException("Invalid stage of " + ee);
+			}
+			hosts.writeVarint(mre.fromAddr);
+			hosts2.writeVarint(mre.toAddr);
+			ids.writeVarint(stringIndex(mre.id));
+		}
+		else if (ee instanceof MessageDeleteEvent) {
+			MessageDeleteEvent mde = (MessageDeleteEvent)ee;
+			tags[i] = mde.isDrop() ? ColumnarEventsReader.T_DROP :
+				ColumnarEventsReader.T_REMOVE;
+			hosts.writeVarint(mde.fromAddr);
+			ids.writeVarint(stringIndex(mde.id));
+		}
+		else if (ee instanceof ConnectionEvent) {
+			ConnectionEvent ce = (ConnectionEvent)ee;
+			tags[i] = ce.isUp ? ColumnarEventsReader.T_CONN_UP :
+				ColumnarEventsReader.T_CONN_DOWN;
+			hosts.writeVarint(ce.fromAddr);
+			hosts2.writeVarint(ce.toAddr);
+			ids.writeVarint(stringIndex(ce.interfaceId));
+		}
+		else {
+			throw new IllegalArgumentException("Can't store event " + ee);
+		}
+
+		times[i] = ee.getTime();
+		nrofBlockEvents++;
+		nrofEvents++;
+		if (nrofBlockEvents == blockSize) {
+			writeBlock();
+		}
+	}
+
+	/**
+	 * Writes the rest of the events, the string table, the block index and
+	 * the header, and closes the file
+	 * @throws IOException if the file can't be written
+	 */
+	public void close() throws IOException {
+		if (nrofBlockEvents > 0) {
+			writeBlock();
+		}
+
+		long stringTableOffset = position;
+		Column c = new Column();
+		c.writeVarint(strings.size());
+		for (String s : strings) {
+			byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			c.writeVarint(bytes.length);
+			c.write(bytes, bytes.length);
+		}
+		write(c.data, c.size);
+
+		long blockIndexOffset = position;
+		c = new Column();
+		for (long offset : blockOffsets) {
+			c.writeLong(offset);
+		}
+		write(c.data, c.size);
+		out.close();
+
+		c = new Column();
+		c.writeInt(ColumnarEventsReader.MAGIC);
+		c.writeInt(ColumnarEventsReader.VERSION);
+		c.writeInt(blockSize);
+		c.writeInt(blockOffsets.size());
+		c.writeLong(nrofEvents);
+		c.writeLong(stringTableOffset);
+		c.writeLong(blockIndexOffset);
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.write(c.data, 0, c.size);
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Writes the events of the current block to the file (see
+	 * {@link ColumnarEventsReader} for the layout)
+	 */
+	private void writeBlock() throws IOException {
+		int n = nrofBlockEvents;
+		int scale = timeScale(times, n);
+		timeColumn.size = 0;
+		if (scale == ColumnarEventsReader.RAW_TIMES) {
+			for (int i=0; i<n; i++) {
+				timeColumn.writeLong(Double.doubleToLongBits(times[i]));
+			}
+		}
+		else {
+			double pow = ColumnarEventsReader.POWERS_OF_TEN[scale];
+			long prev = 0;
+			for (int i=0; i<n; i++) {
+				long t = Math.round(times[i] * pow);
+				long delta = t - prev;
+				timeColumn.writeVarint((delta << 1) ^ (delta >> 63));
+				prev = t;
+			}
+		}
+
+		Column c = new Column();
+		c.writeVarint(n);
+		c.write(new byte[] {(byte)scale}, 1);
+		c.writeVarint(timeColumn.size);
+		c.writeVarint(hosts.size);
+		c.writeVarint(hosts2.size);
+		c.writeVarint(ids.size);
+
+		blockOffsets.add(position);
+		write(c.data, c.size);
+		write(tags, n);
+		write(timeColumn.data, timeColumn.size);
+		write(hosts.data, hosts.size);
+		write(hosts2.data, hosts2.size);
+		write(ids.data, ids.size);
+		write(sizes.data, sizes.size);
+
+		hosts.size = 0;
+		hosts2.size = 0;
+		ids.size = 0;
+		sizes.size = 0;
+		nrofBlockEvents = 0;
+	}
+
+	/**
+	 * Returns the smallest scale with which all the times can be stored
+	 * as integers and read back exactly
+	 * @param times The times
+	 * @param n Number of times
+	 * @return The scale or {@link ColumnarEventsReader#RAW_TIMES} if there's
+	 * no such scale
+	 */
+	private static int timeScale(double[] times, int n) {
+		double[] powers = ColumnarEventsReader.POWERS_OF_TEN;
+		for (int scale = 0; scale < ColumnarEventsReader.MAX_TIME_SCALE;
+				scale++) {
+			int i = 0;
+			while (i < n && isExact(times[i], powers[scale])) {
+				i++;
+			}
+			if (i == n) {
+				return scale;
+			}
+		}
+		return ColumnarEventsReader.RAW_TIMES;
+	}
+
+	/**
+	 * Returns true if the time is stored exactly as an integer multiple of
+	 * 1/pow
+	 * @param time The time
+	 * @param pow The power of ten
+	 * @return True if the time can be stored with the scale
+	 */
+	private static boolean isExact(double time, double pow) {
+		long scaled = Math.round(time * pow);
+		return Math.abs(scaled) < ColumnarEventsReader.MAX_EXACT &&
+			Double.doubleToLongBits(scaled / pow) ==
+				Double.doubleToLongBits(time);
+	}
+
+	/**
+	 * Returns the index of an identifier in the string table
+	 * @param id The identifier (may be null)
+	 * @return The index + 1 or 0 for null
+	 */
+	private int stringIndex(String id) {
+		if (id == null) {
+			return 0;
+		}
+		Integer index = stringIndices.get(id);
+		if (index == null) {
+			index = strings.size();
+			strings.add(id);
+			stringIndices.put(id, index);
+		}
+		return index + 1;
+	}
+
+	private void write(byte[] bytes) throws IOException {
+		write(bytes, bytes.length);
+	}
+
+	private void write(byte[] bytes, int len) throws IOException {
+		out.write(bytes, 0, len);
+		position += len;
+	}
+
+	/**
+	 * Converts events to a columnar file
+	 * @param reader The reader to read the events from (is closed in the
+	 * end)
+	 * @param file The file to write to
+	 * @return Number of events converted
+	 * @throws IOException if the file can't be written
+	 */
+	public static long convert(ExternalEventsReader reader, File file)
+			throws IOException {
+		ColumnarEventsWriter w = new ColumnarEventsWriter(file);
+		List<ExternalEvent> events;
+		try {
+			while ((events = reader.readEvents(CONVERT_BATCH)).size() > 0) {
+				for (ExternalEvent ee : events) {
+					w.write(ee);
+				}
+			}
+		} finally {
+			reader.close();
+			w.close();
+		}
+		return w.nrofEvents;
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length != 2) {
+			System.err.println("Usage: java input.ColumnarEventsWriter " +
+					"<eventsFile> <outputFile>");
+			System.exit(1);
+		}
+		ExternalEventsReader reader = ExternalEventsQueue.openReader(
+				new File(args[0]));
+		long nrof = convert(reader, new File(args[1]));
+		System.out.println("Converted " + nrof + " events to " + args[1]);
+	}
+
+	/**
+	 * A growable array of bytes of a column
+	 */
+	private static class Column {
+		private byte[] data = new byte[256];
+		private int size;
+
+		private void ensure(int extra) {
+			if (size + extra > data.length) {
+				byte[] bigger = new byte[Math.max(data.length * 2,
+						size + extra)];
+				System.arraycopy(data, 0, bigger, 0, size);
+				data = bigger;
+			}
+		}
+
+		private void write(byte[] bytes, int len) {
+			ensure(len);
+			System.arraycopy(bytes, 0, data, size, len);
+			size += len;
+		}
+
+		/** Writes an int as an unsigned varint (negative values as 32 bits) */
+		private void writeVarint(int value) {
+			writeVarint(value & 0xFFFFFFFFL);
+		}
+
+		/** Writes a long as an unsigned varint */
+		private void writeVarint(long value) {
+			ensure(10);
+			while ((value & ~0x7FL) != 0) {
+				data[size++] = (byte)((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			data[size++] = (byte)value;
+		}
+
+		private void writeInt(int value) {
+			ensure(4);
+			for (int shift = 24; shift >= 0; shift -= 8) {
+				data[size++] = (byte)(value >>> shift);
+			}
+		}
+
+		private void writeLong(long value) {
+			writeInt((int)(value >>> 32));
+			writeInt((int)value);
+		}
+	}
+}
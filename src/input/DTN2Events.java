@@ -14,6 +14,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -31,6 +34,7 @@ import core.SimClock;
  * @author teemuk
  */
 public class DTN2Events implements EventQueue {
+	private static final long serialVersionUID = 42L;
 	
 	private Queue<ExternalEvent>	events;
 	
@@ -253,4 +257,12 @@ public class DTN2Events implements EventQueue {
 	}
 	//************************************************************************//
 	
+	/**
+	 * DTN2 events can't be saved to a checkpoint
+	 * @throws NotSerializableException always
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		throw new NotSerializableException("DTN2 events can't be saved to a " +
+				"checkpoint");
+	}
 }
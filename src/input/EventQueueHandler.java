@@ -4,6 +4,7 @@
  */
 package input;
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -32,7 +33,8 @@ import core.Settings;
  * is loaded when the name of the class is defined with 
  * <code>CLASS_SETTING</code>. 
  */
-public class EventQueueHandler  {
+public class EventQueueHandler implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Event queue settings main namespace ({@value})*/
 	public static final String SETTINGS_NAMESPACE = "Events";
 	/** number of event queues -setting id ({@value})*/
@@ -48,6 +50,9 @@ public class EventQueueHandler  {
 	public static final String PRELOAD_SETTING = "nrofPreload";
 	/** path of external events file -setting id ({@value})*/
 	public static final String PATH_SETTING = "filePath";
+	/** number of preloaded batches to read ahead in the background
+	 * -setting id ({@value}, see {@link ExternalEventsQueue}) */
+	public static final String PREFETCH_SETTING = "nrofPrefetch";
 	
 	private List<EventQueue> queues;
 	
@@ -65,13 +70,17 @@ public class EventQueueHandler  {
 
 			if (s.contains(PATH_SETTING)) { // external events file
 				int preload = 0;
+				int prefetch = 0;
 				String path = "";
 				if (s.contains(PRELOAD_SETTING)) {
 					preload = s.getInt(PRELOAD_SETTING);
 				}
+				if (s.contains(PREFETCH_SETTING)) {
+					prefetch = s.getInt(PREFETCH_SETTING);
+				}
 				path = s.getSetting(PATH_SETTING);
 
-				queues.add(new ExternalEventsQueue(path, preload));
+				queues.add(new ExternalEventsQueue(path, preload, prefetch));
 			}
 			else if (s.contains(CLASS_SETTING)) { // event generator class
 				String className = CLASS_PACKAGE + "." + 
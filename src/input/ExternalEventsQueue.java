@@ -5,50 +5,97 @@
 package input;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
 
+import core.DTNSim;
 import core.Settings;
+import core.SimError;
 
 /**
  * Queue of external events. This class also takes care of buffering
- * the events and preloading only a proper amount of them.
+ * the events and preloading only a proper amount of them. Optionally the
+ * events are read by a background thread that keeps the next
+ * {@link #PREFETCH_SETTING} batches of preloaded events ready, so the
+ * simulation doesn't wait for the file to be read and parsed when the
+ * current batch runs out.
  */
-public class ExternalEventsQueue implements EventQueue {
+public class ExternalEventsQueue implements PassiveEventQueue {
+	private static final long serialVersionUID = 42L;
 	/** ExternalEvents namespace ({@value})*/
 	public static final String SETTINGS_NAMESPACE = "ExternalEvents";
 	/** number of event to preload -setting id ({@value})*/
 	public static final String PRELOAD_SETTING = "nrofPreload";
 	/** path of external events file -setting id ({@value})*/
 	public static final String PATH_SETTING = "filePath";
+	/** number of batches to read ahead in the background -setting id
+	 * ({@value}). Default = 0 (the events are read when needed). */
+	public static final String PREFETCH_SETTING = "nrofPrefetch";
 	
 	/** default number of preloaded events */
 	public static final int DEFAULT_NROF_PRELOAD = 500;
+
+	/** the background readers that are running */
+	private static List<Prefetcher> prefetchers;
+
+	static {
+		DTNSim.registerForReset(ExternalEventsQueue.class.getCanonicalName());
+		reset();
+	}
 	
 	private File eventsFile;
-	private ExternalEventsReader reader;
+	/** the reader isn't saved to checkpoints; it's re-opened on restore */
+	private transient ExternalEventsReader reader;
+	/** how many events have been read from the reader */
+	private long nrofEventsRead;
 	private int nextEventIndex;
 	private int nrofPreload;
 	private List<ExternalEvent> queue;
 	private boolean allEventsRead = false;
+	private int nrofPrefetch;
+	/** the background reader (if prefetching); re-started on restore */
+	private transient Prefetcher prefetcher;
 	
 	/**
 	 * Creates a new Queue from a file
 	 * @param filePath Path to the file where the events are read from. If
-	 * file ends with extension defined in {@link BinaryEventsReader#BINARY_EXT}
+	 * the file is a columnar events file (see {@link ColumnarEventsWriter}),
+	 * it is read with a {@link ColumnarEventsReader}. If file ends with
+	 * extension defined in {@link BinaryEventsReader#BINARY_EXT}
 	 * the file is assumed to be a binary file.
 	 * @param nrofPreload How many events to preload
 	 * @see BinaryEventsReader#BINARY_EXT
 	 * @see BinaryEventsReader#storeToBinaryFile(String, List)
 	 */
 	public ExternalEventsQueue(String filePath, int nrofPreload) {
+		this(filePath, nrofPreload, 0);
+	}
+
+	/**
+	 * Creates a new Queue from a file
+	 * @param filePath Path to the file where the events are read from (see
+	 * {@link #ExternalEventsQueue(String, int)})
+	 * @param nrofPreload How many events to preload
+	 * @param nrofPrefetch How many batches of preloaded events to read ahead
+	 * in the background (0 = read the events when needed)
+	 */
+	public ExternalEventsQueue(String filePath, int nrofPreload,
+			int nrofPrefetch) {
 		setNrofPreload(nrofPreload);
+		this.nrofPrefetch = nrofPrefetch;
 		init(filePath);
 	}
 	
 	/**
-	 * Create a new Queue based on the given settings: {@link #PRELOAD_SETTING}
-	 * and {@link #PATH_SETTING}. The path setting supports value filling.
+	 * Create a new Queue based on the given settings: {@link #PRELOAD_SETTING},
+	 * {@link #PREFETCH_SETTING} and {@link #PATH_SETTING}. The path setting
+	 * supports value filling.
 	 * @param s The settings
 	 */
 	public ExternalEventsQueue(Settings s) {
@@ -58,6 +105,9 @@ public class ExternalEventsQueue implements EventQueue {
 		else {
 			setNrofPreload(DEFAULT_NROF_PRELOAD);
 		}
+		if (s.contains(PREFETCH_SETTING)) {
+			this.nrofPrefetch = s.getInt(PREFETCH_SETTING);
+		}
         String eeFilePath = s.valueFillString(s.getSetting(PATH_SETTING));
         init(eeFilePath);
     }
@@ -72,20 +122,95 @@ public class ExternalEventsQueue implements EventQueue {
 			nrof = DEFAULT_NROF_PRELOAD;
 		}
 		this.nrofPreload = nrof;
+		if (prefetcher != null) {
+			prefetcher.batchSize = nrof;
+		}
 	}
 	
 	private void init(String eeFilePath) {
 		this.eventsFile = new File(eeFilePath);
-		
-		if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
-			this.reader = new BinaryEventsReader(eventsFile);
+		this.reader = openReader();
+		this.nrofEventsRead = 0;
+		startPrefetching();
+		this.queue = readEvents(nrofPreload);
+		this.nextEventIndex = 0;
+	}
+
+	/**
+	 * Opens a reader for the events file
+	 * @return The reader
+	 */
+	private ExternalEventsReader openReader() {
+		return openReader(eventsFile);
+	}
+
+	/**
+	 * Opens a reader for an events file. Columnar files are read with a
+	 * {@link ColumnarEventsReader}, binary files with a
+	 * {@link BinaryEventsReader} and standard-format text files with a
+	 * {@link StreamingEventsReader}.
+	 * @param eventsFile The file
+	 * @return The reader
+	 */
+	static ExternalEventsReader openReader(File eventsFile) {
+		if (ColumnarEventsReader.isColumnarEeFile(eventsFile)) {
+			return new ColumnarEventsReader(eventsFile);
+		}
+		else if (BinaryEventsReader.isBinaryEeFile(eventsFile)) {
+			return new BinaryEventsReader(eventsFile);
 		}
 		else {
-			this.reader = new StandardEventsReader(eventsFile);
+			return new StreamingEventsReader(eventsFile);
 		}
-		
-		this.queue = readEvents(nrofPreload);
-		this.nextEventIndex = 0;
+	}
+
+	/**
+	 * Restores the queue from a checkpoint. Re-opens the events file and 
+	 * skips the events that had been read before the checkpoint was saved.
+	 */
+	private void readObject(ObjectInputStream in) 
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		if (allEventsRead) {
+			return;
+		}
+
+		this.reader = openReader();
+		if (reader instanceof ColumnarEventsReader) {
+			if (((ColumnarEventsReader)reader).skipEvents(nrofEventsRead) <
+					nrofEventsRead) {
+				throw new IOException("Events file " + eventsFile +
+						" has changed since the checkpoint was saved");
+			}
+			startPrefetching();
+			return;
+		}
+		for (long skipped = 0; skipped < nrofEventsRead; ) {
+			int nrof = (int)Math.min(nrofPreload, nrofEventsRead - skipped);
+			int read = reader.readEvents(nrof).size();
+			if (read == 0) {
+				throw new IOException("Events file " + eventsFile + 
+						" has changed since the checkpoint was saved");
+			}
+			skipped += read;
+		}
+		startPrefetching();
+	}
+
+	/**
+	 * Starts the background reader if prefetching is enabled
+	 */
+	private void startPrefetching() {
+		if (nrofPrefetch < 1) {
+			return;
+		}
+		this.prefetcher = new Prefetcher(this, reader, nrofPrefetch);
+		Thread t = new Thread(prefetcher, "Prefetch " + eventsFile.getName());
+		t.setDaemon(true);
+		synchronized (ExternalEventsQueue.class) {
+			prefetchers.add(prefetcher);
+		}
+		t.start();
 	}
 	
 	/**
@@ -150,14 +275,118 @@ public class ExternalEventsQueue implements EventQueue {
 			return new ArrayList<ExternalEvent>(0);
 		}
 		
-		List<ExternalEvent> events = reader.readEvents(nrof);
+		List<ExternalEvent> events;
+		if (prefetcher != null) {
+			events = prefetcher.take();
+		}
+		else {
+			events = reader.readEvents(nrof);
+		}
+		nrofEventsRead += events.size();
 		
 		if (nrof > 0 && events.size() == 0) {
-			reader.close();
+			if (prefetcher == null) {
+				reader.close();
+			}
 			allEventsRead = true;
 		}
 				
 		return events;
 	}
-	
+
+	/**
+	 * Stops the background readers of the previous run
+	 */
+	public static synchronized void reset() {
+		if (prefetchers != null) {
+			for (Prefetcher p : prefetchers) {
+				p.stopped = true;
+			}
+		}
+		prefetchers = new ArrayList<Prefetcher>();
+	}
+
+	/**
+	 * Background reader of the events. Reads batches of events into a
+	 * bounded queue; when the queue is full, the reader waits until the
+	 * simulation has taken a batch. The reader stops in the end of the file,
+	 * when the simulation is reset or when the events queue is no longer
+	 * used.
+	 */
+	private static class Prefetcher implements Runnable {
+		private ExternalEventsReader reader;
+		private BlockingQueue<List<ExternalEvent>> batches;
+		/** the events queue (not kept alive by the reader thread) */
+		private WeakReference<ExternalEventsQueue> owner;
+		private volatile int batchSize;
+		private volatile boolean stopped;
+		/** the error that stopped the reading */
+		private volatile Throwable error;
+
+		private Prefetcher(ExternalEventsQueue owner,
+				ExternalEventsReader reader, int nrofBatches) {
+			this.reader = reader;
+			this.batches = new ArrayBlockingQueue<List<ExternalEvent>>(
+					nrofBatches);
+			this.owner = new WeakReference<ExternalEventsQueue>(owner);
+			this.batchSize = owner.nrofPreload;
+		}
+
+		public void run() {
+			try {
+				List<ExternalEvent> batch;
+				do {
+					batch = reader.readEvents(batchSize);
+				} while (put(batch) && batch.size() > 0);
+			} catch (Throwable t) {
+				error = t;
+				put(new ArrayList<ExternalEvent>(0));
+			} finally {
+				reader.close();
+				synchronized (ExternalEventsQueue.class) {
+					prefetchers.remove(this);
+				}
+			}
+		}
+
+		/**
+		 * Puts a batch to the queue, waiting while the queue is full
+		 * @param batch The batch
+		 * @return False if the reader was stopped before the batch was put
+		 */
+		private boolean put(List<ExternalEvent> batch) {
+			try {
+				while (!batches.offer(batch, 1, TimeUnit.SECONDS)) {
+					if (stopped || owner.get() == null) {
+						return false;
+					}
+				}
+				return true;
+			} catch (InterruptedException e) {
+				return false;
+			}
+		}
+
+		/**
+		 * Takes the next batch, waiting until it has been read
+		 * @return The batch (an empty batch in the end of the file)
+		 */
+		private List<ExternalEvent> take() {
+			List<ExternalEvent> batch;
+			try {
+				batch = batches.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new SimError(e);
+			}
+			if (batch.isEmpty() && error != null) {
+				if (error instanceof Error) {
+					throw (Error)error;
+				}
+				throw new SimError("Can't read external events", 
+						(Exception)error);
+			}
+			return batch;
+		}
+	}
 }
@@ -211,5 +211,12 @@ public class ExternalMovementReader {
 	public double getMinY() {
 		return minY;
 	}
+
+	/**
+	 * Closes the input file
+	 */
+	public void close() {
+		scanner.close();
+	}
 	
 }
@@ -0,0 +1,149 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Event queue that merges the events of other event queues in time order.
+ * If more than one queue has an event at the same time, the event of the
+ * queue that is first in the list is returned first.
+ * <P>
+ * The {@link PassiveEventQueue}s are kept in a binary heap ordered by the
+ * (cached) times of their next events, so selecting the next event takes
+ * logarithmic time in the number of passive queues. Other queues can get 
+ * new events at any time, so their next event's time is asked every time
+ * the next event is selected.
+ * </P>
+ */
+public class MergedEventQueue implements EventQueue {
+	private static final long serialVersionUID = 42L;
+	/** all the merged queues (the index defines the order of ties) */
+	private EventQueue[] queues;
+	/** indexes of the queues that are asked every time */
+	private int[] volatileQueues;
+	/** indexes of the passive queues in a binary heap */
+	private int[] heap;
+	/** cached next event times of the queues (indexed by queue index) */
+	private double[] times;
+	
+	/**
+	 * Constructor.
+	 * @param queues The queues to merge. If more than one queue has an 
+	 * event at the same time, the one that is first in the list goes first.
+	 */
+	public MergedEventQueue(List<? extends EventQueue> queues) {
+		this.queues = queues.toArray(new EventQueue[queues.size()]);
+		this.times = new double[this.queues.length];
+		
+		List<Integer> passive = new ArrayList<Integer>();
+		List<Integer> other = new ArrayList<Integer>();
+		for (int i=0; i<this.queues.length; i++) {
+			if (this.queues[i] instanceof PassiveEventQueue) {
+				passive.add(i);
+			} else {
+				other.add(i);
+			}
+		}
+		
+		this.volatileQueues = new int[other.size()];
+		for (int i=0; i<volatileQueues.length; i++) {
+			volatileQueues[i] = other.get(i);
+		}
+		
+		this.heap = new int[passive.size()];
+		for (int i=0; i<heap.length; i++) {
+			heap[i] = passive.get(i);
+			times[heap[i]] = this.queues[heap[i]].nextEventsTime();
+		}
+		for (int i=heap.length/2 - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+	}
+	
+	/**
+	 * Returns the next event of the queue that has the earliest event or
+	 * ExternalEvent with time of Double.MAX_VALUE if there are no events left
+	 * @return The next event
+	 */
+	public ExternalEvent nextEvent() {
+		int next = select();
+		if (next < 0) {
+			return new ExternalEvent(Double.MAX_VALUE);
+		}
+		
+		ExternalEvent ee = queues[next].nextEvent();
+		if (heap.length > 0 && heap[0] == next) {
+			/* passive queue's next event changes only here */
+			times[next] = queues[next].nextEventsTime();
+			siftDown(0);
+		}
+		return ee;
+	}
+
+	/**
+	 * Returns the earliest next event's time of all the queues or 
+	 * Double.MAX_VALUE if there are no events left
+	 * @return Next event's time
+	 */
+	public double nextEventsTime() {
+		int next = select();
+		return next < 0 ? Double.MAX_VALUE : times[next];
+	}
+	
+	/**
+	 * Selects the queue that has the next event
+	 * @return Index of the selected queue or -1 if there are no queues
+	 */
+	private int select() {
+		int next = heap.length > 0 ? heap[0] : -1;
+		for (int i : volatileQueues) {
+			times[i] = queues[i].nextEventsTime();
+			if (next < 0 || isBefore(i, next)) {
+				next = i;
+			}
+		}
+		
+		return next;
+	}
+
+	/**
+	 * Returns true if the next event of queue a goes before the next event
+	 * of queue b
+	 * @param a Index of the first queue
+	 * @param b Index of the second queue
+	 * @return True if a's next event is earlier or at the same time and a
+	 * is earlier in the list
+	 */
+	private boolean isBefore(int a, int b) {
+		return times[a] < times[b] || (times[a] == times[b] && a < b);
+	}
+	
+	/**
+	 * Moves the queue at the given heap position down until the heap 
+	 * property holds again
+	 * @param pos The position in the heap
+	 */
+	private void siftDown(int pos) {
+		int q = heap[pos];
+		while (true) {
+			int child = 2 * pos + 1;
+			if (child >= heap.length) {
+				break;
+			}
+			if (child + 1 < heap.length && 
+					isBefore(heap[child + 1], heap[child])) {
+				child++;
+			}
+			if (!isBefore(heap[child], q)) {
+				break;
+			}
+			heap[pos] = heap[child];
+			pos = child;
+		}
+		heap[pos] = q;
+	}
+}
@@ -32,6 +32,22 @@ public class MessageCreateEvent extends MessageEvent {
 		this.responseSize = responseSize;
 	}
 
+	/**
+	 * Returns the size of the message
+	 * @return The size of the message
+	 */
+	public int getSize() {
+		return this.size;
+	}
+
+	/**
+	 * Returns the size of the requested response message
+	 * @return The size of the response or 0 if no response is requested
+	 */
+	public int getResponseSize() {
+		return this.responseSize;
+	}
+
 	
 	/**
 	 * Creates the message this event represents. 
@@ -30,6 +30,14 @@ public class MessageDeleteEvent extends MessageEvent {
 		super(host, host, id, time);
 		this.drop = drop;
 	}
+
+	/**
+	 * Returns true if the delete is caused by a drop
+	 * @return True for a drop, false for a "normal" remove
+	 */
+	public boolean isDrop() {
+		return this.drop;
+	}
 	
 	/**
 	 * Deletes the message
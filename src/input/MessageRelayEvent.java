@@ -37,6 +37,14 @@ public class MessageRelayEvent extends MessageEvent {
 		super(from, to, id, time);
 		this.stage = stage;
 	}
+
+	/**
+	 * Returns the stage of the event
+	 * @return The stage (SENDING, TRANSFERRED, or ABORTED)
+	 */
+	public int getStage() {
+		return this.stage;
+	}
 	
 	/**
 	 * Relays the message
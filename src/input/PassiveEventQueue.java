@@ -0,0 +1,16 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package input;
+
+/**
+ * Marker interface for event queues whose next event's time changes only 
+ * when {@link #nextEvent()} is called. The time of such a queue's next
+ * event can be cached between the calls (see {@link MergedEventQueue}).
+ * Queues whose events can be added by other objects (like the scheduled
+ * updates) must not implement this interface.
+ */
+public interface PassiveEventQueue extends EventQueue {
+
+}
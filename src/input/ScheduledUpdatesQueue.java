@@ -4,25 +4,28 @@
  */
 package input;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Event queue where simulation objects can request an update to happen
  * at the specified simulation time. Multiple updates at the same time 
- * are merged to a single update.
+ * are merged to a single update. The update times are kept in a binary
+ * heap so adding and taking an update take logarithmic time.
  */
 public class ScheduledUpdatesQueue implements EventQueue {
-	/** Time of the event (simulated seconds) */
-	private ExternalEvent nextEvent;
-	private List<ExternalEvent> updates;
+	private static final long serialVersionUID = 42L;
+	/** how many update times there is room for initially */
+	private static final int INITIAL_CAPACITY = 16;
+	/** the update times in a binary min-heap (may contain duplicates) */
+	private double[] heap;
+	private int size;
 	
 	/**
 	 * Constructor. Creates an empty update queue.
 	 */
 	public ScheduledUpdatesQueue(){
-		this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
-		this.updates = new ArrayList<ExternalEvent>();
+		this.heap = new double[INITIAL_CAPACITY];
+		this.size = 0;
 	}
 	
 	/**
@@ -31,16 +34,15 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event
 	 */
 	public ExternalEvent nextEvent() {
-		ExternalEvent event = this.nextEvent;
-		
-		if (this.updates.size() == 0) {
-			this.nextEvent = new ExternalEvent(Double.MAX_VALUE);
+		if (this.size == 0) {
+			return new ExternalEvent(Double.MAX_VALUE);
 		}
-		else {
-			this.nextEvent = this.updates.remove(0);
+
+		double time = this.heap[0];
+		while (this.size > 0 && this.heap[0] == time) {
+			removeFirst(); // merge the updates with the same time
 		}
-		
-		return event;
+		return new ExternalEvent(time);
 	}
 	
 	/**
@@ -49,7 +51,7 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @return the next scheduled event's time
 	 */
 	public double nextEventsTime() {
-		return this.nextEvent.getTime();
+		return this.size == 0 ? Double.MAX_VALUE : this.heap[0];
 	}
 
 	/**
@@ -57,49 +59,69 @@ public class ScheduledUpdatesQueue implements EventQueue {
 	 * @param simTime The time when the update should happen
 	 */
 	public void addUpdate(double simTime) {
-		ExternalEvent ee = new ExternalEvent(simTime);
-
-		if (ee.compareTo(nextEvent) == 0) { // this event is already next
-			return;
+		if (this.size > 0 && this.heap[0] == simTime) {
+			return; // this update is already next
 		}
-		else if (this.nextEvent.getTime() > simTime) { // new nextEvent
-			putToQueue(this.nextEvent); // put the old nextEvent back to q
-			this.nextEvent = ee;
+		if (this.size == this.heap.length) {
+			double[] grown = new double[this.size * 2];
+			System.arraycopy(this.heap, 0, grown, 0, this.size);
+			this.heap = grown;
 		}
-		else { // given event happens later..
-			putToQueue(ee);
+
+		/* sift up from the end */
+		int i = this.size++;
+		while (i > 0) {
+			int parent = (i - 1) / 2;
+			if (this.heap[parent] <= simTime) {
+				break;
+			}
+			this.heap[i] = this.heap[parent];
+			i = parent;
 		}
+		this.heap[i] = simTime;
 	}
 	
 	/**
-	 * Puts a event to the queue in the right place
-	 * @param ee The event to put to the queue
+	 * Removes the first (earliest) update time from the heap
 	 */
-	private void putToQueue(ExternalEvent ee) {
-		double eeTime = ee.getTime();
-		
-		for (int i=0, n=this.updates.size(); i<n; i++) {
-			double time = updates.get(i).getTime();
-			if (time == eeTime) {
-				return; // update with the given time exists -> no need for new
+	private void removeFirst() {
+		double last = this.heap[--this.size];
+		if (this.size == 0) {
+			return;
+		}
+
+		/* sift the last one down from the top */
+		int i = 0;
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= this.size) {
+				break;
+			}
+			if (child + 1 < this.size && 
+					this.heap[child + 1] < this.heap[child]) {
+				child++;
 			}
-			else if (eeTime < time) {
-				this.updates.add(i, ee);
-				return;
+			if (last <= this.heap[child]) {
+				break;
 			}
+			this.heap[i] = this.heap[child];
+			i = child;
 		}
-		
-		/* all existing updates are earlier -> add to the end of the list */
-		this.updates.add(ee);  
+		this.heap[i] = last;
 	}
 	
 	public String toString() {
-		String times = "updates @ " + this.nextEvent.getTime();
-		
-		for (ExternalEvent ee : this.updates) {
-			times += ", " + ee.getTime();
+		double[] times = new double[this.size];
+		System.arraycopy(this.heap, 0, times, 0, this.size);
+		Arrays.sort(times);
+
+		String str = "updates @ " + nextEventsTime();
+		for (int i=1; i<times.length; i++) {
+			if (times[i] != times[i-1]) {
+				str += ", " + times[i];
+			}
 		}
 		
-		return times;
+		return str;
 	}
 }
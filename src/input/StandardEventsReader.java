@@ -38,6 +38,9 @@ import core.SimError;
  * message ID for referring to all messages the node has in message buffer 
  * (i.e., to delete all messages).
  * </P>
+ * <P> The {@link ExternalEventsQueue} reads the standard-format files with
+ * the faster {@link StreamingEventsReader}.
+ * </P>
  */
 public class StandardEventsReader implements ExternalEventsReader {
 	/** Identifier of message creation event ({@value}) */
@@ -0,0 +1,553 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package input;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import core.SimError;
+
+/**
+ * <P>External events reader for the standard-format events (see
+ * {@link StandardEventsReader} for the syntax). Reads the file through a
+ * large buffer of a file channel and tokenizes the lines directly from the
+ * bytes: times, sizes and host addresses are parsed without creating
+ * strings, and the message identifiers are shared by the events that refer
+ * to the same message, so the only objects created per line are the event
+ * itself and the identifiers of messages not seen recently.</P>
+ *
+ * <P>The events read are the same as those read by the
+ * {@link StandardEventsReader}, except that a line whose first
+ * non-whitespace character is '#' is also skipped as a comment.</P>
+ */
+public class StreamingEventsReader implements ExternalEventsReader {
+	/** default initial size of the read buffer (grows for longer lines) */
+	public static final int DEF_BUFFER_SIZE = 1024 * 1024;
+	/** number of slots in the message identifier cache (power of two) */
+	private static final int ID_CACHE_SIZE = 4096;
+	/** max number of significant digits in a time parsed exactly */
+	private static final int MAX_EXACT_DIGITS = 15;
+	/** exactly representable powers of ten */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+	private FileChannel channel;
+	private byte[] buf;
+	private ByteBuffer byteBuffer;
+	/** number of valid bytes in the buffer */
+	private int limit;
+	/** start of the next line in the buffer */
+	private int next;
+	/** true if the file has been read to the end */
+	private boolean eof;
+	/** true if the previous line ended with CR (and a LF may follow) */
+	private boolean skipLf;
+	/** number of the current line in the file */
+	private long lineNumber;
+
+	/** start and end (exclusive) of the current line */
+	private int lineStart;
+	private int lineEnd;
+	/** parse position in the current line */
+	private int pos;
+	/** start and end (exclusive) of the latest token */
+	private int tokStart;
+	private int tokEnd;
+
+	/** recently seen message (and interface) identifiers by their hash */
+	private String[] idCache;
+
+	/**
+	 * Constructor.
+	 * @param eventsFile The file where the events are read
+	 */
+	public StreamingEventsReader(File eventsFile) {
+		this(eventsFile, DEF_BUFFER_SIZE);
+	}
+
+	/**
+	 * Constructor.
+	 * @param eventsFile The file where the events are read
+	 * @param bufferSize Initial size of the read buffer (bytes)
+	 */
+	public StreamingEventsReader(File eventsFile, int bufferSize) {
+		try {
+			this.channel = new FileInputStream(eventsFile).getChannel();
+		} catch (IOException e) {
+			throw new SimError(e.getMessage(), e);
+		}
+		this.buf = new byte[Math.max(bufferSize, 1)];
+		this.byteBuffer = ByteBuffer.wrap(buf);
+		this.idCache = new String[ID_CACHE_SIZE];
+	}
+
+	public List<ExternalEvent> readEvents(int nrof) {
+		ArrayList<ExternalEvent> events = new ArrayList<ExternalEvent>(nrof);
+
+		while (events.size() < nrof && nextLine()) {
+			if (skipSpace() || buf[pos] == '#') {
+				continue; // skip empty and comment lines
+			}
+			try {
+				events.add(parseEvent());
+			} catch (IllegalArgumentException e) {
+				throw new SimError("Can't parse external event on line " +
+						lineNumber + " from '" + lineString() + "'", e);
+			}
+		}
+
+		return events;
+	}
+
+	/**
+	 * Parses an event from the current line
+	 * @return The event
+	 * @throws IllegalArgumentException if the line is not a valid event
+	 */
+	private ExternalEvent parseEvent() {
+		double time = parseTime();
+		int actionStart = nextToken();
+		int actionLen = tokEnd - actionStart;
+		byte a0 = buf[actionStart];
+		byte a1 = actionLen > 1 ? buf[actionStart + 1] : 0;
+
+		if (actionLen == 2 && a0 == 'D' && a1 == 'R') {
+			String msgId = parseId();
+			return new MessageDeleteEvent(parseHostAddress(), msgId, time,
+					true);
+		}
+		if (actionLen == 1 && a0 == 'R') {
+			String msgId = parseId();
+			return new MessageDeleteEvent(parseHostAddress(), msgId, time,
+					false);
+		}
+		if (isToken(actionStart, StandardEventsReader.CONNECTION, false)) {
+			return parseConnection(time);
+		}
+
+		int stage;
+		if (actionLen == 1 && a0 == 'C') {
+			stage = 0; // create
+		}
+		else if (actionLen == 1 && a0 == 'S') {
+			stage = MessageRelayEvent.SENDING;
+		}
+		else if (actionLen == 2 && a0 == 'D' && a1 == 'E') {
+			stage = MessageRelayEvent.TRANSFERRED;
+		}
+		else if (actionLen == 1 && a0 == 'A') {
+			stage = MessageRelayEvent.ABORTED;
+		}
+		else {
+			throw new IllegalArgumentException("Unknown action '" + tokenString() +
+					"' in external events");
+		}
+
+		String msgId = parseId();
+		int hostAddr = parseHostAddress();
+		int host2Addr = parseHostAddress();
+
+		if (stage != 0) {
+			return new MessageRelayEvent(hostAddr, host2Addr, msgId, time,
+					stage);
+		}
+
+		int size = parseInt(nextToken());
+		int respSize = 0;
+		if (!skipSpace()) {
+			int start = nextToken();
+			if (isInt(start)) {
+				respSize = parseInt(start);
+			}
+		}
+		return new MessageCreateEvent(hostAddr, host2Addr, msgId, size,
+				respSize, time);
+	}
+
+	/**
+	 * Parses the rest of a connection event from the current line
+	 * @param time Time of the event
+	 * @return The event
+	 */
+	private ConnectionEvent parseConnection(double time) {
+		int hostAddr = parseHostAddress();
+		int host2Addr = parseHostAddress();
+		boolean isUp;
+
+		int start = nextToken();
+		if (isToken(start, StandardEventsReader.CONNECTION_UP, true)) {
+			isUp = true;
+		}
+		else if (isToken(start, StandardEventsReader.CONNECTION_DOWN, true)) {
+			isUp = false;
+		}
+		else {
+			throw new IllegalArgumentException("Unknown up/down value '" + tokenString() +
+					"'");
+		}
+
+		String interfaceId = null;
+		if (!skipSpace()) {
+			interfaceId = parseId();
+		}
+
+		return new ConnectionEvent(hostAddr, host2Addr, interfaceId, isUp,
+				time);
+	}
+
+	/**
+	 * Reads the next line into the buffer
+	 * @return True if a line was read, false if there are no more lines
+	 */
+	private boolean nextLine() {
+		int i = next;
+		lineStart = next;
+
+		while (true) {
+			while (i < limit) {
+				byte b = buf[i];
+				if (b == '\n' && skipLf && i == lineStart) {
+					lineStart = ++i; // LF of a CR LF pair
+					skipLf = false;
+					continue;
+				}
+				skipLf = false;
+				if (b == '\n' || b == '\r') {
+					skipLf = (b == '\r');
+					return startLine(i, i + 1);
+				}
+				i++;
+			}
+
+			if (eof) {
+				if (lineStart < limit) {
+					return startLine(limit, limit); // no line end at the end
+				}
+				return false;
+			}
+
+			int offset = i - lineStart;
+			i = fill() + offset;
+		}
+	}
+
+	/**
+	 * Sets the bounds of the current line
+	 * @param end End of the line (exclusive)
+	 * @param nextStart Start of the next line
+	 * @return True
+	 */
+	private boolean startLine(int end, int nextStart) {
+		lineEnd = end;
+		next = nextStart;
+		pos = lineStart;
+		lineNumber++;
+		return true;
+	}
+
+	/**
+	 * Moves the current line to the beginning of the buffer (growing the
+	 * buffer if the line doesn't fit in it) and reads more bytes after it
+	 * @return The new start of the current line
+	 */
+	private int fill() {
+		int len = limit - lineStart;
+		if (lineStart == 0 && limit == buf.length) {
+			byte[] bigger = new byte[buf.length * 2];
+			System.arraycopy(buf, 0, bigger, 0, len);
+			buf = bigger;
+			byteBuffer = ByteBuffer.wrap(buf);
+		}
+		else {
+			System.arraycopy(buf, lineStart, buf, 0, len);
+		}
+		lineStart = 0;
+		limit = len;
+
+		try {
+			byteBuffer.clear();
+			byteBuffer.position(limit);
+			int read = channel.read(byteBuffer);
+			if (read < 0) {
+				eof = true;
+			}
+			else {
+				limit += read;
+			}
+		} catch (IOException e) {
+			throw new SimError(e.getMessage(), e);
+		}
+
+		return lineStart;
+	}
+
+	/**
+	 * Skips whitespace in the current line
+	 * @return True if the end of the line was reached
+	 */
+	private boolean skipSpace() {
+		while (pos < lineEnd && buf[pos] <= ' ' && buf[pos] >= 0) {
+			pos++;
+		}
+		return pos == lineEnd;
+	}
+
+	/**
+	 * Moves to the next token of the current line
+	 * @return Start of the token
+	 * @throws IllegalArgumentException if there are no more tokens in the
+	 * line
+	 */
+	private int nextToken() {
+		if (skipSpace()) {
+			throw new IllegalArgumentException("Missing field");
+		}
+		tokStart = pos;
+		while (pos < lineEnd && (buf[pos] > ' ' || buf[pos] < 0)) {
+			pos++;
+		}
+		tokEnd = pos;
+		return tokStart;
+	}
+
+	/**
+	 * Returns true if the latest token is the given (ASCII) string
+	 * @param start Start of the token
+	 * @param s The string
+	 * @param ignoreCase If true, the case is ignored
+	 * @return True if the token matches
+	 */
+	private boolean isToken(int start, String s, boolean ignoreCase) {
+		if (tokEnd - start != s.length()) {
+			return false;
+		}
+		for (int i=0, n=s.length(); i<n; i++) {
+			int c = buf[start + i];
+			int d = s.charAt(i);
+			if (c != d && (!ignoreCase || (c | 0x20) != (d | 0x20) ||
+					(d | 0x20) < 'a' || (d | 0x20) > 'z')) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Parses the next token as a time
+	 * @return The time
+	 */
+	private double parseTime() {
+		int start = nextToken();
+		int i = start;
+		boolean negative = false;
+		long mantissa = 0;
+		int digits = 0;
+		int exp = 0;
+
+		if (buf[i] == '-' || buf[i] == '+') {
+			negative = (buf[i] == '-');
+			i++;
+		}
+		int intStart = i;
+		for (; i < tokEnd && isDigit(buf[i]); i++) {
+			if (mantissa != 0 || buf[i] != '0') {
+				mantissa = mantissa * 10 + (buf[i] - '0');
+				digits++;
+			}
+			if (digits > MAX_EXACT_DIGITS) {
+				return parseTimeSlowly();
+			}
+		}
+		boolean hasDigits = i > intStart;
+		if (i < tokEnd && buf[i] == '.') {
+			int fracStart = ++i;
+			for (; i < tokEnd && isDigit(buf[i]); i++) {
+				if (mantissa != 0 || buf[i] != '0') {
+					mantissa = mantissa * 10 + (buf[i] - '0');
+					digits++;
+				}
+				exp--;
+				if (digits > MAX_EXACT_DIGITS) {
+					return parseTimeSlowly();
+				}
+			}
+			hasDigits |= i > fracStart;
+		}
+		if (!hasDigits || i < tokEnd || -exp >= POWERS_OF_TEN.length) {
+			return parseTimeSlowly(); // exponent, NaN, etc.
+		}
+
+		/* both the mantissa and the power of ten are exact doubles, so the
+		 * division is rounded correctly (like Double.parseDouble) */
+		double value = mantissa / POWERS_OF_TEN[-exp];
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses the time token with Double.parseDouble
+	 * @return The time
+	 */
+	private double parseTimeSlowly() {
+		return Double.parseDouble(tokenString());
+	}
+
+	/**
+	 * Returns true if the token is an integer
+	 * @param start Start of the token
+	 * @return True if the token can be parsed with {@link #parseInt(int)}
+	 */
+	private boolean isInt(int start) {
+		try {
+			parseInt(start);
+			return true;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Parses the token as an int
+	 * @param start Start of the token
+	 * @return The value
+	 * @throws NumberFormatException if the token is not an int
+	 */
+	private int parseInt(int start) {
+		int i = start;
+		boolean negative = false;
+		if (buf[i] == '-' || buf[i] == '+') {
+			negative = (buf[i] == '-');
+			i++;
+		}
+		if (i == tokEnd) {
+			throw new NumberFormatException("Invalid integer '" +
+					tokenString() + "'");
+		}
+		long value = 0;
+		for (; i < tokEnd; i++) {
+			if (!isDigit(buf[i])) {
+				throw new NumberFormatException("Invalid integer '" +
+						tokenString() + "'");
+			}
+			value = value * 10 + (buf[i] - '0');
+			if (value > (long)Integer.MAX_VALUE + 1) {
+				throw new NumberFormatException("Integer out of range '" +
+						tokenString() + "'");
+			}
+		}
+		if (negative) {
+			value = -value;
+		}
+		if (value > Integer.MAX_VALUE) {
+			throw new NumberFormatException("Integer out of range '" +
+					tokenString() + "'");
+		}
+		return (int)value;
+	}
+
+	/**
+	 * Parses a host address from the next token (the numeric part after
+	 * optional non-numeric part).
+	 * @return The address
+	 * @throws IllegalArgumentException if no address could be parsed from
+	 * the token
+	 */
+	private int parseHostAddress() {
+		int start = nextToken();
+		int i = tokEnd;
+		while (i > start && isDigit(buf[i - 1])) {
+			i--;
+		}
+		int digitsStart = i;
+		for (i = start; i < digitsStart; i++) {
+			if (isDigit(buf[i])) {
+				break;
+			}
+		}
+		if (digitsStart == tokEnd || i < digitsStart) {
+			throw new IllegalArgumentException("Invalid host ID '" + tokenString() + "'");
+		}
+
+		long address = 0;
+		for (i = digitsStart; i < tokEnd; i++) {
+			address = address * 10 + (buf[i] - '0');
+			if (address > Integer.MAX_VALUE) {
+				throw new NumberFormatException("Invalid host address '" +
+						tokenString() + "'");
+			}
+		}
+		return (int)address;
+	}
+
+	/**
+	 * Returns the next token as an identifier. The same string object is
+	 * returned for the same identifier as long as it stays in the cache.
+	 * @return The identifier
+	 */
+	private String parseId() {
+		int start = nextToken();
+		int len = tokEnd - start;
+		int hash = 0;
+		for (int i = start; i < tokEnd; i++) {
+			if (buf[i] < 0) {
+				return tokenString(); // not ASCII, don't cache
+			}
+			hash = 31 * hash + buf[i];
+		}
+
+		int slot = (hash ^ (hash >>> 16)) & (ID_CACHE_SIZE - 1);
+		String cached = idCache[slot];
+		if (cached != null && cached.length() == len) {
+			int i = 0;
+			while (i < len && cached.charAt(i) == buf[start + i]) {
+				i++;
+			}
+			if (i == len) {
+				return cached;
+			}
+		}
+
+		String id = tokenString();
+		idCache[slot] = id;
+		return id;
+	}
+
+	/**
+	 * Returns the latest token as a string
+	 * @return The token
+	 */
+	private String tokenString() {
+		return new String(buf, tokStart, tokEnd - tokStart,
+				StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the current line as a string
+	 * @return The line
+	 */
+	private String lineString() {
+		return new String(buf, lineStart, lineEnd - lineStart,
+				StandardCharsets.UTF_8);
+	}
+
+	private static boolean isDigit(byte b) {
+		return b >= '0' && b <= '9';
+	}
+
+	public void close() {
+		try {
+			this.channel.close();
+		} catch (IOException e) {
+			throw new SimError(e.getMessage(), e);
+		}
+	}
+
+}
@@ -4,9 +4,15 @@
  */
 package interfaces;
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectInputValidation;
+import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 
 import movement.MovementModel;
 
@@ -38,15 +44,28 @@ import core.Settings;
  * from zero to conserve memory. 
  */
 public class ConnectivityGrid extends ConnectivityOptimizer {
-	private GridCell[][] cells;
-	private HashMap<NetworkInterface,GridCell> ginterfaces;
+	private static final long serialVersionUID = 42L;
+	/** how many interface slots are reserved initially */
+	private static final int INITIAL_SLOT_COUNT = 64;
+	/** the cells in row-major order (incl. the empty border cells) */
+	private transient GridCell[] cells;
+	/** the cell of each interface, indexed by interface address */
+	private transient GridCell[] slots;
+	/** all the interfaces in this grid (in the order they were added) */
+	private ArrayList<NetworkInterface> members;
 	private int cellSize;
 	private int rows;
 	private int cols;
+	/** length of a row in the cell array */
+	private int stride;
+	/** number of the latest near pair sweep */
+	private transient int pairSweep;
 	private static int worldSizeX;
 	private static int worldSizeY;
 
 	static HashMap<Integer,ConnectivityGrid> gridobjects;
+	/** state of the ongoing concurrent update sweep (or null if none) */
+	private static HashMap<NetworkInterface, SweepEntry> sweep;
 
 	static {
 		DTNSim.registerForReset(ConnectivityGrid.class.getCanonicalName());
@@ -55,6 +74,7 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	
 	public static void reset() {
 		gridobjects = new HashMap<Integer,ConnectivityGrid>();
+		sweep = null;
 
 		Settings s = new Settings(MovementModel.MOVEMENT_MODEL_NS);
 		int [] worldSize = s.getCsvInts(MovementModel.WORLD_SIZE,2);
@@ -72,15 +92,15 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		this.rows = worldSizeY/cellSize + 1;
 		this.cols = worldSizeX/cellSize + 1;
 		// leave empty cells on both sides to make neighbor search easier 
-		this.cells = new GridCell[rows+2][cols+2];
+		this.stride = cols+2;
+		this.cells = new GridCell[(rows+2) * stride];
 		this.cellSize = cellSize;
 
-		for (int i=0; i<rows+2; i++) {
-			for (int j=0; j<cols+2; j++) {
-				this.cells[i][j] = new GridCell();
-			}
+		for (int i=0; i<cells.length; i++) {
+			this.cells[i] = new GridCell(i);
 		}
-		ginterfaces = new HashMap<NetworkInterface,GridCell>();
+		this.slots = new GridCell[INITIAL_SLOT_COUNT];
+		this.members = new ArrayList<NetworkInterface>();
 	}
 
 	/**
@@ -109,7 +129,8 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	public void addInterface(NetworkInterface ni) {
 		GridCell c = cellFromCoord(ni.getLocation());
 		c.addInterface(ni);
-		ginterfaces.put(ni,c);
+		setCell(ni, c);
+		members.add(ni);
 	}
 
 	/** 
@@ -117,11 +138,38 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to be removed
 	 */
 	public void removeInterface(NetworkInterface ni) {
-		GridCell c = ginterfaces.get(ni);
+		GridCell c = cellOf(ni);
 		if (c != null) {
 			c.removeInterface(ni);
+			setCell(ni, null);
+			members.remove(ni);
 		}
-		ginterfaces.remove(ni);
+	}
+
+	/**
+	 * Returns the cell where an interface is in this grid
+	 * @param ni The interface
+	 * @return The cell of the interface or null if the interface is not in
+	 * this grid
+	 */
+	private GridCell cellOf(NetworkInterface ni) {
+		int slot = ni.getAddress();
+		return slot < slots.length ? slots[slot] : null;
+	}
+
+	/**
+	 * Sets the cell of an interface (growing the slot array if needed)
+	 * @param ni The interface
+	 * @param c The new cell of the interface (or null to clear it)
+	 */
+	private void setCell(NetworkInterface ni, GridCell c) {
+		int slot = ni.getAddress();
+		if (slot >= slots.length) {
+			GridCell[] grown = new GridCell[Math.max(slot+1, slots.length*2)];
+			System.arraycopy(slots, 0, grown, 0, slots.length);
+			slots = grown;
+		}
+		slots[slot] = c;
 	}
 
 	/**
@@ -139,40 +187,28 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 * @param ni The interface to update
 	 */
 	public void updateLocation(NetworkInterface ni) {
-		GridCell oldCell = (GridCell)ginterfaces.get(ni);
+		GridCell oldCell = cellOf(ni);
 		GridCell newCell = cellFromCoord(ni.getLocation());
 
 		if (newCell != oldCell) {
 			oldCell.moveInterface(ni, newCell);
-			ginterfaces.put(ni,newCell);
+			setCell(ni, newCell);
 		}
 	}
 
 	/**
-	 * Finds all neighboring cells and the cell itself based on the coordinates
+	 * Returns the index of the upper left neighbor cell of the cell having
+	 * the specific coordinates. The 3x3 neighborhood of the cell starts
+	 * from that index and continues <CODE>stride</CODE> cells apart row by
+	 * row.
 	 * @param c The coordinates
-	 * @return Array of neighboring cells 
+	 * @return Index of the first neighboring cell in the cell array
 	 */
-	private GridCell[] getNeighborCellsByCoord(Coord c) {
+	private int firstNeighborIndex(Coord c) {
 		// +1 due empty cells on both sides of the matrix
 		int row = (int)(c.getY()/cellSize) + 1;
 		int col = (int)(c.getX()/cellSize) + 1;
-		return getNeighborCells(row,col);
-	}
-
-	/**
-	 * Returns an array of Cells that contains the neighbors of a certain
-	 * cell and the cell itself.
-	 * @param row Row index of the cell
-	 * @param col Column index of the cell
-	 * @return Array of neighboring Cells
-	 */
-	private GridCell[] getNeighborCells(int row, int col) {
-		return new GridCell[] {
-			cells[row-1][col-1],cells[row-1][col],cells[row-1][col+1],//1st row
-			cells[row][col-1],cells[row][col],cells[row][col+1],//2nd row
-			cells[row+1][col-1],cells[row+1][col],cells[row+1][col+1]//3rd row
-		};
+		return (row-1) * stride + (col-1);
 	}
 
 	/**
@@ -188,14 +224,14 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		assert row > 0 && row <= rows && col > 0 && col <= cols : "Location " + 
 		c + " is out of world's bounds";
 		
-		return this.cells[row][col];
+		return this.cells[row * stride + col];
 	}
 
 	/**
 	 * Returns all interfaces that use the same technology and channel
 	 */
 	public Collection<NetworkInterface> getAllInterfaces() {
-		return (Collection<NetworkInterface>)ginterfaces.keySet();
+		return Collections.unmodifiableList(members);
 	}
 
 	/**
@@ -204,20 +240,223 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	 */
 	public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface netinterf) {
+		if (sweep != null) {
+			SweepEntry e = sweep.get(netinterf);
+			if (e != null && e.near != null) {
+				List<NetworkInterface> precomputed = e.near;
+				e.near = null; // only the first query of the sweep is known
+				return precomputed;
+			}
+		}
+
 		ArrayList<NetworkInterface> ni = new ArrayList<NetworkInterface>();
-		ni.clear();
-
-		GridCell loc = (GridCell)ginterfaces.get(netinterf);
-		if (loc != null) {	
-			GridCell[] neighbors = 
-				getNeighborCellsByCoord(netinterf.getLocation());
-			for (int i=0; i < neighbors.length; i++) {
-				ni.addAll(neighbors[i].getInterfaces());
+
+		if (cellOf(netinterf) != null) {	
+			int first = firstNeighborIndex(netinterf.getLocation());
+			for (int r=0; r < 3; r++) {
+				for (int i=first + r*stride, end=i+3; i < end; i++) {
+					cells[i].addInterfacesTo(ni);
+				}
 			}
 		}
 		return ni;
 	}
 
+	/**
+	 * Calls the visitor for all interfaces using the same technology and 
+	 * channel that are in neighboring cells. Unlike 
+	 * {@link #getNearInterfaces(NetworkInterface)}, this doesn't create any
+	 * objects. The visitor must not add, remove or move interfaces in this
+	 * grid.
+	 */
+	@Override
+	public void visitNearInterfaces(NetworkInterface netinterf,
+			NeighborVisitor visitor) {
+		if (sweep != null) {
+			SweepEntry e = sweep.get(netinterf);
+			if (e != null && e.near != null) {
+				List<NetworkInterface> precomputed = e.near;
+				e.near = null; // only the first query of the sweep is known
+				for (int i=0, n=precomputed.size(); i < n; i++) {
+					visitor.visit(precomputed.get(i));
+				}
+				return;
+			}
+		}
+
+		if (cellOf(netinterf) == null) {
+			return;
+		}
+		int first = firstNeighborIndex(netinterf.getLocation());
+		for (int r=0; r < 3; r++) {
+			for (int i=first + r*stride, end=i+3; i < end; i++) {
+				GridCell cell = cells[i];
+				for (int j=0; j < cell.size; j++) {
+					visitor.visit(cell.interfaces[j]);
+				}
+			}
+		}
+	}
+
+
+	/**
+	 * Calls the visitor once for every pair of interfaces that are in the
+	 * same or neighboring cells. Every cell is paired only with itself and 
+	 * the half of its neighbors that follow it in the cell array, so each
+	 * pair is found exactly once. The visitor must not add, remove or move 
+	 * interfaces in this grid.
+	 */
+	@Override
+	public void visitNearPairs(PairVisitor visitor) {
+		/* only the occupied cells are visited; they are found through the
+		 * interfaces and marked so that each is visited once */
+		pairSweep++;
+		for (int m=0, n=members.size(); m < n; m++) {
+			NetworkInterface member = members.get(m);
+			GridCell cell = cellOf(member);
+			if (cell.pairSweep == pairSweep) {
+				continue;
+			}
+			cell.pairSweep = pairSweep;
+			int i = cell.index;
+			for (int j=0; j < cell.size; j++) {
+				NetworkInterface ni = cell.interfaces[j];
+				for (int k=j+1; k < cell.size; k++) {
+					visitor.visit(ni, cell.interfaces[k]);
+				}
+				visitPairs(ni, cells[i+1], visitor);
+				visitPairs(ni, cells[i+stride-1], visitor);
+				visitPairs(ni, cells[i+stride], visitor);
+				visitPairs(ni, cells[i+stride+1], visitor);
+			}
+		}
+	}
+
+	/**
+	 * Calls the visitor for an interface paired with all the interfaces of
+	 * a cell
+	 * @param ni The interface
+	 * @param cell The cell
+	 * @param visitor The visitor to call
+	 */
+	private void visitPairs(NetworkInterface ni, GridCell cell, 
+			PairVisitor visitor) {
+		for (int k=0; k < cell.size; k++) {
+			visitor.visit(ni, cell.interfaces[k]);
+		}
+	}
+	/**
+	 * Starts a host update sweep where the near interface queries are 
+	 * answered from lists that are computed beforehand (and possibly 
+	 * concurrently) with {@link #precomputeNearInterfaces(NetworkInterface)}.
+	 * The interfaces must be given in the order they are updated in the sweep
+	 * and every interface is expected to update its location in the grid 
+	 * just before querying its near interfaces (like the interfaces in this 
+	 * package do). Nodes must not move during the sweep.
+	 * @param updateOrder The interfaces in the order they are updated
+	 */
+	public static void beginSweep(List<NetworkInterface> updateOrder) {
+		sweep = new HashMap<NetworkInterface, SweepEntry>();
+		for (int i=0, n=updateOrder.size(); i<n; i++) {
+			NetworkInterface ni = updateOrder.get(i);
+			for (ConnectivityGrid g : gridobjects.values()) {
+				GridCell oldCell = g.cellOf(ni);
+				if (oldCell != null) {
+					SweepEntry e = new SweepEntry(g, i, oldCell, 
+							g.cellFromCoord(ni.getLocation()));
+					sweep.put(ni, e);
+					if (e.newCell != e.oldCell) {
+						e.newCell.movedIn.add(ni); // in update order
+					}
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the near interfaces of an interface for the ongoing sweep. 
+	 * The resulting list contains the same interfaces, in the same order, as
+	 * {@link #getNearInterfaces(NetworkInterface)} would return at the 
+	 * interface's turn of the sweep, except for the ones that are out of
+	 * range already. Interfaces' states are only read so the lists of 
+	 * different interfaces can be computed concurrently.
+	 * @param ni The interface whose near interfaces are computed
+	 */
+	public static void precomputeNearInterfaces(NetworkInterface ni) {
+		SweepEntry e = sweep.get(ni);
+		if (e != null) {
+			e.near = e.grid.nearInterfacesAtTurn(ni, e.turn);
+		}
+	}
+
+	/**
+	 * Ends the ongoing sweep and clears the precomputed lists.
+	 */
+	public static void endSweep() {
+		if (sweep == null) {
+			return;
+		}
+		for (SweepEntry e : sweep.values()) {
+			e.newCell.movedIn.clear();
+		}
+		sweep = null;
+	}
+
+	/**
+	 * Returns the in-range interfaces that are in the neighboring cells of 
+	 * an interface at the given turn of the sweep. Interfaces updated before
+	 * the turn are in their new cells (at the end of the cell's list) and 
+	 * others still in the old ones.
+	 * @param netinterf The interface whose neighbors are returned
+	 * @param turn The update turn of the interface
+	 * @return List of interfaces that can be in range (including netinterf)
+	 */
+	private List<NetworkInterface> nearInterfacesAtTurn(
+			NetworkInterface netinterf, int turn) {
+		ArrayList<NetworkInterface> ni = new ArrayList<NetworkInterface>();
+		int first = firstNeighborIndex(netinterf.getLocation());
+
+		for (int r=0; r < 3; r++) {
+			for (int i=first + r*stride, end=i+3; i < end; i++) {
+				GridCell cell = cells[i];
+				for (int j=0; j < cell.size; j++) {
+					NetworkInterface other = cell.interfaces[j];
+					SweepEntry oe = sweep.get(other);
+					if (oe != null && oe.turn <= turn && 
+							oe.newCell != oe.oldCell) {
+						continue; // moved out of the cell before this turn
+					}
+					addIfInRange(netinterf, other, ni);
+				}
+				for (NetworkInterface other : cell.movedIn) {
+					if (sweep.get(other).turn > turn) {
+						break; // rest move in after this turn
+					}
+					addIfInRange(netinterf, other, ni);
+				}
+			}
+		}
+
+		return ni;
+	}
+
+	/**
+	 * Adds an interface to the list if it is within the radio range of the 
+	 * given interface (or is the given interface itself).
+	 * @param netinterf The interface whose range is checked
+	 * @param other The interface to add if it's in range
+	 * @param list The list where to add
+	 */
+	private void addIfInRange(NetworkInterface netinterf,
+			NetworkInterface other, List<NetworkInterface> list) {
+		double range = Math.min(netinterf.getTransmitRange(), 
+				other.getTransmitRange());
+		if (other == netinterf || 
+				netinterf.getLocation().distance(other.getLocation()) <= range) {
+			list.add(other);
+		}
+	}
 
 	/**
 	 * Returns a string representation of the ConnectivityCells object
@@ -228,6 +467,58 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 			this.cols + "x" + this.rows + ", cell size=" + this.cellSize;
 	}
 
+	/**
+	 * Writes the grid to a checkpoint. Only the non-empty cells are written.
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		for (int i=0; i<cells.length; i++) {
+			GridCell c = cells[i];
+			if (c.size == 0) {
+				continue;
+			}
+			assert c.movedIn.isEmpty() : "Can't save grid during a sweep";
+			out.writeInt(i);
+			out.writeInt(c.size);
+			for (int j=0; j<c.size; j++) {
+				out.writeObject(c.interfaces[j]);
+			}
+		}
+		out.writeInt(-1);
+	}
+
+	/**
+	 * Reads the grid from a checkpoint; re-creates the empty cells
+	 */
+	private void readObject(ObjectInputStream in) 
+			throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		this.cells = new GridCell[(rows+2) * stride];
+		for (int i=0; i<cells.length; i++) {
+			this.cells[i] = new GridCell(i);
+		}
+		this.slots = new GridCell[INITIAL_SLOT_COUNT];
+
+		for (int i = in.readInt(); i >= 0; i = in.readInt()) {
+			GridCell c = cells[i];
+			for (int j=0, n=in.readInt(); j<n; j++) {
+				c.addInterface((NetworkInterface)in.readObject());
+			}
+		}
+
+		/* the interfaces may not be fully read yet, so their addresses are
+		 * known only after the whole checkpoint has been read */
+		in.registerValidation(new ObjectInputValidation() {
+			public void validateObject() {
+				for (GridCell c : cells) {
+					for (int i=0; i<c.size; i++) {
+						setCell(c.interfaces[i], c);
+					}
+				}
+			}
+		}, 0);
+	}
+
 	/**
 	 * A single cell in the cell grid. Contains the interfaces that are 
 	 * currently in that part of the grid.
@@ -235,11 +526,21 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 	public class GridCell {
 		// how large array is initially chosen
 		private static final int EXPECTED_INTERFACE_COUNT = 5;
-		private ArrayList<NetworkInterface> interfaces;
+		/** the interfaces in this cell (the first size slots are in use) */
+		private NetworkInterface[] interfaces;
+		private int size;
+		/** index of this cell in the cell array */
+		private int index;
+		/** interfaces moving to this cell during a sweep (in update order) */
+		private ArrayList<NetworkInterface> movedIn;
+		/** number of the near pair sweep that last visited this cell */
+		private int pairSweep;
 
-		private GridCell() {
-			this.interfaces = new ArrayList<NetworkInterface>(
-					EXPECTED_INTERFACE_COUNT);
+		private GridCell(int index) {
+			this.index = index;
+			this.interfaces = new NetworkInterface[EXPECTED_INTERFACE_COUNT];
+			this.size = 0;
+			this.movedIn = new ArrayList<NetworkInterface>(0);
 		}
 
 		/**
@@ -247,7 +548,20 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		 * @return a list of of interfaces in this cell
 		 */
 		public ArrayList<NetworkInterface> getInterfaces() {
-			return this.interfaces;
+			ArrayList<NetworkInterface> list = 
+				new ArrayList<NetworkInterface>(size);
+			addInterfacesTo(list);
+			return list;
+		}
+
+		/**
+		 * Appends the interfaces of this cell to a list
+		 * @param list The list where to add the interfaces
+		 */
+		private void addInterfacesTo(List<NetworkInterface> list) {
+			for (int i=0; i<size; i++) {
+				list.add(interfaces[i]);
+			}
 		}
 
 		/**
@@ -255,15 +569,30 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		 * @param ni The interface to add
 		 */
 		public void addInterface(NetworkInterface ni) {
-			this.interfaces.add(ni);
+			if (size == interfaces.length) {
+				NetworkInterface[] grown = new NetworkInterface[size * 2];
+				System.arraycopy(interfaces, 0, grown, 0, size);
+				interfaces = grown;
+			}
+			interfaces[size++] = ni;
 		}
 
 		/**
-		 * Removes an interface from this cell
+		 * Removes an interface from this cell. The order of the other 
+		 * interfaces is preserved.
 		 * @param ni The interface to remove
+		 * @return true if the interface was in this cell, false if not
 		 */
-		public void removeInterface(NetworkInterface ni) {
-			this.interfaces.remove(ni);
+		public boolean removeInterface(NetworkInterface ni) {
+			for (int i=0; i<size; i++) {
+				if (interfaces[i] == ni) {
+					System.arraycopy(interfaces, i+1, interfaces, i, 
+							size-i-1);
+					interfaces[--size] = null;
+					return true;
+				}
+			}
+			return false;
 		}
 
 		/**
@@ -273,9 +602,9 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		 */
 		public void moveInterface(NetworkInterface ni, GridCell to) {
 			to.addInterface(ni);
-			boolean removeOk = this.interfaces.remove(ni); 
+			boolean removeOk = removeInterface(ni); 
 			assert removeOk : "interface " + ni + 
-				" not found from cell with " + interfaces.toString();
+				" not found from cell with " + getInterfaces().toString();
 		}
 
 		/**
@@ -284,8 +613,29 @@ public class ConnectivityGrid extends ConnectivityOptimizer {
 		 */
 		public String toString() {
 			return getClass().getSimpleName() + " with " + 
-				this.interfaces.size() + " interfaces :" + this.interfaces;
+				this.size + " interfaces :" + getInterfaces();
 		}
 	}
 	
+	/**
+	 * Sweep time information of an interface
+	 */
+	private static class SweepEntry {
+		private ConnectivityGrid grid;
+		/** the position of the interface in the update order */
+		private int turn;
+		private GridCell oldCell;
+		private GridCell newCell;
+		/** the precomputed near interfaces (or null if not available) */
+		private List<NetworkInterface> near;
+
+		private SweepEntry(ConnectivityGrid grid, int turn, GridCell oldCell,
+				GridCell newCell) {
+			this.grid = grid;
+			this.turn = turn;
+			this.oldCell = oldCell;
+			this.newCell = newCell;
+		}
+	}
+
 }
\ No newline at end of file
@@ -4,6 +4,7 @@
  */
 package interfaces;
 
+import java.io.Serializable;
 import java.util.Collection;
 
 import core.NetworkInterface;
@@ -12,7 +13,8 @@ import core.NetworkInterface;
  * A superclass for schemes for optimizing the location of possible contacts
  * with network interfaces of a specific range
  */
-abstract public class ConnectivityOptimizer {
+abstract public class ConnectivityOptimizer implements Serializable {
+	private static final long serialVersionUID = 42L;
 
 	/**
 	 * Adds a network interface to the optimizer (unless it is already present)
@@ -40,6 +42,41 @@ abstract public class ConnectivityOptimizer {
 	abstract public Collection<NetworkInterface> getNearInterfaces(
 			NetworkInterface ni);
 
+	/**
+	 * Calls the visitor for all network interfaces that might be located so
+	 * that they can be connected with the network interface. The default
+	 * implementation goes through {@link #getNearInterfaces(NetworkInterface)}
+	 * but optimizers can do this without creating any objects.
+	 * 
+	 * @param ni network interface that needs to be connected
+	 * @param visitor The visitor to call for each interface within proximity
+	 */
+	public void visitNearInterfaces(NetworkInterface ni, 
+			NeighborVisitor visitor) {
+		for (NetworkInterface near : getNearInterfaces(ni)) {
+			visitor.visit(near);
+		}
+	}
+
+	/**
+	 * Calls the visitor once for every pair of network interfaces that might
+	 * be located so that they can be connected. The interfaces' locations 
+	 * must be up to date in the optimizer. The default implementation 
+	 * queries the near interfaces of every interface and skips the pairs 
+	 * that were already visited from the other interface's side.
+	 * 
+	 * @param visitor The visitor to call for each pair
+	 */
+	public void visitNearPairs(PairVisitor visitor) {
+		for (NetworkInterface ni : getAllInterfaces()) {
+			for (NetworkInterface near : getNearInterfaces(ni)) {
+				if (ni.getAddress() < near.getAddress()) {
+					visitor.visit(ni, near);
+				}
+			}
+		}
+	}
+
 	/**
 	 * Finds all other interfaces that are registered to the
 	 * ConnectivityOptimizer
@@ -4,8 +4,6 @@
  */
 package interfaces;
 
-import java.util.Collection;
-
 import core.Connection;
 import core.DTNHost;
 import core.NetworkInterface;
@@ -19,9 +17,17 @@ import core.VBRConnection;
  * transmissions. The configured transmit speed is the maximum obtainable speed.
  */
 public class InterferenceLimitedInterface extends NetworkInterface {
+	private static final long serialVersionUID = 42L;
 	protected int currentTransmitSpeed;
 	protected int numberOfTransmissions;
 
+	/** connects to the near interfaces found by the optimizer */
+	private final NeighborVisitor connector = new NeighborVisitor() {
+		public void visit(NetworkInterface ni) {
+			connect(ni);
+		}
+	};
+
 	public InterferenceLimitedInterface(Settings s) {
 		super(s);
 		this.currentTransmitSpeed = 0;
@@ -74,10 +80,10 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 	}
 
 	/**
-	 * Updates the state of current connections (i.e., tears down connections
-	 * that are out of range).
+	 * Tears down connections that are out of range and creates new ones
+	 * to the interfaces that are in range.
 	 */
-	public void update() {
+	private void updateConnectivity() {
 		// First break the old ones
 		optimizer.updateLocation(this);
 		for (int i=0; i<this.connections.size(); ) {
@@ -95,10 +101,17 @@ public class InterferenceLimitedInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces = 
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) 
-			connect(i);
+		optimizer.visitNearInterfaces(this, connector);
+	}
+
+	/**
+	 * Updates the state of current connections (i.e., tears down connections
+	 * that are out of range).
+	 */
+	public void update() {
+		if (!isPairwiseConnectivity()) {
+			updateConnectivity();
+		}
 
 		// Find the current number of transmissions
 		// (to calculate the current transmission speed
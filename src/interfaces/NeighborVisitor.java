@@ -0,0 +1,26 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package interfaces;
+
+import java.io.Serializable;
+
+import core.NetworkInterface;
+
+/**
+ * Callback interface for going through the interfaces near some interface
+ * without collecting them to a collection first.
+ * @see ConnectivityOptimizer#visitNearInterfaces(NetworkInterface, 
+ * NeighborVisitor)
+ */
+public interface NeighborVisitor extends Serializable {
+
+	/**
+	 * Called for each interface that might be located so that it can be
+	 * connected with the queried interface (possibly the queried interface
+	 * itself)
+	 * @param ni The near interface
+	 */
+	public void visit(NetworkInterface ni);
+}
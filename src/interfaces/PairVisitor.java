@@ -0,0 +1,25 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package interfaces;
+
+import java.io.Serializable;
+
+import core.NetworkInterface;
+
+/**
+ * Callback interface for going through the pairs of interfaces that are
+ * near each other.
+ * @see ConnectivityOptimizer#visitNearPairs(PairVisitor)
+ */
+public interface PairVisitor extends Serializable {
+
+	/**
+	 * Called once for each unordered pair of different interfaces that
+	 * might be located so that they can be connected
+	 * @param a The first interface of the pair
+	 * @param b The second interface of the pair
+	 */
+	public void visit(NetworkInterface a, NetworkInterface b);
+}
@@ -4,8 +4,6 @@
  */
 package interfaces;
 
-import java.util.Collection;
-
 import core.CBRConnection;
 import core.Connection;
 import core.DTNHost;
@@ -17,6 +15,14 @@ import core.Settings;
  * one transmission can be on at a time.
  */
 public class SimpleBroadcastInterface extends NetworkInterface {
+	private static final long serialVersionUID = 42L;
+	/** connects to the near interfaces found by the optimizer */
+	private final NeighborVisitor connector = new NeighborVisitor() {
+		public void visit(NetworkInterface ni) {
+			connect(ni);
+		}
+	};
+
 	/**
 	 * Reads the interface settings from the Settings file
 	 *  
@@ -66,6 +72,10 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 	 * that are out of range).
 	 */
 	public void update() {
+		if (isPairwiseConnectivity()) {
+			return; // the connections are checked pairwise
+		}
+
 		// First break the old ones
 		optimizer.updateLocation(this);
 		for (int i=0; i<this.connections.size(); ) {
@@ -84,11 +94,7 @@ public class SimpleBroadcastInterface extends NetworkInterface {
 			}
 		}
 		// Then find new possible connections
-		Collection<NetworkInterface> interfaces =
-			optimizer.getNearInterfaces(this);
-		for (NetworkInterface i : interfaces) {
-			connect(i);
-		}
+		optimizer.visitNearInterfaces(this, connector);
 	}
 
 	/** 
@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.LinkedList;
 import java.util.Queue;
 
@@ -15,7 +16,8 @@ import core.SimClock;
  * Object of this class tell the movement models when a node belonging
  * to a certain group is active and when not.
  */
-public class ActivenessHandler {
+public class ActivenessHandler implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** 
 	 * Active times -setting id ({@value}).<BR>
 	 * Syntax: <CODE>start, end</CODE><BR>
@@ -94,10 +96,31 @@ public class ActivenessHandler {
 		return curRange.isInRange(time);
 	}
 
+	/**
+	 * Returns the sim time when the activeness may change next. The node
+	 * stays active (or inactive) at least until that time.
+	 * @return The time of the next possible change
+	 */
+	public double nextChangeTime() {
+		if (this.activeTimes == null || curRange == null) {
+			return Double.MAX_VALUE; // never changes
+		}
+
+		double time = SimClock.getTime();
+		if (time < curRange.start) {
+			return curRange.start;
+		}
+		if (!curRange.isOut(time)) {
+			return curRange.end;
+		}
+		return time; // moving to the next time range
+	}
+
 	/**
 	 * Class for handling time ranges
 	 */
-	private class TimeRange {
+	private class TimeRange implements Serializable {
+		private static final long serialVersionUID = 42L;
 		private double start;
 		private double end;
 		
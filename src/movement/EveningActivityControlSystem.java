@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Random;
@@ -17,7 +18,8 @@ import core.DTNSim;
  * 
  * @author Frans Ekman
  */
-public class EveningActivityControlSystem {
+public class EveningActivityControlSystem implements Serializable {
+	private static final long serialVersionUID = 42L;
 
 	private HashMap<Integer, EveningActivityMovement> eveningActivityNodes;
 	private List<Coord> meetingSpots;
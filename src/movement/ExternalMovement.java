@@ -4,8 +4,12 @@
  */
 package movement;
 
+import input.BinaryMovementReader;
 import input.ExternalMovementReader;
 
+import java.io.IOException;
+import java.io.NotSerializableException;
+import java.io.ObjectOutputStream;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -19,25 +23,53 @@ import core.SimClock;
 import core.Tuple;
 
 /**
- * Movement model that uses external data of node locations.
+ * Movement model that uses external data of node locations. The data is
+ * read with an {@link ExternalMovementReader} or, if the file is a binary
+ * trace (see {@link input.BinaryMovementWriter}), with a
+ * {@link BinaryMovementReader}. The simulation can start from any time of
+ * the trace (see {@link #START_TIME_S}); with a binary trace the reader
+ * seeks directly to the start time.
  */
 public class ExternalMovement extends MovementModel {
+	private static final long serialVersionUID = 42L;
 	/** Namespace for settings */
 	public static final String EXTERNAL_MOVEMENT_NS = "ExternalMovement";
 	/** external locations file's path -setting id ({@value})*/
 	public static final String MOVEMENT_FILE_S = "file";
 	/** number of preloaded intervals per preload run -setting id ({@value})*/
 	public static final String NROF_PRELOAD_S = "nrofPreload";
+	/** time of the trace (seconds from the trace's minTime) where the
+	 * simulation starts -setting id ({@value}). Default = 0. */
+	public static final String START_TIME_S = "startTime";
 	
 	/** default initial location for excess nodes */
 	private static final Coord DEF_INIT_LOC = new Coord(0,0);
 	private static ExternalMovementReader reader;
+	/** reader of a binary trace (null for text traces) */
+	private static BinaryMovementReader binaryReader;
 	private static String inputFileName;
 	
 	/** mapping of external id to movement model */
 	private static Map<String, ExternalMovement> idMapping;
+	/** mapping of node index of a binary trace to movement model */
+	private static ExternalMovement[] nodeModels;
 	/** initial locations for nodes */
 	private static List<Tuple<String, Coord>> initLocations;
+	/** initial nodes and locations of a binary trace */
+	private static int[] initNodes;
+	private static double[] initXs;
+	private static double[] initYs;
+	private static int nrofInitLocations;
+	private static int nextInitLocation;
+	/** buffers for the samples read from a binary trace */
+	private static int[] sampleNodes;
+	private static double[] sampleXs;
+	private static double[] sampleYs;
+	/** trace time where the simulation starts */
+	private static double startTime;
+	/** size of the area of the trace */
+	private static int maxX;
+	private static int maxY;
 	/** time of the very first location data */
 	private static double initTime;
 	/** sampling interval (seconds) of the location data */
@@ -81,10 +113,14 @@ public class ExternalMovement extends MovementModel {
 			Settings s = new Settings(EXTERNAL_MOVEMENT_NS);
 			idMapping = new HashMap<String, ExternalMovement>();
 			inputFileName = s.getSetting(MOVEMENT_FILE_S);
-			reader = new ExternalMovementReader(inputFileName);
-			
-			initLocations = reader.readNextMovements();
-			initTime = reader.getLastTimeStamp();
+			startTime = s.contains(START_TIME_S) ?
+					s.getDouble(START_TIME_S) : 0;
+			if (BinaryMovementReader.isBinaryMovementFile(inputFileName)) {
+				openBinaryReader();
+			}
+			else {
+				openReader();
+			}
 			samplingInterval = -1;
 			lastPreloadTime = -1;
 			
@@ -98,6 +134,49 @@ public class ExternalMovement extends MovementModel {
 		}
 	}
 	
+	/**
+	 * Opens the reader of a text trace and reads the initial locations
+	 * (the first time instance at or after the start time)
+	 */
+	private static void openReader() {
+		binaryReader = null;
+		reader = new ExternalMovementReader(inputFileName);
+
+		initLocations = reader.readNextMovements();
+		while (initLocations.size() > 0 &&
+				reader.getLastTimeStamp() < startTime) {
+			initLocations = reader.readNextMovements();
+		}
+		initTime = reader.getLastTimeStamp() - startTime;
+		maxX = (int)(reader.getMaxX() - reader.getMinX()) + 1;
+		maxY = (int)(reader.getMaxY() - reader.getMinY()) + 1;
+	}
+
+	/**
+	 * Opens the reader of a binary trace, seeks to the start time and
+	 * reads the initial locations
+	 */
+	private static void openBinaryReader() {
+		reader = null;
+		binaryReader = new BinaryMovementReader(inputFileName);
+		int max = binaryReader.getMaxInstanceSize();
+		nodeModels = new ExternalMovement[binaryReader.getNrofNodes()];
+		initNodes = new int[max];
+		initXs = new double[max];
+		initYs = new double[max];
+		sampleNodes = new int[max];
+		sampleXs = new double[max];
+		sampleYs = new double[max];
+
+		binaryReader.seek(startTime);
+		nrofInitLocations = binaryReader.readNextMovements(initNodes, initXs,
+				initYs);
+		nextInitLocation = 0;
+		initTime = binaryReader.getLastTimeStamp() - startTime;
+		maxX = (int)(binaryReader.getMaxX() - binaryReader.getMinX()) + 1;
+		maxY = (int)(binaryReader.getMaxY() - binaryReader.getMinY()) + 1;
+	}
+
 	/** 
 	 * Copy constructor. Gives out location data for the new node from 
 	 * location queue.
@@ -109,7 +188,21 @@ public class ExternalMovement extends MovementModel {
 		pathQueue = new LinkedList<Tuple<Double, Path>>();
 		latestPath = null;
 		
-		if (initLocations.size() > 0) { // we have location data left
+		if (binaryReader != null) {
+			if (nextInitLocation < nrofInitLocations) {
+				int i = nextInitLocation++;
+				this.intialLocation = this.latestLocation =
+					new Coord(initXs[i], initYs[i]);
+				this.latestPathStartTime = initTime;
+				nodeModels[initNodes[i]] = this;
+				isActive = true;
+			}
+			else {
+				this.intialLocation = DEF_INIT_LOC;
+				isActive = false;
+			}
+		}
+		else if (initLocations.size() > 0) { // we have location data left
 			// gets a new location from the list
 			Tuple<String, Coord> initLoc = initLocations.remove(0); 
 			this.intialLocation = this.latestLocation = initLoc.getValue();
@@ -158,13 +251,15 @@ public class ExternalMovement extends MovementModel {
 	 * Adds a new location with a time to this model's move pattern. If the
 	 * node stayed stationary during the update, the current path is put to the
 	 * queue and a new path is started once the node starts moving.
-	 * @param loc The location
+	 * @param x The x coordinate of the location
+	 * @param y The y coordinate of the location
 	 * @param time When should the node be there
 	 */
-	private void addLocation(Coord loc, double time) {
+	private void addLocation(double x, double y, double time) {
 		assert samplingInterval > 0 : "Non-positive sampling interval!";
 		
-		if (loc.equals(latestLocation)) { // node didn't move
+		if (x == latestLocation.getX() && y == latestLocation.getY()) {
+			// node didn't move
 			if (latestPath != null) {
 				// constructing path -> end constructing and put it in the queue
 				pathQueue.add(new Tuple<Double, Path>
@@ -180,6 +275,7 @@ public class ExternalMovement extends MovementModel {
 			latestPath = new Path();			
 		}
 			
+		Coord loc = new Coord(x, y);
 		double speed = loc.distance(this.latestLocation) / samplingInterval;		
 		latestPath.addWaypoint(loc, speed);
 
@@ -223,12 +319,12 @@ public class ExternalMovement extends MovementModel {
 	
 	@Override
 	public int getMaxX() {
-		return (int)(reader.getMaxX() - reader.getMinX()) + 1;
+		return maxX;
 	}
 
 	@Override
 	public int getMaxY() {
-		return (int)(reader.getMaxY() - reader.getMinY()) + 1;
+		return maxY;
 	}
 
 	
@@ -243,8 +339,11 @@ public class ExternalMovement extends MovementModel {
 	 * were read.
 	 */
 	private static double readMorePaths() {
+		if (binaryReader != null) {
+			return readMoreBinaryPaths();
+		}
 		List<Tuple<String, Coord>> list = reader.readNextMovements();
-		double time = reader.getLastTimeStamp();
+		double time = reader.getLastTimeStamp() - startTime;
 		
 		if (samplingInterval == -1) {
 			samplingInterval = time - initTime;
@@ -254,7 +353,7 @@ public class ExternalMovement extends MovementModel {
 			ExternalMovement em = idMapping.get(t.getKey());
 			if (em != null) { // skip unknown IDs, i.e. IDs not mentioned in...
 				// ...init phase or if there are more IDs than nodes
-				em.addLocation(t.getValue(), time);
+				em.addLocation(t.getValue().getX(), t.getValue().getY(), time);
 			}
 		}
 		
@@ -266,11 +365,52 @@ public class ExternalMovement extends MovementModel {
 		}
 	}
 	
+	/**
+	 * Reads paths for the next time instance from the binary reader
+	 * @return The time stamp of the reading or Double.NaN if no movements
+	 * were read.
+	 */
+	private static double readMoreBinaryPaths() {
+		int n = binaryReader.readNextMovements(sampleNodes, sampleXs,
+				sampleYs);
+		double time = binaryReader.getLastTimeStamp() - startTime;
+
+		if (samplingInterval == -1) {
+			samplingInterval = time - initTime;
+		}
+
+		for (int i=0; i<n; i++) {
+			ExternalMovement em = nodeModels[sampleNodes[i]];
+			if (em != null) { // skip the nodes that have no host
+				em.addLocation(sampleXs[i], sampleYs[i], time);
+			}
+		}
+
+		if (n > 0) {
+			return time;
+		}
+		else {
+			return Double.NaN;
+		}
+	}
+
 	/**
 	 * Reset state so that next instance will have a fresh state
 	 */
 	public static void reset() {
 		idMapping = null;
+		if (binaryReader != null) {
+			binaryReader.close();
+			binaryReader = null;
+		}
 	}
 
+	/**
+	 * External movement can't be saved to a checkpoint
+	 * @throws NotSerializableException always
+	 */
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		throw new NotSerializableException("External movement can't be " +
+				"saved to a checkpoint");
+	}
 }
@@ -19,6 +19,7 @@ import java.util.Vector;
 
 import movement.map.MapNode;
 import movement.map.SimMap;
+import movement.map.SimMapImage;
 import core.Coord;
 import core.Settings;
 import core.SettingsError;
@@ -29,6 +30,7 @@ import core.SimError;
  * roads of a SimMap. 
  */
 public class MapBasedMovement extends MovementModel implements SwitchableMovement {
+	private static final long serialVersionUID = 42L;
 	/** sim map for the model */
 	private SimMap map = null;
 	/** node where the last path ended or node next to initial placement */
@@ -45,6 +47,15 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 	public static final String NROF_FILES_S = "nrofMapFiles";
 	/** map file -setting id ({@value})*/
 	public static final String FILE_S = "mapFile";
+	/**
+	 * Map cache directory -setting id ({@value}). If set, pre-compiled
+	 * images of the maps are stored to this directory and later runs with
+	 * the same map files read the image instead of the map files.
+	 * An image is written only for a map that passed the connectedness
+	 * check, so the check is not repeated when the image is read.
+	 * See {@link SimMapImage}.
+	 */
+	public static final String CACHE_DIR_S = "mapCacheDir";
 	
 	/** 
 	 * Per node group setting for selecting map node types that are OK for
@@ -283,16 +294,33 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 			}
 		}
 
+		int nrofMapFiles = settings.getInt(NROF_FILES_S);
+		File[] mapFiles = new File[nrofMapFiles];
+		for (int i = 1; i <= nrofMapFiles; i++ ) {
+			String pathFile = settings.getSetting(FILE_S + i);
+			cachedMapFiles.add(pathFile);
+			mapFiles[i-1] = new File(pathFile);
+		}
+		nrofMapFilesRead = nrofMapFiles;
+
+		File image = null;
 		try {
-			int nrofMapFiles = settings.getInt(NROF_FILES_S);
+			if (settings.contains(CACHE_DIR_S)) {
+				image = new File(settings.getSetting(CACHE_DIR_S),
+						SimMapImage.getKey(mapFiles) + ".map");
+				if (image.exists()) {
+					simMap = readMapImage(image);
+					if (simMap != null) {
+						checkMapBounds(simMap);
+						cachedMap = simMap;
+						return simMap;
+					}
+				}
+			}
 
 			for (int i = 1; i <= nrofMapFiles; i++ ) {
-				String pathFile = settings.getSetting(FILE_S + i);
-				cachedMapFiles.add(pathFile);
-				r.addPaths(new File(pathFile), i);
+				r.addPaths(mapFiles[i-1], i);
 			}
-			
-			nrofMapFilesRead = nrofMapFiles;
 		} catch (IOException e) {
 			throw new SimError(e.toString(),e);
 		}
@@ -304,10 +332,49 @@ public class MapBasedMovement extends MovementModel implements SwitchableMovemen
 		Coord offset = simMap.getMinBound().clone();		
 		simMap.translate(-offset.getX(), -offset.getY());
 		checkCoordValidity(simMap.getNodes());
+
+		if (image != null) {
+			try {
+				SimMapImage.write(simMap, image);
+			} catch (IOException e) {
+				throw new SimError("Can't write map image " + image + ": " +
+						e.getMessage(), e);
+			}
+		}
 		
 		cachedMap = simMap;
 		return simMap;
 	}
+
+	/**
+	 * Reads a map from a map image
+	 * @param image The image file
+	 * @return The map or null if the image was not valid (and needs to be
+	 * written again)
+	 */
+	private SimMap readMapImage(File image) {
+		try {
+			return SimMapImage.read(image);
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * Checks that the bounds of a (translated) map are within the limits of
+	 * the movement model. Only if they are not, the coordinates of the map
+	 * nodes are checked to find a node for the error message.
+	 * @param map The map to check
+	 * @throws SettingsError if some map node is out of bounds
+	 */
+	private void checkMapBounds(SimMap map) {
+		Coord min = map.getMinBound();
+		Coord max = map.getMaxBound();
+		if (min.getX() < 0 || max.getX() > getMaxX() ||
+				min.getY() < 0 || max.getY() > getMaxY()) {
+			checkCoordValidity(map.getNodes());
+		}
+	}
 	
 	/**
 	 * Checks that all map nodes can be reached from all other map nodes
@@ -4,6 +4,7 @@
  */
 package movement;
 
+import java.io.Serializable;
 import java.util.Random;
 
 import core.Coord;
@@ -23,7 +24,8 @@ import core.SimError;
  * {@link #getInitialLocation()} and {@link #getPath()} are worthwhile to 
  * override.</P>
  */
-public abstract class MovementModel {
+public abstract class MovementModel implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** node's speed CSV (min, max) -setting id ({@value})*/
 	public static final String SPEED = "speed";
 	/** node's wait time CSV (min, max) -setting id ({@value})*/
@@ -210,6 +212,15 @@ public abstract class MovementModel {
 	public boolean isActive() {
 		return ah.isActive();
 	}
+
+	/**
+	 * Returns the sim time when the activeness of this node may change next
+	 * (see {@link #isActive()})
+	 * @return The time of the next possible change
+	 */
+	public double nextActivenessChange() {
+		return ah.nextChangeTime();
+	}
 		
 	/**
 	 * Returns a sim time when the next path is available. This implementation
@@ -4,6 +4,7 @@
  */
 package movement.map;
 
+import java.io.Serializable;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -17,20 +18,21 @@ import java.util.Set;
 /**
  * Implementation of the Dijkstra's shortest path algorithm.
  */
-public class DijkstraPathFinder {
+public class DijkstraPathFinder implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Value for infinite distance  */
 	private static final Double INFINITY = Double.MAX_VALUE;
 	/** Initial size of the priority queue */
 	private static final int PQ_INIT_SIZE = 11;
 
 	/** Map of node distances from the source node */
-	private DistanceMap distances;
+	private transient DistanceMap distances;
 	/** Set of already visited nodes (where the shortest path is known) */
-	private Set<MapNode> visited;
+	private transient Set<MapNode> visited;
 	/** Priority queue of unvisited nodes discovered so far */
-	private Queue<MapNode> unvisited;
+	private transient Queue<MapNode> unvisited;
 	/** Map of previous nodes on the shortest path(s) */
-	private Map<MapNode, MapNode> prevNodes;
+	private transient Map<MapNode, MapNode> prevNodes;
 
 	private int [] okMapNodes;
 	
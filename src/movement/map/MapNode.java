@@ -4,6 +4,7 @@
  */
 package movement.map;
 
+import java.io.Serializable;
 import java.util.List;
 import java.util.Vector;
 
@@ -14,7 +15,8 @@ import core.SettingsError;
  * A node in a SimMap. Node has a location, 0-n neighbors that it is
  * connected to and possibly a type identifier.
  */
-public class MapNode implements Comparable<MapNode> {
+public class MapNode implements Comparable<MapNode>, Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Smallest valid type of a node: {@value}*/
 	public static final int MIN_TYPE = 1;
 	/** Biggest valid type of a node: {@value} */
@@ -77,6 +79,22 @@ public class MapNode implements Comparable<MapNode> {
 		return false;
 	}
 	
+	/**
+	 * Returns the bit mask of the node's types
+	 * @return The bit mask or 0 if no types are defined
+	 */
+	int getTypes() {
+		return this.type;
+	}
+
+	/**
+	 * Sets the bit mask of the node's types
+	 * @param types The bit mask (as returned by {@link #getTypes()})
+	 */
+	void setTypes(int types) {
+		this.type = types;
+	}
+	
 	/**
 	 * Converts type integer to a bit mask for setting & checking type
 	 * @param type The type to convert
@@ -8,6 +8,7 @@ import input.WKTReader;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
@@ -21,7 +22,8 @@ import core.Tuple;
 /**
  * Handler for points of interest data.
  */
-public class PointsOfInterest {
+public class PointsOfInterest implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Points Of Interest settings namespace ({@value})*/
 	public static final String POI_NS = "PointsOfInterest";
 	/** Points Of Interest file path -prefix id ({@value})*/
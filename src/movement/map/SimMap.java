@@ -6,6 +6,7 @@ package movement.map;
 
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Hashtable;
 import java.util.List;
 import java.util.Map;
 
@@ -15,6 +16,7 @@ import core.Coord;
  * A simulation map for node movement.
  */
 public class SimMap implements Serializable {
+	private static final long serialVersionUID = 42L;
 	private Coord minBound;
 	private Coord maxBound;
 	/** list representation of the map for efficient list-returning */
@@ -36,6 +38,23 @@ public class SimMap implements Serializable {
 		this.isMirrored = false;
 		setBounds();
 	}
+
+	/**
+	 * Constructor for maps read from a {@link SimMapImage}
+	 * @param nodes The map nodes in the order of the original map
+	 * @param offset Offset of the map translations
+	 * @param isMirrored Is the map data mirrored after reading
+	 */
+	SimMap(List<MapNode> nodes, Coord offset, boolean isMirrored) {
+		this.offset = offset;
+		this.nodes = new ArrayList<MapNode>(nodes);
+		this.nodesMap = new Hashtable<Coord, MapNode>();
+		for (MapNode node : nodes) {
+			nodesMap.put(node.getLocation(), node);
+		}
+		this.isMirrored = isMirrored;
+		setBounds();
+	}
 	
 	/**
 	 * Returns all the map nodes in a list
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package movement.map;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.Coord;
+import core.SimError;
+
+/**
+ * <P>Pre-compiled binary image of a SimMap. Reading an image skips parsing
+ * the WKT map files and building the node hash, so large maps load much
+ * faster than from the map files. The images are stored in a cache
+ * directory under a name that is derived from the contents of the map
+ * files (see {@link #getKey(File[])}).</P>
+ *
+ * <P>File format (numbers are big-endian):
+ * <UL>
+ * <LI>header: magic number ({@value #MAGIC}), version, number of nodes,
+ * number of neighbor entries, mirrored flag and a reserved field (ints), and
+ * the map offset x and y (doubles)</LI>
+ * <LI>x and y coordinates of the nodes (doubles)</LI>
+ * <LI>type bit masks of the nodes (ints)</LI>
+ * <LI>adjacency arrays: the index of the first neighbor entry of every
+ * node and the end index of the last node's entries (ints), and the node
+ * indices of the neighbor entries (ints)</LI>
+ * </UL>
+ * The nodes and the neighbors are in the same order as in the map the
+ * image was created from, so random choices among them behave the same
+ * with the image and with the original map.</P>
+ */
+public class SimMapImage {
+	/** Magic number in the beginning of a map image */
+	public static final int MAGIC = 0x4F4E4D50;
+	/** Version of the file format */
+	public static final int VERSION = 1;
+	/** size of the header (bytes) */
+	private static final int HEADER_SIZE = 6 * 4 + 2 * 8;
+
+	/**
+	 * Returns the cache key of map files. The key is a hash of the
+	 * contents of the files and their order (that defines the node types).
+	 * @param mapFiles The map files in the order of their types
+	 * @return The key as a hex string
+	 * @throws IOException if some of the files can't be read
+	 */
+	public static String getKey(File[] mapFiles) throws IOException {
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-1");
+		} catch (NoSuchAlgorithmException e) {
+			throw new SimError(e.getMessage(), e);
+		}
+
+		byte[] buffer = new byte[1 << 16];
+		digest.update(ByteBuffer.allocate(8).putInt(VERSION)
+				.putInt(mapFiles.length).array());
+		for (File f : mapFiles) {
+			digest.update(ByteBuffer.allocate(8).putLong(f.length()).array());
+			InputStream in = new FileInputStream(f);
+			try {
+				int n;
+				while ((n = in.read(buffer)) > 0) {
+					digest.update(buffer, 0, n);
+				}
+			} finally {
+				in.close();
+			}
+		}
+
+		StringBuilder key = new StringBuilder();
+		for (byte b : digest.digest()) {
+			key.append(Character.forDigit((b >> 4) & 0xF, 16));
+			key.append(Character.forDigit(b & 0xF, 16));
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Writes an image of a map. The image is first written to a temporary
+	 * file that is then renamed, so concurrent simulations sharing the
+	 * cache directory never see partial images.
+	 * @param map The map
+	 * @param image The image file to write
+	 * @throws IOException if the image can't be written
+	 */
+	public static void write(SimMap map, File image) throws IOException {
+		List<MapNode> nodes = map.getNodes();
+		Map<MapNode, Integer> indices = new IdentityHashMap<MapNode, Integer>();
+		int nrofNeighbors = 0;
+		for (MapNode n : nodes) {
+			indices.put(n, indices.size());
+			nrofNeighbors += n.getNeighbors().size();
+		}
+
+		File dir = image.getAbsoluteFile().getParentFile();
+		dir.mkdirs();
+		File tmp = File.createTempFile(image.getName(), ".tmp", dir);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(tmp), 1 << 16));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(nodes.size());
+			out.writeInt(nrofNeighbors);
+			out.writeInt(map.isMirrored() ? 1 : 0);
+			out.writeInt(0);
+			out.writeDouble(map.getOffset().getX());
+			out.writeDouble(map.getOffset().getY());
+			for (MapNode n : nodes) {
+				out.writeDouble(n.getLocation().getX());
+			}
+			for (MapNode n : nodes) {
+				out.writeDouble(n.getLocation().getY());
+			}
+			for (MapNode n : nodes) {
+				out.writeInt(n.getTypes());
+			}
+			int start = 0;
+			for (MapNode n : nodes) {
+				out.writeInt(start);
+				start += n.getNeighbors().size();
+			}
+			out.writeInt(start);
+			for (MapNode n : nodes) {
+				for (MapNode neighbor : n.getNeighbors()) {
+					out.writeInt(indices.get(neighbor));
+				}
+			}
+		} catch (IOException e) {
+			out.close();
+			tmp.delete();
+			throw e;
+		}
+		out.close();
+
+		if (!tmp.renameTo(image)) {
+			image.delete();
+			if (!tmp.renameTo(image)) {
+				tmp.delete();
+				throw new IOException("Can't rename " + tmp + " to " + image);
+			}
+		}
+	}
+
+	/**
+	 * Reads a map from an image
+	 * @param image The image file
+	 * @return The map
+	 * @throws IOException if the image can't be read or is not valid
+	 */
+	public static SimMap read(File image) throws IOException {
+		FileChannel channel = new FileInputStream(image).getChannel();
+		try {
+			long size = channel.size();
+			if (size < HEADER_SIZE) {
+				throw invalid(image, "too short");
+			}
+			ByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					size);
+			if (buf.getInt() != MAGIC) {
+				throw invalid(image, "no magic number");
+			}
+			int version = buf.getInt();
+			if (version != VERSION) {
+				throw invalid(image, "unsupported version " + version);
+			}
+			int nrofNodes = buf.getInt();
+			int nrofNeighbors = buf.getInt();
+			boolean mirrored = buf.getInt() != 0;
+			buf.getInt();
+			Coord offset = new Coord(buf.getDouble(), buf.getDouble());
+			if (nrofNodes < 0 || nrofNeighbors < 0 || size != HEADER_SIZE +
+					24L * nrofNodes + 4 + 4L * nrofNeighbors) {
+				throw invalid(image, "wrong size");
+			}
+
+			double[] xs = new double[nrofNodes];
+			double[] ys = new double[nrofNodes];
+			int[] types = new int[nrofNodes];
+			int[] starts = new int[nrofNodes + 1];
+			int[] neighbors = new int[nrofNeighbors];
+			buf.asDoubleBuffer().get(xs);
+			buf.position(buf.position() + 8 * nrofNodes);
+			buf.asDoubleBuffer().get(ys);
+			buf.position(buf.position() + 8 * nrofNodes);
+			buf.asIntBuffer().get(types);
+			buf.position(buf.position() + 4 * nrofNodes);
+			buf.asIntBuffer().get(starts);
+			buf.position(buf.position() + 4 * (nrofNodes + 1));
+			buf.asIntBuffer().get(neighbors);
+
+			MapNode[] nodes = new MapNode[nrofNodes];
+			for (int i=0; i<nrofNodes; i++) {
+				nodes[i] = new MapNode(new Coord(xs[i], ys[i]));
+				nodes[i].setTypes(types[i]);
+			}
+			for (int i=0; i<nrofNodes; i++) {
+				if (starts[i] < 0 || starts[i] > starts[i+1] ||
+						starts[i+1] > nrofNeighbors) {
+					throw invalid(image, "invalid adjacency array");
+				}
+				List<MapNode> list = nodes[i].getNeighbors();
+				for (int j=starts[i]; j<starts[i+1]; j++) {
+					if (neighbors[j] < 0 || neighbors[j] >= nrofNodes) {
+						throw invalid(image, "invalid neighbor " +
+								neighbors[j]);
+					}
+					list.add(nodes[neighbors[j]]);
+				}
+			}
+
+			List<MapNode> nodeList = new ArrayList<MapNode>(nrofNodes);
+			for (MapNode n : nodes) {
+				nodeList.add(n);
+			}
+			return new SimMap(nodeList, offset, mirrored);
+		} finally {
+			channel.close();
+		}
+	}
+
+	private static IOException invalid(File image, String reason) {
+		return new IOException("Invalid map image " + image + ": " + reason);
+	}
+}
@@ -10,7 +10,7 @@ import core.SimClock;
 import core.SimScenario;
 import core.UpdateListener;
 import java.util.*;
-import routing.Epidemic_IQLCCExponentialReward;
+import routing.CongestionControlRouter;
 
 /**
  *
@@ -29,16 +29,16 @@ public class KikiReport extends Report implements UpdateListener {
 
     public void updated(List<DTNHost> hosts) {
         for (DTNHost host : hosts) {
-            Epidemic_IQLCCExponentialReward rtr = (Epidemic_IQLCCExponentialReward) host.getRouter();
+            CongestionControlRouter rtr = (CongestionControlRouter) host.getRouter();
             if (SimClock.getTime() - lastUpdate >= interval) {
                 List<Double> val = (awikwok.get(host) != null) ? awikwok.get(host) : new ArrayList<>();
-                val.add(rtr.rewardReport);
+                val.add(rtr.getCongestionControl().getLastReward());
                 awikwok.put(host, val);
                 
                 double currentBuffer = host.getBufferOccupancy();
                 if(host.toString().equals("p0")) {
                     if(currentBuffer > 33.0 && currentBuffer < 66.0) {
-                        printLn(host.getBufferOccupancy(), rtr.rewardReport);
+                        printLn(host.getBufferOccupancy(), rtr.getCongestionControl().getLastReward());
                     }
                 }
                 
@@ -4,6 +4,7 @@
  */
 package report;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Vector;
 
@@ -60,7 +61,7 @@ public class MessageGraphvizReport extends Report implements MessageListener {
 		setPrefix("\t"); // indent following lines by one tab
 		
 		for (Message m : deliveredMessages) {
-			List<DTNHost> path = m.getHops();
+			List<DTNHost> path = new ArrayList<DTNHost>(m.getHops());
 			String pathString = path.remove(0).toString(); // start node
 
 			for (DTNHost next : path) {
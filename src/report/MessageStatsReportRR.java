@@ -110,7 +110,7 @@ public class MessageStatsReportRR extends Report implements MessageListener {
 			if (finalTarget) {
 				this.latencies.add(getSimTime() - this.creationTimes.get(m.getId()));
 				this.nrofDelivered++;
-				this.hopCounts.add(m.getHops().size() - 1);
+				this.hopCounts.add(m.getHopCount());
 
 				if (m.isResponse()) {
 					this.rtt.add(getSimTime() - m.getRequest().getCreationTime());
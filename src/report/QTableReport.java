@@ -0,0 +1,71 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package report;
+
+import java.io.IOException;
+
+import routing.MessageRouter;
+import routing.QVDetectionEngine;
+import routing.QL.QTableStore;
+import core.DTNHost;
+import core.SimError;
+import core.SimScenario;
+
+/**
+ * Writes the Q-tables of the hosts with a Q-learning router (a
+ * {@link QVDetectionEngine}) to a binary {@link QTableStore} file when the
+ * simulation is done. The file can be given to the routers of later runs
+ * as their initial Q-values (e.g., with the <CODE>eIQLCC.qtableIn</CODE>
+ * setting). Unless the output file is set, the file is named like the
+ * text reports but with the suffix {@value QTableStore#FILE_SUFFIX}.
+ */
+public class QTableReport extends Report {
+	/** Write only the mean of the tables -setting id ({@value}).
+	 * Default = false (the tables of all the hosts and their mean are
+	 * written). */
+	public static final String AGGREGATED_S = "aggregated";
+
+	private boolean aggregated;
+
+	/**
+	 * Constructor.
+	 */
+	public QTableReport() {
+		aggregated = getSettings().contains(AGGREGATED_S) &&
+			getSettings().getBoolean(AGGREGATED_S);
+	}
+
+	@Override
+	public void done() {
+		QTableStore store = null;
+		for (DTNHost h : SimScenario.getInstance().getHosts()) {
+			MessageRouter r = h.getRouter();
+			if (!(r instanceof QVDetectionEngine)) {
+				continue;
+			}
+			double[][] qv = ((QVDetectionEngine)r).getQV();
+			if (store == null) {
+				store = new QTableStore(qv.length, qv[0].length);
+			}
+			store.add(h.getAddress(), qv);
+		}
+
+		if (store != null) {
+			String fileName = getOutputFileName();
+			if (!getSettings().contains(OUTPUT_SETTING) &&
+					fileName.endsWith(OUT_SUFFIX)) {
+				fileName = fileName.substring(0, fileName.length() -
+						OUT_SUFFIX.length()) + QTableStore.FILE_SUFFIX;
+			}
+			try {
+				store.write(fileName, aggregated);
+			} catch (IOException e) {
+				throw new SimError("Couldn't write Q-tables to '" +
+						fileName + "': " + e.getMessage(), e);
+			}
+		}
+		super.done();
+	}
+}
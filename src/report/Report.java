@@ -9,6 +9,7 @@ import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
@@ -293,6 +294,18 @@ public abstract class Report {
 		this.warmupIDs.add(id);
 	}
 	
+	/**
+	 * Makes this report ignore messages that existed before the report was
+	 * created, e.g., when the simulation is resumed from a checkpoint. The
+	 * messages are handled like the ones created during the warm up period.
+	 * @param ids IDs of the messages
+	 */
+	public void addWarmupIDs(Collection<String> ids) {
+		for (String id : ids) {
+			addWarmupID(id);
+		}
+	}
+	
 	/**
 	 * Removes a warm up ID from the warm up ID set
 	 * @param id The ID to remove
@@ -314,6 +327,15 @@ public abstract class Report {
 		return this.warmupIDs.contains(id);
 	}
 	
+	/**
+	 * Returns the name of the report's output file (without the suffix of
+	 * the intervalled reports)
+	 * @return The name (&path) of the output file
+	 */
+	protected String getOutputFileName() {
+		return this.outFileName;
+	}
+
 	/**
 	 * Returns a Settings object initialized for the report class' name space
 	 * that uses {@value REPORT_NS} as the secondary name space.
@@ -1,11 +1,45 @@
 package routing;
 
-public class ACKTTL {
+import java.io.Serializable;
+
+import core.Message;
+
+/**
+ * Delivery receipt of a message
+ */
+public class ACKTTL implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** remaining TTL (minutes) of the message when it was delivered */
 	public double TTL;
+	/** time when the message was delivered */
 	public double beginTime;
 
 	public ACKTTL(double ttl, double bt) {
 		TTL = ttl;
 		beginTime = bt;
 	}
+
+	/**
+	 * Creates a receipt of a delivered message. The remaining TTL is
+	 * computed from the exact expiry time of the message, not from the
+	 * whole minutes of {@link Message#getTtl()}, so the receipt never
+	 * expires before the copies of the message.
+	 * @param m The delivered message
+	 * @param bt Time when the message was delivered
+	 */
+	public ACKTTL(Message m, double bt) {
+		this(m.getInitTTL() == Message.INFINITE_TTL ? Integer.MAX_VALUE :
+			(m.getCreationTime() + m.getInitTTL() * 60.0 - bt) / 60.0, bt);
+	}
+
+	/**
+	 * Returns the time when the TTL of the delivered message runs out
+	 * @return The expiry time (infinite if the message had no TTL)
+	 */
+	public double getExpiryTime() {
+		if (TTL >= Integer.MAX_VALUE) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return beginTime + TTL * 60;
+	}
 }
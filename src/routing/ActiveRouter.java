@@ -24,6 +24,7 @@ import core.Tuple;
  * {@link #update()}).
  */
 public abstract class ActiveRouter extends MessageRouter {
+    private static final long serialVersionUID = 42L;
 
     /**
      * Delete delivered messages -setting id ({@value}). Boolean valued. If set
@@ -53,6 +54,10 @@ public abstract class ActiveRouter extends MessageRouter {
      * sim time when the last TTL check was done
      */
     private double lastTtlCheck;
+    /**
+     * scheduler of concurrent transfers (null = one transfer at a time)
+     */
+    protected TransferScheduler scheduler;
 
     /**
      * Constructor. Creates a new message router based on the settings in the
@@ -68,6 +73,8 @@ public abstract class ActiveRouter extends MessageRouter {
         } else {
             this.deleteDelivered = false;
         }
+
+        this.scheduler = TransferScheduler.create(s);
     }
 
     /**
@@ -78,6 +85,7 @@ public abstract class ActiveRouter extends MessageRouter {
     protected ActiveRouter(ActiveRouter r) {
         super(r);
         this.deleteDelivered = r.deleteDelivered;
+        this.scheduler = r.scheduler;
     }
 
     @Override
@@ -224,6 +232,11 @@ public abstract class ActiveRouter extends MessageRouter {
             return TRY_LATER_BUSY; // only one connection at a time
         }
 
+        if (scheduler != null && isReceiving(m.getId())) {
+            /* concurrent transfers: already coming from another peer */
+            return DENIED_UNSPECIFIED;
+        }
+
         if (hasMessage(m.getId()) || isDeliveredMessage(m)) {
             return DENIED_OLD; // already seen this message -> reject it
         }
@@ -233,8 +246,13 @@ public abstract class ActiveRouter extends MessageRouter {
             return DENIED_TTL;
         }
 
-        /* remove oldest messages but not the ones being sent */
-        if (!makeRoomForMessage(m.getSize())) {
+        /* remove oldest messages but not the ones being sent; with
+         * concurrent transfers the messages being received reserve space */
+        int size = m.getSize();
+        if (scheduler != null) {
+            size += getIncomingSize();
+        }
+        if (!makeRoomForMessage(size)) {
             return DENIED_NO_SPACE; // couldn't fit into buffer -> reject
         }
 
@@ -355,7 +373,8 @@ public abstract class ActiveRouter extends MessageRouter {
     /**
      * Tries to send messages for the connections that are mentioned in the
      * Tuples in the order they are in the list until one of the connections
-     * starts transferring or all tuples have been tried.
+     * starts transferring or all tuples have been tried. With a
+     * {@link TransferScheduler} every free connection may start a transfer.
      *
      * @param tuples The tuples to try
      * @return The tuple whose connection accepted the message or null if none
@@ -366,6 +385,9 @@ public abstract class ActiveRouter extends MessageRouter {
         if (tuples.size() == 0) {
             return null;
         }
+        if (scheduler != null) {
+            return scheduler.tryMessagesForConnected(this, tuples);
+        }
 
         for (Tuple<Message, Connection> t : tuples) {
             Message m = t.getKey();
@@ -406,7 +428,8 @@ public abstract class ActiveRouter extends MessageRouter {
      * are first iterated in the order they are in the list and for every
      * connection, the messages are tried in the order they are in the list.
      * Once an accepting connection is found, no other connections or messages
-     * are tried.
+     * are tried, unless there's a {@link TransferScheduler}: then every free
+     * connection is tried.
      *
      * @param messages The list of Messages to try
      * @param connections The list of Connections to try
@@ -415,6 +438,11 @@ public abstract class ActiveRouter extends MessageRouter {
      */
     protected Connection tryMessagesToConnections(List<Message> messages,
             List<Connection> connections) {
+        if (scheduler != null) {
+            return scheduler.tryMessagesToConnections(this, messages,
+                    connections);
+        }
+
         for (int i = 0, n = connections.size(); i < n; i++) {
             Connection con = connections.get(i);
             Message started = tryAllMessages(con, messages);
@@ -509,11 +537,16 @@ public abstract class ActiveRouter extends MessageRouter {
 
     /**
      * Returns true if this router is transferring something at the moment or
-     * some transfer has not been finalized.
+     * some transfer has not been finalized. With a {@link TransferScheduler}
+     * returns true only if no more transfers can be started at the moment.
      *
      * @return true if this router is transferring something
      */
     public boolean isTransferring() {
+        if (scheduler != null) {
+            return scheduler.isBusy(this);
+        }
+
         if (this.sendingConnections.size() > 0) {
             return true; // sending something
         }
@@ -552,6 +585,26 @@ public abstract class ActiveRouter extends MessageRouter {
         return false;
     }
 
+    /**
+     * Returns true if a sending connection has a finished transfer or has
+     * gone down, or if it is time for a TTL check.
+     *
+     * @return True if the router should be updated
+     */
+    @Override
+    public boolean needsUpdate() {
+        if (super.needsUpdate()) {
+            return true;
+        }
+        for (Connection con : this.sendingConnections) {
+            if (con.isMessageTransferred() || !con.isUp()) {
+                return true;
+            }
+        }
+        return SimClock.getTime() - lastTtlCheck >= TTL_CHECK_INTERVAL
+                && sendingConnections.size() == 0;
+    }
+
     /**
      * Checks out all sending connections to finalize the ready ones and abort
      * those whose connection went down. Also drops messages whose TTL <= 0
@@ -564,8 +617,7 @@ public abstract class ActiveRouter extends MessageRouter {
 
         super.update();
 
-        /* in theory we can have multiple sending connections even though
-		  currently all routers allow only one concurrent sending connection */
+        /* there can be multiple sending connections with a TransferScheduler */
         for (int i = 0; i < this.sendingConnections.size();) {
             boolean removeCurrent = false;
             Connection con = sendingConnections.get(i);
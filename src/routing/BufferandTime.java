@@ -5,11 +5,14 @@
  */
 package routing;
 
+import java.io.Serializable;
+
 /**
  *
  * @author ASUS
  */
-public class BufferandTime {
+public class BufferandTime implements Serializable {
+    private static final long serialVersionUID = 42L;
 
     public double buffer;
     public double time;
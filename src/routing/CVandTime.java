@@ -1,6 +1,9 @@
 package routing;
 
-public class CVandTime {
+import java.io.Serializable;
+
+public class CVandTime implements Serializable {
+	private static final long serialVersionUID = 42L;
 	public double CV;
 	public double time;
 
@@ -0,0 +1,554 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.util.*;
+
+import core.*;
+import routing.congestion.CongestionControl;
+
+/**
+ * <P>Superclass of the routers with a Q-learning congestion control
+ * ({@link CongestionControl}). The router keeps the delivery receipts,
+ * exchanges the replication counts of the messages with its peers, drops
+ * messages by the drop policy the congestion control has chosen, and
+ * follows its message generation interval and the limit of messages sent
+ * per connection.</P>
+ *
+ * <P>The subclasses only give the default state signal, reward function
+ * and action set of the congestion control; they can be changed in the
+ * settings (see {@link CongestionControl}). The subclasses can also keep
+ * some behavior of their earlier, separate implementations (see the
+ * <CODE>VARIANT_</CODE> constants) unless {@link #UNIFIED_S} is set.</P>
+ */
+public abstract class CongestionControlRouter extends ActiveRouter
+		implements QVDetectionEngine {
+	private static final long serialVersionUID = 42L;
+
+	/** Congestion control routers' setting namespace ({@value}) */
+	public static final String CONGESTION_CONTROL_NS = "eIQLCC";
+	/** Use the same behavior with all the congestion control variants
+	 * -setting id ({@value}). Boolean. If true, the variant behaviors the
+	 * subclasses ask for are ignored. Default = false */
+	public static final String UNIFIED_S = "unifiedBehavior";
+
+	/** Variant behavior: messages are dropped by sorting the buffer in the
+	 * drop order and the oldest message is the first one with the smallest
+	 * TTL in the buffer's order ({@link ActiveRouter#getOldestMessage}) */
+	protected static final int VARIANT_SORTED_DROPS = 1;
+	/** Variant behavior: the replication count of a received copy is not
+	 * incremented */
+	protected static final int VARIANT_NO_REPS_ON_TRANSFER = 2;
+	/** Variant behavior: the congestion control only observes the state
+	 * after the state 0 (see {@link CongestionControl#setObserveState}) */
+	protected static final int VARIANT_OBSERVE_AFTER_STATE_0 = 4;
+
+	/** message property to record its number of copies */
+	public static final String repsproperty = "nrofcopies";
+	/** message slot of the number of copies (see {@link #repsproperty}) */
+	protected int repsSlot;
+
+	/** the congestion control */
+	protected CongestionControl cc;
+
+	/** a map to record information about a connection and its limit */
+	private Map<Connection, Integer> conlimitmap;
+
+	/** buffer that save receipt */
+	protected ReceiptBuffer receiptBuffer;
+
+	/** message that should be deleted */
+	protected Set<String> messageReadytoDelete;
+
+	/** the buffered messages in the orders of the drop policies */
+	protected DropPriorityIndex dropIndex;
+
+	/** to record the last time of message creation */
+	private double endtimeofmsgcreation = 0;
+
+	/** the variant behaviors in use (VARIANT_ constants or'ed together) */
+	private int variant;
+
+	/**
+	 * Constructor. Creates a new message router based on the settings in
+	 * the given Settings object.
+	 * @param s The settings object
+	 * @param defSignal Default state signal of the congestion control
+	 * @param defReward Default reward function of the congestion control
+	 * @param defActions Default action set of the congestion control
+	 */
+	public CongestionControlRouter(Settings s, String defSignal,
+			String defReward, String defActions) {
+		this(s, defSignal, defReward, defActions, 0);
+	}
+
+	/**
+	 * Constructor. Creates a new message router based on the settings in
+	 * the given Settings object.
+	 * @param s The settings object
+	 * @param defSignal Default state signal of the congestion control
+	 * @param defReward Default reward function of the congestion control
+	 * @param defActions Default action set of the congestion control
+	 * @param variant The variant behaviors of the router (VARIANT_
+	 * constants or'ed together)
+	 */
+	protected CongestionControlRouter(Settings s, String defSignal,
+			String defReward, String defActions, int variant) {
+		super(s);
+		Settings ccSettings = new Settings(CONGESTION_CONTROL_NS);
+
+		if (ccSettings.contains(UNIFIED_S) &&
+				ccSettings.getBoolean(UNIFIED_S)) {
+			variant = 0;
+		}
+		this.variant = variant;
+		repsSlot = Message.registerIntSlot(repsproperty);
+		cc = new CongestionControl(ccSettings, defSignal, defReward,
+				defActions);
+		cc.setRouter(this);
+		if (isVariant(VARIANT_OBSERVE_AFTER_STATE_0)) {
+			cc.setObserveState(0);
+		}
+		receiptBuffer = new ReceiptBuffer(ccSettings);
+		createIndices();
+	}
+
+	/**
+	 * Copyconstructor.
+	 * @param r The router prototype where setting values are copied from
+	 */
+	protected CongestionControlRouter(CongestionControlRouter r) {
+		super(r);
+		this.variant = r.variant;
+		this.repsSlot = r.repsSlot;
+		this.cc = r.cc.replicate();
+		this.cc.setRouter(this);
+		receiptBuffer = new ReceiptBuffer(r.receiptBuffer);
+		createIndices();
+	}
+
+	/**
+	 * Creates the connection limits, drop index and the set of messages to
+	 * delete
+	 */
+	private void createIndices() {
+		this.conlimitmap = new HashMap<Connection, Integer>();
+		this.messageReadytoDelete = new HashSet<String>();
+		this.dropIndex = new DropPriorityIndex(repsSlot);
+	}
+
+	/**
+	 * Returns true if the router has the given variant behavior
+	 * @param behavior The behavior (one of the VARIANT_ constants)
+	 * @return true if the router has the behavior
+	 */
+	protected boolean isVariant(int behavior) {
+		return (variant & behavior) != 0;
+	}
+
+	/** Starts from the stored Q-values of the host if a Q-table store is given */
+	@Override
+	public void init(DTNHost host, List<MessageListener> mListeners) {
+		super.init(host, mListeners);
+		cc.init(host);
+	}
+
+	@Override
+	protected void addToMessages(Message m, boolean newMessage) {
+		Message old = getMessage(m.getId());
+		if (old != null) {
+			dropIndex.remove(old); // replaced by the new one
+		}
+		super.addToMessages(m, newMessage);
+		dropIndex.add(m);
+	}
+
+	@Override
+	protected Message removeFromMessages(String id) {
+		Message m = super.removeFromMessages(id);
+		if (m != null) {
+			dropIndex.remove(m);
+		}
+		return m;
+	}
+
+	@Override
+	public void changedConnection(Connection con) {
+		DTNHost otherHost = con.getOtherNode(getHost());
+		CongestionControlRouter peerRouter =
+			(CongestionControlRouter) otherHost.getRouter();
+
+		if (con.isUp()) {
+			connectionUp(con);
+			conlimitmap.put(con, cc.getMsgLimit());
+
+			exchangemsginformation();
+			/* only the receipts the peer got after the last contact */
+			receiptBuffer.mergeFrom(peerRouter.getReceiptBuffer(),
+					otherHost.getAddress());
+			for (Message m : getMessageCollection()) {
+				/* delete messages that have a receipt */
+				if (receiptBuffer.contains(m.getId())) {
+					messageReadytoDelete.add(m.getId());
+				}
+			}
+			for (String m : messageReadytoDelete) {
+				deletemsg(m, false);
+			}
+			messageReadytoDelete.clear();
+		} else {
+			connectionDown(con);
+			/* record the peer's drops & reps */
+			cc.addPeerCounts(peerRouter.getCongestionControl());
+			conlimitmap.remove(con);
+			messageReadytoDelete.clear();
+		}
+	}
+
+	/** before deleting the message, check if the message is being sent*/
+	public void deletemsg(String msgID, boolean dropchecking) {
+		if (isSending(msgID)) {
+			for (Connection cons : getConnections()) {
+				if (cons.getMessage() != null &&
+						cons.getMessage().getId().equals(msgID)) {
+					cons.abortTransfer();
+					break;
+				}
+			}
+		}
+		deleteMessage(msgID, dropchecking);
+	}
+
+	/** the state is updated also when nothing else happens */
+	@Override
+	public boolean needsUpdate() {
+		return super.needsUpdate() || cc.needsUpdate();
+	}
+
+	/** update the congestion state and try to deliver messages */
+	@Override
+	public void update() {
+		super.update();
+		cc.update();
+		if (!canStartTransfer() || isTransferring()) {
+			return; // nothing to transfer or is currently transferring
+		}
+
+		// try messages that could be delivered to final recipient
+		exchangeDeliverableMessages();
+	}
+
+	/* exchange mesage's information of the reps number **/
+	protected void exchangemsginformation() {
+		Collection<Message> msgCollection = getMessageCollection();
+		for (Connection con : getConnections()) {
+			DTNHost peer = con.getOtherNode(getHost());
+			CongestionControlRouter other =
+				(CongestionControlRouter) peer.getRouter();
+			if (other.isTransferring()) {
+				continue; // skip hosts that are transferring
+			}
+			/* look up the messages of the smaller buffer from the other */
+			if (other.getNrofMessages() < msgCollection.size()) {
+				for (Message temp : other.getMessageCollection()) {
+					Message m = getMessage(temp.getId());
+					if (m != null) {
+						takeMaxReps(m, temp);
+					}
+				}
+			}
+			else {
+				for (Message m : msgCollection) {
+					Message temp = other.getMessage(m.getId());
+					if (temp != null) {
+						takeMaxReps(m, temp);
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Takes the max reps of this router's copy of a message and a peer's copy
+	 * @param m This router's copy
+	 * @param temp The peer's copy
+	 */
+	private void takeMaxReps(Message m, Message temp) {
+		if (m.getInt(repsSlot) < temp.getInt(repsSlot)) {
+			dropIndex.setReps(m, temp.getInt(repsSlot));
+		}
+	}
+
+	@Override
+	protected int startTransfer(Message m, Connection con) {
+		int retVal;
+
+		if (!con.isReadyForTransfer()) {
+			return TRY_LATER_BUSY;
+		}
+		/* start transferring if the connection still has the remaining msg limit*/
+		if (conlimitmap.containsKey(con)) {
+			retVal = con.startTransfer(getHost(), m);
+			if (retVal == RCV_OK) { // started transfer
+				addToSendingConnections(con);
+				/* one message less left for the connection; when there's no
+				 * limit left, the connection is removed to prevent the node
+				 * from sending more messages to it */
+				int remaininglimit = conlimitmap.get(con) - 1;
+				if (remaininglimit != 0) {
+					conlimitmap.replace(con, remaininglimit);
+				} else {
+					conlimitmap.remove(con);
+				}
+			} else if (deleteDelivered && retVal == DENIED_OLD && m.getTo() == con.getOtherNode(this.getHost())) {
+				/* final recipient has already received the msg -> delete it */
+				this.deleteMessage(m.getId(), false);
+			}
+			return retVal;
+		}
+
+		return DENIED_UNSPECIFIED;
+	}
+
+	/** buffer checking */
+	@Override
+	protected boolean makeRoomForMessage(int size) {
+		if (size > this.getBufferSize()) {
+			return false; // message too big for the buffer
+		}
+
+		int freeBuffer = this.getFreeBufferSize();
+		/* delete messages from the buffer until there's enough space */
+
+		/* messages are deleted by the oldest first or by the queue mode of
+		 * the congestion control */
+		if (cc.isDropOldest()) {
+			while (freeBuffer < size) {
+				Message m = getOldestMessage(true); // don't remove msgs being sent
+
+				if (m == null) {
+					return false; // couldn't remove any more messages
+				}
+
+				/* delete message from the buffer as "drop" */
+				deleteMessage(m.getId(), true);
+				cc.countDrop();
+				freeBuffer += m.getSize();
+			}
+
+			return true;
+		}
+		if (isVariant(VARIANT_SORTED_DROPS)) {
+			return dropSorted(size, freeBuffer);
+		}
+		while (freeBuffer < size) {
+			Message m = nextMessageToDrop();
+			if (m == null) {
+				return true; // the buffer was emptied
+			}
+			deleteMessage(m.getId(), true);
+			cc.countDrop();
+			freeBuffer += m.getSize();
+		}
+		/* same return values as when the sorted buffer was iterated */
+		return getNrofMessages() > 0;
+	}
+
+	/**
+	 * Drops messages in the order of the sorted buffer until there's enough
+	 * space (see {@link #VARIANT_SORTED_DROPS})
+	 * @param size Size of the new message
+	 * @param freeBuffer The free buffer space
+	 * @return The return value of {@link #makeRoomForMessage(int)}
+	 */
+	private boolean dropSorted(int size, int freeBuffer) {
+		List<Message> messages =
+			new ArrayList<Message>(this.getMessageCollection());
+		Collections.sort(messages, getDropComparator());
+
+		for (Message m : messages) {
+			if (freeBuffer >= size) {
+				return true;
+			}
+			deleteMessage(m.getId(), true);
+			cc.countDrop();
+			freeBuffer += m.getSize();
+		}
+		/* the variant returned false when the last message made room */
+		return freeBuffer < size;
+	}
+
+	/** the comparator of the sorted drops in the delete queue mode */
+	private Comparator<Message> getDropComparator() {
+		switch (cc.getQueueMode()) {
+		/** the highest rate first */
+		case CongestionControl.Q_MODE_RATE:
+			return new Comparator<Message>() {
+				public int compare(Message m1, Message m2) {
+					double r1 = ((double) m1.getHopCount()) /
+						((double) m1.getInitTTL() - (double) m1.getTtl());
+					double r2 = ((double) m2.getHopCount()) /
+						((double) m2.getInitTTL() - (double) m2.getTtl());
+					return descending(r1, r2);
+				}
+			};
+		/** the highest number of replications first */
+		case CongestionControl.Q_MODE_REPS:
+			return new Comparator<Message>() {
+				public int compare(Message m1, Message m2) {
+					return descending(m1.getInt(repsSlot),
+							m2.getInt(repsSlot));
+				}
+			};
+		/** the oldest TTL first */
+		case CongestionControl.Q_MODE_TTL:
+			return new Comparator<Message>() {
+				public int compare(Message m1, Message m2) {
+					return -descending(m1.getTtl(), m2.getTtl());
+				}
+			};
+		default:
+			throw new SimError("Unknown queue mode " + cc.getQueueMode());
+		}
+	}
+
+	/**
+	 * Compares two values for a descending sort. Unordered values (NaN
+	 * rates) put the first value after the second one.
+	 */
+	private static int descending(double v1, double v2) {
+		if (v2 - v1 == 0) {
+			return 0;
+		} else if (v2 - v1 < 0) {
+			return -1;
+		} else {
+			return 1;
+		}
+	}
+
+	/** the next message to drop in the delete queue mode */
+	protected Message nextMessageToDrop() {
+		switch (cc.getQueueMode()) {
+		/** the highest rate first */
+		case CongestionControl.Q_MODE_RATE:
+			return dropIndex.getHighestRate();
+		/** the highest number of replications first */
+		case CongestionControl.Q_MODE_REPS:
+			return dropIndex.getMostReplicated();
+		/** the oldest TTL first */
+		case CongestionControl.Q_MODE_TTL:
+			return dropIndex.getSmallestTtl();
+		/* add more queue modes here */
+		default:
+			throw new SimError("Unknown queue mode " + cc.getQueueMode());
+		}
+	}
+
+	/** the oldest message by the TTL order of the drop index */
+	@Override
+	protected Message getOldestMessage(boolean excludeMsgBeingSent) {
+		if (isVariant(VARIANT_SORTED_DROPS)) {
+			return super.getOldestMessage(excludeMsgBeingSent);
+		}
+		Message oldest = null;
+		for (Message m : dropIndex.getByTtl()) {
+			if (excludeMsgBeingSent && isSending(m.getId())) {
+				continue; // skip the message(s) that router is sending
+			}
+			if (oldest != null && m.getTtl() > oldest.getTtl()) {
+				break; // the rest of the messages have bigger TTLs
+			}
+			if (oldest == null ||
+					DropPriorityIndex.isBeforeInTtlOrder(m, oldest)) {
+				oldest = m;
+			}
+		}
+		return oldest;
+	}
+
+	@Override
+	public boolean createNewMessage(Message m) {
+		if (this.endtimeofmsgcreation == 0 || SimClock.getTime() -
+				this.endtimeofmsgcreation >= cc.getMsgGenerationInterval()) {
+			this.endtimeofmsgcreation = SimClock.getTime();
+			/* added repsproperty to count the
+			 * number of replications for a new message*/
+			m.setInt(repsSlot, 1);
+			return super.createNewMessage(m);
+		}
+
+		return false;
+	}
+
+	@Override
+	public Message messageTransferred(String id, DTNHost from) {
+		Message aCopy = super.messageTransferred(id, from);
+		if (!isVariant(VARIANT_NO_REPS_ON_TRANSFER)) {
+			dropIndex.setReps(aCopy, aCopy.getInt(repsSlot) + 1);
+		}
+
+		// replications are counted by successful incoming replications.
+		cc.countRep();
+		// ack
+		if (isFinalDest(aCopy, this.getHost()) && !receiptBuffer.contains(aCopy.getId())) {
+			ACKTTL ack = new ACKTTL(aCopy, SimClock.getTime());
+			receiptBuffer.add(aCopy.getId(), ack);
+		}
+
+		return aCopy;
+	}
+
+	/**
+	 * Returns the total number of relay hops of the buffered messages
+	 * (the hops after the first one)
+	 * @return The number of relay hops
+	 */
+	public int getTotalRelayHops() {
+		int totalhops = 0;
+		for (Message m : getMessageCollection()) {
+			if (m.getHopCount() != 0) {
+				totalhops += (m.getHopCount() - 1);
+			}
+		}
+		return totalhops;
+	}
+
+	/** check if this host is the final dest */
+	protected boolean isFinalDest(Message m, DTNHost thisHost) {
+		return m.getTo().equals(thisHost);
+	}
+
+	/** when connection up */
+	public void connectionUp(Connection con) {
+
+	}
+
+	/** when connection down */
+	public void connectionDown(Connection con) {
+
+	}
+
+	public ReceiptBuffer getReceiptBuffer() {
+		return receiptBuffer;
+	}
+
+	public CongestionControl getCongestionControl() {
+		return cc;
+	}
+
+	public int getNrofReps() {
+		return cc.getNrofReps();
+	}
+
+	public int getNrofDrops() {
+		return cc.getNrofDrops();
+	}
+
+	@Override
+	public double[][] getQV() {
+	/* to record the q-values */
+		return cc.getQV();
+	}
+}
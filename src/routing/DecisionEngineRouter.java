@@ -85,6 +85,7 @@ import static routing.MessageRouter.TRY_LATER_BUSY;
  */
 public class DecisionEngineRouter extends ActiveRouter
 {
+	private static final long serialVersionUID = 42L;
 	public static final String PUBSUB_NS = "DecisionEngineRouter";
 	public static final String ENGINE_SETTING = "decisionEngine";
 	public static final String TOMBSTONE_SETTING = "tombstones";
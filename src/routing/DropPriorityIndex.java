@@ -0,0 +1,212 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.TreeSet;
+
+import core.Message;
+
+/**
+ * Index of the messages in a router's buffer in the orders the messages
+ * are dropped in by the drop policies of {@link CongestionControlRouter}. The index
+ * is updated when messages are added to or removed from the buffer, so
+ * the next message to drop is found without sorting the buffer.
+ * <P>
+ * The orders by the expiry time and by the number of replications are
+ * kept in sorted sets. Like the sorting drop policies, the TTL order
+ * compares the remaining TTLs in whole minutes ({@link Message#getTtl()})
+ * and breaks ties by message ID. These minute values change with time, so
+ * the set is ordered by the exact expiry times, where the messages with
+ * the same minute value are next to each other, and the ties are resolved
+ * when a message is looked up. The number of replications is read from an int slot
+ * of the messages (see {@link Message#registerIntSlot(String)}), so it
+ * must be changed using {@link #setReps(Message, int)}
+ * while the message is in the index. The replication rate of a message
+ * changes with time, so the message with the highest rate is looked up
+ * from all the messages when needed.</P>
+ */
+public class DropPriorityIndex implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** message slot with the number of replications */
+	private int repsSlot;
+	/** messages in the order of their expiry times (smallest TTL first) */
+	private TreeSet<Message> byTtl;
+	/** messages in the order of their replications (most replicated first) */
+	private TreeSet<Message> byReps;
+	/** read-only view of the TTL order */
+	private Collection<Message> byTtlView;
+
+	/**
+	 * Constructor.
+	 * @param repsSlot Index of the int slot with the number of replications
+	 * of the message
+	 */
+	public DropPriorityIndex(int repsSlot) {
+		this.repsSlot = repsSlot;
+		this.byTtl = new TreeSet<Message>(new TtlOrder());
+		this.byReps = new TreeSet<Message>(new RepsOrder(repsSlot));
+		this.byTtlView = Collections.unmodifiableCollection(byTtl);
+	}
+
+	/**
+	 * Adds a message to the index
+	 * @param m The message
+	 */
+	public void add(Message m) {
+		byTtl.add(m);
+		byReps.add(m);
+	}
+
+	/**
+	 * Removes a message from the index
+	 * @param m The message
+	 */
+	public void remove(Message m) {
+		byTtl.remove(m);
+		byReps.remove(m);
+	}
+
+	/**
+	 * Sets the number of replications of a message and moves the message
+	 * to its new place in the index (if it's in the index)
+	 * @param m The message
+	 * @param reps The new number of replications
+	 */
+	public void setReps(Message m, int reps) {
+		boolean indexed = byReps.remove(m);
+		m.setInt(repsSlot, reps);
+		if (indexed) {
+			byReps.add(m);
+		}
+	}
+
+	/**
+	 * Returns the messages in the order of their expiry times (smallest
+	 * first). The returned collection must not be modified.
+	 * @return The messages in the order of their expiry times
+	 * @see #isBeforeInTtlOrder(Message, Message)
+	 */
+	public Collection<Message> getByTtl() {
+		return byTtlView;
+	}
+
+	/**
+	 * Returns the message with the smallest remaining TTL (in whole
+	 * minutes, ties broken by message ID)
+	 * @return The message or null if the index is empty
+	 */
+	public Message getSmallestTtl() {
+		Message smallest = null;
+		for (Message m : byTtl) {
+			if (smallest != null && m.getTtl() > smallest.getTtl()) {
+				break; // the rest of the messages have bigger TTLs
+			}
+			if (smallest == null || isBeforeInTtlOrder(m, smallest)) {
+				smallest = m;
+			}
+		}
+		return smallest;
+	}
+
+	/**
+	 * Returns true if a message comes before another message in the TTL
+	 * order, i.e., it has a smaller remaining TTL in whole minutes or the
+	 * same TTL and a smaller ID. When the messages are iterated in the
+	 * order of {@link #getByTtl()}, the first message of the TTL order is
+	 * found before a message with a bigger TTL in minutes is reached.
+	 * @param m1 The first message
+	 * @param m2 The second message
+	 * @return True if m1 comes before m2
+	 */
+	public static boolean isBeforeInTtlOrder(Message m1, Message m2) {
+		int ttl1 = m1.getTtl();
+		int ttl2 = m2.getTtl();
+		if (ttl1 != ttl2) {
+			return ttl1 < ttl2;
+		}
+		return m1.getId().compareTo(m2.getId()) < 0;
+	}
+
+	/**
+	 * Returns the message that has been replicated the most
+	 * @return The message or null if the index is empty
+	 */
+	public Message getMostReplicated() {
+		return byReps.isEmpty() ? null : byReps.first();
+	}
+
+	/**
+	 * Returns the message with the highest replication rate, i.e., hops
+	 * per minute since the message was created. Messages whose rate is not
+	 * defined (no hops in the first minute) come last.
+	 * @return The message or null if the index is empty
+	 */
+	public Message getHighestRate() {
+		Message highest = null;
+		double highestRate = 0;
+		for (Message m : byTtl) {
+			double rate = (double)m.getHopCount() /
+				((double)m.getInitTTL() - (double)m.getTtl());
+			if (Double.isNaN(rate)) {
+				rate = Double.NEGATIVE_INFINITY;
+			}
+			if (highest == null || rate > highestRate) {
+				highest = m;
+				highestRate = rate;
+			}
+		}
+		return highest;
+	}
+
+	/**
+	 * Returns the time when a message expires
+	 * @param m The message
+	 * @return The expiry time (infinite if the message has no TTL)
+	 */
+	private static double expiryTime(Message m) {
+		if (m.getInitTTL() == Message.INFINITE_TTL) {
+			return Double.POSITIVE_INFINITY;
+		}
+		return m.getCreationTime() + m.getInitTTL() * 60.0;
+	}
+
+	/**
+	 * Orders messages by their expiry times and IDs
+	 */
+	private static class TtlOrder implements Comparator<Message>,
+			Serializable {
+		private static final long serialVersionUID = 42L;
+		public int compare(Message m1, Message m2) {
+			int c = Double.compare(expiryTime(m1), expiryTime(m2));
+			return c != 0 ? c : m1.getId().compareTo(m2.getId());
+		}
+	}
+
+	/**
+	 * Orders messages by their replications (descending) and IDs
+	 */
+	private static class RepsOrder implements Comparator<Message>,
+			Serializable {
+		private static final long serialVersionUID = 42L;
+		private int repsSlot;
+
+		public RepsOrder(int repsSlot) {
+			this.repsSlot = repsSlot;
+		}
+
+		public int compare(Message m1, Message m2) {
+			int reps1 = m1.getInt(repsSlot);
+			int reps2 = m2.getInt(repsSlot);
+			if (reps1 != reps2) {
+				return reps1 > reps2 ? -1 : 1;
+			}
+			return m1.getId().compareTo(m2.getId());
+		}
+	}
+}
@@ -22,6 +22,7 @@ import java.util.Set;
  * connections at a time.
  */
 public class EpidemicForQL extends Epidemic_IQLCCExponentialReward {
+	private static final long serialVersionUID = 42L;
 
 	public EpidemicForQL(Settings s) {
 		super(s);
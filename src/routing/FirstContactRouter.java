@@ -13,6 +13,7 @@ import core.Settings;
  * (or fragments) and forwards it to the first available contact.
  */
 public class FirstContactRouter extends ActiveRouter {
+	private static final long serialVersionUID = 42L;
 	
 	/**
 	 * Constructor. Creates a new message router based on the settings in
@@ -37,7 +38,7 @@ public class FirstContactRouter extends ActiveRouter {
 		
 		if (recvCheck == RCV_OK) {
 			/* don't accept a message that has already traversed this node */
-			if (m.getHops().contains(getHost())) {
+			if (m.isOnPath(getHost())) {
 				recvCheck = DENIED_OLD;
 			}
 		}
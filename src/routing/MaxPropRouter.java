@@ -35,6 +35,7 @@ import core.Tuple;
  * Protocols</I> Chants, 2008 
  */
 public class MaxPropRouter extends ActiveRouter {
+    private static final long serialVersionUID = 42L;
     /** Router's setting namespace ({@value})*/
 	public static final String MAXPROP_NS = "MaxPropRouter";
 	/**
@@ -344,7 +345,7 @@ public class MaxPropRouter extends ActiveRouter {
 				/* skip messages that the other host has or that have
 				 * passed the other host */
 				if (othRouter.hasMessage(m.getId()) ||
-						m.getHops().contains(other)) {
+						m.isOnPath(other)) {
 					continue; 
 				}
 				messages.add(new Tuple<Message, Connection>(m,con));
@@ -43,6 +43,7 @@ import core.Tuple;
  * @version 1.0
  */
 public class MaxPropRouterWithEstimation extends ActiveRouter {
+	private static final long serialVersionUID = 42L;
 	/** probabilities of meeting hosts */
 	private MeetingProbabilitySet probs;
 	/** meeting probabilities of all hosts from this host's point of view 
@@ -487,7 +488,7 @@ public class MaxPropRouterWithEstimation extends ActiveRouter {
 				/* skip messages that the other host has or that have
 				 * passed the other host */
 				if (othRouter.hasMessage(m.getId()) ||
-						m.getHops().contains(other)) {
+						m.isOnPath(other)) {
 					continue; 
 				}
 				messages.add(new Tuple<Message, Connection>(m,con));
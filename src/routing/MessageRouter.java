@@ -4,6 +4,7 @@
  */
 package routing;
 
+import java.io.Serializable;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
@@ -26,7 +27,8 @@ import core.Tuple;
 /**
  * Superclass for message routers.
  */
-public abstract class MessageRouter {
+public abstract class MessageRouter implements Serializable {
+    private static final long serialVersionUID = 42L;
 
     /**
      * Message buffer size -setting id ({@value}). Integer value in bytes.
@@ -196,6 +198,25 @@ public abstract class MessageRouter {
         }
     }
 
+    /**
+     * Returns true if calling {@link #update()} now could change the state
+     * of this router even if nothing has happened to the host or its
+     * connections since the previous update (e.g., a transfer has finished
+     * in the meantime). Routers whose updates depend on time should
+     * override this. The default implementation returns true if the router
+     * has applications, since they can act at any update.
+     *
+     * @return True if the router should be updated
+     */
+    public boolean needsUpdate() {
+        for (Collection<Application> apps : this.applications.values()) {
+            if (!apps.isEmpty()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Informs the router about change in connections state.
      *
@@ -438,6 +459,35 @@ public abstract class MessageRouter {
         return this.incomingMessages.containsKey(id);
     }
 
+    /**
+     * Returns true if a message with the given ID is being received (from
+     * any host)
+     *
+     * @param id ID of the message
+     * @return True if the message is being received
+     */
+    protected boolean isReceiving(String id) {
+        for (Message m : this.incomingMessages.values()) {
+            if (m.getId().equals(id)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the total size of the messages being received
+     *
+     * @return The size of the incoming messages
+     */
+    protected int getIncomingSize() {
+        int size = 0;
+        for (Message m : this.incomingMessages.values()) {
+            size += m.getSize();
+        }
+        return size;
+    }
+
     /**
      * Adds a message to the message buffer and informs message listeners about
      * new message (if requested).
@@ -448,6 +498,7 @@ public abstract class MessageRouter {
      */
     protected void addToMessages(Message m, boolean newMessage) {
         this.messages.put(m.getId(), m);
+        this.host.stateChanged();
 
         if (newMessage) {
             for (MessageListener ml : this.mListeners) {
@@ -464,6 +515,9 @@ public abstract class MessageRouter {
      */
     protected Message removeFromMessages(String id) {
         Message m = this.messages.remove(id);
+        if (m != null) {
+            this.host.stateChanged();
+        }
         return m;
     }
 
@@ -29,9 +29,12 @@ package routing.QL;
 import java.util.Random;
 
 
-public class BoltzmannExploration implements IExplorationPolicy {
+public class BoltzmannExploration implements IPooledExplorationPolicy {
+	private static final long serialVersionUID = 42L;
 	double temperature;
 	private Random r = new Random();
+	// action probabilities (reused between the choices)
+	private double[] actionProbabilities = new double[0];
 
 	/**
 	 * Initializes a new instance of the BoltzmannExploration class.
@@ -73,7 +76,9 @@ public class BoltzmannExploration implements IExplorationPolicy {
 		// actions count
 		int actionsCount = actionEstimates.length;
 		// action probabilities
-		double[] actionProbabilities = new double[actionsCount];
+		if (actionProbabilities.length < actionsCount) {
+			actionProbabilities = new double[actionsCount];
+		}
 		// actions sum
 		double sum = 0, probabilitiesSum = 0;
 		// System.out.println(temperature);
@@ -133,4 +138,16 @@ public class BoltzmannExploration implements IExplorationPolicy {
 		}
 		return a;
 	}
+
+	/**
+	 * Chooses an action for a learner of a pool like
+	 * {@link #ChooseAction(double[], boolean[])} does, using the learner's
+	 * random number generator.
+	 */
+	@Override
+	public int ChooseAction(QLearningPool pool, int learner, int state,
+			boolean[] actionRestriction) {
+		return pool.chooseSoftmax(learner, state, temperature,
+				actionRestriction);
+	}
 }
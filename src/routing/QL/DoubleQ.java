@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.QL;
+
+import core.Settings;
+
+/**
+ * Double Q-learning. The learner has two estimates, A and B, and on every
+ * update one of them (chosen at random) is moved towards the reward plus
+ * the discounted value that the other estimate gives to the best action of
+ * the updated estimate in the next state. This avoids the overestimation
+ * of the one-step Q-learning. The actions are chosen using the mean of the
+ * estimates, which is kept in the Q-table.
+ */
+public class DoubleQ extends LearningAlgorithm {
+	private static final long serialVersionUID = 42L;
+	/** table of the Q-values (the mean of the estimates) */
+	private static final int Q_TABLE = 0;
+	/** table of the estimate A */
+	private static final int A_TABLE = 1;
+	/** table of the estimate B */
+	private static final int B_TABLE = 2;
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public DoubleQ(Settings s) {
+		super(s);
+	}
+
+	/**
+	 * Copyconstructor.
+	 * @param proto The algorithm prototype
+	 */
+	protected DoubleQ(DoubleQ proto) {
+		super(proto);
+	}
+
+	@Override
+	public LearningAlgorithm replicate() {
+		return new DoubleQ(this);
+	}
+
+	@Override
+	public int getNrofTables() {
+		return 3;
+	}
+
+	/**
+	 * Starts both the estimates from the initial Q-values
+	 */
+	@Override
+	public void initValues() {
+		int states = pool.getStates(learner);
+		int actions = pool.getActions(learner);
+		for (int i = 0; i < states; i++) {
+			for (int j = 0; j < actions; j++) {
+				double q = pool.getQ(learner, i, j);
+				pool.setValue(learner, A_TABLE, i, j, q);
+				pool.setValue(learner, B_TABLE, i, j, q);
+			}
+		}
+	}
+
+	@Override
+	public double update(int previousState, int action, double reward,
+			int nextState, double discountFactor) {
+		boolean updateA = pool.nextDouble(learner) < 0.5;
+		int table = updateA ? A_TABLE : B_TABLE;
+		int other = updateA ? B_TABLE : A_TABLE;
+		double target;
+
+		synchronized (pool.getLock(learner, nextState)) {
+			int best = pool.getBestAction(learner, table, nextState);
+			target = reward + discountFactor *
+				pool.getValue(learner, other, nextState, best);
+		}
+
+		synchronized (pool.getLock(learner, previousState)) {
+			double learningRate = 1.0 /
+				(1.0 + pool.getVisits(learner, previousState, action));
+			double q = pool.getValue(learner, table, previousState, action);
+			q *= (1.0 - learningRate);
+			q += (learningRate * target);
+			pool.setValue(learner, table, previousState, action, q);
+			pool.setQ(learner, previousState, action, (q +
+				pool.getValue(learner, other, previousState, action)) / 2);
+			return learningRate;
+		}
+	}
+}
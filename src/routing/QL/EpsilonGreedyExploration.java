@@ -38,7 +38,8 @@ import java.util.Random;
  * 
  * @author Diego Catalano
  */
-public class EpsilonGreedyExploration implements IExplorationPolicy {
+public class EpsilonGreedyExploration implements IPooledExplorationPolicy {
+	private static final long serialVersionUID = 42L;
 	private double epsilon;
 
 	private Random r = new Random();
@@ -111,4 +112,16 @@ public class EpsilonGreedyExploration implements IExplorationPolicy {
 
 		return greedyAction;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Chooses an action for a learner of a pool like
+	 * {@link #ChooseAction(double[], boolean[])} does, using the learner's
+	 * random number generator.
+	 */
+	@Override
+	public int ChooseAction(QLearningPool pool, int learner, int state,
+			boolean[] actionRestriction) {
+		return pool.chooseEpsilonGreedy(learner, state, epsilon,
+				actionRestriction);
+	}
+}
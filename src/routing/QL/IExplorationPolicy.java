@@ -1,5 +1,7 @@
 package routing.QL;
 
+import java.io.Serializable;
+
 //Catalano Machine Learning Library
 //The Catalano Framework
 //
@@ -31,7 +33,7 @@ package routing.QL;
 * Learning to explore state space.
 
 */
-public interface IExplorationPolicy {
+public interface IExplorationPolicy extends Serializable {
  	/**
 	 * The method chooses an action depending on the provided estimates. the
 	 * estimates can be any sort of estimate, which values usefulness of the action
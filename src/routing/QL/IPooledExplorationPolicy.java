@@ -0,0 +1,23 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.QL;
+
+/**
+ * Exploration policy that can choose actions straight from the Q-values of
+ * a learner in a {@link QLearningPool}, using the learner's own random
+ * number generator.
+ */
+public interface IPooledExplorationPolicy extends IExplorationPolicy {
+	/**
+	 * Chooses an action for a learner of a pool
+	 * @param pool The pool
+	 * @param learner Index of the learner in the pool
+	 * @param state The current state of the learner
+	 * @param actionRestriction Which actions are allowed in the state
+	 * @return The selected action
+	 */
+	public int ChooseAction(QLearningPool pool, int learner, int state,
+			boolean[] actionRestriction);
+}
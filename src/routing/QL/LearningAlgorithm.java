@@ -0,0 +1,152 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.QL;
+
+import java.io.Serializable;
+
+import core.Settings;
+
+/**
+ * <P>Superclass of the reinforcement learning algorithms that update the
+ * Q-values of a {@link QLearning}. The algorithm is chosen with the
+ * {@link #LEARNING_ALGORITHM_S} setting of the router's namespace, and
+ * the algorithm classes must be in the {@value #ALGORITHM_PACKAGE}
+ * package and have a constructor with a {@link Settings} parameter.
+ * Every learner has its own algorithm, which is created from a prototype
+ * with {@link #replicate()}.</P>
+ *
+ * <P>If the {@link #SHARED_Q_TABLE_S} setting is true, all the learners
+ * using the same algorithm (and the same number of states and actions)
+ * share one Q-table, so they learn together. The shared values are
+ * updated while holding the lock of their state, so the learners can be
+ * updated concurrently.</P>
+ */
+public abstract class LearningAlgorithm implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** Learning algorithm's class name -setting id ({@value}).
+	 * Default = {@value #DEF_LEARNING_ALGORITHM}. */
+	public static final String LEARNING_ALGORITHM_S = "learningAlgorithm";
+	/** Share one Q-table between all the learners -setting id ({@value}).
+	 * Default = false. */
+	public static final String SHARED_Q_TABLE_S = "sharedQTable";
+	/** Package where the learning algorithms are looked for ({@value}) */
+	public static final String ALGORITHM_PACKAGE = "routing.QL.";
+	/** Default learning algorithm ({@value}) */
+	public static final String DEF_LEARNING_ALGORITHM = "OneStepQ";
+
+	/** key of the shared Q-table or null if the table isn't shared */
+	private String sharedKey;
+	/** pool of the learner */
+	protected QLearningPool pool;
+	/** index of the learner in the pool */
+	protected int learner;
+
+	/**
+	 * Constructor for an algorithm with a Q-table of its own
+	 */
+	public LearningAlgorithm() {
+		this.sharedKey = null;
+	}
+
+	/**
+	 * Constructor. Reads the shared Q-table setting.
+	 * @param s The settings object
+	 */
+	public LearningAlgorithm(Settings s) {
+		if (s.contains(SHARED_Q_TABLE_S) && s.getBoolean(SHARED_Q_TABLE_S)) {
+			this.sharedKey = s.getNameSpace() + "." + getClass().getName();
+		}
+	}
+
+	/**
+	 * Copyconstructor.
+	 * @param proto The algorithm prototype where setting values are copied
+	 * from
+	 */
+	protected LearningAlgorithm(LearningAlgorithm proto) {
+		this.sharedKey = proto.sharedKey;
+	}
+
+	/**
+	 * Creates the learning algorithm given in the settings
+	 * ({@link #LEARNING_ALGORITHM_S})
+	 * @param s The settings object
+	 * @return The algorithm prototype
+	 */
+	public static LearningAlgorithm create(Settings s) {
+		String name = s.contains(LEARNING_ALGORITHM_S) ?
+				s.getSetting(LEARNING_ALGORITHM_S) : DEF_LEARNING_ALGORITHM;
+		return (LearningAlgorithm)s.createIntializedObject(
+				ALGORITHM_PACKAGE + name);
+	}
+
+	/**
+	 * Creates a new algorithm for a learner with the same settings as this
+	 * one
+	 * @return The new algorithm
+	 */
+	public abstract LearningAlgorithm replicate();
+
+	/**
+	 * Returns the number of tables the algorithm needs (the first one has
+	 * the Q-values). Default = 1.
+	 * @return The number of tables
+	 */
+	public int getNrofTables() {
+		return 1;
+	}
+
+	/**
+	 * Returns true if the learners share one Q-table
+	 * @return True if the Q-table is shared
+	 */
+	public boolean isShared() {
+		return sharedKey != null;
+	}
+
+	/**
+	 * Adds the learner of this algorithm to a pool
+	 * @param pool The pool
+	 * @param states Number of states
+	 * @param actions Number of actions
+	 * @return Index of the learner
+	 */
+	public int addLearner(QLearningPool pool, int states, int actions) {
+		this.pool = pool;
+		if (sharedKey == null) {
+			this.learner = pool.addLearner(states, actions, getNrofTables());
+		}
+		else {
+			this.learner = pool.addSharedLearner(sharedKey + "." + states +
+					"x" + actions, states, actions, getNrofTables());
+		}
+		return learner;
+	}
+
+	/**
+	 * Called after the initial Q-values of a new table have been set.
+	 * Not called for learners that use an existing shared table.
+	 */
+	public void initValues() { }
+
+	/**
+	 * Called when the learner has chosen an action
+	 * @param state The current state
+	 * @param action The chosen action
+	 */
+	public void actionChosen(int state, int action) { }
+
+	/**
+	 * Updates the values after a transition
+	 * @param previousState Previous state
+	 * @param action Action, which leads from previous to the next state
+	 * @param reward Reward received by taking the action
+	 * @param nextState Next state
+	 * @param discountFactor Discount factor for the expected reward
+	 * @return The learning rate used
+	 */
+	public abstract double update(int previousState, int action,
+			double reward, int nextState, double discountFactor);
+}
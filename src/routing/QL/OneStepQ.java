@@ -0,0 +1,51 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.QL;
+
+import core.Settings;
+
+/**
+ * One-step Q-learning (the default algorithm). The Q-value of the previous
+ * state-action pair is moved towards the reward plus the discounted best
+ * Q-value of the next state, with the learning rate 1 / (1 + visits).
+ */
+public class OneStepQ extends LearningAlgorithm {
+	private static final long serialVersionUID = 42L;
+
+	/**
+	 * Constructor for an algorithm with a Q-table of its own
+	 */
+	public OneStepQ() {
+		super();
+	}
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public OneStepQ(Settings s) {
+		super(s);
+	}
+
+	/**
+	 * Copyconstructor.
+	 * @param proto The algorithm prototype
+	 */
+	protected OneStepQ(OneStepQ proto) {
+		super(proto);
+	}
+
+	@Override
+	public LearningAlgorithm replicate() {
+		return new OneStepQ(this);
+	}
+
+	@Override
+	public double update(int previousState, int action, double reward,
+			int nextState, double discountFactor) {
+		return pool.update(learner, previousState, action, reward, nextState,
+				discountFactor);
+	}
+}
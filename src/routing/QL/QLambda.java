@@ -0,0 +1,118 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.QL;
+
+import java.util.Arrays;
+
+import core.Settings;
+
+/**
+ * Watkins's Q(&lambda;): Q-learning with eligibility traces. The temporal
+ * difference error of every transition updates all the recently visited
+ * state-action pairs in proportion to their traces, which decay by the
+ * discount factor times {@link #LAMBDA_S} on every step and are cut when
+ * a non-greedy (exploring) action is chosen. The traces are kept by each
+ * learner even when the Q-table is shared.
+ */
+public class QLambda extends LearningAlgorithm {
+	private static final long serialVersionUID = 42L;
+	/** Trace decay -setting id ({@value}). Default = {@value #DEF_LAMBDA}. */
+	public static final String LAMBDA_S = "lambda";
+	/** Default trace decay ({@value}) */
+	public static final double DEF_LAMBDA = 0.9;
+	/** traces smaller than this are cut to zero */
+	private static final double MIN_TRACE = 1e-4;
+
+	/** trace decay parameter */
+	private double lambda;
+	/** eligibility traces of the state-action pairs */
+	private double[] traces;
+	/** number of actions of the learner */
+	private int actions;
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public QLambda(Settings s) {
+		super(s);
+		this.lambda = s.contains(LAMBDA_S) ? s.getDouble(LAMBDA_S) :
+			DEF_LAMBDA;
+		if (lambda < 0 || lambda > 1) {
+			throw new IllegalArgumentException("Invalid lambda " + lambda);
+		}
+	}
+
+	/**
+	 * Copyconstructor.
+	 * @param proto The algorithm prototype
+	 */
+	protected QLambda(QLambda proto) {
+		super(proto);
+		this.lambda = proto.lambda;
+	}
+
+	@Override
+	public LearningAlgorithm replicate() {
+		return new QLambda(this);
+	}
+
+	@Override
+	public int addLearner(QLearningPool pool, int states, int actions) {
+		int l = super.addLearner(pool, states, actions);
+		this.actions = actions;
+		this.traces = new double[states * actions];
+		return l;
+	}
+
+	/**
+	 * Cuts the traces if the chosen action isn't greedy
+	 */
+	@Override
+	public void actionChosen(int state, int action) {
+		if (pool.getQ(learner, state, action) <
+				pool.getQ(learner, state,
+						pool.getBestAction(learner, 0, state))) {
+			Arrays.fill(traces, 0);
+		}
+	}
+
+	@Override
+	public double update(int previousState, int action, double reward,
+			int nextState, double discountFactor) {
+		double delta;
+		double learningRate = 0;
+
+		synchronized (pool.getLock(learner, nextState)) {
+			delta = reward + discountFactor * pool.getQ(learner, nextState,
+					pool.getBestAction(learner, 0, nextState));
+		}
+		delta -= pool.getQ(learner, previousState, action);
+		traces[previousState * actions + action] += 1;
+
+		double decay = discountFactor * lambda;
+		for (int s = 0, n = traces.length / actions; s < n; s++) {
+			int start = s * actions;
+			synchronized (pool.getLock(learner, s)) {
+				for (int a = 0; a < actions; a++) {
+					double e = traces[start + a];
+					if (e == 0) {
+						continue;
+					}
+					double rate = 1.0 /
+						(1.0 + pool.getVisits(learner, s, a));
+					if (s == previousState && a == action) {
+						learningRate = rate;
+					}
+					pool.setQ(learner, s, a,
+							pool.getQ(learner, s, a) + rate * delta * e);
+					e *= decay;
+					traces[start + a] = e < MIN_TRACE ? 0 : e;
+				}
+			}
+		}
+		return learningRate;
+	}
+}
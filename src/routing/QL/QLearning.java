@@ -23,15 +23,27 @@ package routing.QL;
 //License along with this library; if not, write to the Free Software
 //Foundation, Inc., 51 Franklin St, Fifth Floor, Boston, MA  02110-1301  USA
 //
-import java.util.Random;
+import java.io.Serializable;
 
-public class QLearning {
+/**
+ * Tabular Q-learning. The Q-values and the visit counts are kept in a
+ * {@link QLearningPool} (by default the shared pool of the run), and they
+ * are updated by a {@link LearningAlgorithm} (by default {@link OneStepQ}).
+ */
+public class QLearning implements Serializable {
+	private static final long serialVersionUID = 42L;
 	// amount of possible states
 	private int states;
 	// amount of possible actions
 	private int actions;
-	// q-values
-	private double[][] qvalues;
+	// pool with the q-values and visit counts
+	private QLearningPool pool;
+	// index of this learner in the pool
+	private int learner;
+	// algorithm updating the q-values
+	private LearningAlgorithm algorithm;
+	// q-values of a state (for policies that can't use the pool)
+	private double[] stateEstimates;
 	// exploration policy
 	private IExplorationPolicy explorationPolicy;
 
@@ -41,7 +53,6 @@ public class QLearning {
 	private double learningRate = 0.25;
 
 	private boolean[][] actionRestriction;
-	private double visitSA[][];
 
 	/**
 	 * Amount of possible states.
@@ -131,49 +142,98 @@ public class QLearning {
 	 */
 	public QLearning(int states, int actions, IExplorationPolicy explorationPolicy, boolean randomize,
 			boolean[][] actionRestriction) {
+		this(states, actions, explorationPolicy, randomize, actionRestriction,
+				QLearningPool.getShared());
+	}
+
+	/**
+	 * Initializes a new instance of the QLearning class in the given pool.
+	 * 
+	 * @param states            Amount of possible states.
+	 * @param actions           Amount of possible actions.
+	 * @param explorationPolicy Exploration policy. Aturan action selection.
+	 * @param randomize         Randomize action estimates or not.
+	 * @param pool              Pool for the q-values and visit counts.
+	 */
+	public QLearning(int states, int actions, IExplorationPolicy explorationPolicy, boolean randomize,
+			boolean[][] actionRestriction, QLearningPool pool) {
+		this(states, actions, explorationPolicy, actionRestriction, new OneStepQ(), pool, randomize, null);
+	}
+
+	/** set qlearning with previous knowledge */
+	public QLearning(int states, int actions, IExplorationPolicy explorationPolicy, double[][] QV,
+			boolean[][] actionRestriction) {
+		this(states, actions, explorationPolicy, actionRestriction, new OneStepQ(), QLearningPool.getShared(),
+				false, QV);
+	}
+
+	/**
+	 * Initializes a new instance of the QLearning class with the given
+	 * learning algorithm in the shared pool.
+	 * 
+	 * @param states            Amount of possible states.
+	 * @param actions           Amount of possible actions.
+	 * @param explorationPolicy Exploration policy. Aturan action selection.
+	 * @param algorithm         Algorithm updating the q-values (not shared
+	 *                          with other learners).
+	 */
+	public QLearning(int states, int actions, IExplorationPolicy explorationPolicy, boolean[][] actionRestriction,
+			LearningAlgorithm algorithm) {
+		this(states, actions, explorationPolicy, actionRestriction, algorithm, QLearningPool.getShared(), false,
+				null);
+	}
+
+	/**
+	 * Initializes a new instance of the QLearning class.
+	 * 
+	 * @param states            Amount of possible states.
+	 * @param actions           Amount of possible actions.
+	 * @param explorationPolicy Exploration policy. Aturan action selection.
+	 * @param algorithm         Algorithm updating the q-values.
+	 * @param pool              Pool for the q-values and visit counts.
+	 * @param randomize         Randomize action estimates or not.
+	 * @param QV                Initial q-values (or null).
+	 */
+	public QLearning(int states, int actions, IExplorationPolicy explorationPolicy, boolean[][] actionRestriction,
+			LearningAlgorithm algorithm, QLearningPool pool, boolean randomize, double[][] QV) {
 		this.states = states;
 		this.actions = actions;
 		this.explorationPolicy = explorationPolicy;
 		this.actionRestriction = actionRestriction;
-		this.visitSA = new double[states][actions];
-		// create Q-array (initialize qvalue = 0 for each s & a)
-		qvalues = new double[states][];
-		for (int i = 0; i < states; i++) {
-			qvalues[i] = new double[actions];
-		}
+		// q-values are initially 0 for each s & a
+		this.pool = pool;
+		this.algorithm = algorithm;
+		this.learner = algorithm.addLearner(pool, states, actions);
 
+		// a shared table is initialized only by its first learner
+		if (!pool.isOwner(learner)) {
+			return;
+		}
 		// do randomization
 		if (randomize) {
-			Random r = new Random();
-
 			for (int i = 0; i < states; i++) {
 				for (int j = 0; j < actions; j++) {
-					qvalues[i][j] = r.nextDouble() / 10;
+					pool.setQ(learner, i, j, pool.nextDouble(learner) / 10);
 				}
 			}
 		}
-	}
-
-	/** set qlearning with previous knowledge */
-	public QLearning(int states, int actions, IExplorationPolicy explorationPolicy, double[][] QV,
-			boolean[][] actionRestriction) {
-		this.states = states;
-		this.actions = actions;
-		this.explorationPolicy = explorationPolicy;
-		this.actionRestriction = actionRestriction;
-		this.visitSA = new double[states][actions];
-		// create Q-array (initialize qvalue = 0 for each s & a)
-		qvalues = new double[states][];
-		for (int i = 0; i < states; i++) {
-			qvalues[i] = new double[actions];
-		}
-
-		for (int i = 0; i < states; i++) {
-			for (int j = 0; j < actions; j++) {
-				qvalues[i][j] = QV[i][j];
+		if (QV != null) {
+			for (int i = 0; i < states; i++) {
+				for (int j = 0; j < actions; j++) {
+					pool.setQ(learner, i, j, QV[i][j]);
+				}
 			}
 		}
+		algorithm.initValues();
+	}
 
+	/**
+	 * Learning algorithm updating the q-values.
+	 * 
+	 * @return Learning algorithm
+	 */
+	public LearningAlgorithm getLearningAlgorithm() {
+		return algorithm;
 	}
 
 	/**
@@ -183,8 +243,21 @@ public class QLearning {
 	 * @return Returns the action for the state.
 	 */
 	public int GetAction(int state) {
-		int action = explorationPolicy.ChooseAction(qvalues[state], actionRestriction[state]);
-		visitSA[state][action] += 1;
+		int action;
+		if (explorationPolicy instanceof IPooledExplorationPolicy) {
+			action = ((IPooledExplorationPolicy) explorationPolicy).ChooseAction(pool, learner, state,
+					actionRestriction[state]);
+		} else {
+			if (stateEstimates == null) {
+				stateEstimates = new double[actions];
+			}
+			for (int i = 0; i < actions; i++) {
+				stateEstimates[i] = pool.getQ(learner, state, i);
+			}
+			action = explorationPolicy.ChooseAction(stateEstimates, actionRestriction[state]);
+		}
+		algorithm.actionChosen(state, action);
+		pool.visit(learner, state, action);
 		return action;
 	}
 
@@ -198,25 +271,35 @@ public class QLearning {
 	 * @param nextState     Next state.
 	 */
 	public void UpdateState(int previousState, int action, double reward, int nextState) {
-		// next state's action estimations
-		double[] nextActionEstimations = qvalues[nextState];
-		// find maximum expected summary reward from the next state
-		double maxNextExpectedReward = nextActionEstimations[0];
-
-		for (int i = 1; i < actions; i++) {
-			if (nextActionEstimations[i] > maxNextExpectedReward)
-				maxNextExpectedReward = nextActionEstimations[i];
-		}
-
-		// previous state's action estimations
-		double[] previousActionEstimations = qvalues[previousState];
-		learningRate = 1.0 / (1.0 + visitSA[previousState][action]);
-		// update expexted summary reward of the previous state
-		previousActionEstimations[action] *= (1.0 - learningRate);
-		previousActionEstimations[action] += (learningRate * (reward + discountFactor * maxNextExpectedReward));
+		// learning rate is 1 / (1 + visits of the previous state & action)
+		learningRate = algorithm.update(previousState, action, reward, nextState, discountFactor);
 	}
- 
+
+	/**
+	 * Get a copy of the q-values.
+	 * 
+	 * @return The q-values indexed by state and action
+	 */
 	public double[][] getqvalues() {
-		return qvalues;
+		return pool.getQValues(learner);
+	}
+
+	/**
+	 * Set the q-values (e.g., to start from the values learned in an
+	 * earlier run). The visit counts are not changed.
+	 * 
+	 * @param QV The q-values indexed by state and action
+	 */
+	public void setqvalues(double[][] QV) {
+		if (QV.length != states || QV[0].length != actions) {
+			throw new IllegalArgumentException("Q-values of " + QV.length + " states and " + QV[0].length
+					+ " actions given to a learner of " + states + " states and " + actions + " actions");
+		}
+		for (int i = 0; i < states; i++) {
+			for (int j = 0; j < actions; j++) {
+				pool.setQ(learner, i, j, QV[i][j]);
+			}
+		}
+		algorithm.initValues();
 	}
 }
@@ -0,0 +1,595 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.QL;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import core.DTNSim;
+import core.Settings;
+
+/**
+ * <P>Store for the Q-tables of many learners (e.g., the routers of all the
+ * hosts). The Q-values and the visit counts of all the learners are kept in
+ * flat arrays indexed by the learner, state and action, and every learner
+ * has its own random number generator (a SplitMix64 stream) whose state is
+ * kept in an array too. Choosing actions and updating the Q-values don't
+ * allocate any objects.</P>
+ *
+ * <P>Learners can also share their Q-values (and visit counts) with other
+ * learners (see {@link #addSharedLearner(String, int, int, int)}) while
+ * having their own random number generators. Besides the Q-values, a
+ * learner can have extra tables of the same size for the learning
+ * algorithm.</P>
+ *
+ * <P>The methods of a learner only touch the learner's own parts of the
+ * arrays, so different learners can be used concurrently (e.g., when the
+ * hosts are updated in parallel). Values that may be shared are changed
+ * while holding the lock of their state (see {@link #getLock(int, int)}),
+ * so learners sharing values can also be updated concurrently. Adding
+ * learners is synchronized.</P>
+ *
+ * <P>By default the learners are in a shared pool (see
+ * {@link #getShared()}) that is reset between batch runs.</P>
+ */
+public class QLearningPool implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** Q-learning settings namespace ({@value}) */
+	public static final String SETTINGS_NS = "QLearning";
+	/** Seed for the random number generators of the shared pool
+	 * -setting id ({@value}). Default = 0. */
+	public static final String RNG_SEED_S = "rngSeed";
+
+	/** increment of the SplitMix64 generator */
+	private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+	/** initial capacity for learners */
+	private static final int INITIAL_LEARNERS = 16;
+	/** number of locks the states are striped over */
+	private static final int NROF_LOCKS = 64;
+
+	/** the shared pool (created when first needed) */
+	private static QLearningPool shared;
+
+	static {
+		DTNSim.registerForReset(QLearningPool.class.getCanonicalName());
+		reset();
+	}
+
+	/** seed the learners' generators are derived from */
+	private long seed;
+	/** number of learners in the pool */
+	private int nrofLearners;
+	/** used length of the value arrays */
+	private int size;
+	/** index of each learner's first value */
+	private int[] offset;
+	/** did the learner create its values (or share them) */
+	private boolean[] owner;
+	/** number of states of each learner */
+	private int[] nrofStates;
+	/** number of actions of each learner */
+	private int[] nrofActions;
+	/** state of each learner's random number generator */
+	private long[] rngState;
+	/** Q-values of the learners */
+	private double[] qvalues;
+	/** how many times each state-action pair has been chosen */
+	private double[] visits;
+	/** space for the action probabilities of the learners */
+	private double[] scratch;
+	/** used length of the scratch array */
+	private int scratchSize;
+	/** index of each learner's scratch space */
+	private int[] scratchOffset;
+	/** the first learners of the shared tables by the tables' keys */
+	private Map<String, Integer> sharedTables;
+	/** locks of the states, striped by the index of the state */
+	private Object[] locks;
+
+	/**
+	 * Constructor.
+	 * @param seed Seed for the learners' random number generators
+	 */
+	public QLearningPool(long seed) {
+		this.seed = seed;
+		this.offset = new int[INITIAL_LEARNERS];
+		this.owner = new boolean[INITIAL_LEARNERS];
+		this.nrofStates = new int[INITIAL_LEARNERS];
+		this.nrofActions = new int[INITIAL_LEARNERS];
+		this.rngState = new long[INITIAL_LEARNERS];
+		this.scratchOffset = new int[INITIAL_LEARNERS];
+		this.qvalues = new double[INITIAL_LEARNERS * 32];
+		this.visits = new double[qvalues.length];
+		this.scratch = new double[INITIAL_LEARNERS * 8];
+		this.sharedTables = new HashMap<String, Integer>();
+		this.locks = new Object[NROF_LOCKS];
+		for (int i = 0; i < NROF_LOCKS; i++) {
+			locks[i] = new Lock();
+		}
+	}
+
+	/**
+	 * Returns the pool shared by all the learners of the run. The seed of
+	 * the pool is read from the settings ({@link #RNG_SEED_S}).
+	 * @return The shared pool
+	 */
+	public static synchronized QLearningPool getShared() {
+		if (shared == null) {
+			Settings s = new Settings(SETTINGS_NS);
+			shared = new QLearningPool(s.contains(RNG_SEED_S) ?
+					s.getInt(RNG_SEED_S) : 0);
+		}
+		return shared;
+	}
+
+	/**
+	 * Returns the seed the learners' generators are derived from
+	 * @return The seed
+	 */
+	public long getSeed() {
+		return this.seed;
+	}
+
+	/**
+	 * Resets the static fields of the class
+	 */
+	public static synchronized void reset() {
+		shared = null;
+	}
+
+	/**
+	 * Adds a new learner to the pool. The Q-values and visit counts of the
+	 * learner are all zero.
+	 * @param states Number of states
+	 * @param actions Number of actions
+	 * @return Index of the new learner
+	 */
+	public int addLearner(int states, int actions) {
+		return addLearner(states, actions, 1);
+	}
+
+	/**
+	 * Adds a new learner with extra tables to the pool. All the values of
+	 * the learner are zero.
+	 * @param states Number of states
+	 * @param actions Number of actions
+	 * @param tables Number of tables (the first one has the Q-values)
+	 * @return Index of the new learner
+	 */
+	public synchronized int addLearner(int states, int actions, int tables) {
+		int values = tables * states * actions;
+		if (size + values > qvalues.length) {
+			int n = Math.max(qvalues.length * 2, size + values);
+			qvalues = Arrays.copyOf(qvalues, n);
+			visits = Arrays.copyOf(visits, n);
+		}
+		int l = newLearner(size, states, actions);
+		owner[l] = true;
+		size += values;
+		return l;
+	}
+
+	/**
+	 * Adds a new learner that shares its values with all the other
+	 * learners added with the same key. The first learner added with the
+	 * key creates the values.
+	 * @param key Key of the shared values
+	 * @param states Number of states
+	 * @param actions Number of actions
+	 * @param tables Number of tables (the first one has the Q-values)
+	 * @return Index of the new learner
+	 * @throws IllegalArgumentException if the values with the key have a
+	 * different size
+	 */
+	public synchronized int addSharedLearner(String key, int states,
+			int actions, int tables) {
+		Integer first = sharedTables.get(key);
+		if (first == null) {
+			int l = addLearner(states, actions, tables);
+			sharedTables.put(key, l);
+			return l;
+		}
+		if (nrofStates[first] != states || nrofActions[first] != actions) {
+			throw new IllegalArgumentException("Shared Q-table " + key +
+					" has " + nrofStates[first] + " states and " +
+					nrofActions[first] + " actions, not " + states + " and " +
+					actions);
+		}
+		return newLearner(offset[first], states, actions);
+	}
+
+	/**
+	 * Returns true if the learner created its values, false if it shares
+	 * the values created by another learner
+	 * @param l Index of the learner
+	 * @return True if the learner created its values
+	 */
+	public boolean isOwner(int l) {
+		return owner[l];
+	}
+
+	/**
+	 * Adds a learner with the given values
+	 * @param valueOffset Index of the learner's first value
+	 * @param states Number of states
+	 * @param actions Number of actions
+	 * @return Index of the new learner
+	 */
+	private int newLearner(int valueOffset, int states, int actions) {
+		int l = nrofLearners;
+		if (l == offset.length) {
+			int n = l * 2;
+			offset = Arrays.copyOf(offset, n);
+			owner = Arrays.copyOf(owner, n);
+			nrofStates = Arrays.copyOf(nrofStates, n);
+			nrofActions = Arrays.copyOf(nrofActions, n);
+			rngState = Arrays.copyOf(rngState, n);
+			scratchOffset = Arrays.copyOf(scratchOffset, n);
+		}
+		if (scratchSize + actions > scratch.length) {
+			scratch = Arrays.copyOf(scratch,
+					Math.max(scratch.length * 2, scratchSize + actions));
+		}
+
+		offset[l] = valueOffset;
+		nrofStates[l] = states;
+		nrofActions[l] = actions;
+		rngState[l] = mix(seed + (l + 1) * GOLDEN_GAMMA);
+		scratchOffset[l] = scratchSize;
+		scratchSize += actions;
+		nrofLearners++;
+		return l;
+	}
+
+	/**
+	 * Returns the lock that must be held while changing the (possibly
+	 * shared) values of a state of a learner
+	 * @param l Index of the learner
+	 * @param state The state
+	 * @return The lock
+	 */
+	public Object getLock(int l, int state) {
+		return locks[(offset[l] / nrofActions[l] + state) % NROF_LOCKS];
+	}
+
+	/**
+	 * Returns the number of states of a learner
+	 * @param l Index of the learner
+	 * @return The number of states
+	 */
+	public int getStates(int l) {
+		return nrofStates[l];
+	}
+
+	/**
+	 * Returns the number of actions of a learner
+	 * @param l Index of the learner
+	 * @return The number of actions
+	 */
+	public int getActions(int l) {
+		return nrofActions[l];
+	}
+
+	/**
+	 * Returns a Q-value of a learner
+	 * @param l Index of the learner
+	 * @param state The state
+	 * @param action The action
+	 * @return The Q-value
+	 */
+	public double getQ(int l, int state, int action) {
+		return qvalues[offset[l] + state * nrofActions[l] + action];
+	}
+
+	/**
+	 * Sets a Q-value of a learner
+	 * @param l Index of the learner
+	 * @param state The state
+	 * @param action The action
+	 * @param value The new Q-value
+	 */
+	public void setQ(int l, int state, int action, double value) {
+		qvalues[offset[l] + state * nrofActions[l] + action] = value;
+	}
+
+	/**
+	 * Returns a value from a table of a learner
+	 * @param l Index of the learner
+	 * @param table Index of the table (0 for the Q-values)
+	 * @param state The state
+	 * @param action The action
+	 * @return The value
+	 */
+	public double getValue(int l, int table, int state, int action) {
+		return qvalues[index(l, table, state, action)];
+	}
+
+	/**
+	 * Sets a value in a table of a learner
+	 * @param l Index of the learner
+	 * @param table Index of the table (0 for the Q-values)
+	 * @param state The state
+	 * @param action The action
+	 * @param value The new value
+	 */
+	public void setValue(int l, int table, int state, int action,
+			double value) {
+		qvalues[index(l, table, state, action)] = value;
+	}
+
+	/**
+	 * Returns how many times a learner has chosen an action in a state
+	 * @param l Index of the learner
+	 * @param state The state
+	 * @param action The action
+	 * @return The number of visits
+	 */
+	public double getVisits(int l, int state, int action) {
+		return visits[offset[l] + state * nrofActions[l] + action];
+	}
+
+	/**
+	 * Counts a visit to a state-action pair of a learner
+	 * @param l Index of the learner
+	 * @param state The state
+	 * @param action The action
+	 */
+	public void visit(int l, int state, int action) {
+		synchronized (getLock(l, state)) {
+			visits[offset[l] + state * nrofActions[l] + action] += 1;
+		}
+	}
+
+	/**
+	 * Returns a copy of the Q-values of a learner
+	 * @param l Index of the learner
+	 * @return The Q-values indexed by state and action
+	 */
+	public double[][] getQValues(int l) {
+		double[][] q = new double[nrofStates[l]][];
+		for (int s = 0; s < q.length; s++) {
+			int start = offset[l] + s * nrofActions[l];
+			q[s] = Arrays.copyOfRange(qvalues, start, start + nrofActions[l]);
+		}
+		return q;
+	}
+
+	/**
+	 * Updates the Q-value of the previous state-action pair of a learner.
+	 * The learning rate is 1 / (1 + visits of the pair).
+	 * @param l Index of the learner
+	 * @param previousState The previous state
+	 * @param action The action taken in the previous state
+	 * @param reward The reward of the action
+	 * @param nextState The state the action led to
+	 * @param discountFactor The discount factor of the expected reward
+	 * @return The learning rate used
+	 */
+	public double update(int l, int previousState, int action, double reward,
+			int nextState, double discountFactor) {
+		int actions = nrofActions[l];
+		int next = offset[l] + nextState * actions;
+		double maxNextExpectedReward = qvalues[next];
+		for (int i = 1; i < actions; i++) {
+			if (qvalues[next + i] > maxNextExpectedReward) {
+				maxNextExpectedReward = qvalues[next + i];
+			}
+		}
+
+		return learn(l, previousState, action,
+				reward + discountFactor * maxNextExpectedReward);
+	}
+
+	/**
+	 * Moves the Q-value of a state-action pair of a learner towards a
+	 * target value. The learning rate is 1 / (1 + visits of the pair).
+	 * @param l Index of the learner
+	 * @param state The state
+	 * @param action The action
+	 * @param target The target value
+	 * @return The learning rate used
+	 */
+	public double learn(int l, int state, int action, double target) {
+		int i = offset[l] + state * nrofActions[l] + action;
+		synchronized (getLock(l, state)) {
+			double learningRate = 1.0 / (1.0 + visits[i]);
+			qvalues[i] *= (1.0 - learningRate);
+			qvalues[i] += (learningRate * target);
+			return learningRate;
+		}
+	}
+
+	/**
+	 * Returns the action with the highest value in a table of a learner
+	 * (the first one of the equal ones)
+	 * @param l Index of the learner
+	 * @param table Index of the table (0 for the Q-values)
+	 * @param state The state
+	 * @return The action
+	 */
+	public int getBestAction(int l, int table, int state) {
+		int start = index(l, table, state, 0);
+		int best = 0;
+		for (int i = 1, n = nrofActions[l]; i < n; i++) {
+			if (qvalues[start + i] > qvalues[start + best]) {
+				best = i;
+			}
+		}
+		return best;
+	}
+
+	/**
+	 * Chooses an action of a learner with the Boltzmann (softmax)
+	 * distribution of the Q-values of the state. Only the allowed actions
+	 * are chosen, but the probabilities are relative to all the actions.
+	 * With zero temperature (or if the distribution overflows) the last
+	 * allowed action is chosen, like {@link BoltzmannExploration} does.
+	 * @param l Index of the learner
+	 * @param state The state
+	 * @param temperature Temperature of the distribution
+	 * @param actionRestriction Which actions are allowed in the state
+	 * @return The chosen action
+	 * @see BoltzmannExploration
+	 */
+	public int chooseSoftmax(int l, int state, double temperature,
+			boolean[] actionRestriction) {
+		int actions = nrofActions[l];
+		int q = offset[l] + state * actions;
+		int p = scratchOffset[l];
+		double probabilitiesSum = 0;
+
+		for (int i = 0; i < actions; i++) {
+			double actionProbability = Math.exp(qvalues[q + i] / temperature);
+			scratch[p + i] = actionProbability;
+			probabilitiesSum += actionProbability;
+		}
+
+		if (Double.isInfinite(probabilitiesSum) || temperature == 0) {
+			return lastAllowed(actionRestriction, actions);
+		}
+
+		double actionRandomNumber = nextDouble(l);
+		double sum = 0;
+		for (int i = 0; i < actions; i++) {
+			if (actionRestriction[i]) {
+				sum += scratch[p + i] / probabilitiesSum;
+				if (actionRandomNumber <= sum) {
+					return i;
+				}
+			}
+		}
+		return firstAllowed(actionRestriction, actions);
+	}
+
+	/**
+	 * Chooses an action of a learner with the epsilon-greedy policy: a
+	 * random allowed action with the probability epsilon, otherwise the
+	 * allowed action with the highest Q-value.
+	 * @param l Index of the learner
+	 * @param state The state
+	 * @param epsilon The exploration rate
+	 * @param actionRestriction Which actions are allowed in the state
+	 * @return The chosen action
+	 * @see EpsilonGreedyExploration
+	 */
+	public int chooseEpsilonGreedy(int l, int state, double epsilon,
+			boolean[] actionRestriction) {
+		int actions = nrofActions[l];
+		int q = offset[l] + state * actions;
+
+		double maxReward = qvalues[q];
+		int greedyAction = 0;
+		double totalActionValue = 0;
+		for (int i = 1; i < actions; i++) {
+			if (qvalues[q + i] > maxReward && actionRestriction[i]) {
+				maxReward = qvalues[q + i];
+				greedyAction = i;
+				totalActionValue = totalActionValue + qvalues[q + i];
+			}
+		}
+
+		if (nextDouble(l) < epsilon || totalActionValue == 0) {
+			while (true) {
+				int randomAction = nextInt(l, actions);
+				if (actionRestriction[randomAction]) {
+					return randomAction;
+				}
+			}
+		}
+		return greedyAction;
+	}
+
+	/**
+	 * Returns the next random number of a learner's generator
+	 * @param l Index of the learner
+	 * @return A random number in the range [0, 1)
+	 */
+	public double nextDouble(int l) {
+		return (nextLong(l) >>> 11) * 0x1.0p-53;
+	}
+
+	/**
+	 * Returns the next random integer of a learner's generator
+	 * @param l Index of the learner
+	 * @param bound The upper bound (exclusive)
+	 * @return A random number in the range [0, bound)
+	 */
+	public int nextInt(int l, int bound) {
+		return (int)(nextDouble(l) * bound);
+	}
+
+	/**
+	 * Returns the next 64 random bits of a learner's generator
+	 * @param l Index of the learner
+	 * @return The random bits
+	 */
+	private long nextLong(int l) {
+		rngState[l] += GOLDEN_GAMMA;
+		return mix(rngState[l]);
+	}
+
+	/**
+	 * Returns the index of a value in the value arrays
+	 * @param l Index of the learner
+	 * @param table Index of the table
+	 * @param state The state
+	 * @param action The action
+	 * @return The index
+	 */
+	private int index(int l, int table, int state, int action) {
+		return offset[l] + (table * nrofStates[l] + state) * nrofActions[l] +
+			action;
+	}
+
+	/**
+	 * Returns the first allowed action
+	 * @param actionRestriction Which actions are allowed
+	 * @param actions Number of actions
+	 * @return The action (0 if no action is allowed)
+	 */
+	private static int firstAllowed(boolean[] actionRestriction, int actions) {
+		for (int i = 0; i < actions; i++) {
+			if (actionRestriction[i]) {
+				return i;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * Returns the last allowed action
+	 * @param actionRestriction Which actions are allowed
+	 * @param actions Number of actions
+	 * @return The action (0 if no action is allowed)
+	 */
+	private static int lastAllowed(boolean[] actionRestriction, int actions) {
+		for (int i = actions - 1; i >= 0; i--) {
+			if (actionRestriction[i]) {
+				return i;
+			}
+		}
+		return 0;
+	}
+
+	/**
+	 * The SplitMix64 output function
+	 * @param z The value to mix
+	 * @return The mixed value
+	 */
+	private static long mix(long z) {
+		z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+		z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+		return z ^ (z >>> 31);
+	}
+
+	/**
+	 * Lock object that can be saved with the pool
+	 */
+	private static class Lock implements Serializable {
+		private static final long serialVersionUID = 42L;
+	}
+}
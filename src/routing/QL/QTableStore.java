@@ -0,0 +1,285 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.QL;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+import core.DTNSim;
+import core.SimError;
+
+/**
+ * <P>Store of the Q-tables of the hosts of a run. The tables can be
+ * written to a binary file at the end of a run (see
+ * {@link report.QTableReport}) and loaded as the initial Q-values of the
+ * learners in later runs, so that the later runs don't need to explore
+ * from scratch.</P>
+ *
+ * <P>The store has the tables of the hosts by their addresses and the mean
+ * of all the tables. An aggregated store has only the mean, which is then
+ * used for all the hosts.</P>
+ *
+ * <P>The file is a big-endian binary file with a header (magic number
+ * {@value #MAGIC}, version, number of states and actions, number of
+ * hosts, number of tables in the mean), the mean table and then the
+ * address and the table of every host. The tables are written state by
+ * state.</P>
+ */
+public class QTableStore {
+	/** Suffix of the Q-table store files ({@value}) */
+	public static final String FILE_SUFFIX = ".qtable";
+	/** Magic number of the files ("QTBL") */
+	public static final int MAGIC = 0x5154424c;
+	/** Version of the file format */
+	public static final int VERSION = 1;
+
+	/** the stores loaded in this run by their file names */
+	private static Map<String, QTableStore> loaded;
+
+	static {
+		DTNSim.registerForReset(QTableStore.class.getCanonicalName());
+		reset();
+	}
+
+	private int states;
+	private int actions;
+	/** sum of all the tables added to the store */
+	private double[][] sum;
+	/** number of tables the mean is calculated of */
+	private int nrofTables;
+	/** the tables of the hosts by the hosts' addresses */
+	private Map<Integer, double[][]> tables;
+
+	/**
+	 * Constructor. Creates an empty store.
+	 * @param states Number of states of the tables
+	 * @param actions Number of actions of the tables
+	 */
+	public QTableStore(int states, int actions) {
+		this.states = states;
+		this.actions = actions;
+		this.sum = new double[states][actions];
+		this.nrofTables = 0;
+		this.tables = new TreeMap<Integer, double[][]>();
+	}
+
+	/**
+	 * Resets the static fields of the class
+	 */
+	public static synchronized void reset() {
+		loaded = new HashMap<String, QTableStore>();
+	}
+
+	/**
+	 * Returns the store read from a file. Every file is read only once per
+	 * run.
+	 * @param fileName Name (&path) of the file
+	 * @return The store
+	 * @throws SimError if the file can't be read
+	 */
+	public static synchronized QTableStore load(String fileName) {
+		QTableStore store = loaded.get(fileName);
+		if (store == null) {
+			try {
+				store = read(fileName);
+			} catch (IOException e) {
+				throw new SimError("Couldn't read Q-tables from '" +
+						fileName + "': " + e.getMessage(), e);
+			}
+			loaded.put(fileName, store);
+		}
+		return store;
+	}
+
+	/**
+	 * Reads a store from a file
+	 * @param fileName Name (&path) of the file
+	 * @return The store
+	 * @throws IOException if the file can't be read or isn't a Q-table
+	 * store
+	 */
+	public static QTableStore read(String fileName) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(fileName)));
+		try {
+			if (in.readInt() != MAGIC) {
+				throw new IOException("Not a Q-table file");
+			}
+			int version = in.readInt();
+			if (version != VERSION) {
+				throw new IOException("Unsupported Q-table file version " +
+						version);
+			}
+			int states = in.readInt();
+			int actions = in.readInt();
+			int nrofHosts = in.readInt();
+			QTableStore store = new QTableStore(states, actions);
+			store.nrofTables = in.readInt();
+			double[][] mean = readTable(in, states, actions);
+			for (int i = 0; i < states; i++) {
+				for (int j = 0; j < actions; j++) {
+					store.sum[i][j] = mean[i][j] * store.nrofTables;
+				}
+			}
+			for (int i = 0; i < nrofHosts; i++) {
+				int address = in.readInt();
+				store.tables.put(address, readTable(in, states, actions));
+			}
+			return store;
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Writes the store to a file
+	 * @param fileName Name (&path) of the file
+	 * @param aggregated If true, only the mean of the tables is written
+	 * @throws IOException if the file can't be written
+	 */
+	public void write(String fileName, boolean aggregated) throws IOException {
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+				new FileOutputStream(fileName)));
+		try {
+			out.writeInt(MAGIC);
+			out.writeInt(VERSION);
+			out.writeInt(states);
+			out.writeInt(actions);
+			out.writeInt(aggregated ? 0 : tables.size());
+			out.writeInt(nrofTables);
+			writeTable(out, getMean());
+			if (!aggregated) {
+				for (Map.Entry<Integer, double[][]> e : tables.entrySet()) {
+					out.writeInt(e.getKey());
+					writeTable(out, e.getValue());
+				}
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Adds the table of a host to the store
+	 * @param address Address of the host
+	 * @param table The Q-values of the host indexed by state and action
+	 * @throws IllegalArgumentException if the table has a wrong size
+	 */
+	public void add(int address, double[][] table) {
+		checkSize(table);
+		double[][] copy = new double[states][];
+		for (int i = 0; i < states; i++) {
+			copy[i] = table[i].clone();
+			for (int j = 0; j < actions; j++) {
+				sum[i][j] += table[i][j];
+			}
+		}
+		tables.put(address, copy);
+		nrofTables++;
+	}
+
+	/**
+	 * Returns a copy of the table of a host, or of the mean of all the
+	 * tables if the store has no table for the host
+	 * @param address Address of the host
+	 * @return The Q-values indexed by state and action
+	 */
+	public double[][] getTable(int address) {
+		double[][] table = tables.get(address);
+		if (table == null) {
+			return getMean();
+		}
+		double[][] copy = new double[states][];
+		for (int i = 0; i < states; i++) {
+			copy[i] = table[i].clone();
+		}
+		return copy;
+	}
+
+	/**
+	 * Returns the mean of all the tables added to the store
+	 * @return The mean Q-values indexed by state and action (all zero if
+	 * there are no tables)
+	 */
+	public double[][] getMean() {
+		double[][] mean = new double[states][actions];
+		if (nrofTables > 0) {
+			for (int i = 0; i < states; i++) {
+				for (int j = 0; j < actions; j++) {
+					mean[i][j] = sum[i][j] / nrofTables;
+				}
+			}
+		}
+		return mean;
+	}
+
+	/**
+	 * Returns true if the store has a table of the host
+	 * @param address Address of the host
+	 * @return True if the store has a table of the host
+	 */
+	public boolean hasTable(int address) {
+		return tables.containsKey(address);
+	}
+
+	/**
+	 * Returns the number of states of the tables
+	 * @return The number of states
+	 */
+	public int getStates() {
+		return states;
+	}
+
+	/**
+	 * Returns the number of actions of the tables
+	 * @return The number of actions
+	 */
+	public int getActions() {
+		return actions;
+	}
+
+	/**
+	 * Checks that a table has the size of the tables of this store
+	 * @param table The table
+	 * @throws IllegalArgumentException if the table has a wrong size
+	 */
+	private void checkSize(double[][] table) {
+		if (table.length != states || (states > 0 &&
+				table[0].length != actions)) {
+			throw new IllegalArgumentException("Q-table of " + table.length +
+					" states and " + (states > 0 ? table[0].length : 0) +
+					" actions doesn't fit a store of " + states +
+					" states and " + actions + " actions");
+		}
+	}
+
+	private static double[][] readTable(DataInputStream in, int states,
+			int actions) throws IOException {
+		double[][] table = new double[states][actions];
+		for (int i = 0; i < states; i++) {
+			for (int j = 0; j < actions; j++) {
+				table[i][j] = in.readDouble();
+			}
+		}
+		return table;
+	}
+
+	private static void writeTable(DataOutputStream out, double[][] table)
+			throws IOException {
+		for (double[] row : table) {
+			for (double q : row) {
+				out.writeDouble(q);
+			}
+		}
+	}
+}
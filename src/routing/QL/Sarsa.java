@@ -0,0 +1,70 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.QL;
+
+import core.Settings;
+
+/**
+ * SARSA (on-policy temporal difference learning). The Q-value of the
+ * previous state-action pair is moved towards the reward plus the
+ * discounted Q-value of the action that is actually chosen in the next
+ * state, so the update is applied when the next action has been chosen.
+ */
+public class Sarsa extends LearningAlgorithm {
+	private static final long serialVersionUID = 42L;
+	/** is there a transition waiting for the next action */
+	private boolean pending;
+	private int pendingState;
+	private int pendingAction;
+	private double pendingReward;
+	private int pendingNextState;
+	private double pendingDiscount;
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public Sarsa(Settings s) {
+		super(s);
+	}
+
+	/**
+	 * Copyconstructor.
+	 * @param proto The algorithm prototype
+	 */
+	protected Sarsa(Sarsa proto) {
+		super(proto);
+	}
+
+	@Override
+	public LearningAlgorithm replicate() {
+		return new Sarsa(this);
+	}
+
+	@Override
+	public double update(int previousState, int action, double reward,
+			int nextState, double discountFactor) {
+		pending = true;
+		pendingState = previousState;
+		pendingAction = action;
+		pendingReward = reward;
+		pendingNextState = nextState;
+		pendingDiscount = discountFactor;
+		return 1.0 / (1.0 + pool.getVisits(learner, previousState, action));
+	}
+
+	@Override
+	public void actionChosen(int state, int action) {
+		if (!pending) {
+			return;
+		}
+		pending = false;
+		if (state != pendingNextState) {
+			return; // the transition didn't end where the learner is now
+		}
+		pool.learn(learner, pendingState, pendingAction, pendingReward +
+				pendingDiscount * pool.getQ(learner, state, action));
+	}
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import core.Settings;
+import core.SimClock;
+
+/**
+ * <P>Buffer of the delivery receipts (ACKs) a router knows. Every receipt
+ * gets a sequence number when it is added, and the receipts are also kept
+ * in the order of their sequence numbers. When two routers meet, a router
+ * merges only the receipts the peer has got after their previous merge,
+ * instead of going through the whole buffer of the peer.</P>
+ *
+ * <P>A receipt is dropped when the TTL of the delivered message runs out,
+ * since by then all the copies of the message have expired too. The
+ * receipts are kept in a timing wheel by their expiry times, so the expired
+ * receipts are found without going through the whole buffer. The receipts
+ * are dropped when the slot of the wheel they are in has passed, i.e., at
+ * most one slot time late. The size of the buffer can also be limited, in
+ * which case the oldest receipts are dropped to make room for new ones.</P>
+ */
+public class ReceiptBuffer implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** Maximum number of receipts -setting id ({@value}).
+	 * Zero (the default) means no limit. */
+	public static final String RECEIPT_BUFFER_SIZE_S = "receiptBufferSize";
+	/** Length of the timing wheel's slots (seconds) -setting id
+	 * ({@value}). */
+	public static final String RECEIPT_SLOT_TIME_S = "receiptSlotTime";
+	/** Default slot length ({@value} seconds) */
+	public static final double DEF_SLOT_TIME = 60;
+	/** Number of slots in the timing wheel */
+	private static final int WHEEL_SIZE = 256;
+	/** Slot of the receipts that never expire */
+	private static final long NEVER = Long.MAX_VALUE;
+
+	/** maximum number of receipts (0 = no limit) */
+	private int maxSize;
+	/** length of the slots of the timing wheel */
+	private double slotTime;
+	/** the receipts by message ID */
+	private Map<String, Receipt> receipts;
+	/** the receipts in the order of their sequence numbers (including some
+	 * dropped receipts until the log is compacted) */
+	private List<Receipt> log;
+	/** index of the first receipt in the log that may not be dropped */
+	private int logHead;
+	/** number of dropped receipts in the log */
+	private int nrofDropped;
+	/** sequence number of the latest receipt */
+	private long lastSeq;
+	/** the latest sequence number of each peer (by the peer's address)
+	 * that has been merged already */
+	private Map<Integer, Long> merged;
+	/** the timing wheel: receipts in the slots of their expiry times */
+	private List<List<Receipt>> wheel;
+	/** the first slot time (index) that has not been purged yet */
+	private long nextSlot;
+	/** number of receipts in the timing wheel */
+	private int wheelSize;
+	/** number of receipts in the timing wheel that have been dropped to
+	 * keep the buffer size under the limit */
+	private int nrofEvicted;
+
+	/**
+	 * Constructor. Reads the size limit and the slot length from the
+	 * settings.
+	 * @param s The settings object
+	 */
+	public ReceiptBuffer(Settings s) {
+		this(s.contains(RECEIPT_BUFFER_SIZE_S) ?
+				s.getInt(RECEIPT_BUFFER_SIZE_S) : 0,
+			s.contains(RECEIPT_SLOT_TIME_S) ?
+				s.getDouble(RECEIPT_SLOT_TIME_S) : DEF_SLOT_TIME);
+	}
+
+	/**
+	 * Copyconstructor. Creates an empty buffer with the same settings as
+	 * the prototype.
+	 * @param proto The prototype
+	 */
+	public ReceiptBuffer(ReceiptBuffer proto) {
+		this(proto.maxSize, proto.slotTime);
+	}
+
+	/**
+	 * Constructor.
+	 * @param maxSize Maximum number of receipts (0 = no limit)
+	 * @param slotTime Length of the timing wheel's slots (seconds)
+	 */
+	public ReceiptBuffer(int maxSize, double slotTime) {
+		if (maxSize < 0 || slotTime <= 0) {
+			throw new IllegalArgumentException("Invalid receipt buffer " +
+					"size (" + maxSize + ") or slot time (" + slotTime + ")");
+		}
+		this.maxSize = maxSize;
+		this.slotTime = slotTime;
+		this.receipts = new HashMap<String, Receipt>();
+		this.log = new ArrayList<Receipt>();
+		this.merged = new HashMap<Integer, Long>();
+		this.wheel = new ArrayList<List<Receipt>>(WHEEL_SIZE);
+		for (int i=0; i<WHEEL_SIZE; i++) {
+			wheel.add(new ArrayList<Receipt>());
+		}
+	}
+
+	/**
+	 * Returns true if the buffer has a receipt for the message
+	 * @param id ID of the message
+	 * @return True if the message has been delivered
+	 */
+	public boolean contains(String id) {
+		return receipts.containsKey(id);
+	}
+
+	/**
+	 * Returns the receipt of a message
+	 * @param id ID of the message
+	 * @return The receipt or null if there's no receipt for the message
+	 */
+	public ACKTTL get(String id) {
+		Receipt r = receipts.get(id);
+		return r == null ? null : r.ack;
+	}
+
+	/**
+	 * Adds a receipt to the buffer if there's no receipt for the message yet
+	 * and the receipt hasn't expired. Drops the expired receipts first.
+	 * @param id ID of the message
+	 * @param ack The receipt
+	 * @return True if the receipt was added
+	 */
+	public boolean add(String id, ACKTTL ack) {
+		purge();
+		return addReceipt(id, ack);
+	}
+
+	/**
+	 * Adds the receipts that a peer has got after the previous merge from
+	 * the same peer, and that this buffer doesn't have.
+	 * Drops the expired receipts first.
+	 * @param peer The peer's buffer
+	 * @param peerAddress Address of the peer
+	 * @return Number of receipts added
+	 */
+	public int mergeFrom(ReceiptBuffer peer, int peerAddress) {
+		Long since = merged.get(peerAddress);
+		int added = 0;
+
+		purge();
+		for (int i = peer.logIndexAfter(since == null ? 0 : since),
+				n = peer.log.size(); i < n; i++) {
+			Receipt r = peer.log.get(i);
+			if (!r.dropped && addReceipt(r.id, r.ack)) {
+				added++;
+			}
+		}
+		merged.put(peerAddress, peer.lastSeq);
+		return added;
+	}
+
+	/**
+	 * Returns the number of receipts in the buffer
+	 * @return The number of receipts
+	 */
+	public int size() {
+		return receipts.size();
+	}
+
+	/**
+	 * Adds a receipt if there's no receipt for the message yet and it
+	 * hasn't expired. Drops the oldest receipt if the buffer gets too big.
+	 * @param id ID of the message
+	 * @param ack The receipt
+	 * @return True if the receipt was added
+	 */
+	private boolean addReceipt(String id, ACKTTL ack) {
+		double expiry = ack.getExpiryTime();
+		long slot = expiry == Double.POSITIVE_INFINITY ? NEVER :
+			(long)Math.floor(expiry / slotTime);
+		if (slot < nextSlot || receipts.containsKey(id)) {
+			return false;
+		}
+
+		Receipt r = new Receipt(id, ack, ++lastSeq, slot);
+		receipts.put(id, r);
+		log.add(r);
+		if (slot != NEVER) {
+			wheel.get((int)(slot % WHEEL_SIZE)).add(r);
+			wheelSize++;
+		}
+
+		if (maxSize > 0 && receipts.size() > maxSize) {
+			while (log.get(logHead).dropped) {
+				logHead++;
+			}
+			Receipt oldest = log.get(logHead);
+			drop(oldest);
+			if (oldest.slot != NEVER) {
+				nrofEvicted++;
+				if (nrofEvicted > wheelSize / 2) {
+					compactWheel();
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Drops the receipts that are in the slots that have passed
+	 */
+	private void purge() {
+		long now = (long)Math.floor(SimClock.getTime() / slotTime);
+		/* every slot needs to be checked only once even if many rounds
+		 * of the wheel have passed */
+		long end = Math.min(now, nextSlot + WHEEL_SIZE);
+
+		for (long s = nextSlot; s < end; s++) {
+			List<Receipt> list = wheel.get((int)(s % WHEEL_SIZE));
+			int kept = 0;
+			for (int i=0, n=list.size(); i<n; i++) {
+				Receipt r = list.get(i);
+				if (r.dropped) {
+					nrofEvicted--;
+				}
+				else if (r.slot < now) {
+					drop(r);
+				}
+				else {
+					list.set(kept++, r); // on a later round of the wheel
+				}
+			}
+			wheelSize -= list.size() - kept;
+			list.subList(kept, list.size()).clear();
+		}
+		nextSlot = Math.max(nextSlot, now);
+	}
+
+	/**
+	 * Removes the evicted receipts from the timing wheel
+	 */
+	private void compactWheel() {
+		for (List<Receipt> list : wheel) {
+			int kept = 0;
+			for (int i=0, n=list.size(); i<n; i++) {
+				Receipt r = list.get(i);
+				if (!r.dropped) {
+					list.set(kept++, r);
+				}
+			}
+			wheelSize -= list.size() - kept;
+			list.subList(kept, list.size()).clear();
+		}
+		nrofEvicted = 0;
+	}
+
+	/**
+	 * Drops a receipt from the buffer. The log is compacted when more than
+	 * half of it is dropped receipts.
+	 * @param r The receipt to drop
+	 */
+	private void drop(Receipt r) {
+		if (r.dropped) {
+			return;
+		}
+		r.dropped = true;
+		receipts.remove(r.id);
+		nrofDropped++;
+
+		if (nrofDropped > log.size() / 2) {
+			int kept = 0;
+			for (int i=0, n=log.size(); i<n; i++) {
+				Receipt l = log.get(i);
+				if (!l.dropped) {
+					log.set(kept++, l);
+				}
+			}
+			log.subList(kept, log.size()).clear();
+			logHead = 0;
+			nrofDropped = 0;
+		}
+	}
+
+	/**
+	 * Returns the index of the first receipt in the log with a sequence
+	 * number greater than the given one
+	 * @param seq The sequence number
+	 * @return The index (the size of the log if there are no such receipts)
+	 */
+	private int logIndexAfter(long seq) {
+		int low = 0;
+		int high = log.size();
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (log.get(mid).seq <= seq) {
+				low = mid + 1;
+			}
+			else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * A receipt in the buffer
+	 */
+	private static class Receipt implements Serializable {
+		private static final long serialVersionUID = 42L;
+		private String id;
+		private ACKTTL ack;
+		/** sequence number of the receipt in this buffer */
+		private long seq;
+		/** slot time (index) of the receipt's expiry time (NEVER
+		 * if the receipt never expires) */
+		private long slot;
+		/** has the receipt been dropped from the buffer */
+		private boolean dropped;
+
+		public Receipt(String id, ACKTTL ack, long seq, long slot) {
+			this.id = id;
+			this.ack = ack;
+			this.seq = seq;
+			this.slot = slot;
+		}
+	}
+}
@@ -1,5 +1,7 @@
 package routing;
 
+import java.io.Serializable;
+
 import core.*;
 
 /**
@@ -8,7 +10,7 @@ import core.*;
  *
  * @author PJ Dillon, University of Pittsburgh
  */
-public interface RoutingDecisionEngine {
+public interface RoutingDecisionEngine extends Serializable {
 
     /**
      * Called when a connection goes up between this host and a peer. Note that,
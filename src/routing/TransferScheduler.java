@@ -0,0 +1,216 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing;
+
+import java.io.Serializable;
+import java.util.List;
+
+import core.Connection;
+import core.Message;
+import core.Settings;
+import core.SettingsError;
+import core.Tuple;
+
+/**
+ * <P>Scheduler of concurrent transfers for an {@link ActiveRouter}. Without
+ * a scheduler an active router sends and receives only one message at a
+ * time, so a host in contact with many peers leaves all but one of the
+ * connections idle. With the scheduler a router uses up to
+ * {@link #MAX_CONCURRENT_TRANSFERS_S} connections at the same time (for
+ * sending or receiving) and, when the messages are tried, starts a transfer
+ * on every free connection instead of only the first one that accepts a
+ * message.</P>
+ *
+ * <P>Every connection carries at most one message at a time, and a host
+ * doesn't receive a message that it is already receiving from another
+ * peer. Every transfer runs at the full speed of its connection, so by
+ * default only the number of transfer slots limits the concurrent
+ * transfers. If {@link #TRANSFER_BANDWIDTH_S} is given, a new transfer is
+ * started only if the speeds of the busy connections and the new one
+ * together fit into it. The router's own limits (e.g. the messages per
+ * connection of a {@link CongestionControlRouter}) are respected since the
+ * transfers are started with the router's startTransfer.</P>
+ *
+ * <P>A scheduler has no state of its own, so it is shared by all the
+ * routers of a group.</P>
+ */
+public class TransferScheduler implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** Max number of concurrent transfers per host -setting id ({@value}).
+	 * Default = 1 (no scheduler, one transfer at a time). */
+	public static final String MAX_CONCURRENT_TRANSFERS_S =
+		"maxConcurrentTransfers";
+	/** Total speed (bytes per second) of the concurrent transfers of a host
+	 * -setting id ({@value}). Default = 0 (no limit). */
+	public static final String TRANSFER_BANDWIDTH_S = "transferBandwidth";
+
+	/** max number of busy connections */
+	private int maxTransfers;
+	/** max total speed of the busy connections (0 = no limit) */
+	private double bandwidth;
+
+	/**
+	 * Creates a scheduler if the settings allow more than one concurrent
+	 * transfer
+	 * @param s The settings object of the router
+	 * @return The scheduler or null if only one transfer at a time is
+	 * allowed
+	 */
+	public static TransferScheduler create(Settings s) {
+		if (!s.contains(MAX_CONCURRENT_TRANSFERS_S) ||
+				s.getInt(MAX_CONCURRENT_TRANSFERS_S) <= 1) {
+			return null;
+		}
+		return new TransferScheduler(s.getInt(MAX_CONCURRENT_TRANSFERS_S),
+				s.contains(TRANSFER_BANDWIDTH_S) ?
+						s.getDouble(TRANSFER_BANDWIDTH_S) : 0);
+	}
+
+	/**
+	 * Constructor.
+	 * @param maxTransfers Max number of concurrent transfers
+	 * @param bandwidth Max total speed of the transfers (0 = no limit)
+	 */
+	public TransferScheduler(int maxTransfers, double bandwidth) {
+		if (maxTransfers < 1 || bandwidth < 0) {
+			throw new SettingsError("Invalid max concurrent transfers (" +
+					maxTransfers + ") or transfer bandwidth (" + bandwidth +
+					")");
+		}
+		this.maxTransfers = maxTransfers;
+		this.bandwidth = bandwidth;
+	}
+
+	/**
+	 * Returns the max number of concurrent transfers
+	 * @return The max number of concurrent transfers
+	 */
+	public int getMaxTransfers() {
+		return this.maxTransfers;
+	}
+
+	/**
+	 * Returns the max total speed of the transfers
+	 * @return The max total speed (0 = no limit)
+	 */
+	public double getBandwidth() {
+		return this.bandwidth;
+	}
+
+	/**
+	 * Returns true if the router can't start or accept another transfer at
+	 * the moment: all its connections or transfer slots are in use, or the
+	 * bandwidth is used up
+	 * @param r The router
+	 * @return True if the router is busy
+	 */
+	public boolean isBusy(ActiveRouter r) {
+		List<Connection> connections = r.getConnections();
+		int busy = 0;
+		double speed = 0;
+
+		for (int i=0, n=connections.size(); i<n; i++) {
+			Connection con = connections.get(i);
+			if (!con.isReadyForTransfer()) {
+				busy++;
+				speed += con.getSpeed();
+			}
+		}
+
+		if (busy == 0) {
+			return false;
+		}
+		if (busy >= maxTransfers || busy == connections.size()) {
+			return true;
+		}
+		return bandwidth > 0 && speed >= bandwidth;
+	}
+
+	/**
+	 * Tries to send the messages to all the connections that are free.
+	 * For every connection, the messages are tried in the order they are in
+	 * the list until the peer accepts one.
+	 * @param r The router
+	 * @param messages The messages to try
+	 * @param connections The connections to try
+	 * @return The first connection that started a transfer or null if no
+	 * connection accepted a message
+	 */
+	public Connection tryMessagesToConnections(ActiveRouter r,
+			List<Message> messages, List<Connection> connections) {
+		Connection first = null;
+
+		for (int i=0, n=connections.size(); i<n; i++) {
+			Connection con = connections.get(i);
+			if (!con.isReadyForTransfer()) {
+				continue;
+			}
+			if (isBusy(r)) {
+				break;
+			}
+			if (!fits(r, con)) {
+				continue;
+			}
+			if (r.tryAllMessages(con, messages) != null && first == null) {
+				first = con;
+			}
+		}
+
+		return first;
+	}
+
+	/**
+	 * Tries to send the messages of the tuples to their connections. Every
+	 * free connection starts at most one transfer; the tuples are tried in
+	 * the order they are in the list.
+	 * @param r The router
+	 * @param tuples The tuples to try
+	 * @return The first tuple whose connection accepted the message or null
+	 * if none of the connections accepted the message meant for them
+	 */
+	public Tuple<Message, Connection> tryMessagesForConnected(ActiveRouter r,
+			List<Tuple<Message, Connection>> tuples) {
+		Tuple<Message, Connection> first = null;
+
+		for (Tuple<Message, Connection> t : tuples) {
+			Connection con = t.getValue();
+			if (!con.isReadyForTransfer()) {
+				continue; // started a transfer already or receiving
+			}
+			if (isBusy(r)) {
+				break;
+			}
+			if (!fits(r, con)) {
+				continue;
+			}
+			if (r.startTransfer(t.getKey(), con) == MessageRouter.RCV_OK &&
+					first == null) {
+				first = t;
+			}
+		}
+
+		return first;
+	}
+
+	/**
+	 * Returns true if a transfer on the connection fits into the bandwidth
+	 * left. A transfer always fits if no other connection is busy.
+	 * @param r The router
+	 * @param con The connection
+	 * @return True if the transfer fits
+	 */
+	private boolean fits(ActiveRouter r, Connection con) {
+		if (bandwidth == 0) {
+			return true;
+		}
+		double speed = 0;
+		for (Connection c : r.getConnections()) {
+			if (!c.isReadyForTransfer()) {
+				speed += c.getSpeed();
+			}
+		}
+		return speed == 0 || speed + con.getSpeed() <= bandwidth;
+	}
+}
@@ -0,0 +1,41 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.congestion;
+
+import java.io.Serializable;
+
+import core.Settings;
+
+/**
+ * Superclass of the sets of actions a {@link CongestionControl} chooses
+ * from. The actions change the drop policy, message generation interval
+ * and transfer limit of the congestion control. The action set is chosen
+ * with the {@link CongestionControl#ACTION_SET_S} setting; the classes
+ * must be in this package and have a constructor with a {@link Settings}
+ * parameter. An action set is shared by all the routers of a group.
+ */
+public abstract class ActionSet implements Serializable {
+	private static final long serialVersionUID = 42L;
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public ActionSet(Settings s) { }
+
+	/**
+	 * Returns which actions are allowed in which states. The table must
+	 * have a row for every state of the state signal it is used with.
+	 * @return The allowed actions indexed by state and action
+	 */
+	public abstract boolean[][] getActionRestriction();
+
+	/**
+	 * Applies an action
+	 * @param action The action
+	 * @param cc The congestion control of the router
+	 */
+	public abstract void apply(int action, CongestionControl cc);
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.congestion;
+
+import core.Settings;
+
+/**
+ * Buffer occupancy signal: the percentage of the router's buffer in use.
+ * The states are congested (occupancy at least {@link #CTH_S}), partially
+ * congested (between the thresholds) and non-congested (at most
+ * {@link #NCTH_S}).
+ */
+public class BufferOccupancySignal extends StateSignal {
+	private static final long serialVersionUID = 42L;
+	/** Congestion threshold (percent) - setting id ({@value}) */
+	public static final String CTH_S = CongestionValueSignal.CTH_S;
+	/** Non-congestion threshold (percent) - setting id ({@value}) */
+	public static final String NCTH_S = CongestionValueSignal.NCTH_S;
+
+	/** default value for congestion threshold */
+	public static final double DEFAULT_CTH = 66;
+	/** default value for non-congestion threshold */
+	public static final double DEFAULT_NCTH = 33;
+
+	/** state for congested */
+	public static final int C = 0;
+	/** state for partially congested */
+	public static final int PC = 1;
+	/** state for non-congested */
+	public static final int NC = 2;
+
+	/** value of CTH setting */
+	private double CTH;
+	/** value of NCTH setting */
+	private double NCTH;
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public BufferOccupancySignal(Settings s) {
+		super(s);
+		CTH = s.contains(CTH_S) ? s.getDouble(CTH_S) : DEFAULT_CTH;
+		NCTH = s.contains(NCTH_S) ? s.getDouble(NCTH_S) : DEFAULT_NCTH;
+	}
+
+	@Override
+	public int getNrofStates() {
+		return 3;
+	}
+
+	@Override
+	public double measure(CongestionControl cc, double oldValue) {
+		return Math.min(cc.getHost().getBufferOccupancy(), 100.0);
+	}
+
+	@Override
+	public int getState(double oldValue, double newValue) {
+		if (newValue >= CTH) {
+			return C;
+		} else if (newValue > NCTH) {
+			return PC;
+		} else {
+			return NC;
+		}
+	}
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.congestion;
+
+import core.Settings;
+
+/**
+ * The actions of the IQLCC congestion control for the states of the
+ * {@link CongestionValueSignal}:
+ * <UL>
+ * <LI>0-3: drop the messages with the highest rate, the most replications,
+ * the smallest TTL or the oldest first</LI>
+ * <LI>4-5: multiply or divide the message generation interval by
+ * {@link #K_S}</LI>
+ * <LI>6-7: decrease the number of messages sent per connection
+ * multiplicatively ({@link #MD_S}) or increase it additively
+ * ({@link #AI_S})</LI>
+ * </UL>
+ */
+public class CongestionActions extends ActionSet {
+	private static final long serialVersionUID = 42L;
+	/** AI (additive increase) - setting id ({@value}) */
+	public static final String AI_S = "ai";
+	/** MD (multiplicative decrease) - setting id ({@value}) */
+	public static final String MD_S = "md";
+	/** constant K for message generation period (action 4 & 5) - setting id
+	 * ({@value}) */
+	public static final String K_S = "k";
+
+	/** default value for ai */
+	public static final int DEFAULT_AI = 1;
+	/** default value for md */
+	public static final double DEFAULT_MD = 0.2;
+	/** default value for constant K */
+	public static final double DEFAULT_K = 2.0;
+
+	/** value of ai setting */
+	private int ai;
+	/** value of md setting */
+	private double md;
+	/** value of k setting */
+	private double k;
+
+	/** action restriction checking table for each state */
+	private boolean[][] actionRestriction = {
+			{ true, true, true, true, true, false, true, false },
+			{ false, false, true, true, false, true, false, true },
+			{ false, false, true, true, false, true, false, true },
+			{ true, true, true, true, true, false, true, false }
+	};
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public CongestionActions(Settings s) {
+		super(s);
+		ai = s.contains(AI_S) ? s.getInt(AI_S) : DEFAULT_AI;
+		md = s.contains(MD_S) ? s.getDouble(MD_S) : DEFAULT_MD;
+		k = s.contains(K_S) ? s.getDouble(K_S) : DEFAULT_K;
+	}
+
+	@Override
+	public boolean[][] getActionRestriction() {
+		return actionRestriction;
+	}
+
+	@Override
+	public void apply(int action, CongestionControl cc) {
+		switch (action) {
+		case 0:
+			cc.setDropOldest(false);
+			cc.setQueueMode(CongestionControl.Q_MODE_RATE);
+			break;
+		case 1:
+			cc.setDropOldest(false);
+			cc.setQueueMode(CongestionControl.Q_MODE_REPS);
+			break;
+		case 2:
+			cc.setDropOldest(false);
+			cc.setQueueMode(CongestionControl.Q_MODE_TTL);
+			break;
+		case 3:
+			cc.setDropOldest(true);
+			break;
+		case 4:
+			cc.setMsgGenerationInterval(cc.getMsgGenerationInterval() * k);
+			break;
+		case 5:
+			cc.setMsgGenerationInterval(cc.getMsgGenerationInterval() / k);
+			break;
+		case 6:
+			cc.setMsgLimit((int) Math.ceil(cc.getMsgLimit() * md));
+			break;
+		case 7:
+			cc.setMsgLimit(cc.getMsgLimit() + ai);
+			break;
+		}
+	}
+}
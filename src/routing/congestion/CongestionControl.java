@@ -0,0 +1,447 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.congestion;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import routing.CVandTime;
+import routing.CongestionControlRouter;
+import routing.QL.BoltzmannExploration;
+import routing.QL.LearningAlgorithm;
+import routing.QL.QLearning;
+import routing.QL.QLearningPool;
+import routing.QL.QTableStore;
+import core.DTNHost;
+import core.Settings;
+import core.SettingsError;
+import core.SimClock;
+
+/**
+ * <P>Q-learning congestion control of a {@link CongestionControlRouter}.
+ * Once per state update interval the control measures its
+ * {@link StateSignal}, gets the reward of the state transition from its
+ * {@link RewardFunction}, updates the Q-values and applies the action
+ * chosen for the new state from its {@link ActionSet}.</P>
+ *
+ * <P>The actions change the knobs the router follows: the drop policy
+ * (oldest message first or the queue mode), the message generation
+ * interval and the number of messages sent per connection. The control
+ * also keeps the drop and replication counts of the router and the peers
+ * it has met.</P>
+ *
+ * <P>The signal, reward function and action set are given with the
+ * {@link #STATE_SIGNAL_S}, {@link #REWARD_FUNCTION_S} and
+ * {@link #ACTION_SET_S} settings (class names in this package), so a new
+ * congestion control variant is a configuration of the components.</P>
+ */
+public class CongestionControl implements Serializable {
+	private static final long serialVersionUID = 42L;
+	/** State signal's class name -setting id ({@value}) */
+	public static final String STATE_SIGNAL_S = "stateSignal";
+	/** Reward function's class name -setting id ({@value}) */
+	public static final String REWARD_FUNCTION_S = "rewardFunction";
+	/** Action set's class name -setting id ({@value}) */
+	public static final String ACTION_SET_S = "actionSet";
+	/** Minimum time between state updates (window) -setting id ({@value}) */
+	public static final String STATE_UPDATE_INTERVAL_S = "stateInterval";
+	/** Boltzmann temperature decrease per update -setting id ({@value}) */
+	public static final String BOLTZMANN_C_S = "boltzmannConsValue";
+	/** Q-table store file for the initial Q-values -setting id ({@value}) */
+	public static final String QTABLE_IN_S = "qtableIn";
+	/** Boltzmann temperature to start from with the stored Q-values
+	 * -setting id ({@value}) */
+	public static final String QTABLE_IN_TEMPERATURE_S = "qtableInTemperature";
+	/** Package where the components are looked for ({@value}) */
+	public static final String COMPONENT_PACKAGE = "routing.congestion.";
+
+	/** default value for state interval update */
+	public static final double DEFAULT_STATE_UPDATE_INTERVAL = 300;
+	/** default value for boltzmann constant value */
+	public static final double DEFAULT_BOLTZMANN_C = 0.1;
+	/** default temperature with the stored Q-values (no exploration) */
+	public static final double DEFAULT_QTABLE_IN_TEMPERATURE = 0;
+	/** initial message generation interval (seconds) */
+	public static final double INITIAL_MSG_GENERATION_INTERVAL = 600;
+
+	/** Queue modes for rate, reps, and TTL. */
+	public static final int Q_MODE_RATE = 0;
+	public static final int Q_MODE_REPS = 1;
+	public static final int Q_MODE_TTL = 2;
+
+	/** the state signal */
+	private StateSignal signal;
+	/** the reward function */
+	private RewardFunction rewardFunction;
+	/** the action set */
+	private ActionSet actionSet;
+	/** prototype of the learning algorithm */
+	private LearningAlgorithm learningAlgorithm;
+	/** value of stateUpdateInterval setting */
+	private double stateUpdateInterval;
+	/** value of boltzmann setting */
+	private double boltzmann;
+	/** Q-table store file for the initial Q-values (null = start from zeros) */
+	private String qtableIn;
+	/** Boltzmann temperature to start from with the stored Q-values */
+	private double qtableInTemperature;
+
+	/** the router this control is for */
+	private CongestionControlRouter router;
+	/** the host of the router */
+	private DTNHost host;
+	/** the learner */
+	private QLearning QL;
+	/** random number generator of the actions (created when needed) */
+	private Random rng;
+
+	/** the latest value of the signal */
+	private double signalValue = 0;
+	/** time of the latest state update */
+	private double lastUpdate = 0;
+	/** values of the signal by time */
+	private List<CVandTime> history;
+	/** The previous state after which a state update only observes the
+	 * state and chooses an action (see {@link #setObserveState(int)}) */
+	private int observeState = -1;
+	/** The previous state; {@link #observeState} until the first state
+	 * update */
+	private int oldState = -1;
+	/** the latest action chosen */
+	private int actionChosen;
+	/** the latest reward */
+	private double lastReward;
+
+	/** number of replications since the latest state update */
+	private int nrofReps = 0;
+	/** number of drops since the latest state update */
+	private int nrofDrops = 0;
+	/** replications of the peers met since the latest state update */
+	private int otherNrofReps = 0;
+	/** drops of the peers met since the latest state update */
+	private int otherNrofDrops = 0;
+
+	/** are the messages dropped by the oldest first or by the queue mode */
+	private boolean dropOldest = true;
+	/** queue mode of the drops if they aren't dropped by the oldest */
+	private int queueMode = Q_MODE_RATE;
+	/** message generation interval in seconds */
+	private double msgGenerationInterval = INITIAL_MSG_GENERATION_INTERVAL;
+	/** number of messages to send per connection */
+	private int msgLimit = 1;
+
+	/**
+	 * Constructor. Creates the components given in the settings.
+	 * @param s The settings object
+	 * @param defSignal Default state signal class name
+	 * @param defReward Default reward function class name
+	 * @param defActions Default action set class name
+	 */
+	public CongestionControl(Settings s, String defSignal, String defReward,
+			String defActions) {
+		signal = (StateSignal)s.createIntializedObject(COMPONENT_PACKAGE +
+				(s.contains(STATE_SIGNAL_S) ?
+						s.getSetting(STATE_SIGNAL_S) : defSignal));
+		rewardFunction = (RewardFunction)s.createIntializedObject(
+				COMPONENT_PACKAGE + (s.contains(REWARD_FUNCTION_S) ?
+						s.getSetting(REWARD_FUNCTION_S) : defReward));
+		actionSet = (ActionSet)s.createIntializedObject(COMPONENT_PACKAGE +
+				(s.contains(ACTION_SET_S) ?
+						s.getSetting(ACTION_SET_S) : defActions));
+		learningAlgorithm = LearningAlgorithm.create(s);
+
+		stateUpdateInterval = s.contains(STATE_UPDATE_INTERVAL_S) ?
+				s.getDouble(STATE_UPDATE_INTERVAL_S) :
+				DEFAULT_STATE_UPDATE_INTERVAL;
+		boltzmann = s.contains(BOLTZMANN_C_S) ?
+				s.getDouble(BOLTZMANN_C_S) : DEFAULT_BOLTZMANN_C;
+		if (s.contains(QTABLE_IN_S)) {
+			qtableIn = s.getSetting(QTABLE_IN_S);
+		}
+		qtableInTemperature = s.contains(QTABLE_IN_TEMPERATURE_S) ?
+				s.getDouble(QTABLE_IN_TEMPERATURE_S) :
+				DEFAULT_QTABLE_IN_TEMPERATURE;
+
+		boolean[][] restriction = actionSet.getActionRestriction();
+		if (restriction.length != signal.getNrofStates()) {
+			throw new SettingsError("Action set " +
+					actionSet.getClass().getSimpleName() + " is for " +
+					restriction.length + " states but the state signal " +
+					signal.getClass().getSimpleName() + " has " +
+					signal.getNrofStates());
+		}
+		createLearner();
+	}
+
+	/**
+	 * Copyconstructor.
+	 * @param proto The prototype where setting values are copied from
+	 */
+	protected CongestionControl(CongestionControl proto) {
+		this.signal = proto.signal;
+		this.rewardFunction = proto.rewardFunction;
+		this.actionSet = proto.actionSet;
+		this.learningAlgorithm = proto.learningAlgorithm;
+		this.stateUpdateInterval = proto.stateUpdateInterval;
+		this.boltzmann = proto.boltzmann;
+		this.qtableIn = proto.qtableIn;
+		this.qtableInTemperature = proto.qtableInTemperature;
+		this.observeState = proto.observeState;
+		this.oldState = proto.observeState;
+		createLearner();
+	}
+
+	/**
+	 * Creates the learner and the history
+	 */
+	private void createLearner() {
+		boolean[][] restriction = actionSet.getActionRestriction();
+		this.QL = new QLearning(restriction.length, restriction[0].length,
+				new BoltzmannExploration(1), restriction,
+				learningAlgorithm.replicate());
+		this.history = new ArrayList<CVandTime>();
+	}
+
+	/**
+	 * Creates a new congestion control with the same settings as this one
+	 * @return The new congestion control
+	 */
+	public CongestionControl replicate() {
+		return new CongestionControl(this);
+	}
+
+	/**
+	 * Sets the router this control is for
+	 * @param router The router
+	 */
+	public void setRouter(CongestionControlRouter router) {
+		this.router = router;
+	}
+
+	/**
+	 * Sets the previous state after which a state update only observes the
+	 * new state and chooses an action, without rewarding the transition.
+	 * The default, -1, is the state before the first update, so only the
+	 * first update just observes. Some variants of the control used a
+	 * state of the signal instead (the state before the first update is
+	 * then also that state).
+	 * @param state The state
+	 */
+	public void setObserveState(int state) {
+		this.observeState = state;
+		this.oldState = state;
+	}
+
+	/**
+	 * Returns the router this control is for
+	 * @return The router
+	 */
+	public CongestionControlRouter getRouter() {
+		return this.router;
+	}
+
+	/**
+	 * Initializes the control for the host of the router. Starts from the
+	 * stored Q-values of the host if a Q-table store is given.
+	 * @param host The host of the router
+	 */
+	public void init(DTNHost host) {
+		this.host = host;
+		if (qtableIn != null) {
+			QL.setqvalues(QTableStore.load(qtableIn).getTable(
+					host.getAddress()));
+			BoltzmannExploration exp =
+				(BoltzmannExploration)QL.getExplorationPolicy();
+			exp.setTemperature(qtableInTemperature);
+		}
+	}
+
+	/**
+	 * Returns the host of the router
+	 * @return The host
+	 */
+	public DTNHost getHost() {
+		return this.host;
+	}
+
+	/**
+	 * Returns true if it's time to update the state
+	 * @return True if the state should be updated
+	 */
+	public boolean needsUpdate() {
+		return SimClock.getTime() - lastUpdate >= stateUpdateInterval;
+	}
+
+	/**
+	 * Updates the state and chooses and applies the next action if the
+	 * state update interval has passed
+	 */
+	public void update() {
+		if (!needsUpdate()) {
+			return;
+		}
+
+		double newValue = signal.measure(this, signalValue);
+		history.add(new CVandTime(newValue, SimClock.getTime()));
+		int newState = signal.getState(signalValue, newValue);
+
+		if (oldState != observeState) {
+			lastReward = rewardFunction.getReward(oldState, newState, this);
+			QL.UpdateState(oldState, actionChosen, lastReward, newState);
+		}
+		actionChosen = QL.GetAction(newState);
+		actionSet.apply(actionChosen, this);
+
+		if (oldState != observeState) {
+			/* explore less every round until the temperature is zero */
+			BoltzmannExploration exp =
+				(BoltzmannExploration)QL.getExplorationPolicy();
+			double temp = exp.getTemperature();
+			if (temp != 0) {
+				exp.setTemperature(temp - boltzmann);
+			}
+			if (temp <= 0) {
+				exp.setTemperature(0);
+			}
+		}
+
+		oldState = newState;
+		signalValue = newValue;
+		lastUpdate = SimClock.getTime();
+	}
+
+	/**
+	 * Counts a drop of a message
+	 */
+	public void countDrop() {
+		nrofDrops++;
+	}
+
+	/**
+	 * Counts a replication of a message
+	 */
+	public void countRep() {
+		nrofReps++;
+	}
+
+	/**
+	 * Adds the drop and replication counts of a peer (when the connection
+	 * to it goes down)
+	 * @param peer The congestion control of the peer
+	 */
+	public void addPeerCounts(CongestionControl peer) {
+		otherNrofDrops += peer.nrofDrops;
+		otherNrofReps += peer.nrofReps;
+	}
+
+	/**
+	 * Resets the drop and replication counts (of this router and the peers)
+	 */
+	public void resetCounts() {
+		nrofDrops = 0;
+		nrofReps = 0;
+		otherNrofDrops = 0;
+		otherNrofReps = 0;
+	}
+
+	public int getNrofReps() {
+		return this.nrofReps;
+	}
+
+	public int getNrofDrops() {
+		return this.nrofDrops;
+	}
+
+	public int getOtherNrofReps() {
+		return this.otherNrofReps;
+	}
+
+	public int getOtherNrofDrops() {
+		return this.otherNrofDrops;
+	}
+
+	/**
+	 * Returns true if the messages are dropped by the oldest first, false
+	 * if by the queue mode
+	 * @return True if the oldest messages are dropped first
+	 */
+	public boolean isDropOldest() {
+		return this.dropOldest;
+	}
+
+	public void setDropOldest(boolean dropOldest) {
+		this.dropOldest = dropOldest;
+	}
+
+	/**
+	 * Returns the queue mode of the drops (one of the Q_MODE_ constants)
+	 * @return The queue mode
+	 */
+	public int getQueueMode() {
+		return this.queueMode;
+	}
+
+	public void setQueueMode(int queueMode) {
+		this.queueMode = queueMode;
+	}
+
+	public double getMsgGenerationInterval() {
+		return this.msgGenerationInterval;
+	}
+
+	public void setMsgGenerationInterval(double interval) {
+		this.msgGenerationInterval = interval;
+	}
+
+	public int getMsgLimit() {
+		return this.msgLimit;
+	}
+
+	public void setMsgLimit(int msgLimit) {
+		this.msgLimit = msgLimit;
+	}
+
+	/**
+	 * Returns the random number generator of the actions. The generator is
+	 * seeded from the seed of the Q-learners
+	 * ({@link QLearningPool#RNG_SEED_S}) and the address of the router's
+	 * host, so the hosts get different draws and runs with different
+	 * seeds get different draws.
+	 * @return The random number generator
+	 */
+	public Random getRandom() {
+		if (rng == null) {
+			long seed = QLearningPool.getShared().getSeed();
+			rng = new Random(seed * 0x9e3779b97f4a7c15L + host.getAddress());
+		}
+		return rng;
+	}
+
+	/**
+	 * Returns the latest reward
+	 * @return The reward (0 before the first reward)
+	 */
+	public double getLastReward() {
+		return this.lastReward;
+	}
+
+	/**
+	 * Returns the values of the signal by time
+	 * @return The values of the signal
+	 */
+	public List<CVandTime> getHistory() {
+		return this.history;
+	}
+
+	/**
+	 * Returns a copy of the q-values
+	 * @return The q-values indexed by state and action
+	 */
+	public double[][] getQV() {
+		return this.QL.getqvalues();
+	}
+}
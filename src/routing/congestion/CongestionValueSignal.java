@@ -0,0 +1,98 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.congestion;
+
+import core.Settings;
+
+/**
+ * Congestion value (CV) signal: the ratio of the drops to the replications
+ * seen by the router and the peers it met during the interval, smoothed
+ * with an exponentially weighted moving average. The replications include
+ * the relay hops of the buffered messages. The states are congested (CV at
+ * least {@link #CTH_S}), non-congested (CV at most {@link #NCTH_S}),
+ * decreasing congestion and prospective congestion (CV between the
+ * thresholds and decreasing or increasing).
+ */
+public class CongestionValueSignal extends StateSignal {
+	private static final long serialVersionUID = 42L;
+	/** Alpha for the CV's moving average - setting id ({@value}) */
+	public static final String ALPHA_CV_S = "alphaCV";
+	/** Congestion threshold - setting id ({@value}) */
+	public static final String CTH_S = "CTH";
+	/** Non-congestion threshold - setting id ({@value}) */
+	public static final String NCTH_S = "NCTH";
+
+	/** default value for alpha */
+	public static final double DEFAULT_ALPHA_CV = 0.9;
+	/** default value for congestion threshold */
+	public static final double DEFAULT_CTH = 0.1;
+	/** default value for non-congestion threshold */
+	public static final double DEFAULT_NCTH = 0.00001;
+
+	/** state for congested */
+	public static final int C = 0;
+	/** state for non-congested */
+	public static final int NC = 1;
+	/** state for decreasing congestion */
+	public static final int DC = 2;
+	/** state for prospective congestion */
+	public static final int PC = 3;
+
+	/** value of cv alpha setting */
+	private double alpha;
+	/** value of CTH setting */
+	protected double CTH;
+	/** value of NCTH setting */
+	protected double NCTH;
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public CongestionValueSignal(Settings s) {
+		super(s);
+		alpha = s.contains(ALPHA_CV_S) ? s.getDouble(ALPHA_CV_S) :
+			DEFAULT_ALPHA_CV;
+		CTH = s.contains(CTH_S) ? s.getDouble(CTH_S) : DEFAULT_CTH;
+		NCTH = s.contains(NCTH_S) ? s.getDouble(NCTH_S) : DEFAULT_NCTH;
+	}
+
+	@Override
+	public int getNrofStates() {
+		return 4;
+	}
+
+	/**
+	 * Counts the new CV from the drops and replications since the previous
+	 * measurement, and resets the counts
+	 */
+	@Override
+	public double measure(CongestionControl cc, double oldValue) {
+		int totalhops = cc.getRouter().getTotalRelayHops();
+		int totaldrop = cc.getNrofDrops() + cc.getOtherNrofDrops();
+		int totalreps = cc.getNrofReps() + totalhops + cc.getOtherNrofReps();
+		cc.resetCounts();
+
+		if (totalreps != 0) {
+			double ratio = (double) totaldrop / (double) totalreps;
+			return (alpha * ratio) + ((1.0 - alpha) * oldValue);
+		} else {
+			return oldValue;
+		}
+	}
+
+	@Override
+	public int getState(double oldValue, double newValue) {
+		if (newValue >= CTH) {
+			return C;
+		} else if (newValue <= NCTH) {
+			return NC;
+		} else if (newValue <= oldValue) {
+			return DC;
+		} else {
+			return PC;
+		}
+	}
+}
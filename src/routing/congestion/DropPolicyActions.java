@@ -0,0 +1,62 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.congestion;
+
+import core.Settings;
+
+/**
+ * Drop policy actions for the states of the {@link BufferOccupancySignal}:
+ * <UL>
+ * <LI>0: drop the messages with the highest rate first</LI>
+ * <LI>1: drop the messages with the most replications first</LI>
+ * <LI>2: drop by the current queue mode instead of the oldest first</LI>
+ * <LI>3: drop the oldest messages first (and the smallest TTL first when
+ * dropping by the queue mode)</LI>
+ * </UL>
+ * No actions are taken in the non-congested state.
+ */
+public class DropPolicyActions extends ActionSet {
+	private static final long serialVersionUID = 42L;
+	/** action restriction checking table for each state */
+	private boolean[][] actionRestriction = {
+			{ true, true, true, true },
+			{ true, true, true, true },
+			{ false, false, false, false }
+	};
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public DropPolicyActions(Settings s) {
+		super(s);
+	}
+
+	@Override
+	public boolean[][] getActionRestriction() {
+		return actionRestriction;
+	}
+
+	@Override
+	public void apply(int action, CongestionControl cc) {
+		switch (action) {
+		case 0:
+			cc.setDropOldest(false);
+			cc.setQueueMode(CongestionControl.Q_MODE_RATE);
+			break;
+		case 1:
+			cc.setDropOldest(false);
+			cc.setQueueMode(CongestionControl.Q_MODE_REPS);
+			break;
+		case 2:
+			cc.setDropOldest(false);
+			break;
+		case 3:
+			cc.setDropOldest(true);
+			cc.setQueueMode(CongestionControl.Q_MODE_TTL);
+			break;
+		}
+	}
+}
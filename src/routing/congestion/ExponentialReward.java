@@ -0,0 +1,69 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.congestion;
+
+import core.Settings;
+
+/**
+ * Reward of the states of the {@link BufferOccupancySignal}: the maximum
+ * reward for non-congested, the minimum for congested, and in the
+ * partially congested state a reward that falls exponentially from the
+ * maximum to the minimum as the buffer occupancy grows from 33 to 66
+ * percent.
+ */
+public class ExponentialReward extends RewardFunction {
+	private static final long serialVersionUID = 42L;
+	/** Maximum reward - setting id ({@value}) */
+	public static final String MAX_REWARD_S = "maxReward";
+	/** Minimum reward - setting id ({@value}) */
+	public static final String MIN_REWARD_S = "minReward";
+
+	/** default maximum reward */
+	public static final double DEFAULT_MAX_REWARD = 100;
+	/** default minimum reward */
+	public static final double DEFAULT_MIN_REWARD = -100;
+	/** lower threshold of the partially congested rewards (percent) */
+	private static final double X1 = 33;
+	/** upper threshold of the partially congested rewards (percent) */
+	private static final double X2 = 66;
+
+	/** value of the max reward setting */
+	private double maxReward;
+	/** value of the min reward setting */
+	private double minReward;
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public ExponentialReward(Settings s) {
+		super(s);
+		maxReward = s.contains(MAX_REWARD_S) ? s.getDouble(MAX_REWARD_S) :
+			DEFAULT_MAX_REWARD;
+		minReward = s.contains(MIN_REWARD_S) ? s.getDouble(MIN_REWARD_S) :
+			DEFAULT_MIN_REWARD;
+	}
+
+	@Override
+	public double getReward(int olds, int news, CongestionControl cc) {
+		if (news == BufferOccupancySignal.NC) {
+			return maxReward;
+		} else if (news == BufferOccupancySignal.C) {
+			return minReward;
+		}
+
+		double occupancy = Math.max(X1,
+				cc.getHost().getBufferOccupancy());
+		if (olds == BufferOccupancySignal.NC ||
+				(olds == BufferOccupancySignal.PC && occupancy > X1 &&
+				 occupancy < X2)) {
+			double decay = 0.2 + (occupancy - X1) / (X2 - X1) * 0.2;
+			return maxReward + (minReward - maxReward) *
+				(Math.exp(-decay * (occupancy - X1)) - 1) /
+				(Math.exp(-decay * (X2 - X1)) - 1);
+		}
+		return 0;
+	}
+}
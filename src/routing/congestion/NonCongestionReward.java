@@ -0,0 +1,42 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.congestion;
+
+import core.Settings;
+
+/**
+ * Reward that only tells if the router stayed non-congested: a positive
+ * reward for staying in the non-congested state and a negative one for
+ * every other transition.
+ */
+public class NonCongestionReward extends RewardFunction {
+	private static final long serialVersionUID = 42L;
+	/** Reward for staying non-congested - setting id ({@value}) */
+	public static final String NC_REWARD_S = "ncReward";
+
+	/** default reward for staying non-congested */
+	public static final double DEFAULT_NC_REWARD = 10;
+
+	/** value of the reward setting */
+	private double reward;
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public NonCongestionReward(Settings s) {
+		super(s);
+		reward = s.contains(NC_REWARD_S) ? s.getDouble(NC_REWARD_S) :
+			DEFAULT_NC_REWARD;
+	}
+
+	@Override
+	public double getReward(int olds, int news, CongestionControl cc) {
+		if (olds == CongestionValueSignal.NC && news == CongestionValueSignal.NC) {
+			return reward;
+		}
+		return -reward;
+	}
+}
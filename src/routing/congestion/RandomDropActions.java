@@ -0,0 +1,64 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.congestion;
+
+import core.Settings;
+
+/**
+ * Actions for the states of the {@link TernaryCongestionValueSignal}.
+ * Only the last action ({@link #RANDOM_DROP}) changes anything: it picks
+ * one of the drop policies (highest rate, most replications, smallest TTL
+ * or oldest first) at random. No actions are taken in the non-congested
+ * state.
+ */
+public class RandomDropActions extends ActionSet {
+	private static final long serialVersionUID = 42L;
+	/** the action that picks a random drop policy */
+	public static final int RANDOM_DROP = 3;
+
+	/** action restriction checking table for each state */
+	private boolean[][] actionRestriction = {
+			{ true, true, true, true },
+			{ false, false, false, false },
+			{ true, true, true, true }
+	};
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public RandomDropActions(Settings s) {
+		super(s);
+	}
+
+	@Override
+	public boolean[][] getActionRestriction() {
+		return actionRestriction;
+	}
+
+	@Override
+	public void apply(int action, CongestionControl cc) {
+		if (action != RANDOM_DROP) {
+			return;
+		}
+		switch (cc.getRandom().nextInt(4)) {
+		case 0:
+			cc.setDropOldest(false);
+			cc.setQueueMode(CongestionControl.Q_MODE_RATE);
+			break;
+		case 1:
+			cc.setDropOldest(false);
+			cc.setQueueMode(CongestionControl.Q_MODE_REPS);
+			break;
+		case 2:
+			cc.setDropOldest(false);
+			cc.setQueueMode(CongestionControl.Q_MODE_TTL);
+			break;
+		case 3:
+			cc.setDropOldest(true);
+			break;
+		}
+	}
+}
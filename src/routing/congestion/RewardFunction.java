@@ -0,0 +1,38 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.congestion;
+
+import java.io.Serializable;
+
+import core.Settings;
+
+/**
+ * Superclass of the reward functions of the congestion state transitions
+ * of a {@link CongestionControl}. The states are the ones of the
+ * {@link StateSignal} the function is used with. The function is chosen
+ * with the {@link CongestionControl#REWARD_FUNCTION_S} setting; the
+ * classes must be in this package and have a constructor with a
+ * {@link Settings} parameter. A reward function is shared by all the
+ * routers of a group.
+ */
+public abstract class RewardFunction implements Serializable {
+	private static final long serialVersionUID = 42L;
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public RewardFunction(Settings s) { }
+
+	/**
+	 * Returns the reward of a state transition
+	 * @param oldState The previous state
+	 * @param newState The new state
+	 * @param cc The congestion control of the router
+	 * @return The reward
+	 */
+	public abstract double getReward(int oldState, int newState,
+			CongestionControl cc);
+}
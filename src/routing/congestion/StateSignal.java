@@ -0,0 +1,51 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.congestion;
+
+import java.io.Serializable;
+
+import core.Settings;
+
+/**
+ * Superclass of the signals a {@link CongestionControl} detects the
+ * congestion state of a router from. The signal is measured once per state
+ * update interval, and the state is decided from the previous and the new
+ * value of the signal. The signal is chosen with the
+ * {@link CongestionControl#STATE_SIGNAL_S} setting; the classes must be in
+ * this package and have a constructor with a {@link Settings} parameter.
+ * A signal is shared by all the routers of a group, so any per-router
+ * values must be kept in the {@link CongestionControl}.
+ */
+public abstract class StateSignal implements Serializable {
+	private static final long serialVersionUID = 42L;
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public StateSignal(Settings s) { }
+
+	/**
+	 * Returns the number of states the signal detects
+	 * @return The number of states
+	 */
+	public abstract int getNrofStates();
+
+	/**
+	 * Measures a new value of the signal
+	 * @param cc The congestion control of the router
+	 * @param oldValue The previous value of the signal
+	 * @return The new value
+	 */
+	public abstract double measure(CongestionControl cc, double oldValue);
+
+	/**
+	 * Returns the state for a new value of the signal
+	 * @param oldValue The previous value of the signal
+	 * @param newValue The new value of the signal
+	 * @return The state
+	 */
+	public abstract int getState(double oldValue, double newValue);
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.congestion;
+
+import core.Settings;
+
+/**
+ * Reward table of the transitions between the states of the
+ * {@link CongestionValueSignal}. Moving into the congested state is
+ * punished the most, and getting out of it rewarded.
+ */
+public class TableReward extends RewardFunction {
+	private static final long serialVersionUID = 42L;
+	private static final int C = CongestionValueSignal.C;
+	private static final int NC = CongestionValueSignal.NC;
+	private static final int DC = CongestionValueSignal.DC;
+	private static final int PC = CongestionValueSignal.PC;
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public TableReward(Settings s) {
+		super(s);
+	}
+
+	@Override
+	public double getReward(int olds, int news, CongestionControl cc) {
+		if (olds == NC && news == PC) {
+			return -1.0;
+		} else if (olds == DC && news == PC) {
+			return -1.0;
+		} else if (olds == DC && news == DC) {
+			return -0.5;
+		} else if (olds == PC && news == PC) {
+			return -1.0;
+		} else if (olds == PC && news == DC) {
+			return 0.5;
+		} else if (olds == C && news == DC) {
+			return 1.0;
+		} else if (news == C) {
+			return -2.0;
+		} else {
+			return 2.0;
+		}
+	}
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package routing.congestion;
+
+import core.Settings;
+
+/**
+ * Congestion value signal with three states: congested, non-congested and
+ * partially congested. Between the thresholds the state is partially
+ * congested while the CV isn't increasing, and congested when it is.
+ */
+public class TernaryCongestionValueSignal extends CongestionValueSignal {
+	private static final long serialVersionUID = 42L;
+	/** state for partially congested */
+	public static final int PC = 2;
+
+	/**
+	 * Constructor.
+	 * @param s The settings object
+	 */
+	public TernaryCongestionValueSignal(Settings s) {
+		super(s);
+	}
+
+	@Override
+	public int getNrofStates() {
+		return 3;
+	}
+
+	@Override
+	public int getState(double oldValue, double newValue) {
+		if (newValue >= CTH) {
+			return C;
+		} else if (newValue <= NCTH) {
+			return NC;
+		} else if (newValue <= oldValue) {
+			return PC;
+		} else {
+			return C;
+		}
+	}
+}
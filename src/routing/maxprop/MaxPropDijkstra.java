@@ -4,6 +4,7 @@
  */
 package routing.maxprop;
 
+import java.io.Serializable;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -16,21 +17,22 @@ import java.util.Set;
 /**
  * Dijkstra's shortest path implementation for MaxProp Router module.
  */
-public class MaxPropDijkstra {
+public class MaxPropDijkstra implements Serializable {
+	private static final long serialVersionUID = 42L;
 	/** Value for infinite distance  */
 	private static final Double INFINITY = Double.MAX_VALUE;
 	/** Initial size of the priority queue */
 	private static final int PQ_INIT_SIZE = 11;
 
 	/** Map of node distances from the source node */
-	private DistanceMap distancesFromStart;
+	private transient DistanceMap distancesFromStart;
 	/** Set of already visited nodes (where the shortest path is known) */
-	private Set<Integer> visited;
+	private transient Set<Integer> visited;
 	/** Priority queue of unvisited nodes discovered so far */
-	private Queue<Integer> unvisited;
+	private transient Queue<Integer> unvisited;
 	/** Map of previous nodes on the shortest path(s) -- only used for
 	 * debugging purposes */
-	private Map<Integer, Integer> prevNodes;
+	private transient Map<Integer, Integer> prevNodes;
 	/** Mapping of to other nodes' (whom this node has met) probability sets */
 	private Map<Integer, MeetingProbabilitySet> probs;
 	
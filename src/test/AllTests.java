@@ -27,15 +27,19 @@ public class AllTests {
 		suite.addTestSuite(ConnectionTest.class);
 		suite.addTestSuite(ExternalMovementReaderTest.class);
 		suite.addTestSuite(ExternalMovementTest.class);
+		suite.addTestSuite(BinaryMovementReaderTest.class);
 		suite.addTestSuite(WKTReaderTest.class);
 		suite.addTestSuite(WKTPointReaderTest.class);
 		suite.addTestSuite(MapNodeTest.class);
 		suite.addTestSuite(MapBasedMovementTest.class);
+		suite.addTestSuite(SimMapImageTest.class);
 		suite.addTestSuite(CoordTest.class);
 		suite.addTestSuite(DistanceDelayReportTest.class);
 		suite.addTestSuite(AdjacencyGraphvizReportTest.class);
 		suite.addTestSuite(MessageGraphvizReportTest.class);
 		suite.addTestSuite(ExternalEventsQueueTest.class);
+		suite.addTestSuite(StreamingEventsReaderTest.class);
+		suite.addTestSuite(ColumnarEventsTest.class);
 		suite.addTestSuite(ContactTimesReportTest.class);
 		suite.addTestSuite(TotalContactTimeReportTest.class);
 		suite.addTestSuite(EpidemicRouterTest.class);
@@ -47,8 +51,19 @@ public class AllTests {
 		suite.addTestSuite(MaxPropDijkstraTest.class);
 		suite.addTestSuite(MaxPropRouterTest.class);
 		suite.addTestSuite(ScheduledUpdatesQueueTest.class);
+		suite.addTestSuite(MergedEventQueueTest.class);
+		suite.addTestSuite(DropPriorityIndexTest.class);
+		suite.addTestSuite(ReceiptBufferTest.class);
+		suite.addTestSuite(QLearningPoolTest.class);
+		suite.addTestSuite(LearningAlgorithmTest.class);
+		suite.addTestSuite(QTableStoreTest.class);
+		suite.addTestSuite(CongestionControlTest.class);
+		suite.addTestSuite(TransferSchedulerTest.class);
 		suite.addTestSuite(MessageTest.class);
 		suite.addTestSuite(ModuleCommunicationBusTest.class);
+		suite.addTestSuite(EventDrivenConnectivityTest.class);
+		suite.addTestSuite(CheckpointTest.class);
+		suite.addTestSuite(ConcurrentBatchRunnerTest.class);
 		//$JUnit-END$
 		return suite;
 	}
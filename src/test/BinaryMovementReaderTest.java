@@ -0,0 +1,117 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.BinaryMovementReader;
+import input.BinaryMovementWriter;
+
+import java.io.File;
+import java.io.PrintWriter;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the BinaryMovementWriter and BinaryMovementReader
+ */
+public class BinaryMovementReaderTest extends TestCase {
+	private static final String INPUT =
+		"5 35 100 140 200 230\n"+
+		"15 n1 110 210\n"+
+		"15 n2 110 220.5\n" +
+		"15 n3 110 230\n" +
+		"25 n1 120 210\n" +
+		"25 n3 130 230\n" +
+		"\n"+
+		"35 n2 130 220\n" +
+		"35 n1 140 220\n";
+	private static final String[] IDS = {"n1", "n2", "n3"};
+	private static final double[] TIMES = {10, 20, 30};
+	private static final int[][] NODES = {{0, 1, 2}, {0, 2}, {1, 0}};
+	private static final double[][] XS = {{10, 10, 10}, {20, 30}, {30, 40}};
+	private static final double[][] YS = {{10, 20.5, 30}, {10, 30},
+		{20, 20}};
+
+	private File textFile;
+	private File binaryFile;
+	private BinaryMovementReader r;
+	private int[] nodes = new int[3];
+	private double[] xs = new double[3];
+	private double[] ys = new double[3];
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		textFile = File.createTempFile("BMRTest", ".txt");
+		binaryFile = File.createTempFile("BMRTest", ".bin");
+		PrintWriter pw = new PrintWriter(textFile);
+		pw.print(INPUT);
+		pw.close();
+
+		assertFalse(BinaryMovementReader.isBinaryMovementFile(
+				textFile.getAbsolutePath()));
+		assertEquals(3, BinaryMovementWriter.convert(
+				textFile.getAbsolutePath(), binaryFile.getAbsolutePath()));
+		assertTrue(BinaryMovementReader.isBinaryMovementFile(
+				binaryFile.getAbsolutePath()));
+		r = new BinaryMovementReader(binaryFile.getAbsolutePath());
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		r.close();
+		textFile.delete();
+		binaryFile.delete();
+	}
+
+	private void checkInstance(int i) {
+		int n = r.readNextMovements(nodes, xs, ys);
+		assertEquals(NODES[i].length, n);
+		assertEquals(TIMES[i], r.getLastTimeStamp());
+		for (int j=0; j<n; j++) {
+			assertEquals(NODES[i][j], nodes[j]);
+			assertEquals(XS[i][j], xs[j]);
+			assertEquals(YS[i][j], ys[j]);
+		}
+	}
+
+	public void testReader() {
+		assertEquals(3, r.getNrofNodes());
+		assertEquals(3, r.getNrofInstances());
+		assertEquals(3, r.getMaxInstanceSize());
+		for (int i=0; i<IDS.length; i++) {
+			assertEquals(IDS[i], r.getNodeId(i));
+		}
+		assertEquals(5.0, r.getMinTime());
+		assertEquals(140.0, r.getMaxX());
+
+		for (int i=0; i<TIMES.length; i++) {
+			checkInstance(i);
+		}
+		assertEquals(0, r.readNextMovements(nodes, xs, ys));
+	}
+
+	public void testSeek() {
+		assertEquals(1, r.seek(15));
+		checkInstance(1);
+		checkInstance(2);
+
+		assertEquals(2, r.seek(30));
+		checkInstance(2);
+
+		assertEquals(0, r.seek(-100));
+		checkInstance(0);
+
+		assertEquals(3, r.seek(30.5));
+		assertEquals(0, r.readNextMovements(nodes, xs, ys));
+	}
+
+	public void testNotNormalized() {
+		r.setNormalize(false);
+		assertEquals(2, r.seek(35));
+		assertEquals(2, r.readNextMovements(nodes, xs, ys));
+		assertEquals(35.0, r.getLastTimeStamp());
+		assertEquals(130.0, xs[0]);
+		assertEquals(220.0, ys[0]);
+	}
+}
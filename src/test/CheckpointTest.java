@@ -0,0 +1,237 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.EventQueueHandler;
+import input.ExternalEventsQueue;
+import input.MessageEventGenerator;
+import interfaces.ConnectivityGrid;
+
+import java.io.File;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import routing.MessageRouter;
+import routing.ProphetRouter;
+import core.Checkpoint;
+import core.ConnectionListener;
+import core.DTNHost;
+import core.Message;
+import core.MessageListener;
+import core.NetworkInterface;
+import core.SimClock;
+import core.SimScenario;
+import core.World;
+
+/**
+ * Tests for saving and resuming simulation checkpoints
+ */
+public class CheckpointTest extends TestCase {
+	private static final double SAVE_TIME = 300;
+	private static final double END_TIME = 600;
+	private static final int NROF_HOSTS = 10;
+
+	private TestSettings ts;
+	private File eventsFile;
+	private File checkpointFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		eventsFile = File.createTempFile("cptest", ".txt");
+		eventsFile.deleteOnExit();
+		checkpointFile = File.createTempFile("cptest", ".bin");
+		checkpointFile.deleteOnExit();
+
+		/* messages between the hosts of both groups every 5 seconds */
+		PrintWriter out = new PrintWriter(eventsFile);
+		for (int i=0; i < END_TIME / 5; i++) {
+			out.println((i * 5 + 1) + "\tC\tE" + i + "\t" +
+					hostName(i) + "\t" + hostName(i * 7 + 3) + "\t20000");
+		}
+		out.close();
+
+		ts = createSettings();
+	}
+
+	/**
+	 * Returns the name of a host of the scenario
+	 * @param index Index of the host (modulo the number of hosts)
+	 * @return The name
+	 */
+	private String hostName(int index) {
+		index %= 2 * NROF_HOSTS;
+		return index < NROF_HOSTS ? "p" + index :
+			"q" + (index - NROF_HOSTS);
+	}
+
+	/**
+	 * Saves a checkpoint in the middle of a run, resumes it with the static
+	 * state reset and checks that the message and connection events after
+	 * the checkpoint are the same as in an uninterrupted run
+	 */
+	public void testResumeContinuesRun() throws Exception {
+		resetStatics();
+		EventLog full = new EventLog();
+		SimScenario scen = SimScenario.getInstance();
+		full.addTo(scen);
+		runUntil(scen.getWorld(), SAVE_TIME);
+		int nrofEventsBefore = full.events.size();
+		runUntil(scen.getWorld(), END_TIME);
+		scen.getWorld().done();
+		List<String> expected = full.events.subList(nrofEventsBefore,
+				full.events.size());
+
+		resetStatics();
+		scen = SimScenario.getInstance();
+		runUntil(scen.getWorld(), SAVE_TIME);
+		double saveTime = SimClock.getTime();
+		Checkpoint.save(scen, checkpointFile);
+		scen.getWorld().done();
+
+		/* like a new VM: the statics are restored from the checkpoint */
+		resetStatics();
+		ts.putSetting(Checkpoint.SETTINGS_NS + "." + Checkpoint.RESUME_FILE_S,
+				checkpointFile.getAbsolutePath());
+		SimScenario resumed = new Checkpoint().resume();
+		assertEquals(saveTime, SimClock.getTime());
+		assertFalse(Checkpoint.getMessageIds(resumed).isEmpty());
+
+		EventLog log = new EventLog();
+		log.addTo(resumed);
+		runUntil(resumed.getWorld(), END_TIME);
+		resumed.getWorld().done();
+
+		assertTrue(expected.size() > 0);
+		assertEquals(expected, log.events);
+	}
+
+	/**
+	 * Creates the settings of a small scenario with two host groups and
+	 * messages from a generator and an external events file
+	 */
+	private TestSettings createSettings() {
+		TestSettings ts = new TestSettings();
+		String sns = SimScenario.SCENARIO_NS + ".";
+		String gns = SimScenario.GROUP_NS;
+		String ens = EventQueueHandler.SETTINGS_NAMESPACE;
+
+		ts.putSetting(sns + SimScenario.END_TIME_S, "" + END_TIME);
+		ts.putSetting(sns + SimScenario.NROF_GROUPS_S, "2");
+		ts.putSetting(gns + "." + SimScenario.NROF_HOSTS_S, "" + NROF_HOSTS);
+		ts.putSetting(gns + "." + SimScenario.MOVEMENT_MODEL_S,
+				"RandomWaypoint");
+		ts.putSetting(gns + "." + MovementModel.SPEED, "0.5,1.5");
+		ts.putSetting(gns + "." + MovementModel.WAIT_TIME, "0,120");
+		ts.putSetting(gns + "." + MessageRouter.B_SIZE_S, "200k");
+		ts.putSetting(gns + "." + MessageRouter.MSG_TTL_S, "30");
+		ts.putSetting(gns + "." + SimScenario.NROF_INTERF_S, "1");
+		ts.putSetting(gns + "." + SimScenario.INTERFACENAME_S + "1", "radio");
+		ts.putSetting(gns + "." + SimScenario.ROUTER_S, "ProphetRouter");
+		ts.putSetting(gns + "1." + SimScenario.GROUP_ID_S, "p");
+		ts.putSetting(gns + "2." + SimScenario.GROUP_ID_S, "q");
+		ts.putSetting(gns + "2." + MovementModel.SPEED, "2,5");
+		ts.putSetting(ProphetRouter.PROPHET_NS + "." +
+				ProphetRouter.SECONDS_IN_UNIT_S, "30");
+		ts.putSetting("radio." + SimScenario.INTTYPE_S,
+				"SimpleBroadcastInterface");
+		ts.putSetting("radio." + NetworkInterface.TRANSMIT_SPEED_S, "10k");
+		ts.putSetting("radio." + NetworkInterface.TRANSMIT_RANGE_S, "50");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, "300,300");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.RNG_SEED, "1");
+
+		ts.putSetting(ens + "." + EventQueueHandler.NROF_SETTING, "2");
+		ts.putSetting(ens + "1." + EventQueueHandler.CLASS_SETTING,
+				"MessageEventGenerator");
+		ts.putSetting(ens + "1." + MessageEventGenerator.MESSAGE_INTERVAL_S,
+				"5,10");
+		ts.putSetting(ens + "1." + MessageEventGenerator.MESSAGE_SIZE_S,
+				"10k,50k");
+		ts.putSetting(ens + "1." + MessageEventGenerator.HOST_RANGE_S,
+				"0," + (2 * NROF_HOSTS));
+		ts.putSetting(ens + "1." + MessageEventGenerator.MESSAGE_ID_PREFIX_S,
+				"M");
+		ts.putSetting(ens + "2." + EventQueueHandler.CLASS_SETTING,
+				"ExternalEventsQueue");
+		ts.putSetting(ens + "2." + ExternalEventsQueue.PATH_SETTING,
+				eventsFile.getAbsolutePath());
+		/* small batches so the resumed queue has to skip many of them */
+		ts.putSetting(ens + "2." + ExternalEventsQueue.PRELOAD_SETTING, "7");
+		return ts;
+	}
+
+	/**
+	 * Resets the static state as between batch runs
+	 */
+	private void resetStatics() {
+		SimClock.reset();
+		SimScenario.reset();
+		DTNHost.reset();
+		Message.reset();
+		NetworkInterface.reset();
+		MovementModel.reset();
+		ConnectivityGrid.reset();
+	}
+
+	/**
+	 * Updates the world until the given time
+	 * @param world The world
+	 * @param time The time
+	 */
+	private void runUntil(World world, double time) {
+		while (SimClock.getTime() < time) {
+			world.update();
+		}
+	}
+
+	/** Records the message and connection events as strings */
+	private class EventLog implements MessageListener, ConnectionListener {
+		private List<String> events = new ArrayList<String>();
+
+		private void addTo(SimScenario scen) {
+			scen.addMessageListener(this);
+			scen.addConnectionListener(this);
+		}
+
+		private void log(String type, Object... what) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(SimClock.getTime()).append(' ').append(type);
+			for (Object o : what) {
+				sb.append(' ').append(o);
+			}
+			events.add(sb.toString());
+		}
+
+		public void hostsConnected(DTNHost host1, DTNHost host2) {
+			log("conn", host1, host2);
+		}
+		public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+			log("disconn", host1, host2);
+		}
+		public void newMessage(Message m) {
+			log("create", m);
+		}
+		public void messageTransferStarted(Message m, DTNHost from,
+				DTNHost to) {
+			log("start", m, from, to);
+		}
+		public void messageDeleted(Message m, DTNHost where,
+				boolean dropped) {
+			log("delete", m, where, dropped);
+		}
+		public void messageTransferAborted(Message m, DTNHost from,
+				DTNHost to) {
+			log("abort", m, from, to);
+		}
+		public void messageTransferred(Message m, DTNHost from, DTNHost to,
+				boolean firstDelivery) {
+			log("relay", m, from, to, firstDelivery);
+		}
+	}
+}
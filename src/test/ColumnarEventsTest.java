@@ -0,0 +1,190 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ColumnarEventsReader;
+import input.ColumnarEventsWriter;
+import input.ConnectionEvent;
+import input.ExternalEvent;
+import input.ExternalEventsQueue;
+import input.MessageCreateEvent;
+import input.MessageDeleteEvent;
+import input.MessageRelayEvent;
+import input.StreamingEventsReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the ColumnarEventsWriter and ColumnarEventsReader
+ */
+public class ColumnarEventsTest extends TestCase {
+	private static final String[] INPUT = {
+		"1000.000	C	MSG_365_D_1	p1	p2	100000",
+		"1533.405	S	MSG_365_D_1	p1	p0",
+		"1542.000	A	MSG_365_D_1	p1	p0",
+		"2200.000	C	MSG_746_D_2	p1	p3	100000	500",
+		"3095.408	S	MSG_746_D_2	p1	c64",
+		"3103.000	A	MSG_746_D_2	p1	c64",
+		"8071.608	DE	MSG_746_D_2	p1	p10",
+		"8091.608	DE	MSG_365_D_1	p1	p10",
+		"9000.5	CONN	3	4	up",
+		"9001.25	CONN	3	4	down	btInterface",
+		"100502.200	DR	MSG_365_D_1	p10",
+		"106202.613	R	MSG_10644_D_5	c70"};
+
+	private File textFile;
+	private File columnarFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		textFile = File.createTempFile("ceTest", ".txt");
+		columnarFile = File.createTempFile("ceTest", ".bin");
+		PrintWriter out = new PrintWriter(textFile);
+		for (String s : INPUT) {
+			out.println(s);
+		}
+		out.close();
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		textFile.delete();
+		columnarFile.delete();
+	}
+
+	private List<ExternalEvent> textEvents() {
+		StreamingEventsReader r = new StreamingEventsReader(textFile);
+		List<ExternalEvent> events = r.readEvents(100);
+		r.close();
+		return events;
+	}
+
+	private void writeColumnar(List<ExternalEvent> events, int blockSize)
+			throws Exception {
+		ColumnarEventsWriter w = new ColumnarEventsWriter(columnarFile,
+				blockSize);
+		for (ExternalEvent ee : events) {
+			w.write(ee);
+		}
+		w.close();
+	}
+
+	private List<ExternalEvent> readColumnar(int nrof) {
+		ColumnarEventsReader r = new ColumnarEventsReader(columnarFile);
+		List<ExternalEvent> all = new ArrayList<ExternalEvent>();
+		List<ExternalEvent> events;
+		while ((events = r.readEvents(nrof)).size() > 0) {
+			all.addAll(events);
+		}
+		r.close();
+		return all;
+	}
+
+	private void checkSame(List<ExternalEvent> expected,
+			List<ExternalEvent> events) {
+		assertEquals(expected.size(), events.size());
+		for (int i=0; i<expected.size(); i++) {
+			ExternalEvent e = expected.get(i);
+			ExternalEvent ee = events.get(i);
+			assertEquals(e.getClass(), ee.getClass());
+			assertEquals(Double.doubleToLongBits(e.getTime()),
+					Double.doubleToLongBits(ee.getTime()));
+			assertEquals(e.toString(), ee.toString());
+			if (e instanceof MessageCreateEvent) {
+				assertEquals(((MessageCreateEvent)e).getResponseSize(),
+						((MessageCreateEvent)ee).getResponseSize());
+			}
+			if (e instanceof MessageDeleteEvent) {
+				assertEquals(((MessageDeleteEvent)e).isDrop(),
+						((MessageDeleteEvent)ee).isDrop());
+			}
+		}
+	}
+
+	public void testConvert() throws Exception {
+		List<ExternalEvent> expected = textEvents();
+		assertEquals(INPUT.length, ColumnarEventsWriter.convert(
+				new StreamingEventsReader(textFile), columnarFile));
+		assertTrue(ColumnarEventsReader.isColumnarEeFile(columnarFile));
+		assertFalse(ColumnarEventsReader.isColumnarEeFile(textFile));
+		assertTrue(columnarFile.length() < textFile.length());
+
+		checkSame(expected, readColumnar(100));
+		checkSame(expected, readColumnar(1));
+		for (int blockSize = 1; blockSize < 14; blockSize++) {
+			writeColumnar(expected, blockSize);
+			checkSame(expected, readColumnar(5));
+		}
+	}
+
+	public void testRawTimes() throws Exception {
+		List<ExternalEvent> events = new ArrayList<ExternalEvent>();
+		events.add(new MessageRelayEvent(1, 2, "M1", 1.0 / 3,
+				MessageRelayEvent.SENDING));
+		events.add(new MessageDeleteEvent(2, "M1", 0.5, false));
+		events.add(new ConnectionEvent(1, 2, null, true, 1e-12));
+		events.add(new ConnectionEvent(1, 2, "bt", false, 12.25));
+		events.add(new MessageCreateEvent(3, 1, "M2", 10, 0, -0.0));
+		events.add(new MessageCreateEvent(3, 1, "M2", 10, 0, 1e300));
+
+		for (int blockSize = 1; blockSize < 4; blockSize++) {
+			writeColumnar(events, blockSize);
+			checkSame(events, readColumnar(2));
+		}
+	}
+
+	public void testSkip() throws Exception {
+		List<ExternalEvent> expected = textEvents();
+		writeColumnar(expected, 4);
+
+		for (int skip = 0; skip <= expected.size() + 1; skip++) {
+			ColumnarEventsReader r = new ColumnarEventsReader(columnarFile);
+			assertEquals(expected.size(), r.getNrofEvents());
+			r.readEvents(1);
+			long skipped = r.skipEvents(skip);
+			assertEquals(Math.min(skip, expected.size() - 1), skipped);
+			List<ExternalEvent> rest = r.readEvents(100);
+			checkSame(expected.subList((int)(1 + skipped), expected.size()),
+					rest);
+			r.close();
+		}
+	}
+
+	public void testQueue() throws Exception {
+		List<ExternalEvent> expected = textEvents();
+		writeColumnar(expected, 5);
+		ExternalEventsQueue eeq = new ExternalEventsQueue(
+				columnarFile.getAbsolutePath(), 3);
+		for (int i=0; i < 7; i++) {
+			assertEquals(expected.get(i).toString(),
+					eeq.nextEvent().toString());
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(eeq);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray()));
+		ExternalEventsQueue restored = (ExternalEventsQueue)in.readObject();
+
+		for (int i=7; i < expected.size(); i++) {
+			assertEquals(expected.get(i).toString(),
+					restored.nextEvent().toString());
+			assertEquals(expected.get(i).toString(),
+					eeq.nextEvent().toString());
+		}
+		assertEquals(Double.MAX_VALUE, restored.nextEventsTime());
+	}
+}
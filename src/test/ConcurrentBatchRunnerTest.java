@@ -0,0 +1,105 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import junit.framework.TestCase;
+import core.ConcurrentBatchRunner;
+import core.DTNSim;
+
+/**
+ * Tests for running batch runs concurrently in their own class loaders
+ */
+public class ConcurrentBatchRunnerTest extends TestCase {
+	private static final String[] SCENARIO_NAMES = {"runA", "runB"};
+	private static final String STATS_FILE = "stats.txt";
+	private static final String CONTACTS_REPORT = "ContactTimesReport";
+
+	private File dir;
+	private File confFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = File.createTempFile("cbrtest", "");
+		dir.delete();
+		assertTrue(dir.mkdir());
+		confFile = new File(dir, "settings.txt");
+
+		String[] input = {
+			"Scenario.name = [" + SCENARIO_NAMES[0] + ";" +
+				SCENARIO_NAMES[1] + "]",
+			"Scenario.endTime = 200",
+			"Scenario.nrofHostGroups = 1",
+			"Group.nrofHosts = 10",
+			"Events.nrof = 1",
+			"Events1.hosts = 0,10",
+			"Events1.size = 1k,10k",
+			"MovementModel.worldSize = 200,200",
+			"MovementModel.warmup = 0",
+			"MovementModel.rngSeed = [1;2]",
+			"Report.nrofReports = 2",
+			"Report.reportDir = " + dir.getPath() + "/reports",
+			"Report.report1 = MessageStatsReport",
+			"Report.report2 = " + CONTACTS_REPORT,
+			"MessageStatsReport.output = " + dir.getPath() + "/" + STATS_FILE
+		};
+		PrintWriter out = new PrintWriter(confFile);
+		for (String s : input) {
+			out.println(s);
+		}
+		out.close();
+	}
+
+	protected void tearDown() throws Exception {
+		delete(dir);
+		super.tearDown();
+	}
+
+	/**
+	 * Runs two runs concurrently and checks that both the reports with an
+	 * explicit output file and the reports in the report directory of the
+	 * runs are written to separate run directories
+	 */
+	public void testRunsHaveSeparateReports() throws IOException {
+		new ConcurrentBatchRunner(new String[] {confFile.getPath()}, 0, 2).
+			run(0, 2);
+
+		assertFalse(new File(dir, STATS_FILE).exists());
+		for (int i=0; i<SCENARIO_NAMES.length; i++) {
+			String runDir = DTNSim.RUN_REPORT_DIR_PREFIX + (i + 1) + "/";
+			File stats = new File(dir, runDir + STATS_FILE);
+			assertTrue(stats.exists());
+			assertTrue(firstLine(stats).endsWith(SCENARIO_NAMES[i]));
+
+			File contacts = new File(dir, "reports/" + runDir +
+					SCENARIO_NAMES[i] + "_" + CONTACTS_REPORT + ".txt");
+			assertTrue(contacts.exists());
+		}
+	}
+
+	private String firstLine(File f) throws IOException {
+		BufferedReader reader = new BufferedReader(new FileReader(f));
+		try {
+			return reader.readLine();
+		} finally {
+			reader.close();
+		}
+	}
+
+	private void delete(File f) {
+		File[] files = f.listFiles();
+		if (files != null) {
+			for (File child : files) {
+				delete(child);
+			}
+		}
+		f.delete();
+	}
+}
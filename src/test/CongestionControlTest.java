@@ -0,0 +1,139 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.congestion.BufferOccupancySignal;
+import routing.congestion.CongestionActions;
+import routing.congestion.CongestionControl;
+import routing.congestion.CongestionValueSignal;
+import routing.congestion.DropPolicyActions;
+import routing.congestion.ExponentialReward;
+import routing.congestion.NonCongestionReward;
+import routing.congestion.TableReward;
+import routing.congestion.TernaryCongestionValueSignal;
+import core.SettingsError;
+
+/**
+ * Tests for the congestion control and its components
+ */
+public class CongestionControlTest extends TestCase {
+	private static final String NS = "eIQLCC";
+	private TestSettings ts;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		ts.setNameSpace(NS);
+	}
+
+	private CongestionControl newControl() {
+		return new CongestionControl(ts, "CongestionValueSignal",
+				"TableReward", "CongestionActions");
+	}
+
+	public void testSignalStates() {
+		CongestionValueSignal cv = new CongestionValueSignal(ts);
+		assertEquals(4, cv.getNrofStates());
+		assertEquals(CongestionValueSignal.C, cv.getState(0, 0.5));
+		assertEquals(CongestionValueSignal.NC, cv.getState(0.5, 0));
+		assertEquals(CongestionValueSignal.DC, cv.getState(0.05, 0.01));
+		assertEquals(CongestionValueSignal.PC, cv.getState(0.01, 0.05));
+
+		TernaryCongestionValueSignal t = new TernaryCongestionValueSignal(ts);
+		assertEquals(3, t.getNrofStates());
+		assertEquals(TernaryCongestionValueSignal.PC, t.getState(0.05, 0.01));
+		assertEquals(TernaryCongestionValueSignal.C, t.getState(0.01, 0.05));
+
+		BufferOccupancySignal bo = new BufferOccupancySignal(ts);
+		assertEquals(BufferOccupancySignal.C, bo.getState(0, 66));
+		assertEquals(BufferOccupancySignal.PC, bo.getState(0, 50));
+		assertEquals(BufferOccupancySignal.NC, bo.getState(0, 33));
+
+		ts.putSetting(NS + "." + CongestionValueSignal.CTH_S, "0.5");
+		assertEquals(CongestionValueSignal.DC,
+				new CongestionValueSignal(ts).getState(0.3, 0.2));
+	}
+
+	public void testRewards() {
+		CongestionControl cc = newControl();
+		TableReward table = new TableReward(ts);
+		assertEquals(-2.0, table.getReward(CongestionValueSignal.NC,
+				CongestionValueSignal.C, cc));
+		assertEquals(1.0, table.getReward(CongestionValueSignal.C,
+				CongestionValueSignal.DC, cc));
+		assertEquals(2.0, table.getReward(CongestionValueSignal.DC,
+				CongestionValueSignal.NC, cc));
+
+		ExponentialReward exp = new ExponentialReward(ts);
+		assertEquals(100.0, exp.getReward(BufferOccupancySignal.C,
+				BufferOccupancySignal.NC, cc));
+		assertEquals(-100.0, exp.getReward(BufferOccupancySignal.PC,
+				BufferOccupancySignal.C, cc));
+
+		NonCongestionReward nc = new NonCongestionReward(ts);
+		assertEquals(10.0, nc.getReward(CongestionValueSignal.NC,
+				CongestionValueSignal.NC, cc));
+		assertEquals(-10.0, nc.getReward(CongestionValueSignal.C,
+				CongestionValueSignal.NC, cc));
+	}
+
+	public void testActions() {
+		CongestionControl cc = newControl();
+		CongestionActions actions = new CongestionActions(ts);
+		assertTrue(cc.isDropOldest());
+
+		actions.apply(1, cc);
+		assertFalse(cc.isDropOldest());
+		assertEquals(CongestionControl.Q_MODE_REPS, cc.getQueueMode());
+		actions.apply(4, cc);
+		assertEquals(1200.0, cc.getMsgGenerationInterval());
+		actions.apply(7, cc);
+		assertEquals(2, cc.getMsgLimit());
+		actions.apply(6, cc);
+		assertEquals(1, cc.getMsgLimit());
+
+		DropPolicyActions drops = new DropPolicyActions(ts);
+		drops.apply(3, cc);
+		assertTrue(cc.isDropOldest());
+		assertEquals(CongestionControl.Q_MODE_TTL, cc.getQueueMode());
+		drops.apply(2, cc);
+		assertFalse(cc.isDropOldest());
+		assertEquals(CongestionControl.Q_MODE_TTL, cc.getQueueMode());
+	}
+
+	public void testCounts() {
+		CongestionControl cc = newControl();
+		CongestionControl peer = cc.replicate();
+		peer.countDrop();
+		peer.countRep();
+		peer.countRep();
+		cc.countRep();
+		cc.addPeerCounts(peer);
+
+		assertEquals(1, cc.getNrofReps());
+		assertEquals(0, cc.getNrofDrops());
+		assertEquals(2, cc.getOtherNrofReps());
+		assertEquals(1, cc.getOtherNrofDrops());
+		cc.resetCounts();
+		assertEquals(0, cc.getOtherNrofReps());
+		assertEquals(0, cc.getNrofReps());
+	}
+
+	public void testComponentSettings() {
+		ts.putSetting(NS + "." + CongestionControl.STATE_SIGNAL_S,
+				"BufferOccupancySignal");
+		try {
+			newControl();
+			fail("4 state actions accepted for a 3 state signal");
+		} catch (SettingsError e) {
+			// expected
+		}
+
+		ts.putSetting(NS + "." + CongestionControl.ACTION_SET_S,
+				"DropPolicyActions");
+		newControl();
+	}
+}
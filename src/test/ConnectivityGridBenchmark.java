@@ -0,0 +1,191 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import interfaces.ConnectivityGrid;
+import interfaces.ConnectivityOptimizer;
+import interfaces.NeighborVisitor;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import movement.MovementModel;
+import core.Coord;
+import core.DTNHost;
+import core.MessageListener;
+import core.NetworkInterface;
+
+/**
+ * Benchmark comparing the collection based
+ * {@link ConnectivityOptimizer#getNearInterfaces(NetworkInterface)} and the
+ * visitor based
+ * {@link ConnectivityOptimizer#visitNearInterfaces(NetworkInterface,
+ * NeighborVisitor)} neighbor queries of the connectivity grid. Every round
+ * queries the near interfaces of every interface once, like one world
+ * update does. Reports the time, the amount of allocated memory (if the JVM
+ * supports measuring it) and the garbage collector runs of both variants.
+ * <P>
+ * Usage: <CODE>java test.ConnectivityGridBenchmark [nrofHosts] [rounds]
+ * </CODE> (defaults: 10000 hosts, 200 rounds). Run it with a fixed size
+ * heap (e.g. <CODE>-Xms256m -Xmx256m</CODE>) to get comparable GC counts.
+ * </P>
+ */
+public class ConnectivityGridBenchmark {
+	private static final int DEF_NROF_HOSTS = 10000;
+	private static final int DEF_ROUNDS = 200;
+	private static final double RANGE = 100;
+	/** average number of interfaces per cell */
+	private static final double HOSTS_PER_CELL = 1.0;
+	private static final int WARMUP_ROUNDS = 50;
+
+	private List<NetworkInterface> interfaces;
+	private ConnectivityOptimizer optimizer;
+	/** the result of the queries (so that the JIT can't drop the work) */
+	private long checksum;
+
+	private NeighborVisitor counter = new NeighborVisitor() {
+		public void visit(NetworkInterface ni) {
+			checksum += ni.getAddress();
+		}
+	};
+
+	/**
+	 * Creates the hosts to random locations of a world whose size is chosen
+	 * so that every grid cell has on average {@link #HOSTS_PER_CELL} hosts
+	 * @param nrofHosts Number of hosts to create
+	 */
+	public ConnectivityGridBenchmark(int nrofHosts) {
+		int worldSize = (int)(Math.sqrt(nrofHosts / HOSTS_PER_CELL) * RANGE);
+		TestSettings ts = new TestSettings();
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, worldSize + "," + worldSize);
+		ConnectivityGrid.reset();
+
+		TestUtils utils = new TestUtils(null,
+				new ArrayList<MessageListener>(), ts);
+		utils.setTransmitRange(RANGE);
+		Random rng = new Random(1);
+		this.interfaces = new ArrayList<NetworkInterface>(nrofHosts);
+		for (int i=0; i<nrofHosts; i++) {
+			DTNHost h = utils.createHost(new Coord(rng.nextDouble() *
+					worldSize, rng.nextDouble() * worldSize));
+			interfaces.add(h.getInterfaces().get(0));
+		}
+		this.optimizer = ConnectivityGrid.ConnectivityGridFactory(
+				interfaces.get(0).getInterfaceType().hashCode(), RANGE);
+	}
+
+	/**
+	 * Runs the given number of query rounds using collections
+	 * @param rounds Number of rounds
+	 */
+	private void collectionRounds(int rounds) {
+		for (int r=0; r<rounds; r++) {
+			for (int i=0, n=interfaces.size(); i<n; i++) {
+				for (NetworkInterface ni :
+						optimizer.getNearInterfaces(interfaces.get(i))) {
+					checksum += ni.getAddress();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Runs the given number of query rounds using the visitor
+	 * @param rounds Number of rounds
+	 */
+	private void visitorRounds(int rounds) {
+		for (int r=0; r<rounds; r++) {
+			for (int i=0, n=interfaces.size(); i<n; i++) {
+				optimizer.visitNearInterfaces(interfaces.get(i), counter);
+			}
+		}
+	}
+
+	/**
+	 * Runs and reports one variant
+	 * @param name Name of the variant
+	 * @param visitor If true, the visitor query is used
+	 * @param rounds Number of rounds
+	 */
+	private void measure(String name, boolean visitor, int rounds) {
+		if (visitor) {
+			visitorRounds(WARMUP_ROUNDS);
+		} else {
+			collectionRounds(WARMUP_ROUNDS);
+		}
+		System.gc();
+
+		long gcCount = gcCount();
+		long gcTime = gcTime();
+		long allocated = allocatedBytes();
+		long start = System.nanoTime();
+		if (visitor) {
+			visitorRounds(rounds);
+		} else {
+			collectionRounds(rounds);
+		}
+		long elapsed = System.nanoTime() - start;
+		allocated = allocatedBytes() - allocated;
+
+		System.out.println(name + ": " + (elapsed / 1000000) + " ms, " +
+				(allocated < 0 ? "n/a" : (allocated / rounds) + " bytes") +
+				" allocated per round, " + (gcCount() - gcCount) +
+				" GC runs (" + (gcTime() - gcTime) + " ms)");
+	}
+
+	/**
+	 * Returns the number of bytes allocated by the current thread or a
+	 * negative value if the JVM doesn't support measuring it
+	 */
+	private static long allocatedBytes() {
+		ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean)bean).
+				getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the total number of garbage collections so far
+	 */
+	private static long gcCount() {
+		long count = 0;
+		for (GarbageCollectorMXBean gc :
+				ManagementFactory.getGarbageCollectorMXBeans()) {
+			count += Math.max(0, gc.getCollectionCount());
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the total time spent in garbage collections so far (ms)
+	 */
+	private static long gcTime() {
+		long time = 0;
+		for (GarbageCollectorMXBean gc :
+				ManagementFactory.getGarbageCollectorMXBeans()) {
+			time += Math.max(0, gc.getCollectionTime());
+		}
+		return time;
+	}
+
+	public static void main(String[] args) {
+		int nrofHosts = args.length > 0 ?
+				Integer.parseInt(args[0]) : DEF_NROF_HOSTS;
+		int rounds = args.length > 1 ? Integer.parseInt(args[1]) : DEF_ROUNDS;
+
+		ConnectivityGridBenchmark b = new ConnectivityGridBenchmark(nrofHosts);
+		System.out.println(nrofHosts + " hosts, " + rounds + " rounds");
+		b.measure("getNearInterfaces  ", false, rounds);
+		b.measure("visitNearInterfaces", true, rounds);
+		System.out.println("(checksum " + b.checksum + ")");
+	}
+}
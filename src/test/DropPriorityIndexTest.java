@@ -0,0 +1,129 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.DropPriorityIndex;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Tests for the DropPriorityIndex
+ */
+public class DropPriorityIndexTest extends TestCase {
+	private DropPriorityIndex index;
+	private int reps;
+	private SimClock sc = SimClock.getInstance();
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		Message.reset();
+		reps = Message.registerIntSlot("reps");
+		index = new DropPriorityIndex(reps);
+	}
+
+	/**
+	 * Creates a message with the given TTL, replications and hops
+	 */
+	private Message newMessage(String id, int ttl, int nrofReps, int hops) {
+		Message m = new Message(null, null, id, 100);
+		m.setTtl(ttl);
+		m.setInt(reps, nrofReps);
+		for (int i=0; i<hops; i++) {
+			m.addNodeOnPath(null);
+		}
+		return m;
+	}
+
+	public void testEmpty() {
+		assertNull(index.getSmallestTtl());
+		assertNull(index.getMostReplicated());
+		assertNull(index.getHighestRate());
+		assertTrue(index.getByTtl().isEmpty());
+	}
+
+	public void testTtlOrder() {
+		Message m1 = newMessage("M1", 30, 1, 0);
+		sc.setTime(100);
+		Message m2 = newMessage("M2", 20, 1, 0);
+		Message m3 = newMessage("M3", 40, 1, 0);
+		index.add(m3);
+		index.add(m1);
+		index.add(m2);
+
+		assertEquals(m2, index.getSmallestTtl());
+		Message[] order = index.getByTtl().toArray(new Message[0]);
+		assertEquals(m2, order[0]);
+		assertEquals(m1, order[1]);
+		assertEquals(m3, order[2]);
+
+		index.remove(m2);
+		assertEquals(m1, index.getSmallestTtl());
+		assertEquals(2, index.getByTtl().size());
+	}
+
+	public void testTtlTiesInMinutes() {
+		Message m2 = newMessage("M2", 30, 1, 0);
+		sc.setTime(30);
+		Message m1 = newMessage("M1", 30, 1, 0);
+		Message m3 = newMessage("M3", 31, 1, 0);
+		index.add(m2);
+		index.add(m1);
+		index.add(m3);
+
+		/* M2 expires first, but both have 29 minutes left -> ID decides */
+		sc.setTime(50);
+		assertEquals(m2, index.getByTtl().iterator().next());
+		assertEquals(29, m1.getTtl());
+		assertEquals(29, m2.getTtl());
+		assertEquals(m1, index.getSmallestTtl());
+
+		/* later M2 has 28 minutes left and M1 still 29 */
+		sc.setTime(90);
+		assertEquals(28, m2.getTtl());
+		assertEquals(m2, index.getSmallestTtl());
+	}
+
+	public void testRepsOrder() {
+		Message m1 = newMessage("M1", 30, 2, 0);
+		Message m2 = newMessage("M2", 30, 5, 0);
+		Message m3 = newMessage("M3", 30, 3, 0);
+		index.add(m1);
+		index.add(m2);
+		index.add(m3);
+		assertEquals(m2, index.getMostReplicated());
+
+		index.setReps(m1, 6);
+		assertEquals(6, m1.getInt(reps));
+		assertEquals(m1, index.getMostReplicated());
+
+		index.remove(m1);
+		assertEquals(m2, index.getMostReplicated());
+		index.remove(m2);
+		assertEquals(m3, index.getMostReplicated());
+
+		/* messages outside the index can be updated too */
+		index.setReps(m2, 10);
+		assertEquals(10, m2.getInt(reps));
+		assertEquals(m3, index.getMostReplicated());
+	}
+
+	public void testRateOrder() {
+		Message m1 = newMessage("M1", 60, 1, 2);
+		Message m2 = newMessage("M2", 60, 1, 1);
+		sc.setTime(300);
+		Message m3 = newMessage("M3", 60, 1, 0); // rate not defined yet
+		index.add(m3);
+		index.add(m2);
+		index.add(m1);
+
+		assertEquals(m1, index.getHighestRate());
+		index.remove(m1);
+		assertEquals(m2, index.getHighestRate());
+		index.remove(m2);
+		assertEquals(m3, index.getHighestRate());
+	}
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.EventQueue;
+import interfaces.ConnectivityGrid;
+import interfaces.SimpleBroadcastInterface;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MovementModel;
+import movement.Path;
+import routing.PassiveRouter;
+import core.ConnectionListener;
+import core.Coord;
+import core.DTNHost;
+import core.ModuleCommunicationBus;
+import core.NetworkInterface;
+import core.Settings;
+import core.SimClock;
+import core.UpdateListener;
+import core.World;
+
+/**
+ * Tests for the contact time prediction of the EventDrivenConnectivity
+ */
+public class EventDrivenConnectivityTest extends TestCase
+		implements ConnectionListener {
+	/* the update interval and the locations are exact in binary */
+	private static final double UP_INT = 0.5;
+	private static final double RANGE = 10;
+	private static final double TIME_DELTA = 0.000001;
+
+	private TestSettings ts;
+	private List<DTNHost> hosts;
+	private List<String> contacts;
+	private List<Double> times;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		DTNHost.reset();
+		NetworkInterface.reset();
+		ConnectivityGrid.reset();
+
+		ts = new TestSettings();
+		ts.putSetting("radio." + NetworkInterface.TRANSMIT_RANGE_S,
+				"" + RANGE);
+		ts.putSetting("radio." + NetworkInterface.TRANSMIT_SPEED_S, "1");
+		ts.putSetting(World.SETTINGS_NS + "." +
+				World.EVENT_DRIVEN_CONNECTIVITY_S, "true");
+		ts.putSetting(World.SETTINGS_NS + "." + World.RANDOMIZE_UPDATES_S,
+				"false");
+
+		hosts = new ArrayList<DTNHost>();
+		contacts = new ArrayList<String>();
+		times = new ArrayList<Double>();
+	}
+
+	public void hostsConnected(DTNHost host1, DTNHost host2) {
+		contacts.add(pair(host1, host2) + " up");
+		times.add(SimClock.getTime());
+	}
+
+	public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+		contacts.add(pair(host1, host2) + " down");
+		times.add(SimClock.getTime());
+	}
+
+	private String pair(DTNHost host1, DTNHost host2) {
+		if (host1.getAddress() < host2.getAddress()) {
+			return host1 + "-" + host2;
+		}
+		return host2 + "-" + host1;
+	}
+
+	/**
+	 * Creates a host that moves through the waypoints at the given speed
+	 * and then stays at the last one
+	 */
+	private DTNHost createHost(double speed, Coord... waypoints) {
+		List<ConnectionListener> cl = new ArrayList<ConnectionListener>();
+		cl.add(this);
+		NetworkInterface ni = new SimpleBroadcastInterface(
+				new Settings("radio"));
+		ni.setClisteners(cl);
+		List<NetworkInterface> li = new ArrayList<NetworkInterface>();
+		li.add(ni);
+
+		DTNHost h = new DTNHost(null, null, "h", li,
+				new ModuleCommunicationBus(),
+				new PathMovement(speed, waypoints), new PassiveRouter(ts));
+		hosts.add(h);
+		return h;
+	}
+
+	/**
+	 * Runs the world with the created hosts until the given time
+	 */
+	private void runUntil(double endTime) {
+		World world = new World(hosts, 1000, 1000, UP_INT,
+				new ArrayList<UpdateListener>(), true,
+				new ArrayList<EventQueue>());
+		while (SimClock.getTime() < endTime) {
+			world.update();
+		}
+	}
+
+	private void assertContact(int index, String contact, double time) {
+		assertEquals(contact, contacts.get(index));
+		assertEquals(time, times.get(index), TIME_DELTA);
+	}
+
+	public void testCrossing() {
+		createHost(1, new Coord(0,0), new Coord(100,0));
+		createHost(0, new Coord(50,5));
+		runUntil(80);
+
+		/* in range when (x - 50)^2 + 5^2 <= 10^2 */
+		assertEquals(2, contacts.size());
+		assertContact(0, "h0-h1 up", 50 - Math.sqrt(75));
+		assertContact(1, "h0-h1 down", 50 + Math.sqrt(75));
+	}
+
+	public void testTangent() {
+		createHost(1, new Coord(0,0), new Coord(100,0));
+		createHost(0, new Coord(50,RANGE));
+		runUntil(80);
+
+		/* only touches the range at x = 50 */
+		assertEquals(0, contacts.size());
+	}
+
+	public void testParallel() {
+		createHost(1, new Coord(0,0), new Coord(100,0));
+		createHost(1, new Coord(0,5), new Coord(100,5));
+		createHost(1, new Coord(0,20), new Coord(100,20));
+		runUntil(80);
+
+		/* connected on the first update and never disconnected */
+		assertEquals(1, contacts.size());
+		assertContact(0, "h0-h1 up", UP_INT);
+	}
+
+	public void testStationary() {
+		createHost(0, new Coord(0,0));
+		createHost(0, new Coord(5,0));
+		createHost(0, new Coord(50,0));
+		runUntil(80);
+
+		assertEquals(1, contacts.size());
+		assertContact(0, "h0-h1 up", UP_INT);
+	}
+
+	public void testSegmentChange() {
+		/* turns away from the other host at (45,0) */
+		createHost(1, new Coord(0,0), new Coord(45,0), new Coord(45,-100));
+		createHost(0, new Coord(50,5));
+		runUntil(80);
+
+		/* without the turn, the hosts would disconnect at 50 + sqrt(75) */
+		assertEquals(2, contacts.size());
+		assertContact(0, "h0-h1 up", 50 - Math.sqrt(75));
+		assertContact(1, "h0-h1 down", 45 + Math.sqrt(75) - 5);
+	}
+
+	/**
+	 * Movement through fixed waypoints (the first one is the initial
+	 * location)
+	 */
+	private static class PathMovement extends MovementModel {
+		private static final long serialVersionUID = 42L;
+		private double speed;
+		private Coord[] waypoints;
+		private boolean used;
+
+		public PathMovement(double speed, Coord... waypoints) {
+			this.speed = speed;
+			this.waypoints = waypoints;
+			this.used = false;
+		}
+
+		@Override
+		public Coord getInitialLocation() {
+			return waypoints[0].clone();
+		}
+
+		@Override
+		public boolean isActive() {
+			return true;
+		}
+
+		@Override
+		public Path getPath() {
+			if (used) {
+				return null;
+			}
+			used = true;
+			Path p = new Path(speed);
+			for (Coord c : waypoints) {
+				p.addWaypoint(c.clone());
+			}
+			return p;
+		}
+
+		@Override
+		public double nextPathAvailable() {
+			return used ? Double.MAX_VALUE : 0;
+		}
+
+		@Override
+		public PathMovement replicate() {
+			return new PathMovement(speed, waypoints);
+		}
+	}
+}
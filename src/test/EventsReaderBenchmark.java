@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ColumnarEventsReader;
+import input.ColumnarEventsWriter;
+import input.ExternalEventsReader;
+import input.StandardEventsReader;
+import input.StreamingEventsReader;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Random;
+
+/**
+ * Throughput benchmark for the external events readers. Writes a synthetic
+ * contact trace in the standard format (connections going up and down,
+ * messages created, sent, delivered, aborted and dropped), converts it to
+ * a columnar file and reports the events per second read by the
+ * {@link ColumnarEventsReader}, the {@link StreamingEventsReader} and the
+ * {@link StandardEventsReader}. The standard reader is much slower, so it
+ * reads only the beginning of the trace.
+ * <P>
+ * Usage: <CODE>java test.EventsReaderBenchmark [nrofLines]
+ * [nrofStandardLines]</CODE> (defaults: 10 000 000 lines, of which the
+ * standard reader reads 100 000).
+ * </P>
+ */
+public class EventsReaderBenchmark {
+	private static final int DEF_NROF_LINES = 10000000;
+	private static final int DEF_NROF_STANDARD_LINES = 100000;
+	private static final int NROF_HOSTS = 100;
+	/** number of events read at a time (like the events queue does) */
+	private static final int PRELOAD = 500;
+
+	/**
+	 * Writes the trace
+	 * @param file The file to write to
+	 * @param nrofLines Number of lines in the trace
+	 * @throws IOException if the file can't be written
+	 */
+	private static void writeTrace(File file, int nrofLines)
+			throws IOException {
+		Random rng = new Random(1);
+		BufferedWriter out = new BufferedWriter(new FileWriter(file),
+				1 << 16);
+		double time = 0;
+		int msgId = 0;
+
+		for (int i=0; i<nrofLines; i++) {
+			time += rng.nextInt(1000) / 100.0;
+			String t = String.format(java.util.Locale.US, "%.2f", time);
+			int a = rng.nextInt(NROF_HOSTS);
+			int b = (a + 1 + rng.nextInt(NROF_HOSTS - 1)) % NROF_HOSTS;
+			String id = "M" + (msgId - rng.nextInt(50));
+			switch (rng.nextInt(8)) {
+			case 0:
+				out.write(t + " C M" + (msgId++) + " p" + a + " p" + b + " " +
+						(1000 + rng.nextInt(100000)));
+				break;
+			case 1:
+				out.write(t + " CONN " + a + " " + b + " up");
+				break;
+			case 2:
+				out.write(t + " CONN " + a + " " + b + " down");
+				break;
+			case 3:
+				out.write(t + " A " + id + " p" + a + " p" + b);
+				break;
+			case 4:
+				out.write(t + " DR " + id + " p" + a);
+				break;
+			case 5:
+				out.write(t + " DE " + id + " p" + a + " p" + b);
+				break;
+			default:
+				out.write(t + " S " + id + " p" + a + " p" + b);
+			}
+			out.newLine();
+		}
+		out.close();
+	}
+
+	/**
+	 * Reads events from the reader and reports the throughput
+	 * @param name Name of the reader
+	 * @param r The reader
+	 * @param max Max number of events to read
+	 */
+	private static void measure(String name, ExternalEventsReader r,
+			int max) {
+		long start = System.nanoTime();
+		long nrof = 0;
+		int read;
+		while (nrof < max && (read = r.readEvents(
+				(int)Math.min(PRELOAD, max - nrof)).size()) > 0) {
+			nrof += read;
+		}
+		long elapsed = System.nanoTime() - start;
+		r.close();
+
+		System.out.println(name + ": " + nrof + " events in " +
+				(elapsed / 1000000) + " ms, " +
+				(long)(nrof / (elapsed / 1e9)) + " events/s");
+	}
+
+	public static void main(String[] args) throws IOException {
+		int nrofLines = args.length > 0 ?
+				Integer.parseInt(args[0]) : DEF_NROF_LINES;
+		int nrofStandard = args.length > 1 ?
+				Integer.parseInt(args[1]) : DEF_NROF_STANDARD_LINES;
+		java.util.Locale.setDefault(java.util.Locale.US);
+
+		File trace = File.createTempFile("eventsBenchmark", ".txt");
+		trace.deleteOnExit();
+		writeTrace(trace, nrofLines);
+		System.out.println(nrofLines + " lines, " + (trace.length() >> 20) +
+				" MB");
+
+		File columnar = File.createTempFile("eventsBenchmark", ".bin");
+		columnar.deleteOnExit();
+		ColumnarEventsWriter.convert(new StreamingEventsReader(trace),
+				columnar);
+		System.out.println("columnar file " + (columnar.length() >> 20) +
+				" MB");
+
+		measure("columnar", new ColumnarEventsReader(columnar),
+				Integer.MAX_VALUE);
+		measure("streaming", new StreamingEventsReader(trace),
+				Integer.MAX_VALUE);
+		measure("standard", new StandardEventsReader(trace),
+				Math.min(nrofLines, nrofStandard));
+		trace.delete();
+		columnar.delete();
+	}
+}
@@ -11,11 +11,16 @@ import input.ExternalEventsReader;
 import input.MessageCreateEvent;
 import input.StandardEventsReader;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.PrintWriter;
 import java.util.List;
 
 import junit.framework.TestCase;
+import core.SimError;
 
 public class ExternalEventsQueueTest extends TestCase {
 	private final String[] stdinput = {
@@ -66,6 +71,37 @@ public class ExternalEventsQueueTest extends TestCase {
 	}
 
 	
+	public void testPrefetchEEQ() {
+		for (int prefetch = 1; prefetch <= 3; prefetch++) {
+			eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(), 10,
+					prefetch);
+			checkEeq(eeq, 10);
+			assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+
+			eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(), 1,
+					prefetch);
+			checkEeq(eeq, 1);
+			assertEquals(Double.MAX_VALUE, eeq.nextEventsTime());
+		}
+	}
+
+	public void testPrefetchError() throws Exception {
+		PrintWriter out = new PrintWriter(tempFile);
+		out.println(stdinput[0]);
+		out.println(stdinput[1]);
+		out.println("1600.000	X	MSG_365_D_1	p1	p0");
+		out.close();
+
+		eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(), 1, 2);
+		assertEquals(msgTimes[0], eeq.nextEvent().getTime());
+		try {
+			eeq.nextEvent();
+			fail("Invalid event was read");
+		} catch (SimError e) {
+			assertTrue(e.getMessage().contains("X"));
+		}
+	}
+
 	public void testBinaryEEQ() throws Exception{
 		int preload = 7;
 		File tmpBinFile = File.createTempFile("TempBinTest", 
@@ -82,6 +118,36 @@ public class ExternalEventsQueueTest extends TestCase {
 	}
 	
 	
+	public void testRestoredEEQ() throws Exception {
+		checkRestored(0);
+		checkRestored(2);
+	}
+
+	private void checkRestored(int prefetch) throws Exception {
+		int preload = 3;
+		eeq = new ExternalEventsQueue(tempFile.getAbsolutePath(), preload,
+				prefetch);
+		for (int i=0; i < 4; i++) { // read some events past the first preload
+			assertEquals(msgTimes[i], eeq.nextEvent().getTime());
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		ObjectOutputStream out = new ObjectOutputStream(bytes);
+		out.writeObject(eeq);
+		out.close();
+		ObjectInputStream in = new ObjectInputStream(
+				new ByteArrayInputStream(bytes.toByteArray()));
+		ExternalEventsQueue restored = (ExternalEventsQueue)in.readObject();
+
+		/* both queues continue from the same event */
+		for (int i=4; i < msgTimes.length; i++) {
+			assertEquals(msgTimes[i], restored.nextEventsTime());
+			assertEquals(msgTimes[i], restored.nextEvent().getTime());
+			assertEquals(msgTimes[i], eeq.nextEvent().getTime());
+		}
+		assertEquals(Double.MAX_VALUE, restored.nextEventsTime());
+	}
+	
 	private void checkEeq(ExternalEventsQueue eeq, int preloadVal) {
 		ExternalEvent ee;
 		assertEquals(msgTimes[0],eeq.nextEventsTime());
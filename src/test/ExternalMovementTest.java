@@ -7,6 +7,7 @@ package test;
 import java.io.File;
 import java.io.PrintWriter;
 
+import input.BinaryMovementWriter;
 import junit.framework.TestCase;
 import movement.ExternalMovement;
 import movement.MovementModel;
@@ -48,7 +49,18 @@ public class ExternalMovementTest extends TestCase {
 	private DTNHost h3;
 	private SimClock clock;
 	
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		new TestSettings().putSetting(ExternalMovement.EXTERNAL_MOVEMENT_NS +
+				"." + ExternalMovement.START_TIME_S, "0");
+	}
+
 	protected void setUpUsing(String[] input) throws Exception {
+		setUpUsing(input, false, 0);
+	}
+
+	protected void setUpUsing(String[] input, boolean binary,
+			double startTime) throws Exception {
 		super.setUp();
 		ExternalMovement.reset();
 		TestSettings ts = new TestSettings();
@@ -63,9 +75,19 @@ public class ExternalMovementTest extends TestCase {
 		}
 		
 		pw.close();
+
+		if (binary) {
+			File binFile = File.createTempFile("eMovementTest", ".bin");
+			binFile.deleteOnExit();
+			BinaryMovementWriter.convert(outFile.getAbsolutePath(),
+					binFile.getAbsolutePath());
+			outFile = binFile;
+		}
 		
 		ts.putSetting(ExternalMovement.EXTERNAL_MOVEMENT_NS + "." +
 				ExternalMovement.MOVEMENT_FILE_S, outFile.getAbsolutePath());
+		ts.putSetting(ExternalMovement.EXTERNAL_MOVEMENT_NS + "." +
+				ExternalMovement.START_TIME_S, "" + startTime);
 		
 		MovementModel emProto = (MovementModel)
 			ts.createIntializedObject("movement.ExternalMovement");
@@ -80,13 +102,28 @@ public class ExternalMovementTest extends TestCase {
 	
 	public void testMovement() throws Exception {
 		setUpUsing(INPUT);
+		checkMovement(0);
+	}
+
+	public void testBinaryMovement() throws Exception {
+		setUpUsing(INPUT, true, 0);
+		checkMovement(0);
+	}
+
+	public void testStartTime() throws Exception {
+		setUpUsing(INPUT, false, 20);
+		checkMovement(1);
+		setUpUsing(INPUT, true, 15);
+		checkMovement(1);
+	}
 
+	private void checkMovement(int firstCoord) {
 		// h3 should not get any fancy coordinates
 		assertEquals(c0, h3.getLocation());
 		assertFalse(h3.isActive());
 		
 		// test that h1 and h2 move according to input data
-		for (int i=0; i<INPUT_COORDS.length; i++) {
+		for (int i=firstCoord; i<INPUT_COORDS[0].length; i++) {
 			assertEquals((i+1) + ". coord of h1",
 					INPUT_COORDS[0][i], h1.getLocation());
 			assertEquals((i+1) + ". coord of h2",
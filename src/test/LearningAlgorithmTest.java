@@ -0,0 +1,161 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.QL.BoltzmannExploration;
+import routing.QL.DoubleQ;
+import routing.QL.LearningAlgorithm;
+import routing.QL.OneStepQ;
+import routing.QL.QLambda;
+import routing.QL.QLearning;
+import routing.QL.QLearningPool;
+import routing.QL.Sarsa;
+
+/**
+ * Tests for the learning algorithms of the QLearning
+ */
+public class LearningAlgorithmTest extends TestCase {
+	private static final String NS = "eIQLCC";
+	private static final boolean[][] ALL_ALLOWED = {
+		{true, true}, {true, true}, {true, true}};
+	private TestSettings ts;
+	private QLearningPool pool;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		ts = new TestSettings();
+		ts.setNameSpace(NS);
+		pool = new QLearningPool(1);
+	}
+
+	/**
+	 * Creates an algorithm with the given name from the settings
+	 */
+	private LearningAlgorithm create(String name) {
+		ts.putSetting(NS + "." + LearningAlgorithm.LEARNING_ALGORITHM_S,
+				name);
+		return LearningAlgorithm.create(ts);
+	}
+
+	/**
+	 * Creates a learner with 3 states and 2 actions using the algorithm
+	 */
+	private QLearning newLearner(LearningAlgorithm algorithm) {
+		return new QLearning(3, 2, new BoltzmannExploration(0),
+				ALL_ALLOWED, algorithm.replicate(), pool, false, null);
+	}
+
+	public void testCreate() {
+		assertTrue(LearningAlgorithm.create(ts) instanceof OneStepQ);
+		assertTrue(create("Sarsa") instanceof Sarsa);
+		assertTrue(create("DoubleQ").replicate() instanceof DoubleQ);
+		assertFalse(create("QLambda").isShared());
+	}
+
+	public void testSarsa() {
+		QLearning ql = newLearner(create("Sarsa"));
+		pool.setQ(0, 1, 0, 4.0);
+		pool.setQ(0, 1, 1, 2.0);
+
+		/* nothing is learned before the next action is chosen */
+		ql.UpdateState(0, 0, 1.0, 1);
+		assertEquals(1.0, ql.getLearningRate());
+		assertEquals(0.0, pool.getQ(0, 0, 0));
+
+		/* the target uses the value of the action chosen (the greedy one
+		 * at zero temperature is the last one) */
+		assertEquals(1, ql.GetAction(1));
+		assertEquals(1.0 + 0.95 * 2.0, pool.getQ(0, 0, 0), 1e-12);
+	}
+
+	public void testDoubleQ() {
+		double[][] qv = {{1.0, 1.0}, {2.0, 0.0}, {0.0, 0.0}};
+		QLearning ql = new QLearning(3, 2, new BoltzmannExploration(0),
+				ALL_ALLOWED, create("DoubleQ").replicate(), pool, false, qv);
+		assertEquals(2.0, pool.getValue(0, 1, 1, 0));
+		assertEquals(2.0, pool.getValue(0, 2, 1, 0));
+
+		ql.UpdateState(0, 1, 1.0, 1);
+		double a = pool.getValue(0, 1, 0, 1);
+		double b = pool.getValue(0, 2, 0, 1);
+		/* one estimate moved all the way to the target, the other one
+		 * kept its value */
+		assertTrue((a == 1.0 && b == 1.0 + 0.95 * 2.0) ||
+				(b == 1.0 && a == 1.0 + 0.95 * 2.0));
+		assertEquals((a + b) / 2, ql.getqvalues()[0][1]);
+	}
+
+	public void testQLambda() {
+		ts.putSetting(NS + "." + QLambda.LAMBDA_S, "0.5");
+		QLearning ql = newLearner(create("QLambda"));
+		ql.setDiscountFactor(1.0);
+
+		pool.visit(0, 0, 0);
+		ql.UpdateState(0, 0, 0.0, 1);
+		assertEquals(0.0, pool.getQ(0, 0, 0));
+
+		/* the reward of the second step reaches the first pair too, with
+		 * its trace decayed by lambda */
+		pool.visit(0, 1, 1);
+		ql.UpdateState(1, 1, 2.0, 2);
+		assertEquals(0.5, ql.getLearningRate());
+		assertEquals(1.0, pool.getQ(0, 1, 1));
+		assertEquals(0.5 * 2.0 * 0.5, pool.getQ(0, 0, 0));
+
+		/* a non-greedy action (zero temperature chooses the last one)
+		 * cuts the traces */
+		pool.setQ(0, 2, 0, 1.0);
+		assertEquals(1, ql.GetAction(2));
+		ql.UpdateState(2, 1, 1.0, 2);
+		assertEquals(0.5, pool.getQ(0, 0, 0));
+		assertEquals(1.0, pool.getQ(0, 1, 1));
+	}
+
+	public void testSharedTable() {
+		ts.putSetting(NS + "." + LearningAlgorithm.SHARED_Q_TABLE_S, "true");
+		LearningAlgorithm proto = create("OneStepQ");
+		assertTrue(proto.isShared());
+		QLearning ql1 = newLearner(proto);
+		QLearning ql2 = newLearner(proto);
+		assertTrue(pool.isOwner(0));
+		assertFalse(pool.isOwner(1));
+
+		ql1.UpdateState(0, 1, 1.0, 1);
+		assertEquals(1.0, ql2.getqvalues()[0][1]);
+		ql2.GetAction(0);
+		assertEquals(1.0, pool.getVisits(0, 0, 1) + pool.getVisits(0, 0, 0));
+
+		/* the learners still have their own random numbers */
+		assertTrue(pool.nextDouble(0) != pool.nextDouble(1));
+	}
+
+	public void testConcurrentSharedUpdates() throws InterruptedException {
+		ts.putSetting(NS + "." + LearningAlgorithm.SHARED_Q_TABLE_S, "true");
+		LearningAlgorithm proto = create("OneStepQ");
+		final int n = 10000;
+		Thread[] threads = new Thread[4];
+		for (int i=0; i<threads.length; i++) {
+			final QLearning ql = newLearner(proto);
+			threads[i] = new Thread() {
+				public void run() {
+					for (int j=0; j<n; j++) {
+						int action = ql.GetAction(0);
+						ql.UpdateState(0, action, 1.0, 1);
+					}
+				}
+			};
+		}
+		for (Thread t : threads) {
+			t.start();
+		}
+		for (Thread t : threads) {
+			t.join();
+		}
+
+		assertEquals((double)threads.length * n,
+				pool.getVisits(0, 0, 0) + pool.getVisits(0, 0, 1));
+	}
+}
@@ -0,0 +1,166 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import input.EventQueue;
+import input.ExternalEvent;
+import input.MergedEventQueue;
+import input.PassiveEventQueue;
+import input.ScheduledUpdatesQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests for the MergedEventQueue
+ */
+public class MergedEventQueueTest extends TestCase {
+	private static double MAX = Double.MAX_VALUE;
+	private ScheduledUpdatesQueue suq;
+	private List<EventQueue> queues;
+	
+	protected void setUp() throws Exception {
+		super.setUp();
+		suq = new ScheduledUpdatesQueue();
+		queues = new ArrayList<EventQueue>();
+		queues.add(suq);
+	}
+	
+	public void testEmpty() {
+		MergedEventQueue meq = new MergedEventQueue(queues);
+		assertEquals(MAX, meq.nextEventsTime());
+		assertEquals(MAX, meq.nextEvent().getTime());
+		
+		meq = new MergedEventQueue(new ArrayList<EventQueue>());
+		assertEquals(MAX, meq.nextEventsTime());
+		assertEquals(MAX, meq.nextEvent().getTime());
+	}
+	
+	public void testOrder() {
+		TimesQueue q1 = new TimesQueue(1, 5, 9);
+		TimesQueue q2 = new TimesQueue(2, 3, 10);
+		TimesQueue q3 = new TimesQueue(4);
+		queues.add(q1);
+		queues.add(q2);
+		queues.add(q3);
+		suq.addUpdate(6);
+		MergedEventQueue meq = new MergedEventQueue(queues);
+		
+		double[] expected = {1, 2, 3, 4, 5, 6, 9, 10};
+		EventQueue[] sources = {q1, q2, q2, q3, q1, suq, q1, q2};
+		for (int i=0; i<expected.length; i++) {
+			assertEquals(expected[i], meq.nextEventsTime());
+			ExternalEvent ee = meq.nextEvent();
+			assertEquals(expected[i], ee.getTime());
+			if (sources[i] != suq) {
+				assertEquals(sources[i], ((TimesEvent)ee).source);
+			}
+		}
+		assertEquals(MAX, meq.nextEventsTime());
+		assertEquals(MAX, meq.nextEvent().getTime());
+	}
+	
+	public void testTiesGoInListOrder() {
+		TimesQueue q1 = new TimesQueue(3, 3);
+		TimesQueue q2 = new TimesQueue(3);
+		queues.add(q2);
+		queues.add(q1);
+		suq.addUpdate(3);
+		MergedEventQueue meq = new MergedEventQueue(queues);
+		
+		/* scheduled updates first, then the queues in the list order */
+		ExternalEvent ee = meq.nextEvent();
+		assertFalse(ee instanceof TimesEvent);
+		assertEquals(3.0, ee.getTime());
+		assertEquals(q2, ((TimesEvent)meq.nextEvent()).source);
+		assertEquals(q1, ((TimesEvent)meq.nextEvent()).source);
+		assertEquals(q1, ((TimesEvent)meq.nextEvent()).source);
+		assertEquals(MAX, meq.nextEventsTime());
+	}
+	
+	public void testUpdatesAddedWhileMerging() {
+		TimesQueue q1 = new TimesQueue(2, 8);
+		queues.add(q1);
+		MergedEventQueue meq = new MergedEventQueue(queues);
+		
+		assertEquals(2.0, meq.nextEvent().getTime());
+		suq.addUpdate(5);
+		assertEquals(5.0, meq.nextEventsTime());
+		suq.addUpdate(4);
+		assertEquals(4.0, meq.nextEvent().getTime());
+		assertEquals(5.0, meq.nextEvent().getTime());
+		suq.addUpdate(8);
+		assertEquals(8.0, meq.nextEventsTime());
+		assertFalse(meq.nextEvent() instanceof TimesEvent); // tie
+		assertEquals(q1, ((TimesEvent)meq.nextEvent()).source);
+		assertEquals(MAX, meq.nextEventsTime());
+	}
+	
+	public void testManyQueues() {
+		List<TimesQueue> passive = new ArrayList<TimesQueue>();
+		for (int i=0; i<50; i++) {
+			TimesQueue q = new TimesQueue(i % 7, 10 + i % 13, 30 + i);
+			passive.add(q);
+			queues.add(q);
+		}
+		MergedEventQueue meq = new MergedEventQueue(queues);
+		
+		double last = -1;
+		int count = 0;
+		TimesQueue lastSource = null;
+		while (meq.nextEventsTime() != MAX) {
+			TimesEvent ee = (TimesEvent)meq.nextEvent();
+			assertTrue(ee.getTime() >= last);
+			if (ee.getTime() == last) { // ties in the list order
+				assertTrue(passive.indexOf(ee.source) >= 
+					passive.indexOf(lastSource));
+			}
+			last = ee.getTime();
+			lastSource = ee.source;
+			count++;
+		}
+		assertEquals(150, count);
+	}
+	
+	/**
+	 * Passive queue that returns events at the given times
+	 */
+	private static class TimesQueue implements PassiveEventQueue {
+		private static final long serialVersionUID = 42L;
+		private double[] times;
+		private int next;
+		
+		public TimesQueue(double... times) {
+			this.times = times;
+			this.next = 0;
+		}
+		
+		public ExternalEvent nextEvent() {
+			if (next >= times.length) {
+				return new ExternalEvent(MAX);
+			}
+			return new TimesEvent(times[next++], this);
+		}
+		
+		public double nextEventsTime() {
+			return next >= times.length ? MAX : times[next];
+		}
+	}
+	
+	/**
+	 * Event that knows which queue it came from
+	 */
+	private static class TimesEvent extends ExternalEvent {
+		private static final long serialVersionUID = 42L;
+		private TimesQueue source;
+		
+		public TimesEvent(double time, TimesQueue source) {
+			super(time);
+			this.source = source;
+		}
+	}
+}
@@ -11,6 +11,7 @@ import org.junit.Test;
 
 import core.DTNHost;
 import core.Message;
+import core.SimError;
 import core.SimClock;
 
 public class MessageTest extends TestCase {
@@ -60,5 +61,92 @@ public class MessageTest extends TestCase {
 		assertEquals(value2, msg.getProperty("bar"));
 	}
 
+	@Test
+	public void testPath() {
+		TestUtils utils = new TestUtils(null, null, new TestSettings());
+		DTNHost h1 = utils.createHost();
+		DTNHost h2 = utils.createHost();
+		DTNHost h3 = utils.createHost();
+		Message m = new Message(h1, h2, "P", 100);
+		assertEquals(0, m.getHopCount());
+		assertEquals(1, m.getHops().size());
+
+		Message copy = m.replicate();
+		copy.addNodeOnPath(h3);
+		m.addNodeOnPath(h2);
+		assertEquals(1, m.getHopCount());
+		assertEquals(1, copy.getHopCount());
+		assertEquals(h1, m.getHops().get(0));
+		assertEquals(h2, m.getHops().get(1));
+		assertEquals(h3, copy.getHops().get(1));
+		assertTrue(m.isOnPath(h2));
+		assertFalse(m.isOnPath(h3));
+		assertTrue(copy.isOnPath(h1));
+		assertTrue(copy.isOnPath(h3));
+
+		copy.addNodeOnPath(h2);
+		assertEquals(3, copy.getHops().size());
+		assertEquals(h2, copy.getHops().get(2));
+		assertEquals(2, m.getHops().size());
+	}
+
+	@Test
+	public void testSlots() {
+		Message.reset();
+		int i1 = Message.registerIntSlot("i1");
+		int i2 = Message.registerIntSlot("i2");
+		int l1 = Message.registerLongSlot("l1");
+		int d1 = Message.registerDoubleSlot("d1");
+		assertEquals(i1, Message.registerIntSlot("i1"));
+		assertTrue(i1 != i2);
+
+		assertEquals(0, msg.getInt(i2));
+		msg.setInt(i2, 5);
+		msg.setLong(l1, 1L << 40);
+		msg.setDouble(d1, 0.5);
+		assertEquals(0, msg.getInt(i1));
+		assertEquals(5, msg.getInt(i2));
+		assertEquals(1L << 40, msg.getLong(l1));
+		assertEquals(0.5, msg.getDouble(d1));
+
+		Message copy = msg.replicate();
+		copy.setInt(i2, 6);
+		assertEquals(5, msg.getInt(i2));
+		assertEquals(6, copy.getInt(i2));
+		assertEquals(0.5, copy.getDouble(d1));
+
+		try {
+			Message.registerDoubleSlot("i1");
+			fail("Registered a slot twice with different types");
+		} catch (SimError e) {
+			// should end up here
+		}
+	}
+
+	@Test
+	public void testSlotProperties() {
+		Message.reset();
+		int reps = Message.registerIntSlot("reps");
+
+		assertNull(msg.getProperty("reps"));
+		msg.addProperty("reps", 2);
+		assertEquals(2, msg.getInt(reps));
+		assertEquals(2, msg.getProperty("reps"));
+
+		msg.updateProperty("reps", 3);
+		assertEquals(3, msg.getInt(reps));
+		try {
+			msg.addProperty("reps", 4);
+			fail("Added a value for a slot twice");
+		} catch (SimError e) {
+			// should end up here
+		}
+
+		Message other = new Message(from, to, "M2", 100);
+		other.setInt(reps, 7);
+		assertEquals(7, other.getProperty("reps"));
+		assertEquals(7, other.replicate().getProperty("reps"));
+	}
+
 
 }
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.QL.BoltzmannExploration;
+import routing.QL.IExplorationPolicy;
+import routing.QL.QLearning;
+import routing.QL.QLearningPool;
+
+/**
+ * Tests for the QLearningPool and the QLearning using it
+ */
+public class QLearningPoolTest extends TestCase {
+	private static final boolean[][] ALL_ALLOWED = {
+		{true, true, true}, {true, true, true}};
+	private QLearningPool pool;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		pool = new QLearningPool(1);
+	}
+
+	public void testLearners() {
+		int l1 = pool.addLearner(2, 3);
+		int l2 = pool.addLearner(4, 8);
+		pool.setQ(l1, 1, 2, 5.0);
+		pool.setQ(l2, 0, 0, 7.0);
+
+		/* enough learners to grow the arrays */
+		for (int i=0; i<100; i++) {
+			int l = pool.addLearner(4, 8);
+			pool.setQ(l, 3, 7, i);
+		}
+
+		assertEquals(2, pool.getStates(l1));
+		assertEquals(8, pool.getActions(l2));
+		assertEquals(5.0, pool.getQ(l1, 1, 2));
+		assertEquals(0.0, pool.getQ(l1, 0, 0));
+		assertEquals(7.0, pool.getQ(l2, 0, 0));
+		assertEquals(99.0, pool.getQ(101, 3, 7));
+
+		double[][] q = pool.getQValues(l1);
+		assertEquals(2, q.length);
+		assertEquals(3, q[0].length);
+		assertEquals(5.0, q[1][2]);
+	}
+
+	public void testUpdate() {
+		int l = pool.addLearner(2, 3);
+		pool.setQ(l, 1, 0, 2.0);
+		pool.setQ(l, 1, 1, 4.0);
+
+		assertEquals(1.0, pool.update(l, 0, 1, 1.0, 1, 0.5));
+		assertEquals(1.0 + 0.5 * 4.0, pool.getQ(l, 0, 1));
+
+		pool.visit(l, 0, 1);
+		assertEquals(1.0, pool.getVisits(l, 0, 1));
+		assertEquals(0.5, pool.update(l, 0, 1, 0.0, 1, 0.5));
+		assertEquals(0.5 * 3.0 + 0.5 * (0.5 * 4.0), pool.getQ(l, 0, 1));
+	}
+
+	public void testRandomStreams() {
+		QLearningPool other = new QLearningPool(1);
+		int l1 = pool.addLearner(1, 1);
+		int l2 = pool.addLearner(1, 1);
+		other.addLearner(1, 1);
+
+		double d1 = pool.nextDouble(l1);
+		assertEquals(d1, other.nextDouble(l1));
+		assertTrue(d1 != pool.nextDouble(l2));
+		for (int i=0; i<1000; i++) {
+			double d = pool.nextDouble(l1);
+			assertTrue(d >= 0 && d < 1);
+			int n = pool.nextInt(l2, 3);
+			assertTrue(n >= 0 && n < 3);
+		}
+	}
+
+	public void testSoftmax() {
+		int l = pool.addLearner(1, 3);
+		boolean[] allowed = {true, true, false};
+		pool.setQ(l, 0, 1, Math.log(3));
+
+		/* probabilities 1/5, 3/5 and 1/5; the last one isn't allowed, so
+		 * its share goes to the first allowed action */
+		int[] counts = new int[3];
+		int n = 10000;
+		for (int i=0; i<n; i++) {
+			counts[pool.chooseSoftmax(l, 0, 1.0, allowed)]++;
+		}
+		assertEquals(0, counts[2]);
+		assertEquals(0.4, counts[0] / (double)n, 0.02);
+		assertEquals(0.6, counts[1] / (double)n, 0.02);
+
+		/* zero temperature chooses the last allowed action */
+		assertEquals(1, pool.chooseSoftmax(l, 0, 0, allowed));
+	}
+
+	public void testEpsilonGreedy() {
+		int l = pool.addLearner(1, 3);
+		boolean[] allowed = {false, true, true};
+		pool.setQ(l, 0, 1, 1.0);
+		pool.setQ(l, 0, 2, 2.0);
+
+		for (int i=0; i<100; i++) {
+			assertEquals(2, pool.chooseEpsilonGreedy(l, 0, 0, allowed));
+			assertTrue(pool.chooseEpsilonGreedy(l, 0, 1, allowed) != 0);
+		}
+	}
+
+	public void testQLearning() {
+		QLearning ql = new QLearning(2, 3, new BoltzmannExploration(0), false,
+				ALL_ALLOWED, pool);
+		assertEquals(2, ql.GetAction(0));
+		ql.UpdateState(0, 2, 1.0, 1);
+		assertEquals(0.5, ql.getLearningRate());
+		assertEquals(0.5, ql.getqvalues()[0][2]);
+	}
+
+	public void testOtherPolicy() {
+		IExplorationPolicy first = new IExplorationPolicy() {
+			public int ChooseAction(double[] actionEstimates,
+					boolean[] actionRestriction) {
+				assertEquals(3.0, actionEstimates[1]);
+				return 1;
+			}
+		};
+		QLearning ql = new QLearning(2, 3, first, false, ALL_ALLOWED, pool);
+		pool.setQ(0, 1, 1, 3.0);
+		assertEquals(1, ql.GetAction(1));
+		assertEquals(1.0, pool.getVisits(0, 1, 1));
+	}
+}
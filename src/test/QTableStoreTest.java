@@ -0,0 +1,89 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+import routing.QL.QTableStore;
+
+/**
+ * Tests for the QTableStore
+ */
+public class QTableStoreTest extends TestCase {
+	private QTableStore store;
+	private File file;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		store = new QTableStore(2, 3);
+		store.add(1, new double[][] {{1, 2, 3}, {4, 5, 6}});
+		store.add(7, new double[][] {{3, 2, 1}, {0, 1, 0}});
+		file = File.createTempFile("qtable", QTableStore.FILE_SUFFIX);
+	}
+
+	protected void tearDown() throws Exception {
+		file.delete();
+		super.tearDown();
+	}
+
+	public void testTables() {
+		assertTrue(store.hasTable(7));
+		assertEquals(5.0, store.getTable(1)[1][1]);
+		assertEquals(2.0, store.getMean()[0][0]);
+		assertEquals(3.0, store.getMean()[1][1]);
+
+		/* hosts without a table get the mean */
+		assertFalse(store.hasTable(2));
+		assertEquals(2.0, store.getTable(2)[0][2]);
+
+		/* the returned tables are copies */
+		store.getTable(1)[0][0] = 100;
+		assertEquals(1.0, store.getTable(1)[0][0]);
+
+		try {
+			store.add(3, new double[3][3]);
+			fail("Table of a wrong size was accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	public void testReadWrite() throws IOException {
+		store.write(file.getPath(), false);
+		QTableStore read = QTableStore.read(file.getPath());
+		assertEquals(2, read.getStates());
+		assertEquals(3, read.getActions());
+		assertEquals(6.0, read.getTable(1)[1][2]);
+		assertEquals(3.0, read.getTable(7)[0][0]);
+		assertEquals(2.0, read.getTable(5)[1][0]);
+
+		/* tables added to a read store update the mean */
+		read.add(5, new double[][] {{2, 2, 2}, {2, 2, 2}});
+		assertEquals(2.0, read.getMean()[0][0]);
+	}
+
+	public void testAggregated() throws IOException {
+		store.write(file.getPath(), true);
+		QTableStore read = QTableStore.read(file.getPath());
+		assertFalse(read.hasTable(1));
+		assertEquals(2.0, read.getTable(1)[1][0]);
+		assertEquals(3.0, read.getTable(7)[1][2]);
+	}
+
+	public void testNotAStore() throws IOException {
+		FileWriter w = new FileWriter(file);
+		w.write("not a Q-table");
+		w.close();
+		try {
+			QTableStore.read(file.getPath());
+			fail("Text file was read as a Q-table store");
+		} catch (IOException e) {
+			// expected
+		}
+	}
+}
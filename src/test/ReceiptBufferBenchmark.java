@@ -0,0 +1,148 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.Random;
+
+import routing.ACKTTL;
+import routing.ReceiptBuffer;
+import core.SimClock;
+
+/**
+ * Memory benchmark for the {@link ReceiptBuffer}. Replays a synthetic
+ * seven day trace where messages are delivered to random hosts (that
+ * create receipts for them) and random pairs of hosts meet and merge the
+ * receipts of each other, like the IQLCC routers do. The trace is run
+ * <UL>
+ * <LI>unbounded: receipts never expire (like the receipt buffers used to
+ * work)</LI>
+ * <LI>expiring: receipts expire with the TTL of the message</LI>
+ * <LI>bounded: receipts expire and every buffer keeps at most the given
+ * number of receipts</LI>
+ * </UL>
+ * and the time, the number of receipts kept in the end and the heap used
+ * by the buffers are reported.
+ * <P>
+ * Usage: <CODE>java test.ReceiptBufferBenchmark [nrofHosts] [msgTtl]
+ * [maxSize]</CODE> (defaults: 100 hosts, TTL 1440 minutes, max 1000
+ * receipts).
+ * </P>
+ */
+public class ReceiptBufferBenchmark {
+	private static final int DEF_NROF_HOSTS = 100;
+	private static final int DEF_MSG_TTL = 1440;
+	private static final int DEF_MAX_SIZE = 1000;
+	/** length of the trace (seconds) */
+	private static final double TRACE_LENGTH = 7 * 24 * 3600;
+	/** time between deliveries (seconds) */
+	private static final double DELIVERY_INTERVAL = 30;
+	/** time between contacts (seconds) */
+	private static final double CONTACT_INTERVAL = 10;
+
+	private int nrofHosts;
+	/** the buffers of the latest run (kept for measuring the heap) */
+	private ReceiptBuffer[] buffers;
+
+	/**
+	 * Constructor.
+	 * @param nrofHosts Number of hosts in the trace
+	 */
+	public ReceiptBufferBenchmark(int nrofHosts) {
+		this.nrofHosts = nrofHosts;
+	}
+
+	/**
+	 * Replays the trace
+	 * @param maxSize Max size of the buffers (0 = no limit)
+	 * @param ttl TTL of the receipts (minutes)
+	 */
+	private void replay(int maxSize, int ttl) {
+		Random rng = new Random(1);
+		SimClock sc = SimClock.getInstance();
+		double nextDelivery = 0;
+		int nrofDeliveries = 0;
+
+		SimClock.reset();
+		buffers = new ReceiptBuffer[nrofHosts];
+		for (int i=0; i<nrofHosts; i++) {
+			buffers[i] = new ReceiptBuffer(maxSize, ReceiptBuffer.DEF_SLOT_TIME);
+		}
+
+		for (double t = 0; t < TRACE_LENGTH; t += CONTACT_INTERVAL) {
+			sc.setTime(t);
+			while (nextDelivery <= t) {
+				/* the message was created somewhat before it was delivered */
+				int remaining = ttl == Integer.MAX_VALUE ? ttl :
+					rng.nextInt(ttl);
+				buffers[rng.nextInt(nrofHosts)].add("M" + nrofDeliveries++,
+						new ACKTTL(remaining, t));
+				nextDelivery += DELIVERY_INTERVAL;
+			}
+
+			int a = rng.nextInt(nrofHosts);
+			int b = (a + 1 + rng.nextInt(nrofHosts - 1)) % nrofHosts;
+			buffers[a].mergeFrom(buffers[b], b);
+			buffers[b].mergeFrom(buffers[a], a);
+		}
+	}
+
+	/**
+	 * Returns the number of receipts in the buffers of the latest run
+	 * @return The number of receipts
+	 */
+	private long nrofReceipts() {
+		long n = 0;
+		for (ReceiptBuffer b : buffers) {
+			n += b.size();
+		}
+		return n;
+	}
+
+	/**
+	 * Returns the size of the used heap after garbage collection
+	 * @return Used heap (bytes)
+	 */
+	private static long usedHeap() {
+		Runtime rt = Runtime.getRuntime();
+		for (int i=0; i<3; i++) {
+			System.gc();
+		}
+		return rt.totalMemory() - rt.freeMemory();
+	}
+
+	/**
+	 * Runs and reports one trace replay
+	 * @param name Name of the run
+	 * @param maxSize Max size of the buffers (0 = no limit)
+	 * @param ttl TTL of the receipts (minutes)
+	 */
+	private void measure(String name, int maxSize, int ttl) {
+		buffers = null;
+		long heapBefore = usedHeap();
+		long start = System.nanoTime();
+		replay(maxSize, ttl);
+		long elapsed = System.nanoTime() - start;
+		long heap = usedHeap() - heapBefore;
+
+		System.out.println(name + ": " + (elapsed / 1000000) + " ms, " +
+				nrofReceipts() + " receipts, " + (heap / 1024) + " kB heap");
+	}
+
+	public static void main(String[] args) {
+		int nrofHosts = args.length > 0 ?
+				Integer.parseInt(args[0]) : DEF_NROF_HOSTS;
+		int msgTtl = args.length > 1 ?
+				Integer.parseInt(args[1]) : DEF_MSG_TTL;
+		int maxSize = args.length > 2 ?
+				Integer.parseInt(args[2]) : DEF_MAX_SIZE;
+		ReceiptBufferBenchmark b = new ReceiptBufferBenchmark(nrofHosts);
+
+		System.out.println("7 days, " + nrofHosts + " hosts, TTL " + msgTtl +
+				" min");
+		b.measure("unbounded", 0, Integer.MAX_VALUE);
+		b.measure("expiring", 0, msgTtl);
+		b.measure("bounded (max " + maxSize + ")", maxSize, msgTtl);
+	}
+}
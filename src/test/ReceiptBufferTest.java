@@ -0,0 +1,155 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import junit.framework.TestCase;
+import routing.ACKTTL;
+import routing.ReceiptBuffer;
+import core.Message;
+import core.SimClock;
+
+/**
+ * Tests for the ReceiptBuffer
+ */
+public class ReceiptBufferTest extends TestCase {
+	private ReceiptBuffer b1;
+	private ReceiptBuffer b2;
+	private ReceiptBuffer b3;
+	private SimClock sc = SimClock.getInstance();
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		SimClock.reset();
+		b1 = new ReceiptBuffer(0, 60);
+		b2 = new ReceiptBuffer(0, 60);
+		b3 = new ReceiptBuffer(0, 60);
+	}
+
+	public void testAdd() {
+		ACKTTL ack = new ACKTTL(60, 10);
+		assertTrue(b1.add("M1", ack));
+		assertFalse(b1.add("M1", new ACKTTL(60, 20)));
+		assertTrue(b1.contains("M1"));
+		assertFalse(b1.contains("M2"));
+		assertSame(ack, b1.get("M1"));
+		assertNull(b1.get("M2"));
+		assertEquals(1, b1.size());
+	}
+
+	public void testMerge() {
+		ACKTTL ack = new ACKTTL(60, 20);
+		b2.add("M1", new ACKTTL(60, 10));
+		b2.add("M2", new ACKTTL(60, 10));
+		b1.add("M2", ack);
+
+		assertEquals(1, b1.mergeFrom(b2, 2));
+		assertEquals(2, b1.size());
+		assertTrue(b1.contains("M1"));
+		assertSame(ack, b1.get("M2"));
+
+		/* nothing new from the same peer */
+		assertEquals(0, b1.mergeFrom(b2, 2));
+
+		b2.add("M3", new ACKTTL(60, 30));
+		assertEquals(1, b1.mergeFrom(b2, 2));
+		assertTrue(b1.contains("M3"));
+
+		/* receipts merged from another peer are passed on */
+		assertEquals(3, b3.mergeFrom(b1, 1));
+		assertEquals(0, b2.mergeFrom(b3, 3));
+		assertEquals(3, b2.size());
+	}
+
+	public void testMergeFromManyPeers() {
+		b2.add("M1", new ACKTTL(60, 10));
+		b3.add("M2", new ACKTTL(60, 10));
+		b1.mergeFrom(b2, 2);
+		b1.mergeFrom(b3, 3);
+		b3.add("M1", new ACKTTL(60, 10));
+		b3.add("M4", new ACKTTL(60, 10));
+
+		assertEquals(1, b1.mergeFrom(b3, 3));
+		assertEquals(3, b1.size());
+	}
+
+	public void testExpiry() {
+		b1.add("M1", new ACKTTL(10, 0)); // expires at 600
+		b1.add("M2", new ACKTTL(20, 0)); // expires at 1200
+		b1.add("M3", new ACKTTL(Integer.MAX_VALUE, 0)); // never expires
+
+		sc.setTime(650);
+		b1.add("M4", new ACKTTL(5, 650));
+		assertTrue(b1.contains("M1")); // the slot hasn't passed yet
+
+		sc.setTime(720);
+		b1.add("M5", new ACKTTL(1, 720));
+		assertFalse(b1.contains("M1"));
+		assertTrue(b1.contains("M2"));
+		assertEquals(4, b1.size());
+
+		/* many rounds of the wheel later */
+		sc.setTime(1000000);
+		assertFalse(b1.add("M6", new ACKTTL(1, 0))); // already expired
+		b1.add("M7", new ACKTTL(1, 1000000));
+		assertEquals(2, b1.size());
+		assertTrue(b1.contains("M3"));
+		assertTrue(b1.contains("M7"));
+	}
+
+	public void testReceiptOfMessage() {
+		Message m = new Message(null, null, "M1", 100);
+		m.setTtl(10); // expires at 600
+		sc.setTime(30);
+		assertEquals(9, m.getTtl());
+		ACKTTL ack = new ACKTTL(m, 30);
+		assertEquals(600.0, ack.getExpiryTime(), 0.000001);
+
+		m.setTtl(Message.INFINITE_TTL);
+		ack = new ACKTTL(m, 30);
+		assertEquals(Double.POSITIVE_INFINITY, ack.getExpiryTime());
+	}
+
+	public void testExpiredNotMerged() {
+		b2.add("M1", new ACKTTL(10, 0));
+		b2.add("M2", new ACKTTL(20, 0));
+		sc.setTime(700);
+		assertEquals(1, b1.mergeFrom(b2, 2));
+		assertFalse(b1.contains("M1"));
+		assertTrue(b1.contains("M2"));
+	}
+
+	public void testMaxSize() {
+		ReceiptBuffer b = new ReceiptBuffer(3, 60);
+		for (int i=1; i<=10; i++) {
+			b.add("M" + i, new ACKTTL(60, 0));
+			assertEquals(Math.min(i, 3), b.size());
+		}
+		assertTrue(b.contains("M8"));
+		assertTrue(b.contains("M9"));
+		assertTrue(b.contains("M10"));
+
+		/* only the receipts left are merged */
+		assertEquals(3, b1.mergeFrom(b, 0));
+		b.add("M11", new ACKTTL(60, 0));
+		assertEquals(1, b1.mergeFrom(b, 0));
+		assertTrue(b1.contains("M11"));
+		assertFalse(b1.contains("M7"));
+	}
+
+	public void testMergeAfterDrops() {
+		for (int i=0; i<100; i++) {
+			b2.add("A" + i, new ACKTTL(i % 2 == 0 ? 10 : 60, 0));
+		}
+		assertEquals(100, b1.mergeFrom(b2, 2));
+
+		sc.setTime(1000); // half of the receipts expire
+		b2.add("B1", new ACKTTL(60, 1000));
+		b2.add("B2", new ACKTTL(60, 1000));
+		assertEquals(52, b2.size());
+		assertEquals(2, b1.mergeFrom(b2, 2));
+		assertEquals(52, b1.size());
+		assertEquals(0, b1.mergeFrom(b2, 2));
+	}
+}
@@ -0,0 +1,191 @@
+/* 
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details. 
+ */
+package test;
+
+import input.EventQueue;
+import input.ExternalEvent;
+import input.MergedEventQueue;
+import input.PassiveEventQueue;
+import input.ScheduledUpdatesQueue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Microbenchmark for the {@link ScheduledUpdatesQueue} and the 
+ * {@link MergedEventQueue}. 
+ * <UL>
+ * <LI>add/drain: adds the given number of random update times and then 
+ * takes all of them</LI>
+ * <LI>hold: keeps the given number of updates in the queue, takes the next
+ * one and adds a new one somewhat later, like the routers scheduling their 
+ * next updates do</LI>
+ * <LI>merge: takes events from a number of message generator -like queues
+ * merged with the scheduled updates, and compares it to polling every
+ * queue for every event (like the world used to do)</LI>
+ * </UL>
+ * <P>
+ * Usage: <CODE>java test.ScheduledUpdatesQueueBenchmark [nrofUpdates]
+ * [nrofQueues]</CODE> (defaults: 1000000 updates, 1000 queues).
+ * </P>
+ */
+public class ScheduledUpdatesQueueBenchmark {
+	private static final int DEF_NROF_UPDATES = 1000000;
+	private static final int DEF_NROF_QUEUES = 1000;
+	/** how many events are taken from the merged queues */
+	private static final int MERGED_EVENTS = 1000000;
+	
+	private Random rng = new Random(1);
+	/** the result of the runs (so that the JIT can't drop the work) */
+	private double checksum;
+	
+	/**
+	 * Adds the given number of random updates and takes them all
+	 * @param n Number of updates
+	 */
+	private void addDrain(int n) {
+		ScheduledUpdatesQueue suq = new ScheduledUpdatesQueue();
+		for (int i=0; i<n; i++) {
+			suq.addUpdate(rng.nextInt(n) / 10.0);
+		}
+		while (suq.nextEventsTime() != Double.MAX_VALUE) {
+			checksum += suq.nextEvent().getTime();
+		}
+	}
+	
+	/**
+	 * Keeps n updates in the queue and takes (and replaces) n updates
+	 * @param n Number of updates
+	 */
+	private void hold(int n) {
+		ScheduledUpdatesQueue suq = new ScheduledUpdatesQueue();
+		for (int i=0; i<n; i++) {
+			suq.addUpdate(rng.nextDouble() * 100);
+		}
+		for (int i=0; i<n; i++) {
+			double time = suq.nextEvent().getTime();
+			checksum += time;
+			suq.addUpdate(time + rng.nextDouble() * 100);
+		}
+	}
+	
+	/**
+	 * Takes events from the queues merged with a MergedEventQueue
+	 * @param nrofQueues Number of queues
+	 */
+	private void merged(int nrofQueues) {
+		List<EventQueue> queues = createQueues(nrofQueues);
+		MergedEventQueue meq = new MergedEventQueue(queues);
+		for (int i=0; i<MERGED_EVENTS; i++) {
+			checksum += meq.nextEventsTime();
+			checksum += meq.nextEvent().getTime();
+		}
+	}
+	
+	/**
+	 * Takes events from the queues by polling every queue for every event
+	 * @param nrofQueues Number of queues
+	 */
+	private void polled(int nrofQueues) {
+		List<EventQueue> queues = createQueues(nrofQueues);
+		for (int i=0; i<MERGED_EVENTS; i++) {
+			EventQueue next = queues.get(0);
+			double earliest = next.nextEventsTime();
+			for (EventQueue eq : queues) {
+				if (eq.nextEventsTime() < earliest) {
+					next = eq;
+					earliest = eq.nextEventsTime();
+				}
+			}
+			checksum += earliest;
+			checksum += next.nextEvent().getTime();
+		}
+	}
+	
+	/**
+	 * Creates an (empty) scheduled updates queue and the given number of 
+	 * generator queues
+	 * @param nrofQueues Number of generator queues
+	 * @return The created queues
+	 */
+	private List<EventQueue> createQueues(int nrofQueues) {
+		List<EventQueue> queues = new ArrayList<EventQueue>();
+		queues.add(new ScheduledUpdatesQueue());
+		Random queueRng = new Random(nrofQueues);
+		for (int i=0; i<nrofQueues; i++) {
+			queues.add(new IntervalQueue(queueRng.nextDouble() * 100));
+		}
+		return queues;
+	}
+	
+	/**
+	 * Runs and reports one benchmark
+	 * @param name Name of the benchmark
+	 * @param r The benchmark
+	 */
+	private static void measure(String name, Runnable r) {
+		r.run(); // warm up
+		long start = System.nanoTime();
+		r.run();
+		long elapsed = System.nanoTime() - start;
+		System.out.println(name + ": " + (elapsed / 1000000) + " ms");
+	}
+	
+	public static void main(String[] args) {
+		final int nrofUpdates = args.length > 0 ? 
+				Integer.parseInt(args[0]) : DEF_NROF_UPDATES;
+		final int nrofQueues = args.length > 1 ? 
+				Integer.parseInt(args[1]) : DEF_NROF_QUEUES;
+		final ScheduledUpdatesQueueBenchmark b = 
+			new ScheduledUpdatesQueueBenchmark();
+
+		measure("add/drain " + nrofUpdates + " updates", new Runnable() {
+			public void run() {
+				b.addDrain(nrofUpdates);
+			}
+		});
+		measure("hold " + nrofUpdates + " updates", new Runnable() {
+			public void run() {
+				b.hold(nrofUpdates);
+			}
+		});
+		measure("merged " + nrofQueues + " queues", new Runnable() {
+			public void run() {
+				b.merged(nrofQueues);
+			}
+		});
+		measure("polled " + nrofQueues + " queues", new Runnable() {
+			public void run() {
+				b.polled(nrofQueues);
+			}
+		});
+		System.out.println("(checksum " + b.checksum + ")");
+	}
+	
+	/**
+	 * Passive queue with events at regular intervals
+	 */
+	private static class IntervalQueue implements PassiveEventQueue {
+		private static final long serialVersionUID = 42L;
+		private double interval;
+		private double nextTime;
+		
+		public IntervalQueue(double interval) {
+			this.interval = interval;
+			this.nextTime = interval;
+		}
+		
+		public ExternalEvent nextEvent() {
+			ExternalEvent ee = new ExternalEvent(nextTime);
+			nextTime += interval;
+			return ee;
+		}
+		
+		public double nextEventsTime() {
+			return nextTime;
+		}
+	}
+}
@@ -5,6 +5,10 @@
 package test;
 
 import input.ScheduledUpdatesQueue;
+
+import java.util.Arrays;
+import java.util.Random;
+
 import junit.framework.TestCase;
 import core.SimClock;
 
@@ -107,4 +111,40 @@ public class ScheduledUpdatesQueueTest extends TestCase {
 		assertEquals(5.0, suq.nextEvent().getTime());
 		assertEquals(8.0, suq.nextEvent().getTime());
 	}
+	
+	public void testManyRandomValues() {
+		Random rng = new Random(1);
+		double[] times = new double[1000];
+		for (int i=0; i<times.length; i++) {
+			times[i] = rng.nextInt(500) / 10.0; // plenty of duplicates
+			suq.addUpdate(times[i]);
+		}
+		Arrays.sort(times);
+		
+		for (int i=0; i<times.length; i++) {
+			if (i > 0 && times[i] == times[i-1]) {
+				continue; // merged
+			}
+			assertEquals(times[i], suq.nextEventsTime());
+			assertEquals(times[i], suq.nextEvent().getTime());
+		}
+		assertEquals(MAX, suq.nextEvent().getTime());
+	}
+	
+	public void testAddingWhileTaking() {
+		suq.addUpdate(2);
+		suq.addUpdate(6);
+		assertEquals(2.0, suq.nextEvent().getTime());
+		
+		suq.addUpdate(6); // merged to the existing one
+		suq.addUpdate(4);
+		suq.addUpdate(6);
+		assertEquals(4.0, suq.nextEvent().getTime());
+		assertEquals(6.0, suq.nextEvent().getTime());
+		assertEquals(MAX, suq.nextEventsTime());
+		
+		suq.addUpdate(1); // queue can be reused after it was empty
+		assertEquals(1.0, suq.nextEvent().getTime());
+		assertEquals(MAX, suq.nextEvent().getTime());
+	}
 }
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.WKTMapReader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.PrintWriter;
+import java.util.List;
+
+import junit.framework.TestCase;
+import movement.MapBasedMovement;
+import movement.MovementModel;
+import movement.map.MapNode;
+import movement.map.SimMap;
+import movement.map.SimMapImage;
+
+/**
+ * Tests for the SimMapImage and the map cache of MapBasedMovement
+ */
+public class SimMapImageTest extends TestCase {
+	private static final String WKT1 =
+		"LINESTRING (1.0 1.0, 2.0 1.0, 3.0 1.0, 4.0 1.0)\n" +
+		"LINESTRING (1.0 1.0, 1.0 2.0)\n";
+	private static final String WKT2 =
+		"LINESTRING (2.0 1.0, 2.0 0.0, 3.0 0.0, 3.0 1.0)\n";
+
+	private File dir;
+	private File f1;
+	private File f2;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		dir = File.createTempFile("SimMapImageTest", "");
+		dir.delete();
+		dir.mkdir();
+		f1 = write("map1.wkt", WKT1);
+		f2 = write("map2.wkt", WKT2);
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		for (File f : dir.listFiles()) {
+			f.delete();
+		}
+		dir.delete();
+	}
+
+	private File write(String name, String contents) throws Exception {
+		File f = new File(dir, name);
+		PrintWriter pw = new PrintWriter(f);
+		pw.print(contents);
+		pw.close();
+		return f;
+	}
+
+	private SimMap readWkt() throws Exception {
+		WKTMapReader r = new WKTMapReader(true);
+		r.addPaths(f1, 1);
+		r.addPaths(f2, 2);
+		SimMap map = r.getMap();
+		map.mirror();
+		map.translate(-map.getMinBound().getX(), -map.getMinBound().getY());
+		return map;
+	}
+
+	private void assertSameMap(SimMap expected, SimMap map) {
+		List<MapNode> en = expected.getNodes();
+		List<MapNode> n = map.getNodes();
+		assertEquals(en.size(), n.size());
+		for (int i=0; i<en.size(); i++) {
+			MapNode a = en.get(i);
+			MapNode b = n.get(i);
+			assertEquals(a.getLocation(), b.getLocation());
+			assertEquals(a.toString(), b.toString());
+			assertEquals(a.getNeighbors().size(), b.getNeighbors().size());
+			for (int j=0; j<a.getNeighbors().size(); j++) {
+				assertEquals(a.getNeighbors().get(j).getLocation(),
+						b.getNeighbors().get(j).getLocation());
+			}
+			assertSame(b, map.getNodeByCoord(a.getLocation()));
+		}
+		assertEquals(expected.getOffset(), map.getOffset());
+		assertEquals(expected.getMinBound(), map.getMinBound());
+		assertEquals(expected.getMaxBound(), map.getMaxBound());
+		assertEquals(expected.isMirrored(), map.isMirrored());
+	}
+
+	public void testWriteAndRead() throws Exception {
+		SimMap map = readWkt();
+		File image = new File(dir, "test.map");
+		SimMapImage.write(map, image);
+		assertSameMap(map, SimMapImage.read(image));
+	}
+
+	public void testInvalidImage() throws Exception {
+		File image = new File(dir, "test.map");
+		SimMapImage.write(readWkt(), image);
+		FileOutputStream out = new FileOutputStream(image, true);
+		out.write(0);
+		out.close();
+		try {
+			SimMapImage.read(image);
+			fail("Invalid image was read");
+		} catch (java.io.IOException e) {
+			// should happen
+		}
+	}
+
+	public void testKey() throws Exception {
+		String key = SimMapImage.getKey(new File[] {f1, f2});
+		assertEquals(key, SimMapImage.getKey(new File[] {f1, f2}));
+		assertFalse(key.equals(SimMapImage.getKey(new File[] {f2, f1})));
+		assertFalse(key.equals(SimMapImage.getKey(new File[] {f1})));
+
+		write("map2.wkt", WKT2 + "LINESTRING (4.0 1.0, 5.0 1.0)\n");
+		assertFalse(key.equals(SimMapImage.getKey(new File[] {f1, f2})));
+	}
+
+	public void testMapCache() throws Exception {
+		String ns = MapBasedMovement.MAP_BASE_MOVEMENT_NS + ".";
+		TestSettings ts = new TestSettings();
+		ts.putSetting(ns + MapBasedMovement.NROF_FILES_S, "2");
+		ts.putSetting(ns + MapBasedMovement.FILE_S + "1", f1.getPath());
+		ts.putSetting(ns + MapBasedMovement.FILE_S + "2", f2.getPath());
+		ts.putSetting(ns + MapBasedMovement.CACHE_DIR_S,
+				new File(dir, "cache").getPath());
+		ts.putSetting(MovementModel.SPEED, "1,1");
+		ts.putSetting(MovementModel.WAIT_TIME, "0,0");
+
+		SimMap map = new MapBasedMovement(ts).getMap();
+		File image = new File(new File(dir, "cache"),
+				SimMapImage.getKey(new File[] {f1, f2}) + ".map");
+		assertTrue(image.exists());
+		assertSameMap(map, SimMapImage.read(image));
+
+		/* same contents in other files -> map is read from the image */
+		File copy = write("copy1.wkt", WKT1);
+		ts.putSetting(ns + MapBasedMovement.FILE_S + "1", copy.getPath());
+		long modified = image.lastModified();
+		SimMap cached = new MapBasedMovement(ts).getMap();
+		assertNotSame(map, cached);
+		assertSameMap(map, cached);
+		assertEquals(modified, image.lastModified());
+
+		for (File f : image.getParentFile().listFiles()) {
+			f.delete();
+		}
+		image.getParentFile().delete();
+	}
+}
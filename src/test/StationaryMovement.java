@@ -13,6 +13,7 @@ import core.Coord;
  * purposes
  */
 public class StationaryMovement extends MovementModel {
+	private static final long serialVersionUID = 42L;
 	private Coord loc;
 	
 	public StationaryMovement(Coord location) {
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import input.ConnectionEvent;
+import input.ExternalEvent;
+import input.MessageCreateEvent;
+import input.MessageRelayEvent;
+import input.StandardEventsReader;
+import input.StreamingEventsReader;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.TestCase;
+import core.SimError;
+
+/**
+ * Tests for the StreamingEventsReader. The events read must be the same as
+ * the ones read by the StandardEventsReader.
+ */
+public class StreamingEventsReaderTest extends TestCase {
+	private static final String INPUT =
+		"1000.000\tC\tMSG_365_D_1\tp1\tp2\t100000\n" +
+		"1533.405\tS\tMSG_365_D_1\tp1\tp0\n" +
+		"1542\tA\tMSG_365_D_1\tp1\tp0\r\n" +
+		"2200.000  C MSG_746_D_2 p1 p3 100000 200\r\n" +
+		"\r\n" +
+		"# comment line\n" +
+		"3095.408\tS\tMSG_746_D_2\t12\tc64\r" +
+		"3103.000\tA\tMSG_746_D_2\tp1\tc64\n" +
+		" \n" +
+		"8071.6080000000000001\tDE\tMSG_746_D_2\tp1\tp10\n" +
+		"8091.608\tDE\tMSG_365_D_1\tp1\tp10\n" +
+		"9000.5\tCONN\t3\t4\tup\n" +
+		"9001.25\tCONN\tn3\tn4\tDOWN\tbtInterface\n" +
+		"1.005e5\tDR\tMSG_365_D_1\tp10\n" +
+		"106202.613\tR\t*\tc70";
+
+	private File tempFile;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+		tempFile = File.createTempFile("serTest", ".txt");
+		write(INPUT);
+	}
+
+	protected void tearDown() throws Exception {
+		super.tearDown();
+		tempFile.delete();
+	}
+
+	private void write(String text) throws Exception {
+		FileOutputStream out = new FileOutputStream(tempFile);
+		out.write(text.getBytes("UTF-8"));
+		out.close();
+	}
+
+	private List<ExternalEvent> readAll(StreamingEventsReader r, int nrof) {
+		List<ExternalEvent> all = new ArrayList<ExternalEvent>();
+		List<ExternalEvent> events;
+		while ((events = r.readEvents(nrof)).size() > 0) {
+			assertTrue(events.size() <= nrof);
+			all.addAll(events);
+		}
+		r.close();
+		return all;
+	}
+
+	private void checkSame(List<ExternalEvent> expected,
+			List<ExternalEvent> events) {
+		assertEquals(expected.size(), events.size());
+		for (int i=0; i<expected.size(); i++) {
+			ExternalEvent e = expected.get(i);
+			ExternalEvent ee = events.get(i);
+			assertEquals(e.getClass(), ee.getClass());
+			assertEquals(e.getTime(), ee.getTime());
+			assertEquals(e.toString(), ee.toString());
+		}
+	}
+
+	public void testSameEvents() {
+		StandardEventsReader std = new StandardEventsReader(tempFile);
+		List<ExternalEvent> expected = std.readEvents(100);
+		std.close();
+		assertEquals(12, expected.size());
+
+		checkSame(expected, readAll(new StreamingEventsReader(tempFile), 100));
+		checkSame(expected, readAll(new StreamingEventsReader(tempFile), 1));
+		/* buffers smaller than the lines */
+		for (int size = 1; size < 40; size += 3) {
+			checkSame(expected, readAll(
+					new StreamingEventsReader(tempFile, size), 5));
+		}
+	}
+
+	public void testEvents() {
+		List<ExternalEvent> events = readAll(
+				new StreamingEventsReader(tempFile), 100);
+		assertTrue(events.get(0) instanceof MessageCreateEvent);
+		assertTrue(events.get(1) instanceof MessageRelayEvent);
+		assertTrue(events.get(9) instanceof ConnectionEvent);
+		assertEquals("CONN down @9001.25 3<->4", events.get(9).toString());
+		assertEquals(100500.0, events.get(10).getTime());
+		assertTrue(events.get(0).toString().endsWith("size:100000 CREATE"));
+		assertEquals("MSG @3095.408 MSG_746_D_2 [12->64] SENDING",
+				events.get(4).toString());
+	}
+
+	public void testInvalidEvents() throws Exception {
+		String[] invalid = {"1.0 X M1 p1 p2", "1.0 S M1 p1", "1.0 S M1 1p p2",
+				"1.0 C M1 p1 p2 big", "x S M1 p1 p2", "1.0 CONN 1 2 sideways"};
+		for (String line : invalid) {
+			write("0.5 S M0 p1 p2\n" + line + "\n");
+			StreamingEventsReader r = new StreamingEventsReader(tempFile);
+			assertEquals(1, r.readEvents(1).size());
+			try {
+				r.readEvents(1);
+				fail("No error for '" + line + "'");
+			} catch (SimError e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("line 2"));
+			}
+			r.close();
+		}
+	}
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2010 Aalto University, ComNet
+ * Released under GPLv3. See LICENSE.txt for details.
+ */
+package test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import routing.ActiveRouter;
+import routing.EpidemicRouter;
+import routing.MessageRouter;
+import routing.TransferScheduler;
+import core.Message;
+
+/**
+ * Tests for the concurrent transfers of the TransferScheduler
+ */
+public class TransferSchedulerTest extends AbstractRouterTest {
+	private static final int MAX_TRANSFERS = 2;
+
+	@Override
+	public void setUp() throws Exception {
+		ts.putSetting(MessageRouter.MSG_TTL_S, "300");
+		ts.putSetting(MessageRouter.B_SIZE_S, ""+BUFFER_SIZE);
+		ts.putSetting(TransferScheduler.MAX_CONCURRENT_TRANSFERS_S,
+				""+MAX_TRANSFERS);
+		setRouterProto(new EpidemicRouter(ts));
+		super.setUp();
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		/* the settings are shared with the other router tests */
+		ts.putSetting(TransferScheduler.MAX_CONCURRENT_TRANSFERS_S, "1");
+		super.tearDown();
+	}
+
+	/**
+	 * Counts the transfer starts in the message checker
+	 */
+	private int countStarts() {
+		int starts = 0;
+		while (mc.next()) {
+			if (mc.getLastType().equals(mc.TYPE_START)) {
+				starts++;
+			}
+		}
+		return starts;
+	}
+
+	public void testConcurrentSending() {
+		h1.createNewMessage(new Message(h1, h6, msgId1, 10));
+		h1.connect(h2);
+		h1.connect(h3);
+		h1.connect(h4);
+		checkCreates(1);
+
+		h1.update(true);
+		assertEquals(MAX_TRANSFERS, countStarts());
+		assertTrue(((ActiveRouter)h1.getRouter()).isTransferring());
+
+		/* the transfers finish at the same time and the last peer is served */
+		clock.advance(1);
+		h1.update(true);
+		int relays = 0;
+		int starts = 0;
+		while (mc.next()) {
+			if (mc.getLastType().equals(mc.TYPE_RELAY)) {
+				relays++;
+			} else if (mc.getLastType().equals(mc.TYPE_START)) {
+				starts++;
+				assertEquals(h4, mc.getLastTo());
+			}
+		}
+		assertEquals(MAX_TRANSFERS, relays);
+		assertEquals(1, starts);
+	}
+
+	public void testDefaultBandwidth() {
+		h1.createNewMessage(new Message(h1, h6, msgId1, 10));
+		h1.connect(h2);
+		h1.connect(h3);
+		h1.connect(h4);
+		checkCreates(1);
+
+		/* no limit by default: every slot is used at the connection speed */
+		assertEquals(0.0, TransferScheduler.create(ts).getBandwidth());
+		h1.update(true);
+		assertEquals(MAX_TRANSFERS, countStarts());
+	}
+
+	public void testBandwidthLimit() {
+		h1.createNewMessage(new Message(h1, h6, msgId1, 10));
+		h1.connect(h2);
+		h1.connect(h3);
+		h1.connect(h4);
+		checkCreates(1);
+		ActiveRouter r = (ActiveRouter)h1.getRouter();
+		List<Message> messages =
+			new ArrayList<Message>(r.getMessageCollection());
+
+		/* room for one connection and a half */
+		TransferScheduler limited = new TransferScheduler(MAX_TRANSFERS,
+				TRANSMIT_SPEED * 1.5);
+		assertNotNull(limited.tryMessagesToConnections(r, messages,
+				h1.getConnections()));
+		assertEquals(1, countStarts());
+		assertNull(limited.tryMessagesToConnections(r, messages,
+				h1.getConnections()));
+		assertFalse(mc.next());
+
+		/* the same transfer leaves room for another one without a limit */
+		TransferScheduler unlimited = new TransferScheduler(MAX_TRANSFERS,
+				0);
+		assertFalse(unlimited.isBusy(r));
+		unlimited.tryMessagesToConnections(r, messages, h1.getConnections());
+		assertEquals(1, countStarts());
+		assertTrue(unlimited.isBusy(r));
+	}
+
+	public void testIncomingReservesSpace() {
+		h2.createNewMessage(new Message(h2, h6, msgId1, 60));
+		h3.createNewMessage(new Message(h3, h6, msgId2, 60));
+		h1.connect(h2);
+		h1.connect(h3);
+		checkCreates(2);
+
+		h2.update(true);
+		checkTransferStart(h2, h1, msgId1);
+
+		/* msgId1 reserves 60 of the 100 bytes of h1's buffer */
+		h3.update(true);
+		assertFalse(mc.next());
+	}
+
+	public void testNoDuplicateReceiving() {
+		h2.createNewMessage(new Message(h2, h6, msgId1, 10));
+		h3.createNewMessage(new Message(h3, h6, msgId1, 10));
+		h3.createNewMessage(new Message(h3, h6, msgId2, 10));
+		h1.connect(h2);
+		h1.connect(h3);
+		checkCreates(3);
+
+		h2.update(true);
+		checkTransferStart(h2, h1, msgId1);
+		assertFalse(mc.next());
+
+		/* h1 is receiving msgId1 from h2 already, so h3 sends msgId2 */
+		h3.update(true);
+		checkTransferStart(h3, h1, msgId2);
+		assertFalse(mc.next());
+	}
+}
@@ -5,15 +5,33 @@
 package test;
 
 import input.EventQueue;
+import input.EventQueueHandler;
+import input.MessageEventGenerator;
+import interfaces.ConnectivityGrid;
 
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 
 import junit.framework.TestCase;
+import movement.MovementModel;
+import report.ConnectivityONEReport;
+import report.Report;
+import routing.MessageRouter;
+import core.ConnectionListener;
+import core.Coord;
 import core.DTNHost;
+import core.Message;
+import core.MessageListener;
 import core.ModuleCommunicationBus;
 import core.NetworkInterface;
 import core.SimClock;
+import core.SimScenario;
 import core.UpdateListener;
 import core.World;
 
@@ -24,6 +42,9 @@ import core.World;
 public class WorldTest extends TestCase {
 	/* for rounding errors with SimClock */
 	private static final double TIME_DELTA = 0.00001;
+	/* for rounding errors of the fast warm up */
+	private static final double LOCATION_DELTA = 0.000001;
+	private static final double WARMUP_TIME = 1000;
 	private World world;
 	private boolean simulateConnections = true;
 	private int worldSizeX = 100;
@@ -99,6 +120,323 @@ public class WorldTest extends TestCase {
 	}
 	
 
+	/**
+	 * Runs a scenario with the parallel updates and the affected host
+	 * updates and checks that the message and connection events are the
+	 * same as without them
+	 */
+	public void testOptimizationsKeepEvents() {
+		List<String> plain = runScenario();
+		List<String> optimized = runScenario(World.PARALLEL_UPDATES_S,
+				World.AFFECTED_HOST_UPDATES_S);
+
+		assertTrue(plain.size() > 0);
+		assertEquals(plain, optimized);
+	}
+
+	/**
+	 * Runs a scenario with the adaptive updates and checks that the
+	 * connectivity report is the same as without skipping the updates
+	 */
+	public void testAdaptiveUpdatesKeepConnectivity() throws IOException {
+		String plain = connectivityReport();
+		String adaptive = connectivityReport(World.ADAPTIVE_UPDATES_S);
+
+		assertTrue(plain.length() > 0);
+		assertEquals(plain, adaptive);
+	}
+
+	/**
+	 * Runs a scenario with the pairwise connectivity and checks that the
+	 * contacts are the same as with the normal connectivity checks
+	 */
+	public void testPairwiseConnectivityKeepsContacts() {
+		double interval = 0.1;
+		Map<String, List<Double>> plain = contactTimes(interval);
+		Map<String, List<Double>> pairwise = contactTimes(interval,
+				World.PAIRWISE_CONNECTIVITY_S);
+
+		assertTrue(plain.size() > 0);
+		assertEquals(plain, pairwise);
+	}
+
+	/**
+	 * Warms up the movement of a scenario with the fast warm up and checks
+	 * that the locations of the hosts after the warm up and the connections
+	 * after it are the same as with the normal warm up
+	 */
+	public void testFastWarmupKeepsMovement() {
+		List<Coord> plainLocations = new ArrayList<Coord>();
+		List<Coord> fastLocations = new ArrayList<Coord>();
+		List<String> plain = connectionsAfterWarmup(plainLocations);
+		List<String> fast = connectionsAfterWarmup(fastLocations,
+				World.FAST_WARMUP_S);
+
+		assertEquals(plainLocations.size(), fastLocations.size());
+		for (int i=0; i<plainLocations.size(); i++) {
+			Coord c1 = plainLocations.get(i);
+			Coord c2 = fastLocations.get(i);
+			assertEquals(c1.getX(), c2.getX(), LOCATION_DELTA);
+			assertEquals(c1.getY(), c2.getY(), LOCATION_DELTA);
+		}
+		assertTrue(plain.size() > 0);
+		assertEquals(plain, fast);
+	}
+
+	/**
+	 * Runs a scenario with the event driven connectivity and checks that the
+	 * contacts are the same as when the connectivity is polled at a small
+	 * update interval
+	 */
+	public void testEventDrivenConnectivityMatchesPolling() {
+		double interval = 0.01;
+		Map<String, List<Double>> polled = contactTimes(interval);
+		Map<String, List<Double>> predicted = contactTimes(interval,
+				World.EVENT_DRIVEN_CONNECTIVITY_S);
+
+		assertTrue(polled.size() > 0);
+		assertEquals(polled.keySet(), predicted.keySet());
+		for (String pair : polled.keySet()) {
+			List<Double> pt = polled.get(pair);
+			List<Double> et = predicted.get(pair);
+			assertEquals(pair, pt.size(), et.size());
+			for (int i=0; i<pt.size(); i++) {
+				/* polling sees the changes on the next update, and the
+				 * predictions after a segment change too */
+				assertEquals(pair, pt.get(i), et.get(i), 2 * interval);
+			}
+		}
+	}
+
+	/**
+	 * Runs a small seeded scenario and returns the times when the contacts
+	 * of every pair of hosts went up and down
+	 * @param interval The update interval
+	 * @param optimizations The optimization settings to turn on
+	 * @return The contact times by the names of the hosts
+	 */
+	private Map<String, List<Double>> contactTimes(double interval,
+			String... optimizations) {
+		final Map<String, List<Double>> contacts =
+			new TreeMap<String, List<Double>>();
+		TestSettings ts = new TestSettings();
+		ts.putSetting(SimScenario.SCENARIO_NS + "." + SimScenario.UP_INT_S,
+				"" + interval);
+
+		SimScenario scen = createScenario(ts, optimizations);
+		scen.addConnectionListener(new ConnectionListener() {
+			public void hostsConnected(DTNHost host1, DTNHost host2) {
+				contactChanged(host1, host2);
+			}
+			public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+				contactChanged(host1, host2);
+			}
+			private void contactChanged(DTNHost host1, DTNHost host2) {
+				String pair = host1.getAddress() < host2.getAddress() ?
+						host1 + "-" + host2 : host2 + "-" + host1;
+				List<Double> times = contacts.get(pair);
+				if (times == null) {
+					times = new ArrayList<Double>();
+					contacts.put(pair, times);
+				}
+				times.add(SimClock.getTime());
+			}
+		});
+		run(scen);
+		return contacts;
+	}
+
+	/**
+	 * Runs a small seeded scenario and returns its message and connection
+	 * events in the order they happened
+	 * @param optimizations The optimization settings to turn on
+	 * @return The events
+	 */
+	private List<String> runScenario(String... optimizations) {
+		EventLog log = new EventLog();
+		SimScenario scen = createScenario(new TestSettings(), optimizations);
+		scen.addMessageListener(log);
+		scen.addConnectionListener(log);
+		run(scen);
+		return log.events;
+	}
+
+	/**
+	 * Runs a small seeded scenario after a movement warm up and returns its
+	 * connection events
+	 * @param locations List where the locations of the hosts after the warm
+	 * up are added
+	 * @param optimizations The optimization settings to turn on
+	 * @return The connection events in the order they happened
+	 */
+	private List<String> connectionsAfterWarmup(List<Coord> locations,
+			String... optimizations) {
+		EventLog log = new EventLog();
+		/* the hosts start moving during the warm up only if they are
+		 * created at its start */
+		SimScenario scen = createScenario(new TestSettings(), -WARMUP_TIME,
+				optimizations);
+		scen.addConnectionListener(log);
+		scen.getWorld().warmupMovementModel(WARMUP_TIME);
+		for (DTNHost h : scen.getHosts()) {
+			locations.add(h.getLocation().clone());
+		}
+
+		run(scen);
+		return log.events;
+	}
+
+	/**
+	 * Runs a small seeded scenario and returns its ConnectivityONEReport
+	 * @param optimizations The optimization settings to turn on
+	 * @return The contents of the report
+	 */
+	private String connectivityReport(String... optimizations)
+			throws IOException {
+		File outFile = File.createTempFile("conntest", ".tmp");
+		outFile.deleteOnExit();
+		TestSettings ts = new TestSettings();
+		ts.putSetting("ConnectivityONEReport." + Report.OUTPUT_SETTING,
+				outFile.getAbsolutePath());
+
+		SimScenario scen = createScenario(ts, optimizations);
+		ConnectivityONEReport report = new ConnectivityONEReport();
+		scen.addConnectionListener(report);
+		run(scen);
+		report.done();
+
+		StringBuilder sb = new StringBuilder();
+		BufferedReader reader = new BufferedReader(new FileReader(outFile));
+		for (String line; (line = reader.readLine()) != null; ) {
+			sb.append(line).append('\n');
+		}
+		reader.close();
+		return sb.toString();
+	}
+
+	/**
+	 * Creates a small seeded scenario
+	 * @param ts The settings to put the scenario's settings to
+	 * @param optimizations The optimization settings to turn on
+	 * @return The scenario
+	 */
+	private SimScenario createScenario(TestSettings ts,
+			String... optimizations) {
+		return createScenario(ts, 0, optimizations);
+	}
+
+	/**
+	 * Creates a small seeded scenario
+	 * @param ts The settings to put the scenario's settings to
+	 * @param startTime The simulation time when the hosts are created
+	 * @param optimizations The optimization settings to turn on
+	 * @return The scenario
+	 */
+	private SimScenario createScenario(TestSettings ts, double startTime,
+			String... optimizations) {
+		String gns = SimScenario.GROUP_NS + ".";
+		String ens = EventQueueHandler.SETTINGS_NAMESPACE;
+		String ons = World.SETTINGS_NS + ".";
+		ts.putSetting(SimScenario.SCENARIO_NS + "." + SimScenario.END_TIME_S,
+				"600");
+		ts.putSetting(gns + SimScenario.GROUP_ID_S, "n");
+		ts.putSetting(gns + SimScenario.NROF_HOSTS_S, "20");
+		ts.putSetting(gns + SimScenario.MOVEMENT_MODEL_S, "RandomWaypoint");
+		ts.putSetting(gns + MovementModel.SPEED, "0.5,1.5");
+		ts.putSetting(gns + MovementModel.WAIT_TIME, "0,120");
+		ts.putSetting(gns + SimScenario.ROUTER_S, "EpidemicRouter");
+		ts.putSetting(gns + MessageRouter.B_SIZE_S, "1M");
+		ts.putSetting(gns + MessageRouter.MSG_TTL_S, "60");
+		ts.putSetting(gns + SimScenario.NROF_INTERF_S, "1");
+		ts.putSetting(gns + SimScenario.INTERFACENAME_S + "1", "radio");
+		ts.putSetting("radio." + SimScenario.INTTYPE_S,
+				"SimpleBroadcastInterface");
+		ts.putSetting("radio." + NetworkInterface.TRANSMIT_SPEED_S, "10k");
+		ts.putSetting("radio." + NetworkInterface.TRANSMIT_RANGE_S, "50");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.WORLD_SIZE, "300,300");
+		ts.putSetting(MovementModel.MOVEMENT_MODEL_NS + "." +
+				MovementModel.RNG_SEED, "1");
+		ts.putSetting(ens + "." + EventQueueHandler.NROF_SETTING, "1");
+		ts.putSetting(ens + "1." + EventQueueHandler.CLASS_SETTING,
+				"MessageEventGenerator");
+		ts.putSetting(ens + "1." + MessageEventGenerator.MESSAGE_INTERVAL_S,
+				"5,10");
+		ts.putSetting(ens + "1." + MessageEventGenerator.MESSAGE_SIZE_S,
+				"10k,50k");
+		ts.putSetting(ens + "1." + MessageEventGenerator.HOST_RANGE_S,
+				"0,20");
+		ts.putSetting(ens + "1." + MessageEventGenerator.MESSAGE_ID_PREFIX_S,
+				"M");
+		for (String o : optimizations) {
+			ts.putSetting(ons + o, "true");
+		}
+
+		/* the static state is reset as between batch runs */
+		SimClock.reset();
+		SimScenario.reset();
+		DTNHost.reset();
+		Message.reset();
+		NetworkInterface.reset();
+		MovementModel.reset();
+		ConnectivityGrid.reset();
+
+		SimClock.getInstance().setTime(startTime);
+		return SimScenario.getInstance();
+	}
+
+	/**
+	 * Runs a scenario until its end time
+	 * @param scen The scenario
+	 */
+	private void run(SimScenario scen) {
+		World w = scen.getWorld();
+		while (SimClock.getTime() < scen.getEndTime()) {
+			w.update();
+		}
+		w.done();
+	}
+
+	/** Records the message and connection events as strings */
+	private class EventLog implements MessageListener, ConnectionListener {
+		private List<String> events = new ArrayList<String>();
+
+		private void log(String type, Object... what) {
+			StringBuilder sb = new StringBuilder();
+			sb.append(SimClock.getTime()).append(' ').append(type);
+			for (Object o : what) {
+				sb.append(' ').append(o);
+			}
+			events.add(sb.toString());
+		}
+
+		public void hostsConnected(DTNHost host1, DTNHost host2) {
+			log("conn", host1, host2);
+		}
+		public void hostsDisconnected(DTNHost host1, DTNHost host2) {
+			log("disconn", host1, host2);
+		}
+		public void newMessage(Message m) {
+			log("create", m);
+		}
+		public void messageTransferStarted(Message m, DTNHost from,
+				DTNHost to) {
+			log("start", m, from, to);
+		}
+		public void messageDeleted(Message m, DTNHost where,
+				boolean dropped) {
+			log("delete", m, where, dropped);
+		}
+		public void messageTransferAborted(Message m, DTNHost from,
+				DTNHost to) {
+			log("abort", m, from, to);
+		}
+		public void messageTransferred(Message m, DTNHost from, DTNHost to,
+				boolean firstDelivery) {
+			log("relay", m, from, to, firstDelivery);
+		}
+	}
+
 	/** Dummy scenario for providing test values for the World */ 
 	private class TestScenario extends core.SimScenario {
 		public TestScenario() {	}
@@ -26,6 +26,7 @@ public class DTNSimTextUI extends DTNSimUI {
 		
 		while (simTime < endTime && !simCancelled){
 			try {
+				checkpoint.saveIfDue(scen);
 				world.update();
 			} catch (AssertionError e) {
 				e.printStackTrace();
@@ -4,10 +4,12 @@
  */
 package ui;
 
+import java.util.Set;
 import java.util.Vector;
 
 import report.Report;
 import core.ApplicationListener;
+import core.Checkpoint;
 import core.ConnectionListener;
 import core.MessageListener;
 import core.MovementListener;
@@ -58,6 +60,8 @@ public abstract class DTNSimUI {
 	protected SimScenario scen;
 	/** simtime of last UI update */
 	protected double lastUpdate;
+	/** saving and resuming of checkpoints */
+	protected Checkpoint checkpoint;
 	
 	/**
 	 * Constructor.
@@ -90,7 +94,13 @@ public abstract class DTNSimUI {
 				
 		try {
 			settings = new Settings();
-			this.scen = SimScenario.getInstance();
+			this.checkpoint = new Checkpoint();
+			if (checkpoint.isResuming()) {
+				this.scen = checkpoint.resume();
+			}
+			else {
+				this.scen = SimScenario.getInstance();
+			}
 
 			// add reports
 			for (int i=1, n = settings.getInt(NROF_REPORT_S); i<=n; i++){
@@ -99,6 +109,16 @@ public abstract class DTNSimUI {
 						reportClass));	
 			}
 
+			if (checkpoint.isResuming()) {
+				// the resumed world is already warmed up
+				Set<String> ids = Checkpoint.getMessageIds(this.scen);
+				for (Report r : this.reports) {
+					r.addWarmupIDs(ids);
+				}
+				this.world = this.scen.getWorld();
+				return;
+			}
+
 			double warmupTime = 0;
 			if (settings.contains(MM_WARMUP_S)) {
 				warmupTime = settings.getDouble(MM_WARMUP_S);
@@ -130,6 +150,9 @@ public abstract class DTNSimUI {
 		for (Report r : this.reports) {
 			r.done();
 		}
+		if (this.world != null) {
+			this.world.done();
+		}
 	}
 	
 	/**